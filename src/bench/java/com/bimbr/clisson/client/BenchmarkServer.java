@@ -0,0 +1,67 @@
+package com.bimbr.clisson.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mortbay.jetty.Request;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+
+/**
+ * A stand-in for Clisson server, like {@code TestServer} of the specs, that reads and discards the bodies of all
+ * requests it receives. It listens on a free local port.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class BenchmarkServer {
+    private final Server     jetty            = new Server(0);
+    private final AtomicLong requestsReceived = new AtomicLong();
+    private final AtomicLong bytesReceived    = new AtomicLong();
+
+    BenchmarkServer() {
+        jetty.setHandler(new AbstractHandler() {
+            public void handle(final String target, final HttpServletRequest request, final HttpServletResponse response, final int dispatch) throws IOException, ServletException {
+                final InputStream input = request.getInputStream();
+                final byte[] chunk = new byte[8192];
+                long length = 0;
+                for (int read = input.read(chunk); read >= 0; read = input.read(chunk)) length += read;
+                requestsReceived.incrementAndGet();
+                bytesReceived.addAndGet(length);
+                response.setStatus(HttpServletResponse.SC_OK);
+                ((Request) request).setHandled(true);
+            }
+        });
+    }
+
+    BenchmarkServer start() {
+        try {
+            jetty.start();
+        } catch (Exception e) {
+            throw new RuntimeException("unable to start the server", e);
+        }
+        return this;
+    }
+
+    int port() {
+        return jetty.getConnectors()[0].getLocalPort();
+    }
+
+    void stop() {
+        try {
+            jetty.stop();
+        } catch (Exception e) {
+            throw new RuntimeException("unable to stop the server", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "requests received: " + requestsReceived.get() + ", bytes received: " + bytesReceived.get();
+    }
+}
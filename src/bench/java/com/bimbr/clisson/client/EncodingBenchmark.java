@@ -0,0 +1,83 @@
+package com.bimbr.clisson.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bimbr.clisson.protocol.Event;
+import com.bimbr.clisson.protocol.Json;
+
+/**
+ * Measures the cost of serialising events, per event: singly and in batches, as JSON and in the binary format, and,
+ * for comparison, through {@link Json#jsonFor(Object)} which the encoders replace. Run with {@code -prof gc} to see
+ * the allocation per event as well.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    private final EventEncoder jsonEncoder   = WireFormat.JSON.newEncoder();
+    private final EventEncoder binaryEncoder = WireFormat.BINARY.newEncoder();
+    private final List<Event>  batch         = new ArrayList<Event>(BATCH_SIZE);
+    private Event              event;
+
+    @Setup
+    public void createEvents() {
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            final Set<String> messageIds = Collections.singleton("msg-" + i);
+            batch.add(new Event("benchmark", new Date(start + i / 10), messageIds, messageIds, "checkpoint " + i % 5));
+        }
+        event = batch.get(0);
+    }
+
+    @Benchmark
+    public String protocolJson() {
+        return Json.jsonFor(event);
+    }
+
+    @Benchmark
+    public PayloadBuffer json() {
+        return jsonEncoder.encode(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public PayloadBuffer jsonBatch() {
+        return jsonEncoder.encode(batch);
+    }
+
+    @Benchmark
+    public PayloadBuffer binary() {
+        return binaryEncoder.encode(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public PayloadBuffer binaryBatch() {
+        return binaryEncoder.encode(batch);
+    }
+}
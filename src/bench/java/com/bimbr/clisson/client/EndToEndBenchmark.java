@@ -0,0 +1,80 @@
+package com.bimbr.clisson.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Measures the throughput, in events per second, of recording events and sending them over HTTP to a local
+ * {@link BenchmarkServer}: every invocation records a number of checkpoints and flushes the recorder. Run with
+ * {@code -prof gc} to see the allocation per event, which includes that of the sender threads and of the server.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+    private static final int  EVENTS           = 1000;
+    private static final int  BUFFER_SIZE      = 2 * EVENTS;
+    private static final int  SENDER_THREADS   = 2;
+    private static final int  TIMEOUT_MS       = 10000;
+    private static final int  MAX_CONNECTIONS  = 2;
+    private static final int  MAX_IN_FLIGHT    = 16;
+
+    /** {@code blocking} for {@link SimpleHttpInvoker}, {@code nonBlocking} for {@link NioHttpInvoker} */
+    @Param({ "blocking", "nonBlocking" })
+    public String invoker;
+
+    @Param({ "1", "100" })
+    public int maxBatchSize;
+
+    private final String[]    messageIds = new String[EVENTS];
+    private BenchmarkServer   server;
+    private AsyncHttpRecorder recorder;
+
+    @Setup
+    public void start() {
+        for (int i = 0; i < EVENTS; i++) messageIds[i] = "msg-" + i;
+        server = new BenchmarkServer().start();
+        final HttpInvoker httpInvoker = "nonBlocking".equals(invoker) ? new NioHttpInvoker("localhost", server.port(), TIMEOUT_MS, TIMEOUT_MS, MAX_CONNECTIONS, MAX_IN_FLIGHT, Compression.NONE, 0, WireFormat.JSON)
+                                                                      : new SimpleHttpInvoker("localhost", server.port(), TIMEOUT_MS, TIMEOUT_MS, MAX_CONNECTIONS);
+        recorder = new AsyncHttpRecorder.Builder("benchmark", httpInvoker)
+                .buffers(BlockingEventBuffer.factory(BUFFER_SIZE))
+                .senderThreads(SENDER_THREADS)
+                .maxBatchSize(maxBatchSize)
+                .maxBatchLingerMs(1)
+                .logger(NOPLogger.NOP_LOGGER, 1000)
+                .build();
+    }
+
+    @TearDown
+    public void stop() {
+        recorder.close(TIMEOUT_MS);
+        server.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public FlushResult recordAndSend() {
+        for (final String messageId : messageIds) recorder.checkpoint(messageId, "checkpoint");
+        return recorder.flush(TIMEOUT_MS);
+    }
+}
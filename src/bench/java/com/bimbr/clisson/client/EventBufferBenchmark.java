@@ -0,0 +1,94 @@
+package com.bimbr.clisson.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Measures the throughput of the buffers between recording and sender threads: four threads offer events to a
+ * buffer which a single sender thread drains in batches, as {@link AsyncHttpRecorder} does. The score of
+ * {@code offer} counts the offers made, including the ones rejected because the buffer was full; that of
+ * {@code drain} the calls to {@link EventBuffer#drainTo(List, int)}, and the {@code drained} counter the events drained.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class EventBufferBenchmark {
+    private static final int CAPACITY       = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /** {@code blocking} or {@code lockFree} */
+    @Param({ "blocking", "lockFree" })
+    public String buffer;
+
+    private EventBuffer eventBuffer;
+    private Event       event;
+
+    @Setup
+    public void createBuffer() {
+        eventBuffer = "lockFree".equals(buffer) ? new RingEventBuffer(CAPACITY, WaitStrategy.named("yield"))
+                                                : new BlockingEventBuffer(CAPACITY);
+        final Set<String> messageIds = Collections.singleton("msg-1");
+        event = new Event("benchmark", new Date(), messageIds, messageIds, "checkpoint");
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(4)
+    public boolean offer() {
+        return eventBuffer.offer(event);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public int drain(final Batch batch) {
+        final int drained = eventBuffer.drainTo(batch.events, MAX_BATCH_SIZE);
+        eventBuffer.acknowledge();
+        batch.events.clear();
+        batch.drained += drained;
+        return drained;
+    }
+
+    /**
+     * The batch reused by the draining thread, which also counts the events drained.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Batch {
+        final List<Event> events = new ArrayList<Event>(MAX_BATCH_SIZE);
+        public long       drained;
+
+        @Setup(Level.Iteration)
+        public void resetCounter() {
+            drained = 0;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.bimbr.clisson.client;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Measures the latency of {@link Recorder#checkpoint(String, String)} and {@link Recorder#event(Set, Set, String)},
+ * i.e. the time a recording thread spends in the recorder, with 1, 4, 16 and 64 threads recording at the same time.
+ * Events are sent to a server that discards them without a network round trip, so that the latency depends on the
+ * contention on buffers rather than on the speed of the senders. If the senders do not keep up, part of the events
+ * is dropped and the latency is that of dropping them.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class RecordingBenchmark {
+    private static final int  BUFFER_SIZE      = 64 * 1024;
+    private static final int  SENDER_THREADS   = 4;
+    private static final int  MAX_BATCH_SIZE   = 100;
+    private static final long CLOSE_TIMEOUT_MS = 10000;
+
+    /** {@code blocking} or {@code lockFree} */
+    @Param({ "blocking", "lockFree" })
+    public String buffer;
+
+    private AsyncHttpRecorder recorder;
+
+    @Setup
+    public void createRecorder() {
+        final EventBuffer.Factory buffers = "lockFree".equals(buffer) ? RingEventBuffer.factory(BUFFER_SIZE, WaitStrategy.named("park"))
+                                                                      : BlockingEventBuffer.factory(BUFFER_SIZE);
+        recorder = new AsyncHttpRecorder.Builder("benchmark", new DiscardingInvoker())
+                .buffers(buffers)
+                .senderThreads(SENDER_THREADS)
+                .maxBatchSize(MAX_BATCH_SIZE)
+                .maxBatchLingerMs(1)
+                .logger(NOPLogger.NOP_LOGGER, 1000)
+                .build();
+    }
+
+    @TearDown
+    public void closeRecorder() {
+        recorder.close(CLOSE_TIMEOUT_MS);
+    }
+
+    @Benchmark
+    public void checkpoint(final Messages messages) {
+        recorder.checkpoint(messages.nextId(), "checkpoint");
+    }
+
+    @Benchmark
+    public void event(final Messages messages) {
+        final int message = messages.next();
+        recorder.event(messages.inputIds[message], messages.outputIds[message], "event");
+    }
+
+    /**
+     * The ids of messages recorded by a single thread, distinct from those of the other threads so that events are
+     * spread between the senders.
+     */
+    @State(Scope.Thread)
+    public static class Messages {
+        private static final int           MESSAGES = 1024;
+        private static final AtomicInteger threads  = new AtomicInteger();
+
+        final String[]      ids       = new String[MESSAGES];
+        final Set<String>[] inputIds  = newSetArray();
+        final Set<String>[] outputIds = newSetArray();
+        private int         next;
+
+        @Setup
+        public void createIds() {
+            final int thread = threads.incrementAndGet();
+            for (int i = 0; i < MESSAGES; i++) {
+                ids[i]       = "msg-" + thread + "-" + i;
+                inputIds[i]  = Collections.singleton(ids[i]);
+                outputIds[i] = Collections.singleton(ids[i] + "-out");
+            }
+        }
+
+        int next() {
+            next = (next + 1) & (MESSAGES - 1);
+            return next;
+        }
+
+        String nextId() {
+            return ids[next()];
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Set<String>[] newSetArray() {
+            return new Set[MESSAGES];
+        }
+    }
+
+    /**
+     * An invoker that discards all requests.
+     */
+    static final class DiscardingInvoker implements HttpInvoker {
+        public void post(final String uri, final String content) {}
+
+        public void post(final String uri, final byte[] content, final int length) {}
+
+        public void close() {}
+    }
+
+    @Threads(1)
+    public static class OneThread extends RecordingBenchmark {}
+
+    @Threads(4)
+    public static class FourThreads extends RecordingBenchmark {}
+
+    @Threads(16)
+    public static class SixteenThreads extends RecordingBenchmark {}
+
+    @Threads(64)
+    public static class SixtyFourThreads extends RecordingBenchmark {}
+}
@@ -0,0 +1,40 @@
+package com.bimbr.clisson.client;
+
+/**
+ * An {@link HttpInvoker} that can also issue requests without waiting for the responses, so that a single thread can
+ * keep several requests in flight.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+interface AsyncHttpInvoker extends HttpInvoker {
+    /**
+     * Issues a POST request to the server and returns as soon as it has been queued. The content is copied, so the
+     * caller may modify it once the method returns. If the maximum number of requests is already in flight, waits
+     * until one of them completes.
+     * @param uri the URI of the request
+     * @param content the array holding the encoded body of the request
+     * @param length the number of bytes of {@code content} that make up the body
+     * @param callback notified, on the I/O thread of the invoker, when the response is received or the request fails;
+     *                 it must not block
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a request to complete
+     */
+    void postAsync(String uri, byte[] content, int length, Callback callback) throws InterruptedException;
+    
+    /**
+     * Notified about the outcome of a request issued with {@link AsyncHttpInvoker#postAsync}.
+     */
+    interface Callback {
+        /**
+         * Called when the server has responded with a success status code.
+         */
+        void completed();
+        
+        /**
+         * Called when the request could not be sent, the server has not responded in time or has responded with an
+         * error status code.
+         * @param cause the reason of the failure
+         */
+        void failed(Exception cause);
+    }
+}
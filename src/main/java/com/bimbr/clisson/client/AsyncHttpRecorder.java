@@ -4,154 +4,1012 @@ import static com.bimbr.clisson.util.Arguments.nonEmpty;
 import static com.bimbr.clisson.util.Arguments.nonNull;
 import static com.bimbr.clisson.util.Arguments.positive;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.bimbr.clisson.protocol.Event;
-import com.bimbr.clisson.protocol.Json;
 import com.bimbr.util.Clock;
 
 /**
  * A {@link Recorder} that asynchronously sends the events to the server over HTTP. Allows the calling code to continue
- * execution immediately without the need to wait for Clisson server to respond. This implementation uses an internal
- * buffer to store the messages to be submitted. When the buffer fills up subsequent calls to submission methods will
+ * execution immediately without the need to wait for Clisson server to respond. This implementation uses internal
+ * buffers to store the messages to be submitted. When a buffer fills up subsequent calls to submission methods will
  * succeed, but will log errors reporting that the submission had to be dropped.
- * 
+ * <p>
+ * Only the events of messages chosen by the {@link MessageSampler} are recorded, and the {@link RateLimiter} can limit
+ * the rate of events with each description; both are applied before the event is routed to a sender.
+ * <p>
+ * The {@link OverflowPolicy} can instead make the recording threads wait for space in the buffer or drop the oldest
+ * buffered events, and can shed a proportion of events, preferring to keep multi-message events over checkpoints, once
+ * the buffer is filling up.
+ * <p>
+ * Events are submitted by a pool of sender threads, each with its own {@link EventBuffer}. A checkpoint is routed to the
+ * sender chosen based on its message id, so that the checkpoints of a single message are submitted in the order in
+ * which they were recorded. An event of several messages is routed by its first input message id (or its first output
+ * message id if it has no inputs), so with more than one sender it may be submitted out of order with the checkpoints
+ * of its other messages.
+ * <p>
+ * If the maximum batch size is greater than 1, the sender thread drains all events available in its buffer (up to the
+ * maximum batch size) and sends them to the server in a single request. If fewer events are available, it will wait up to
+ * the maximum linger time for more events to arrive before sending the batch. If an {@link EventCoalescer} is enabled,
+ * events of a batch with the same input and output messages are sent as single records to {@code /events/coalesced}.
+ * Events are encoded in the configured {@link WireFormat}.
+ * <p>
+ * Checkpoints are passed to the buffer as their constituent fields and a primitive timestamp; depending on the buffer,
+ * the {@link Event} may only be constructed on the sender thread.
+ * <p>
+ * While {@link #flush(long)} or {@link #close(long)} is in progress the senders do not wait for batches to fill up and,
+ * if batching is enabled, send batches of at least {@value #DRAIN_BATCH_SIZE} events. {@code close} stops the sender
+ * threads once the buffers have been drained or the timeout has elapsed.
+ * <p>
+ * If the invoker is an {@link AsyncHttpInvoker}, each sender keeps issuing requests without waiting for the responses to
+ * the earlier ones; their outcomes are accounted for by the sender thread between batches, and failed requests are
+ * retried synchronously. The buffer is acknowledged whenever no requests are in flight between batches.
+ * <p>
+ * If sequencing is enabled, every request carries the sequence number of its first record as a {@code sequence} query
+ * parameter, where a record is an event or, in requests to {@code /events/coalesced}, a coalesced record; the other
+ * records of the request have the subsequent numbers, in the order in which they are encoded. The numbers are taken
+ * from a counter of the recorder, starting at 1, when a sender takes the events out of its buffer, and are kept if the
+ * request is retried. Since the events of a message are sent by a single sender, their numbers follow the order in
+ * which they were recorded, even within the same millisecond; the numbers of events of different messages need not.
+ * The numbers of requests that failed are not reused.
+ * <p>
+ * If the invoker is a {@link BalancingInvoker} that chooses servers by message id, each batch is split into parts by
+ * the server that owns the messages of its events, and the parts are sent separately.
+ * <p>
+ * A failed request is retried according to the {@link RetryPolicy}. The senders share a {@link CircuitBreaker}: while
+ * the server appears to be down they hold on to their current batches instead of failing them, and leave the
+ * subsequent events in their buffers (which drop or spill them to disk once they are full) until a probe request
+ * succeeds.
+ * <p>
+ * The activity of each sender is tracked in its {@link SenderStatistics}, which can be registered as JMX MBeans, and
+ * reported to an optional {@link RecorderListener}.
+ *
  * @author mmakowski
  * @since 1.0.0
  */
-final class AsyncHttpRecorder implements Recorder {
-    private static final int DEFAULT_LOGGER_GAG_PERIOD_MS = 5 * 60 * 1000;
+final class AsyncHttpRecorder implements Recorder, RecorderLifecycle {
+    static final int DEFAULT_LOGGER_GAG_PERIOD_MS = 5 * 60 * 1000;
     private static final Logger DEFAULT_LOGGER = LoggerFactory.getLogger(AsyncHttpRecorder.class);
-    
+    private static final int DEFAULT_BUFFER_SIZE = 1000;
+    private static final int DEFAULT_SENDER_THREADS = 1;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1;
+    private static final long DEFAULT_MAX_BATCH_LINGER_MS = 0;
+    private static final int DRAIN_BATCH_SIZE = 500;
+    private static final long COMPLETION_CHECK_INTERVAL_MS = 1;
+    private static final int MAX_UNACKNOWLEDGED_BATCHES = 64;
+
     private final boolean     enabled;
     private final String      sourceId;
     private final HttpInvoker invoker;
+    private final AsyncHttpInvoker asyncInvoker;
+    // non-null if batches are split by the server that owns the messages of their events
+    private final BalancingInvoker keyedInvoker;
     private final Clock       clock;
-    private final BlockingQueue<HttpInvocation> invocationBuffer;
+    private final List<BufferProcessor> senders;
+    private final int         maxBatchSize;
+    private final long        maxBatchLingerMs;
     private final Logger      logger;
     private final int         loggerGagPeriodMs;
-    
+    private final RecorderListener listener;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final OverflowPolicy overflowPolicy;
+    private final MessageSampler sampler;
+    private final RateLimiter rateLimiter;
+    private final EventCoalescer coalescer;
+    private final WireFormat  wireFormat;
+    private final boolean     isSequenced;
+    // the sequence number of the last record sent, if sequencing is enabled
+    private final AtomicLong  lastSequence = new AtomicLong();
+
     private volatile long     lastLogMessageTime;
-    
+    private volatile long     lastListenerFailureLogTime;
+    private List<ObjectName>  mbeanNames = Collections.emptyList();
+    private volatile boolean  closed;
+    // the number of flushes in progress
+    private final AtomicInteger draining = new AtomicInteger();
+    // notified when events are processed while a flush is in progress
+    private final Object      drainProgress = new Object();
+
     /**
-     * @param enabled if set to {@code false}, invocations of the constructed recorder will not have any effect
-     * @param sourceId the id of the component that is the source of events
-     * @param invoker the {@link HttpInvoker} used to communicate with the server
-     * @paran bufferSize the size of internal buffer
-     * @param clock the {@link Clock} used to generate event timestamp
+     * @param settings the settings of the recorder
      */
-    AsyncHttpRecorder(final boolean     enabled,
-                      final String      sourceId,
-                      final HttpInvoker invoker,
-                      final int         bufferSize,
-                      final Clock       clock) {
-        this(enabled, sourceId, invoker, bufferSize, clock, DEFAULT_LOGGER, DEFAULT_LOGGER_GAG_PERIOD_MS);
-    }
-    
+    private AsyncHttpRecorder(final Builder settings) {
+        if (settings.maxBatchLingerMs < 0) throw new IllegalArgumentException("maxBatchLingerMs must not be negative");
+        this.enabled = settings.enabled;
+        this.sourceId = nonEmpty(settings.sourceId, "sourceId");
+        this.invoker = nonNull(settings.invoker, "invoker");
+        this.asyncInvoker = invoker instanceof AsyncHttpInvoker ? (AsyncHttpInvoker) invoker : null;
+        this.keyedInvoker = invoker instanceof BalancingInvoker && ((BalancingInvoker) invoker).isKeyed() ? (BalancingInvoker) invoker : null;
+        // the senders need to know whether their buffers are shared with the recording threads and how to encode events
+        this.overflowPolicy = nonNull(settings.overflowPolicy, "overflowPolicy");
+        this.wireFormat = nonNull(settings.wireFormat, "wireFormat");
+        this.senders = senders(positive(settings.senderThreads, "senderThreads"), nonNull(settings.buffers, "buffers"));
+        this.maxBatchSize = positive(settings.maxBatchSize, "maxBatchSize");
+        this.maxBatchLingerMs = settings.maxBatchLingerMs;
+        this.clock = nonNull(settings.clock, "clock");
+        this.logger = nonNull(settings.logger, "logger");
+        this.loggerGagPeriodMs = settings.loggerGagPeriodMs;
+        this.listener = settings.listener;
+        this.retryPolicy = nonNull(settings.retryPolicy, "retryPolicy");
+        this.circuitBreaker = nonNull(settings.circuitBreaker, "circuitBreaker");
+        this.sampler = nonNull(settings.sampler, "sampler");
+        this.rateLimiter = nonNull(settings.rateLimiter, "rateLimiter");
+        this.coalescer = nonNull(settings.coalescer, "coalescer");
+        this.isSequenced = settings.isSequenced;
+
+        startHttpInvocationThreads();
+    }
+
+    private List<BufferProcessor> senders(final int count, final EventBuffer.Factory buffers) {
+        final List<BufferProcessor> senders = new ArrayList<BufferProcessor>(count);
+        for (int i = 0; i < count; i++) senders.add(new BufferProcessor(i, buffers.newBuffer()));
+        return Collections.unmodifiableList(senders);
+    }
+
     /**
-     * @param enabled if set to {@code false}, invocations of the constructed recorder will not have any effect
-     * @param sourceId the id of the component that is the source of events
-     * @param invoker the {@link HttpInvoker} used to communicate with the server
-     * @paran bufferSize the size of internal buffer
-     * @param clock the {@link Clock} used to generate event timestamp
-     * @param logger the logger to use
-     * @param loggerGagPeriodMs the highest frequency (in 1/milliseconds) at which a single type of message will be logged  
+     * @see Recorder#checkpoint(String, String)
      */
-    AsyncHttpRecorder(final boolean     enabled,
-                      final String      sourceId,
-                      final HttpInvoker invoker,
-                      final int         bufferSize,
-                      final Clock       clock,
-                      final Logger      logger,
-                      final int         loggerGagPeriodMs) {
-        this.enabled = enabled;
-        this.sourceId = nonEmpty(sourceId, "sourceId");
-        this.invoker = nonNull(invoker, "invoker");
-        this.invocationBuffer = new ArrayBlockingQueue<HttpInvocation>(positive(bufferSize, "bufferSize"));
-        this.clock = nonNull(clock, "clock");
-        this.logger = nonNull(logger, "logger");
-        this.loggerGagPeriodMs = loggerGagPeriodMs;
-        
-        startHttpInvocationThread();
-    }
-    
+    public void checkpoint(final String messageId, final String description) {
+        checkpoint(sourceId, messageId, description);
+    }
+
     /**
+     * Records a checkpoint on behalf of another component sharing this recorder.
+     * 
+     * @param sourceId the id of the component that is the source of the event
      * @see Recorder#checkpoint(String, String)
      */
-    public void checkpoint(final String messageId, final String description) {
-        final Set<String> messageIds = new TreeSet<String>();
-        messageIds.add(messageId);
-        event(messageIds, messageIds, description);
+    void checkpoint(final String sourceId, final String messageId, final String description) {
+        if (enabled && sampler.samples(messageId)) {
+            final BufferProcessor sender = senderFor(messageId);
+            if (closed) dropped(sender, false);
+            else if (!rateLimiter.tryAcquire(description)) sender.statistics.eventRateLimited();
+            else if (!overflowPolicy.admits(sender.buffer, true)) shed(sender);
+            else {
+                final long timestamp = clock.currentTimeMillis();
+                if (sender.buffer.offerCheckpoint(sourceId, messageId, description, timestamp)) sender.statistics.eventAccepted();
+                else overflowed(sender, checkpoint(sourceId, messageId, description, timestamp));
+            }
+        }
+    }
+
+    private static Event checkpoint(final String sourceId, final String messageId, final String description, final long timestamp) {
+        final Set<String> messageIds = Collections.singleton(messageId);
+        return new Event(sourceId, new Date(timestamp), messageIds, messageIds, description);
     }
 
     /**
      * @see Recorder#event(Set, Set, String)
      */
     public void event(final Set<String> inputMessageIds, final Set<String> outputMessageIds, final String description) {
-        event(new Event(sourceId, clock.getTime(), inputMessageIds, outputMessageIds, description));
+        event(sourceId, inputMessageIds, outputMessageIds, description);
     }
-    
+
+    /**
+     * Records an event on behalf of another component sharing this recorder.
+     * 
+     * @param sourceId the id of the component that is the source of the event
+     * @see Recorder#event(Set, Set, String)
+     */
+    void event(final String sourceId, final Set<String> inputMessageIds, final Set<String> outputMessageIds, final String description) {
+        if (enabled && sampler.samplesAny(inputMessageIds, outputMessageIds)) {
+            record(new Event(sourceId, clock.getTime(), inputMessageIds, outputMessageIds, description));
+        }
+    }
+
     /**
      * @see Recorder#event(Event)
      */
     public void event(final Event event) {
-        if (enabled) {
-            final boolean enqueued = invocationBuffer.offer(new EventSubmission(event));
-            if (!enqueued && isAllowedToLog(lastLogMessageTime)) {
-                logger.warn("buffer capacity of " + invocationBuffer.size() + " has been reached, unable to enqueue new invocations. Events will be missing!");
-                lastLogMessageTime = System.currentTimeMillis();
+        if (enabled && sampler.samplesAny(event.getInputMessageIds(), event.getOutputMessageIds())) record(event);
+    }
+
+    private void record(final Event event) {
+        final BufferProcessor sender = senderFor(routingKeyOf(event));
+        if (closed) dropped(sender, false);
+        else if (!rateLimiter.tryAcquire(event.getDescription())) sender.statistics.eventRateLimited();
+        else if (!overflowPolicy.admits(sender.buffer, false)) shed(sender);
+        else if (sender.buffer.offer(event)) sender.statistics.eventAccepted();
+        else overflowed(sender, event);
+    }
+
+    private void overflowed(final BufferProcessor sender, final Event event) {
+        final boolean isAccepted;
+        switch (overflowPolicy.action()) {
+        case BLOCK:
+            isAccepted = overflowPolicy.offerBlocking(sender.buffer, event);
+            break;
+        case DROP_OLDEST:
+            isAccepted = offerEvictingOldest(sender, event);
+            break;
+        default:
+            isAccepted = false;
+        }
+        if (isAccepted) sender.statistics.eventAccepted();
+        else dropped(sender, true);
+    }
+
+    private boolean offerEvictingOldest(final BufferProcessor sender, final Event event) {
+        final Event oldest;
+        // the sender takes events under the same lock, so that the buffer still has a single consumer at a time
+        synchronized (sender.buffer) {
+            try {
+                oldest = sender.buffer.poll(0, NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (sender.buffer.offer(event)) {
+                if (oldest != null) evicted(sender);
+                return true;
+            }
+        }
+        if (oldest != null) evicted(sender);
+        return false;
+    }
+
+    /**
+     * @see RecorderLifecycle#flush(long)
+     */
+    public FlushResult flush(final long timeoutMs) {
+        return drain(System.nanoTime() + MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    /**
+     * @see RecorderLifecycle#close(long)
+     */
+    public FlushResult close(final long timeoutMs) {
+        synchronized (this) {
+            if (closed) return new FlushResult(0, 0, 0);
+            closed = true;
+        }
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMs);
+        final FlushResult result = drain(deadline);
+        for (final BufferProcessor sender : senders) sender.stop();
+        // aborts the requests in progress, if the timeout elapsed before they completed
+        invoker.close();
+        try {
+            for (final BufferProcessor sender : senders) sender.thread.join(Math.max(1, NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unregisterMBeans();
+        logger.info("recorder closed; events " + result);
+        return result;
+    }
+
+    /**
+     * Registers the statistics of each sender as an MBean with the platform MBean server; they are unregistered when
+     * the recorder is closed.
+     * @see SenderStatisticsMBean
+     */
+    synchronized void registerMBeans() {
+        if (closed || !mbeanNames.isEmpty()) return;
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final List<ObjectName> names = new ArrayList<ObjectName>(senders.size());
+        for (final BufferProcessor sender : senders) {
+            try {
+                final ObjectName name = new ObjectName("com.bimbr.clisson:type=Sender,component=" + ObjectName.quote(sourceId) + ",index=" + sender.index);
+                server.registerMBean(new StandardMBean(sender.statistics, SenderStatisticsMBean.class), name);
+                names.add(name);
+            } catch (JMException e) {
+                logger.warn("unable to register MBean of sender " + sender.index, e);
+            }
+        }
+        mbeanNames = names;
+    }
+
+    private synchronized void unregisterMBeans() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final ObjectName name : mbeanNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.warn("unable to unregister MBean " + name, e);
+            }
+        }
+        mbeanNames = Collections.emptyList();
+    }
+
+    /**
+     * @return {@code true} if {@link #close(long)} has been called
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    private FlushResult drain(final long deadline) {
+        final long[] targets = new long[senders.size()];
+        long sentBefore = 0;
+        long failedBefore = 0;
+        for (int i = 0; i < targets.length; i++) {
+            final SenderStatistics statistics = senders.get(i).statistics;
+            // read the processed counts first, so that no event is counted as sent but not accepted
+            sentBefore += statistics.getEventsSent();
+            failedBefore += statistics.getEventsFailed();
+            targets[i] = statistics.getEventsAccepted();
+        }
+        draining.incrementAndGet();
+        try {
+            synchronized (drainProgress) {
+                long remainingNs;
+                while (!allProcessed(targets) && (remainingNs = deadline - System.nanoTime()) > 0) {
+                    drainProgress.wait(NANOSECONDS.toMillis(remainingNs), (int) (remainingNs % 1000000));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            draining.decrementAndGet();
+        }
+        long sent = 0;
+        long failed = 0;
+        long remaining = 0;
+        for (int i = 0; i < targets.length; i++) {
+            final SenderStatistics statistics = senders.get(i).statistics;
+            sent += statistics.getEventsSent();
+            failed += statistics.getEventsFailed();
+            remaining += Math.max(0, targets[i] - processed(statistics));
+        }
+        return new FlushResult(sent - sentBefore, failed - failedBefore, remaining);
+    }
+
+    private boolean allProcessed(final long[] targets) {
+        for (int i = 0; i < targets.length; i++) {
+            if (processed(senders.get(i).statistics) < targets[i]) return false;
+        }
+        return true;
+    }
+
+    private static long processed(final SenderStatistics statistics) {
+        return statistics.getEventsSent() + statistics.getEventsFailed() + statistics.getEventsEvicted();
+    }
+
+    /**
+     * Wakes up the threads waiting for the buffered events to be processed. It must be called after the statistics of
+     * the processed events have been updated; since the number of flushes in progress is incremented before these are
+     * first read, a flush cannot miss the notification.
+     */
+    private void processed() {
+        if (draining.get() > 0) {
+            synchronized (drainProgress) {
+                drainProgress.notifyAll();
+            }
+        }
+    }
+
+    private void dropped(final BufferProcessor sender, final boolean isBufferFull) {
+        sender.statistics.eventDropped();
+        notifyEventDropped(sender);
+        if (isBufferFull && isAllowedToLog(lastLogMessageTime)) {
+            logger.warn("buffer capacity of " + sender.buffer.capacity() + " has been reached, unable to enqueue new invocations. Events will be missing!");
+            lastLogMessageTime = System.currentTimeMillis();
+        }
+    }
+
+    private void evicted(final BufferProcessor sender) {
+        sender.statistics.eventEvicted();
+        processed();
+        notifyEventDropped(sender);
+        if (isAllowedToLog(lastLogMessageTime)) {
+            logger.warn("buffer capacity of " + sender.buffer.capacity() + " has been reached, dropping the oldest events. Events will be missing!");
+            lastLogMessageTime = System.currentTimeMillis();
+        }
+    }
+
+    private void shed(final BufferProcessor sender) {
+        // shedding is deliberate, so it is not logged
+        sender.statistics.eventShed();
+        notifyEventDropped(sender);
+    }
+
+    private void notifyEventDropped(final BufferProcessor sender) {
+        if (listener != null) {
+            try {
+                listener.eventDropped(sender.index);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
             }
         }
     }
 
+    private void listenerFailed(final RuntimeException e) {
+        if (isAllowedToLog(lastListenerFailureLogTime)) {
+            logger.warn("error in recorder listener", e);
+            lastListenerFailureLogTime = System.currentTimeMillis();
+        }
+    }
+
+    private BufferProcessor senderFor(final String routingKey) {
+        if (senders.size() == 1) return senders.get(0);
+        final int hash = routingKey == null ? 0 : spread(routingKey.hashCode());
+        return senders.get(hash % senders.size());
+    }
+
+    /**
+     * @return the events split by the server that owns their messages, each part in the original order of events
+     */
+    private Collection<List<Event>> partitioned(final List<Event> events) {
+        final Map<Integer, List<Event>> parts = new LinkedHashMap<Integer, List<Event>>();
+        for (final Event event : events) {
+            final Integer server = keyedInvoker.serverFor(routingKeyOf(event));
+            List<Event> part = parts.get(server);
+            if (part == null) {
+                part = new ArrayList<Event>();
+                parts.put(server, part);
+            }
+            part.add(event);
+        }
+        return parts.values();
+    }
+
+    private HttpInvoker invokerFor(final List<Event> events) {
+        return keyedInvoker == null ? invoker : keyedInvoker.forKey(routingKeyOf(events.get(0)));
+    }
+
+    private AsyncHttpInvoker asyncInvokerFor(final List<Event> events) {
+        return keyedInvoker == null ? asyncInvoker : keyedInvoker.forKey(routingKeyOf(events.get(0)));
+    }
+
+    private static String routingKeyOf(final Event event) {
+        final String key = firstOf(event.getInputMessageIds());
+        return key != null ? key : firstOf(event.getOutputMessageIds());
+    }
+
+    private static String firstOf(final Set<String> messageIds) {
+        if (messageIds == null) return null;
+        final Iterator<String> iterator = messageIds.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static int spread(final int hash) {
+        // mix the high bits into the low ones, as message ids often differ only by a numeric suffix
+        final int h = hash ^ (hash >>> 16);
+        return h & Integer.MAX_VALUE;
+    }
+
     private boolean isAllowedToLog(long lastLogMessageTime) {
         return System.currentTimeMillis() - lastLogMessageTime > loggerGagPeriodMs;
     }
-    
-    private void startHttpInvocationThread() {
-        logger.debug("staring HTTP invoker thread...");
-        final Thread invocationThread = new Thread(new BufferProcessor(), "clisson-http-invoker");
-        invocationThread.setDaemon(true);
-        invocationThread.start();
-        logger.debug("HTTP invoker thread started");
+
+    /**
+     * @return the statistics of each sender thread, in the order of sender index
+     */
+    List<SenderStatistics> senderStatistics() {
+        final List<SenderStatistics> statistics = new ArrayList<SenderStatistics>(senders.size());
+        for (final BufferProcessor sender : senders) statistics.add(sender.statistics);
+        return statistics;
     }
-    
-    private static interface HttpInvocation {
-        void invoke(HttpInvoker invoker);
+
+    private void startHttpInvocationThreads() {
+        logger.debug("staring " + senders.size() + " HTTP invoker thread(s)...");
+        for (final BufferProcessor sender : senders) sender.thread.start();
+        logger.debug("HTTP invoker threads started");
     }
-    
-    private static final class EventSubmission implements HttpInvocation {
-        private final Event event;
-        
-        public EventSubmission(final Event event) {
-            this.event = event;
+
+    /**
+     * The settings of an {@link AsyncHttpRecorder}, which default to a single sender with a buffer of
+     * {@value #DEFAULT_BUFFER_SIZE} events that sends every event in a separate JSON request as soon as it is recorded,
+     * without retries, circuit breaking, shedding, sampling, rate limiting, coalescing or sequencing.
+     */
+    static final class Builder {
+        private final String      sourceId;
+        private final HttpInvoker invoker;
+        private boolean           enabled           = true;
+        private EventBuffer.Factory buffers         = BlockingEventBuffer.factory(DEFAULT_BUFFER_SIZE);
+        private int               senderThreads     = DEFAULT_SENDER_THREADS;
+        private int               maxBatchSize      = DEFAULT_MAX_BATCH_SIZE;
+        private long              maxBatchLingerMs  = DEFAULT_MAX_BATCH_LINGER_MS;
+        private Clock             clock             = new Clock();
+        private Logger            logger            = DEFAULT_LOGGER;
+        private int               loggerGagPeriodMs = DEFAULT_LOGGER_GAG_PERIOD_MS;
+        private RecorderListener  listener;
+        private RetryPolicy       retryPolicy       = RetryPolicy.NONE;
+        private CircuitBreaker    circuitBreaker    = CircuitBreaker.disabled();
+        private OverflowPolicy    overflowPolicy    = OverflowPolicy.DROP;
+        private MessageSampler    sampler           = MessageSampler.ALL;
+        private RateLimiter       rateLimiter       = RateLimiter.NONE;
+        private EventCoalescer    coalescer         = EventCoalescer.NONE;
+        private WireFormat        wireFormat        = WireFormat.JSON;
+        private boolean           isSequenced;
+
+        /**
+         * @param sourceId the id of the component that is the source of events
+         * @param invoker the {@link HttpInvoker} used to communicate with the server
+         */
+        Builder(final String sourceId, final HttpInvoker invoker) {
+            this.sourceId = sourceId;
+            this.invoker = invoker;
         }
-        
-        public void invoke(HttpInvoker invoker) {
-            invoker.post("/event", Json.jsonFor(event));
+
+        /**
+         * @param enabled if set to {@code false}, invocations of the recorder will not have any effect
+         */
+        Builder enabled(final boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /**
+         * @param buffers the factory of buffers of sender threads
+         */
+        Builder buffers(final EventBuffer.Factory buffers) {
+            this.buffers = buffers;
+            return this;
+        }
+
+        /**
+         * @param senderThreads the number of threads sending events to the server
+         */
+        Builder senderThreads(final int senderThreads) {
+            this.senderThreads = senderThreads;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize the maximum number of events sent in a single request
+         */
+        Builder maxBatchSize(final int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchLingerMs the maximum time the invoker thread will wait for a batch to fill up
+         */
+        Builder maxBatchLingerMs(final long maxBatchLingerMs) {
+            this.maxBatchLingerMs = maxBatchLingerMs;
+            return this;
+        }
+
+        /**
+         * @param clock the {@link Clock} used to generate event timestamp
+         */
+        Builder clock(final Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @param logger the logger to use
+         * @param loggerGagPeriodMs the highest frequency (in 1/milliseconds) at which a single type of message will be logged
+         */
+        Builder logger(final Logger logger, final int loggerGagPeriodMs) {
+            this.logger = logger;
+            this.loggerGagPeriodMs = loggerGagPeriodMs;
+            return this;
+        }
+
+        /**
+         * @param listener the listener to notify about sent, failed and dropped events; may be {@code null}
+         */
+        Builder listener(final RecorderListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param retryPolicy the policy of retrying failed requests
+         */
+        Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @param circuitBreaker the breaker that stops the senders while the server is down
+         */
+        Builder circuitBreaker(final CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what happens to events recorded when a buffer is (nearly) full
+         */
+        Builder overflowPolicy(final OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param sampler the sampler deciding which messages are recorded
+         */
+        Builder sampler(final MessageSampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @param rateLimiter the limiter of the rate of events with a single description
+         */
+        Builder rateLimiter(final RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * @param coalescer the coalescer of events of a batch sent to the server
+         */
+        Builder coalescer(final EventCoalescer coalescer) {
+            this.coalescer = coalescer;
+            return this;
+        }
+
+        /**
+         * @param wireFormat the format in which events are sent to the server; must match the content type of the invoker
+         */
+        Builder wireFormat(final WireFormat wireFormat) {
+            this.wireFormat = wireFormat;
+            return this;
+        }
+
+        /**
+         * @param isSequenced whether requests are numbered with the sequence numbers of their events
+         */
+        Builder sequenced(final boolean isSequenced) {
+            this.isSequenced = isSequenced;
+            return this;
+        }
+
+        /**
+         * @return a recorder with these settings, whose sender threads have been started
+         * @throws IllegalArgumentException if any of the settings is invalid
+         */
+        AsyncHttpRecorder build() {
+            return new AsyncHttpRecorder(this);
         }
     }
-    
+
+    /**
+     * Sends a batch of events to the server: a single event is posted to {@code /event}, multiple events are posted
+     * as a JSON array to {@code /events} or, if they are coalesced, as a JSON array of coalesced records to
+     * {@code /events/coalesced}. The sequence number of the first event or coalesced record, if any, is passed as a
+     * query parameter.
+     */
+    private static final class EventSubmission {
+        private EventSubmission() {}
+
+        public static void invoke(final HttpInvoker invoker, final EventEncoder encoder, final EventCoalescer coalescer, final List<Event> events, 
+                                  final long firstSequence) {
+            final PayloadBuffer payload = encoded(encoder, coalescer, events);
+            invoker.post(uriFor(coalescer, events, firstSequence), payload.array(), payload.size());
+        }
+
+        public static void invokeAsync(final AsyncHttpInvoker invoker, final EventEncoder encoder, final EventCoalescer coalescer, final List<Event> events, 
+                                       final long firstSequence, final AsyncHttpInvoker.Callback callback) throws InterruptedException {
+            final PayloadBuffer payload = encoded(encoder, coalescer, events);
+            invoker.postAsync(uriFor(coalescer, events, firstSequence), payload.array(), payload.size(), callback);
+        }
+
+        private static String uriFor(final EventCoalescer coalescer, final List<Event> events, final long firstSequence) {
+            final String path;
+            if (events.size() == 1) path = "/event";
+            else if (coalescer.isEnabled()) path = "/events/coalesced";
+            else path = "/events";
+            return firstSequence > 0 ? path + "?sequence=" + firstSequence : path;
+        }
+
+        /**
+         * @return the number of records the events are sent as, i.e. of coalesced records if the events are coalesced
+         */
+        static int records(final EventCoalescer coalescer, final List<Event> events) {
+            return events.size() > 1 && coalescer.isEnabled() ? coalescer.coalesce(events).size() : events.size();
+        }
+
+        private static PayloadBuffer encoded(final EventEncoder encoder, final EventCoalescer coalescer, final List<Event> events) {
+            if (events.size() == 1) return encoder.encode(events.get(0));
+            else if (coalescer.isEnabled()) return encoder.encodeCoalesced(coalescer.coalesce(events));
+            else return encoder.encode(events);
+        }
+    }
+
     private final class BufferProcessor implements Runnable {
+        private final int index;
+        private final EventBuffer buffer;
+        private final SenderStatistics statistics;
+        private final List<Event> batch = new ArrayList<Event>();
+        private final EventEncoder encoder = wireFormat.newEncoder();
+        private final Random random = new Random();
+        private final boolean isEvictedFrom = overflowPolicy.action() == OverflowPolicy.Action.DROP_OLDEST;
+        private final BlockingQueue<Completion> completions = new LinkedBlockingQueue<Completion>();
+        // the number of requests issued asynchronously whose completions have not been processed yet
+        private int inFlight;
+        // the number of batches sent or issued since the buffer was last acknowledged
+        private int unacknowledgedBatches;
+        private final Thread thread;
+        private volatile boolean stopped;
         private volatile long lastLogMessageTime;
-        
+
+        BufferProcessor(final int index, final EventBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+            this.statistics = new SenderStatistics(index, buffer);
+            this.thread = new Thread(this, "clisson-http-invoker-" + index);
+            thread.setDaemon(true);
+        }
+
+        void stop() {
+            stopped = true;
+            thread.interrupt();
+        }
+
         public void run() {
+            try {
+                processBuffer();
+            } finally {
+                buffer.close();
+            }
+        }
+
+        private void processBuffer() {
+            while (!stopped) {
+                try {
+                    if (asyncInvoker != null) {
+                        processCompletions();
+                        // only acknowledged here, where all parts of the previous batch have been dispatched
+                        if (inFlight == 0) acknowledgeSent();
+                    }
+                    fillBatch();
+                    if (batch.isEmpty()) continue;
+                    statistics.queueDepthObserved(batch.size() + buffer.size());
+                    if (keyedInvoker == null) {
+                        dispatch(batch);
+                    } else {
+                        for (final List<Event> part : partitioned(batch)) dispatch(part);
+                    }
+                    if (asyncInvoker == null) acknowledgeSent();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void dispatch(final List<Event> events) throws InterruptedException {
+            // numbered before the first attempt, so that retried events keep their place in the order of recording
+            final long firstSequence = isSequenced ? lastSequence.getAndAdd(EventSubmission.records(coalescer, events)) + 1 : 0;
+            if (asyncInvoker != null) submit(events, firstSequence);
+            else send(events, firstSequence, 0);
+        }
+
+        private void acknowledgeSent() {
+            if (unacknowledgedBatches > 0) {
+                buffer.acknowledge();
+                unacknowledgedBatches = 0;
+            }
+        }
+
+        /**
+         * Issues the request for the events without waiting for the response. The buffer is only acknowledged once no
+         * requests are in flight, so the sender stops taking events to let the requests in flight complete if it has
+         * not been able to acknowledge them for a while.
+         */
+        private void submit(final List<Event> events, final long firstSequence) throws InterruptedException {
+            awaitProbeOutcome();
+            circuitBreaker.acquire();
+            final Completion completion = new Completion(new ArrayList<Event>(events), firstSequence);
+            unacknowledgedBatches++;
+            try {
+                EventSubmission.invokeAsync(asyncInvokerFor(completion.events), encoder, coalescer, completion.events, firstSequence, completion);
+                inFlight++;
+            } catch (RuntimeException e) {
+                // e.g. the invoker has been closed
+                final int failedAttempts = failed(completion.events, e, 0);
+                if (failedAttempts >= 0) send(completion.events, completion.firstSequence, failedAttempts);
+            }
+            while (unacknowledgedBatches >= MAX_UNACKNOWLEDGED_BATCHES && inFlight > 0) {
+                process(completions.take());
+                processCompletions();
+            }
+        }
+
+        /**
+         * Accounts for the requests in flight while the circuit breaker is not closed. One of them may be the probe
+         * request issued by this sender, whose outcome only this thread reports to the breaker, so waiting for the
+         * breaker before that would never end.
+         */
+        private void awaitProbeOutcome() throws InterruptedException {
+            while (circuitBreaker.isOpen() && inFlight > 0) process(completions.take());
+        }
+
+        /**
+         * Accounts for the requests that have completed. Failed requests are retried synchronously.
+         */
+        private void processCompletions() throws InterruptedException {
+            Completion completion;
+            while ((completion = completions.poll()) != null) process(completion);
+        }
+
+        private void process(final Completion completion) throws InterruptedException {
+            inFlight--;
+            if (completion.failure == null) {
+                sent(completion.events, completion.requestTimeNs);
+            } else {
+                final int failedAttempts = failed(completion.events, completion.failure, 0);
+                if (failedAttempts >= 0) send(completion.events, completion.firstSequence, failedAttempts);
+            }
+        }
+
+        /**
+         * Sends the events, retrying failed requests until they are sent, the retry policy gives up or the sender is
+         * stopped. Failures while the circuit breaker is open do not count as attempts, so the events are held until
+         * the server recovers.
+         * @param events the events to send
+         * @param firstSequence the sequence number of the first event, or 0 if the events are not numbered
+         * @param failedAttempts the number of attempts to send the events that have already failed
+         */
+        private void send(final List<Event> events, final long firstSequence, int failedAttempts) throws InterruptedException {
             while (true) {
+                circuitBreaker.acquire();
+                final long startTime = System.nanoTime();
                 try {
-                    invocationBuffer.take().invoke(invoker);
+                    EventSubmission.invoke(invokerFor(events), encoder, coalescer, events, firstSequence);
                 } catch (Exception e) {
-                    if (isAllowedToLog(lastLogMessageTime)) {
-                        logger.warn("error while invoking Clisson server over HTTP", e);
-                        lastLogMessageTime = System.currentTimeMillis();
-                    }
+                    failedAttempts = failed(events, e, failedAttempts);
+                    if (failedAttempts < 0) return;
+                    continue;
+                }
+                sent(events, System.nanoTime() - startTime);
+                return;
+            }
+        }
+
+        private void sent(final List<Event> events, final long requestTimeNs) {
+            circuitBreaker.succeeded();
+            statistics.batchSent(events.size(), requestTimeNs);
+            processed();
+            // the buffer is acknowledged once all parts of the batch have been sent or, if requests are issued
+            // asynchronously, once no requests are in flight
+            if (asyncInvoker == null) unacknowledgedBatches++;
+            if (listener != null) notifyBatchSent(events.size(), requestTimeNs);
+        }
+
+        /**
+         * Accounts for a failed attempt to send the events and waits before the next one if they should be retried.
+         * @return the number of attempts that count towards the limit of the retry policy, or {@code -1} if the
+         *         events should not be sent again
+         */
+        private int failed(final List<Event> events, final Exception e, final int failedAttempts) throws InterruptedException {
+            final boolean isCircuitOpen = circuitBreaker.failed();
+            final int attempts = isCircuitOpen ? failedAttempts : failedAttempts + 1;
+            if (stopped || attempts >= retryPolicy.maxAttempts()) {
+                statistics.batchFailed(events.size());
+                processed();
+                if (listener != null) notifyBatchFailed(events.size(), e);
+                if (!stopped) logFailure(e);
+                return -1;
+            }
+            statistics.requestRetried();
+            logFailure(e);
+            if (!isCircuitOpen) Thread.sleep(retryPolicy.backoffMs(attempts, random));
+            return attempts;
+        }
+
+        private void logFailure(final Exception e) {
+            if (isAllowedToLog(lastLogMessageTime)) {
+                logger.warn("error while invoking Clisson server over HTTP" + (circuitBreaker.isOpen() ? "; " + circuitBreaker : ""), e);
+                lastLogMessageTime = System.currentTimeMillis();
+            }
+        }
+
+        private void notifyBatchSent(final int batchSize, final long requestTimeNs) {
+            try {
+                listener.batchSent(index, batchSize, requestTimeNs);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+
+        private void notifyBatchFailed(final int batchSize, final Exception cause) {
+            try {
+                listener.batchFailed(index, batchSize, cause);
+            } catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+        }
+
+        private void fillBatch() throws InterruptedException {
+            // while requests are in flight, their completions are processed between batches
+            final Event first = inFlight == 0 ? take() : poll(MILLISECONDS.toNanos(COMPLETION_CHECK_INTERVAL_MS));
+            if (first == null) return;
+            batch.add(first);
+            final boolean isDraining = draining.get() > 0;
+            // a single event is sent to a different URI, so batches are only enlarged if the server is known to accept them
+            final int batchSize = isDraining && maxBatchSize > 1 ? Math.max(maxBatchSize, DRAIN_BATCH_SIZE) : maxBatchSize;
+            drainTo(batchSize - batch.size());
+            if (isDraining) return;
+            final long deadline = System.nanoTime() + MILLISECONDS.toNanos(maxBatchLingerMs);
+            while (batch.size() < maxBatchSize) {
+                final long remainingNs = deadline - System.nanoTime();
+                if (remainingNs <= 0) return;
+                final Event next = poll(remainingNs);
+                if (next == null) return;
+                batch.add(next);
+                drainTo(maxBatchSize - batch.size());
+            }
+        }
+
+        // if the recording threads evict the oldest events, they take them out of the buffer too; a blocking call only
+        // holds the lock while the buffer is empty, when the recording threads do not need it
+
+        private Event take() throws InterruptedException {
+            if (!isEvictedFrom) return buffer.take();
+            synchronized (buffer) {
+                return buffer.take();
+            }
+        }
+
+        private Event poll(final long timeoutNs) throws InterruptedException {
+            if (!isEvictedFrom) return buffer.poll(timeoutNs, NANOSECONDS);
+            synchronized (buffer) {
+                return buffer.poll(timeoutNs, NANOSECONDS);
+            }
+        }
+
+        private void drainTo(final int maxEvents) {
+            if (!isEvictedFrom) {
+                buffer.drainTo(batch, maxEvents);
+            } else {
+                synchronized (buffer) {
+                    buffer.drainTo(batch, maxEvents);
                 }
             }
         }
+
+        /**
+         * The outcome of a request issued asynchronously, handed over to the sender thread.
+         */
+        private final class Completion implements AsyncHttpInvoker.Callback {
+            final List<Event> events;
+            final long        firstSequence;
+            final long        startTime = System.nanoTime();
+            // published to the sender thread by the queue
+            long              requestTimeNs;
+            Exception         failure;
+
+            Completion(final List<Event> events, final long firstSequence) {
+                this.events        = events;
+                this.firstSequence = firstSequence;
+            }
+
+            public void completed() {
+                requestTimeNs = System.nanoTime() - startTime;
+                completions.add(this);
+            }
+
+            public void failed(final Exception cause) {
+                failure = cause;
+                completions.add(this);
+            }
+        }
     }
 }
@@ -0,0 +1,360 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link HttpInvoker} that distributes requests over several servers, each reached through its own invoker, and
+ * fails over to the remaining ones when a server does not respond.
+ * <p>
+ * The server for a request is chosen according to the {@link Strategy}. If the request to it fails, the server is
+ * taken out of rotation and the request is immediately repeated on the next one, until a server accepts it or all have
+ * been tried; the failure of the last attempt is then rethrown. Servers' health is checked passively, by the outcome
+ * of the requests sent to them: a server taken out of rotation is given a single trial request once the health check
+ * interval has passed, and is put back into rotation if that request succeeds. When no server is in rotation, requests
+ * are sent to the preferred one regardless, so that recovery is noticed as soon as possible.
+ * <p>
+ * It is safe to share an instance between several threads.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+class BalancingInvoker implements HttpInvoker {
+    /**
+     * The way of choosing the server for a request.
+     */
+    enum Strategy {
+        /**
+         * Each request goes to the next server in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * Each request goes to the server with the fewest requests awaiting a response.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * Each request goes to the server that owns its routing key on a consistent hash ring, so that all checkpoints
+         * of a message are received by the same server and only the messages of a failed server move elsewhere.
+         */
+        MESSAGE_HASH;
+
+        /**
+         * @param name the name of the strategy in camel case, e.g. {@code roundRobin}, case insensitive
+         * @return the strategy with given name
+         * @throws IllegalArgumentException if there is no strategy with given name
+         */
+        static Strategy named(final String name) {
+            return valueOf(name.trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    // enough points per server for the keys to be spread evenly between a handful of servers
+    private static final int POINTS_PER_SERVER = 100;
+
+    private final Server[]      servers;
+    private final Strategy      strategy;
+    private final long          healthCheckIntervalNs;
+    private final AtomicInteger nextServer = new AtomicInteger();
+    private final int[]         ringHashes;
+    private final int[]         ringServers;
+
+    /**
+     * @param names the names of the servers, e.g. {@code host:port}, used in error messages
+     * @param invokers the invokers through which the servers are reached, in the same order as their names
+     * @param strategy the way of choosing the server for a request
+     * @param healthCheckIntervalMs the time after which a server taken out of rotation is given a trial request
+     */
+    public BalancingInvoker(final List<String>      names,
+                            final List<HttpInvoker> invokers,
+                            final Strategy          strategy,
+                            final long              healthCheckIntervalMs) {
+        if (nonNull(invokers, "invokers").isEmpty()) throw new IllegalArgumentException("at least one server is required");
+        if (nonNull(names, "names").size() != invokers.size()) throw new IllegalArgumentException("a name is required for every server");
+        if (healthCheckIntervalMs <= 0) throw new IllegalArgumentException("healthCheckIntervalMs must be positive");
+        this.servers = new Server[invokers.size()];
+        for (int i = 0; i < servers.length; i++) servers[i] = new Server(names.get(i), nonNull(invokers.get(i), "invoker"));
+        this.strategy              = nonNull(strategy, "strategy");
+        this.healthCheckIntervalNs = MILLISECONDS.toNanos(healthCheckIntervalMs);
+        this.ringHashes            = new int[servers.length * POINTS_PER_SERVER];
+        this.ringServers           = new int[ringHashes.length];
+        buildRing(names);
+    }
+
+    private void buildRing(final List<String> names) {
+        final long[] points = new long[ringHashes.length];
+        for (int server = 0; server < servers.length; server++) {
+            for (int i = 0; i < POINTS_PER_SERVER; i++) {
+                // the hash in the high bits, so that sorting orders by hash; the server in the low ones
+                points[server * POINTS_PER_SERVER + i] = ((long) hash(names.get(server) + "#" + i) << 32) | server;
+            }
+        }
+        Arrays.sort(points);
+        for (int i = 0; i < points.length; i++) {
+            ringHashes[i]  = (int) (points[i] >> 32);
+            ringServers[i] = (int) points[i];
+        }
+    }
+
+    /**
+     * @return {@code true} if the server for a request depends on its routing key
+     */
+    boolean isKeyed() {
+        return strategy == Strategy.MESSAGE_HASH;
+    }
+
+    /**
+     * @param routingKey the routing key, e.g. a message id; may be {@code null}
+     * @return the index of the server that requests with given routing key are currently sent to
+     */
+    int serverFor(final String routingKey) {
+        final int[] preference = preference(routingKey);
+        final long now = System.nanoTime();
+        for (final int server : preference) {
+            if (servers[server].isInRotation(now)) return server;
+        }
+        return preference[0];
+    }
+
+    /**
+     * @param routingKey the routing key of requests, e.g. a message id; may be {@code null}
+     * @return a view of this invoker that sends all requests with given routing key; {@code postAsync()} is only
+     *         supported by the view of an asynchronous balancing invoker
+     */
+    AsyncHttpInvoker forKey(final String routingKey) {
+        return new KeyedView(routingKey);
+    }
+
+    public void post(final String uri, final String content) {
+        post(null, uri, content, null, 0);
+    }
+
+    public void post(final String uri, final byte[] content, final int length) {
+        post(null, uri, null, content, length);
+    }
+
+    private void post(final String routingKey, final String uri, final String text, final byte[] content, final int length) {
+        final int[] preference = preference(routingKey);
+        final int preferred = preferred(preference);
+        RuntimeException failure = null;
+        for (final int index : preference) {
+            final Server server = servers[index];
+            if (index != preferred && !server.acquire(System.nanoTime())) continue;
+            server.outstanding.incrementAndGet();
+            try {
+                if (text != null) server.invoker.post(uri, text);
+                else server.invoker.post(uri, content, length);
+                server.succeeded();
+                return;
+            } catch (RuntimeException e) {
+                server.failed(System.nanoTime() + healthCheckIntervalNs);
+                failure = e;
+            } finally {
+                server.outstanding.decrementAndGet();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Issues the request to the preferred server without failing over: a failed request is reported to the callback
+     * and the caller is expected to send it again, through {@link #post(String, byte[], int)}.
+     */
+    void postAsync(final String routingKey, final String uri, final byte[] content, final int length, final AsyncHttpInvoker.Callback callback) throws InterruptedException {
+        final Server server = servers[preferred(preference(routingKey))];
+        if (!(server.invoker instanceof AsyncHttpInvoker)) throw new UnsupportedOperationException("the invoker of " + server.name + " is not asynchronous");
+        server.outstanding.incrementAndGet();
+        boolean isIssued = false;
+        try {
+            ((AsyncHttpInvoker) server.invoker).postAsync(uri, content, length, new AsyncHttpInvoker.Callback() {
+                public void completed() {
+                    server.outstanding.decrementAndGet();
+                    server.succeeded();
+                    callback.completed();
+                }
+
+                public void failed(final Exception cause) {
+                    server.outstanding.decrementAndGet();
+                    server.failed(System.nanoTime() + healthCheckIntervalNs);
+                    callback.failed(cause);
+                }
+            });
+            isIssued = true;
+        } finally {
+            if (!isIssued) server.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the indices of all servers, in the order in which they should be tried
+     */
+    private int[] preference(final String routingKey) {
+        final int[] order = new int[servers.length];
+        switch (strategy) {
+        case MESSAGE_HASH:
+            // the distinct servers in the order of their points on the ring, starting from the key's position
+            final int keyHash = routingKey == null ? 0 : hash(routingKey);
+            int position = Arrays.binarySearch(ringHashes, keyHash);
+            if (position < 0) position = -position - 1;
+            final boolean[] isOrdered = new boolean[servers.length];
+            int ordered = 0;
+            for (int i = 0; ordered < order.length; i++) {
+                final int server = ringServers[(position + i) % ringServers.length];
+                if (!isOrdered[server]) {
+                    isOrdered[server] = true;
+                    order[ordered++] = server;
+                }
+            }
+            return order;
+        case LEAST_OUTSTANDING:
+            // starting from a rotating position, so that idle servers share the load
+            final int start = next();
+            int least = start;
+            for (int i = 1; i < servers.length; i++) {
+                final int server = (start + i) % servers.length;
+                if (servers[server].outstanding.get() < servers[least].outstanding.get()) least = server;
+            }
+            order[0] = least;
+            for (int i = 1; i < servers.length; i++) order[i] = (least + i) % servers.length;
+            return order;
+        default:
+            final int first = next();
+            for (int i = 0; i < servers.length; i++) order[i] = (first + i) % servers.length;
+            return order;
+        }
+    }
+
+    private int next() {
+        return (nextServer.getAndIncrement() & Integer.MAX_VALUE) % servers.length;
+    }
+
+    /**
+     * @return the first server in given order that can be sent a request or, if there is none, the first one; the
+     *         caller is expected to send the request to the returned server
+     */
+    private int preferred(final int[] preference) {
+        final long now = System.nanoTime();
+        for (final int server : preference) {
+            if (servers[server].acquire(now)) return server;
+        }
+        return preference[0];
+    }
+
+    private static int hash(final String str) {
+        // String.hashCode() of ids differing only in a numeric suffix are close to each other; this spreads them
+        int h = str.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public void close() {
+        for (final Server server : servers) server.invoker.close();
+    }
+
+    @Override
+    public String toString() {
+        final List<String> states = new ArrayList<String>(servers.length);
+        final long now = System.nanoTime();
+        for (final Server server : servers) states.add(server.name + (server.isInRotation(now) ? "" : " (out of rotation)"));
+        return strategy + " over " + states;
+    }
+
+    private static final class Server {
+        final String        name;
+        final HttpInvoker   invoker;
+        final AtomicInteger outstanding = new AtomicInteger();
+        // 0 if the server is in rotation, otherwise the time after which it is given a trial request
+        private final AtomicLong retryTimeNs = new AtomicLong();
+
+        Server(final String name, final HttpInvoker invoker) {
+            this.name    = name;
+            this.invoker = invoker;
+        }
+
+        /**
+         * @return {@code true} if the server is in rotation or is due a trial request
+         */
+        boolean isInRotation(final long now) {
+            final long retryTime = retryTimeNs.get();
+            return retryTime == 0 || now - retryTime >= 0;
+        }
+
+        /**
+         * @return {@code true} if the server is in rotation or is due a trial request, which the caller is then
+         *         expected to send
+         */
+        boolean acquire(final long now) {
+            final long retryTime = retryTimeNs.get();
+            // only one request is let through as a trial; the others wait for its outcome
+            return retryTime == 0 || now - retryTime >= 0 && retryTimeNs.compareAndSet(retryTime, now + Long.MAX_VALUE / 2);
+        }
+
+        void succeeded() {
+            retryTimeNs.set(0);
+        }
+
+        void failed(final long retryTime) {
+            retryTimeNs.set(retryTime == 0 ? 1 : retryTime);
+        }
+    }
+
+    /**
+     * Sends all requests with a single routing key.
+     */
+    private final class KeyedView implements AsyncHttpInvoker {
+        private final String routingKey;
+
+        KeyedView(final String routingKey) {
+            this.routingKey = routingKey;
+        }
+
+        public void post(final String uri, final String content) {
+            BalancingInvoker.this.post(routingKey, uri, content, null, 0);
+        }
+
+        public void post(final String uri, final byte[] content, final int length) {
+            BalancingInvoker.this.post(routingKey, uri, null, content, length);
+        }
+
+        public void postAsync(final String uri, final byte[] content, final int length, final Callback callback) throws InterruptedException {
+            BalancingInvoker.this.postAsync(routingKey, uri, content, length, callback);
+        }
+
+        public void close() {
+            BalancingInvoker.this.close();
+        }
+    }
+
+    /**
+     * A balancing invoker over asynchronous invokers, whose requests can be issued without waiting for the responses.
+     */
+    static final class Async extends BalancingInvoker implements AsyncHttpInvoker {
+        /**
+         * @param names the names of the servers, e.g. {@code host:port}, used in error messages
+         * @param invokers the asynchronous invokers through which the servers are reached, in the same order as their
+         *                 names
+         * @param strategy the way of choosing the server for a request
+         * @param healthCheckIntervalMs the time after which a server taken out of rotation is given a trial request
+         */
+        public Async(final List<String>           names,
+                     final List<AsyncHttpInvoker> invokers,
+                     final Strategy               strategy,
+                     final long                   healthCheckIntervalMs) {
+            super(names, new ArrayList<HttpInvoker>(invokers), strategy, healthCheckIntervalMs);
+        }
+
+        public void postAsync(final String uri, final byte[] content, final int length, final Callback callback) throws InterruptedException {
+            postAsync(null, uri, content, length, callback);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.bimbr.clisson.client;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Encodes events in the compact binary format ({@link WireFormat#BINARY}). Compared to JSON, property names are not
+ * repeated, timestamps are sent as variable-length differences and every distinct source id, description and message
+ * id prefix is sent only once per request, after which it is referred to by its index in the dictionary of the
+ * request. The format is:
+ * <pre>
+ * payload   := 'C' 'E' version(1) kind count:varint record*
+ * kind      := 0 (record is event) | 1 (record is group)
+ * event     := flags [sourceId:string] [timestamp] [inputMessageIds:ids] [outputMessageIds:ids] [description:string]
+ * group     := flags [sourceId:string] [inputMessageIds:ids] [outputMessageIds:ids] count:varint (flags [timestamp] [description:string])*
+ * flags     := a byte with bits set for the properties present: 1 sourceId, 2 timestamp, 4 inputMessageIds, 
+ *              8 outputMessageIds, 16 description
+ * timestamp := zigzag-encoded varint: milliseconds since the previous timestamp of the payload, or since the epoch
+ * ids       := count:varint messageId*
+ * messageId := prefix:string digits:varint [number:varint if digits &gt; 0]; the id is the prefix followed by the
+ *              number padded with zeros to the given number of digits
+ * string    := 0 (null) | 1 length:varint UTF-8 bytes (a new dictionary entry) | n &gt; 1 (dictionary entry n - 2)
+ * varint    := an unsigned integer in LEB128 encoding
+ * </pre>
+ * Instances are not thread-safe; each sender thread uses its own encoder.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class BinaryEventEncoder implements EventEncoder {
+    static final int VERSION = 1;
+    
+    private static final int INITIAL_CAPACITY             = 4 * 1024;
+    private static final int MAX_RETAINED_CAPACITY        = 1024 * 1024;
+    private static final int MAX_RETAINED_DICTIONARY_SIZE = 64 * 1024;
+    // the largest number of digits that always fits in a long
+    private static final int MAX_NUMBER_DIGITS            = 18;
+    
+    private static final int KIND_EVENTS = 0;
+    private static final int KIND_GROUPS = 1;
+    
+    private static final int HAS_SOURCE_ID   = 1;
+    private static final int HAS_TIMESTAMP   = 2;
+    private static final int HAS_INPUTS      = 4;
+    private static final int HAS_OUTPUTS     = 8;
+    private static final int HAS_DESCRIPTION = 16;
+    
+    private final PayloadBuffer  buffer     = new PayloadBuffer(INITIAL_CAPACITY, MAX_RETAINED_CAPACITY);
+    private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+    private long previousTimestamp;
+    
+    public PayloadBuffer encode(final Event event) {
+        start(KIND_EVENTS, 1);
+        writeEvent(event);
+        return buffer;
+    }
+    
+    public PayloadBuffer encode(final List<Event> events) {
+        start(KIND_EVENTS, events.size());
+        for (int i = 0; i < events.size(); i++) writeEvent(events.get(i));
+        return buffer;
+    }
+    
+    public PayloadBuffer encodeCoalesced(final List<List<Event>> groups) {
+        start(KIND_GROUPS, groups.size());
+        for (int i = 0; i < groups.size(); i++) writeGroup(groups.get(i));
+        return buffer;
+    }
+    
+    private void start(final int kind, final int count) {
+        buffer.reset();
+        // clear() does not shrink the table, so that a dictionary grown large by a single batch is replaced
+        if (dictionary.size() > MAX_RETAINED_DICTIONARY_SIZE) dictionary = new HashMap<String, Integer>();
+        else dictionary.clear();
+        previousTimestamp = 0;
+        buffer.write('C');
+        buffer.write('E');
+        buffer.write(VERSION);
+        buffer.write(kind);
+        writeVarint(count);
+    }
+    
+    private void writeEvent(final Event event) {
+        buffer.write(flag(HAS_SOURCE_ID, event.getSourceId()) | flag(HAS_TIMESTAMP, event.getTimestamp()) | 
+                     flag(HAS_INPUTS, event.getInputMessageIds()) | flag(HAS_OUTPUTS, event.getOutputMessageIds()) |
+                     flag(HAS_DESCRIPTION, event.getDescription()));
+        if (event.getSourceId() != null) writeString(event.getSourceId());
+        if (event.getTimestamp() != null) writeTimestamp(event.getTimestamp());
+        if (event.getInputMessageIds() != null) writeMessageIds(event.getInputMessageIds());
+        if (event.getOutputMessageIds() != null) writeMessageIds(event.getOutputMessageIds());
+        if (event.getDescription() != null) writeString(event.getDescription());
+    }
+    
+    private void writeGroup(final List<Event> group) {
+        final Event first = group.get(0);
+        buffer.write(flag(HAS_SOURCE_ID, first.getSourceId()) | flag(HAS_INPUTS, first.getInputMessageIds()) | 
+                     flag(HAS_OUTPUTS, first.getOutputMessageIds()));
+        if (first.getSourceId() != null) writeString(first.getSourceId());
+        if (first.getInputMessageIds() != null) writeMessageIds(first.getInputMessageIds());
+        if (first.getOutputMessageIds() != null) writeMessageIds(first.getOutputMessageIds());
+        writeVarint(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            final Event event = group.get(i);
+            buffer.write(flag(HAS_TIMESTAMP, event.getTimestamp()) | flag(HAS_DESCRIPTION, event.getDescription()));
+            if (event.getTimestamp() != null) writeTimestamp(event.getTimestamp());
+            if (event.getDescription() != null) writeString(event.getDescription());
+        }
+    }
+    
+    private static int flag(final int flag, final Object property) {
+        return property == null ? 0 : flag;
+    }
+    
+    private void writeTimestamp(final Date timestamp) {
+        final long delta = timestamp.getTime() - previousTimestamp;
+        writeVarint((delta << 1) ^ (delta >> 63));
+        previousTimestamp = timestamp.getTime();
+    }
+    
+    private void writeMessageIds(final Set<String> messageIds) {
+        writeVarint(messageIds.size());
+        for (final String messageId : messageIds) writeMessageId(messageId);
+    }
+    
+    private void writeMessageId(final String messageId) {
+        if (messageId == null) {
+            writeString(null);
+            writeVarint(0);
+            return;
+        }
+        // message ids usually consist of a constant prefix and a sequence number, e.g. "order-1234"
+        final int length = messageId.length();
+        int numberStart = length;
+        while (numberStart > 0 && length - numberStart < MAX_NUMBER_DIGITS && isDigit(messageId.charAt(numberStart - 1))) numberStart--;
+        writeString(numberStart == length ? messageId : messageId.substring(0, numberStart));
+        writeVarint(length - numberStart);
+        if (numberStart < length) {
+            long number = 0;
+            for (int i = numberStart; i < length; i++) number = number * 10 + (messageId.charAt(i) - '0');
+            writeVarint(number);
+        }
+    }
+    
+    private static boolean isDigit(final char c) {
+        // only ASCII digits, which is not the case for Character.isDigit()
+        return c >= '0' && c <= '9';
+    }
+    
+    private void writeString(final String str) {
+        if (str == null) {
+            writeVarint(0);
+            return;
+        }
+        final Integer index = dictionary.get(str);
+        if (index != null) {
+            writeVarint(index.intValue() + 2);
+            return;
+        }
+        dictionary.put(str, Integer.valueOf(dictionary.size()));
+        writeVarint(1);
+        writeVarint(utf8Length(str));
+        writeUtf8(str);
+    }
+    
+    private static int utf8Length(final String str) {
+        final int length = str.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                utf8Length += 1;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                utf8Length += 1;
+            } else {
+                utf8Length += 3;
+            }
+        }
+        return utf8Length;
+    }
+    
+    private void writeUtf8(final String str) {
+        final int length = str.length();
+        for (int i = 0; i < length; i++) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                buffer.write(c);
+            } else if (c < 0x800) {
+                buffer.write(0xc0 | (c >> 6));
+                buffer.write(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                buffer.write(0xf0 | (codePoint >> 18));
+                buffer.write(0x80 | ((codePoint >> 12) & 0x3f));
+                buffer.write(0x80 | ((codePoint >> 6) & 0x3f));
+                buffer.write(0x80 | (codePoint & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // unpaired surrogate: cannot be encoded in UTF-8, replaced with '?' like String.getBytes() does
+                buffer.write('?');
+            } else {
+                buffer.write(0xe0 | (c >> 12));
+                buffer.write(0x80 | ((c >> 6) & 0x3f));
+                buffer.write(0x80 | (c & 0x3f));
+            }
+        }
+    }
+    
+    private void writeVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer.write((int) value);
+    }
+}
@@ -0,0 +1,88 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.positive;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * An {@link EventBuffer} backed by an {@link ArrayBlockingQueue}. Checkpoint events are constructed by the thread that
+ * records them.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class BlockingEventBuffer implements EventBuffer {
+    private final BlockingQueue<Event> queue;
+    private final int capacity;
+    
+    /**
+     * @param capacity the maximum number of events the buffer can hold
+     */
+    BlockingEventBuffer(final int capacity) {
+        this.capacity = positive(capacity, "capacity");
+        this.queue    = new ArrayBlockingQueue<Event>(capacity);
+    }
+    
+    /**
+     * @param capacity the capacity of each created buffer
+     * @return a factory of {@code BlockingEventBuffer}s
+     */
+    static EventBuffer.Factory factory(final int capacity) {
+        positive(capacity, "capacity");
+        return new EventBuffer.Factory() {
+            public EventBuffer newBuffer() {
+                return new BlockingEventBuffer(capacity);
+            }
+        };
+    }
+
+    public boolean offer(final Event event) {
+        return queue.offer(event);
+    }
+
+    public boolean offerCheckpoint(final String sourceId, final String messageId, final String description, final long timestamp) {
+        final Set<String> messageIds = new TreeSet<String>();
+        messageIds.add(messageId);
+        return queue.offer(new Event(sourceId, new Date(timestamp), messageIds, messageIds, description));
+    }
+
+    public Event take() throws InterruptedException {
+        return queue.take();
+    }
+
+    public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    public int drainTo(final List<Event> sink, final int maxEvents) {
+        return queue.drainTo(sink, maxEvents);
+    }
+
+    public void acknowledge() {
+        // events are not kept after they have been taken
+    }
+
+    public void close() {
+        // nothing to release
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public int memorySize() {
+        return size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bimbr.clisson.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Stops the senders from sending requests to a server that appears to be down. The breaker is shared by all sender
+ * threads of a recorder and has three states:
+ * <ul>
+ * <li><em>closed</em> - requests are sent; after a number of consecutive failed requests the breaker opens;</li>
+ * <li><em>open</em> - no requests are sent, the senders wait (and events accumulate in their buffers) until the open
+ *     period elapses;</li>
+ * <li><em>half-open</em> - a single sender is allowed to send a probe request; the breaker closes if it succeeds and
+ *     opens again if it fails.</li>
+ * </ul>
+ * A breaker with the failure threshold of {@code 0} never opens.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class CircuitBreaker {
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int  failureThreshold;
+    private final long openPeriodNs;
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openUntil;
+
+    /**
+     * @param failureThreshold the number of consecutive failed requests after which the breaker opens; {@code 0} if
+     *                         it should never open
+     * @param openPeriodMs the time, in milliseconds, for which the breaker stays open before a probe request is sent
+     */
+    CircuitBreaker(final int failureThreshold, final long openPeriodMs) {
+        if (failureThreshold < 0) throw new IllegalArgumentException("failureThreshold must not be negative");
+        if (openPeriodMs <= 0) throw new IllegalArgumentException("openPeriodMs must be positive");
+        this.failureThreshold = failureThreshold;
+        this.openPeriodNs     = MILLISECONDS.toNanos(openPeriodMs);
+    }
+
+    /**
+     * @return a breaker that never opens
+     */
+    static CircuitBreaker disabled() {
+        return new CircuitBreaker(0, 1);
+    }
+
+    /**
+     * Waits until a request can be sent, i.e. until the breaker is closed or this thread is chosen to send the probe
+     * request. The caller must report the outcome of the request with {@link #succeeded()} or {@link #failed()}.
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        // the usual case does not need the lock
+        if (state == State.CLOSED) return;
+        synchronized (this) {
+            while (true) {
+                if (state == State.CLOSED) return;
+                if (state == State.OPEN) {
+                    final long remainingNs = openUntil - System.nanoTime();
+                    if (remainingNs <= 0) {
+                        state = State.HALF_OPEN;
+                        return;
+                    }
+                    wait(Math.max(1, NANOSECONDS.toMillis(remainingNs)));
+                } else {
+                    // another thread is sending the probe request
+                    wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a successful request; closes the breaker.
+     */
+    void succeeded() {
+        // the usual case does not need the lock
+        if (state == State.CLOSED && consecutiveFailures == 0) return;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Records a failed request.
+     * @return {@code true} if the breaker is open after the failure
+     */
+    synchronized boolean failed() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED && failureThreshold > 0 && ++consecutiveFailures >= failureThreshold) {
+            open();
+        }
+        return state == State.OPEN;
+    }
+
+    /**
+     * @return {@code true} if requests are currently held back by the breaker
+     */
+    boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.nanoTime() + openPeriodNs;
+        // wakes up the threads waiting for the probe, so that they wait for the new open period instead
+        notifyAll();
+    }
+
+    @Override
+    public String toString() {
+        return "circuit breaker " + state.name().toLowerCase().replace('_', '-') + " (threshold: " + failureThreshold + ")";
+    }
+}
@@ -0,0 +1,105 @@
+package com.bimbr.clisson.client;
+
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * The compression applied to request bodies sent to the server, together with the value of {@code Content-Encoding}
+ * header that announces it.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+enum Compression {
+    NONE(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+    
+    private final String contentEncoding;
+    
+    private Compression(final String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+    
+    /**
+     * @return the value of {@code Content-Encoding} header for this compression, {@code null} for {@link #NONE}
+     */
+    String contentEncoding() {
+        return contentEncoding;
+    }
+    
+    /**
+     * @return a new compressor; compressors are not thread-safe
+     * @throws UnsupportedOperationException for {@link #NONE}
+     */
+    Compressor newCompressor() {
+        if (this == NONE) throw new UnsupportedOperationException("no compressor for " + this);
+        return new Compressor(this == GZIP);
+    }
+    
+    /**
+     * @param name the name of the compression, case insensitive
+     * @return the compression with given name
+     * @throws IllegalArgumentException if there is no compression with given name
+     */
+    static Compression named(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+    
+    /**
+     * Compresses request bodies into a reusable buffer. Reuses a single {@link Deflater}, so that no native 
+     * compression state is allocated per request, which would be the case with {@link java.util.zip.GZIPOutputStream}.
+     */
+    static final class Compressor {
+        private static final int INITIAL_CAPACITY      = 4 * 1024;
+        private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+        // magic number, compression method (deflate), flags, mtime (4 bytes), extra flags and OS (unknown)
+        private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+        
+        private final boolean       gzip;
+        // repetitive event JSON compresses well even at the fastest level
+        private final Deflater      deflater;
+        private final CRC32         crc = new CRC32();
+        private final byte[]        chunk = new byte[8 * 1024];
+        private final PayloadBuffer output = new PayloadBuffer(INITIAL_CAPACITY, MAX_RETAINED_CAPACITY);
+        
+        private Compressor(final boolean gzip) {
+            this.gzip     = gzip;
+            this.deflater = new Deflater(Deflater.BEST_SPEED, gzip);
+        }
+        
+        /**
+         * @param content the array holding the data to compress
+         * @param length the number of bytes of {@code content} to compress
+         * @return the buffer holding the compressed data; it is overwritten by the next invocation
+         */
+        PayloadBuffer compress(final byte[] content, final int length) {
+            output.reset();
+            deflater.reset();
+            if (gzip) {
+                output.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+                crc.reset();
+                crc.update(content, 0, length);
+            }
+            deflater.setInput(content, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                final int compressed = deflater.deflate(chunk);
+                output.write(chunk, 0, compressed);
+            }
+            if (gzip) {
+                writeIntLittleEndian((int) crc.getValue());
+                writeIntLittleEndian(length);
+            }
+            return output;
+        }
+        
+        private void writeIntLittleEndian(final int value) {
+            output.write(value);
+            output.write(value >>> 8);
+            output.write(value >>> 16);
+            output.write(value >>> 24);
+        }
+    }
+}
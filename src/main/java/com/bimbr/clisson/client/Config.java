@@ -6,6 +6,10 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -28,22 +32,144 @@ public class Config {
     /** this config will be used if the file supplied by the user or the default config file are not found */
     private static final String FALLBACK_CONFIG_PATH = CLASSPATH_PREFIX + "__clisson-fallback.properties";
     
-    protected static final String COMPONENT_ID   = "clisson.componentId";
-    protected static final String RECORD_ENABLED = "clisson.record.enabled";
-    protected static final String SERVER_HOST    = "clisson.server.host";
-    protected static final String SERVER_PORT    = "clisson.server.port";
+    protected static final String COMPONENT_ID        = "clisson.componentId";
+    protected static final String RECORD_ENABLED      = "clisson.record.enabled";
+    protected static final String SERVER_HOST         = "clisson.server.host";
+    protected static final String SERVER_PORT         = "clisson.server.port";
+    protected static final String SERVER_HOSTS        = "clisson.server.hosts";
+    protected static final String SERVER_BALANCING    = "clisson.server.balancing";
+    protected static final String SERVER_HEALTH_CHECK_INTERVAL_MS = "clisson.server.healthCheckIntervalMs";
+    protected static final String SERVER_CONNECT_TIMEOUT_MS = "clisson.server.connectTimeoutMs";
+    protected static final String SERVER_SOCKET_TIMEOUT_MS  = "clisson.server.socketTimeoutMs";
+    protected static final String SERVER_MAX_CONNECTIONS    = "clisson.server.maxConnections";
+    protected static final String SERVER_NON_BLOCKING       = "clisson.server.nonBlocking";
+    protected static final String SERVER_MAX_IN_FLIGHT      = "clisson.server.maxInFlight";
+    protected static final String COMPRESSION          = "clisson.compression";
+    protected static final String COMPRESSION_MIN_SIZE = "clisson.compression.minSize";
+    protected static final String WIRE_FORMAT          = "clisson.wireFormat";
+    protected static final String TRANSPORT            = "clisson.transport";
+    protected static final String TRANSPORT_MAX_UNACKNOWLEDGED = "clisson.transport.maxUnacknowledged";
+    protected static final String BUFFER_SIZE          = "clisson.buffer.size";
+    protected static final String BUFFER_LOCK_FREE     = "clisson.buffer.lockFree";
+    protected static final String BUFFER_WAIT_STRATEGY = "clisson.buffer.waitStrategy";
+    protected static final String BUFFER_OVERFLOW      = "clisson.buffer.overflow";
+    protected static final String BUFFER_BLOCK_TIMEOUT_MS = "clisson.buffer.blockTimeoutMs";
+    protected static final String SHEDDING_THRESHOLD_PERCENT       = "clisson.shedding.thresholdPercent";
+    protected static final String SHEDDING_CHECKPOINT_KEEP_PERCENT = "clisson.shedding.checkpointKeepPercent";
+    protected static final String SHEDDING_EVENT_KEEP_PERCENT      = "clisson.shedding.eventKeepPercent";
+    protected static final String SAMPLING_PERCENT     = "clisson.sampling.percent";
+    protected static final String RATE_LIMIT_PER_DESCRIPTION = "clisson.rateLimit.perDescription";
+    protected static final String RATE_LIMIT_BURST     = "clisson.rateLimit.burst";
+    protected static final String SPILL_DIRECTORY      = "clisson.spill.directory";
+    protected static final String SPILL_MAX_SIZE       = "clisson.spill.maxSize";
+    protected static final String SPILL_SEGMENT_SIZE   = "clisson.spill.segmentSize";
+    protected static final String JOURNAL_DIRECTORY    = "clisson.journal.directory";
+    protected static final String JOURNAL_SEGMENT_SIZE = "clisson.journal.segmentSize";
+    protected static final String JOURNAL_COMMIT_INTERVAL_MS = "clisson.journal.commitIntervalMs";
+    protected static final String SENDER_THREADS      = "clisson.sender.threads";
+    protected static final String BATCH_MAX_SIZE      = "clisson.batch.maxSize";
+    protected static final String BATCH_MAX_LINGER_MS = "clisson.batch.maxLingerMs";
+    protected static final String RETRY_MAX_ATTEMPTS        = "clisson.retry.maxAttempts";
+    protected static final String RETRY_INITIAL_BACKOFF_MS  = "clisson.retry.initialBackoffMs";
+    protected static final String RETRY_MAX_BACKOFF_MS      = "clisson.retry.maxBackoffMs";
+    protected static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "clisson.circuitBreaker.failureThreshold";
+    protected static final String CIRCUIT_BREAKER_OPEN_MS   = "clisson.circuitBreaker.openMs";
+    protected static final String COALESCING_WINDOW_MS = "clisson.coalescing.windowMs";
+    protected static final String SEQUENCE_ENABLED     = "clisson.sequence.enabled";
+    protected static final String SHUTDOWN_HOOK       = "clisson.shutdown.hook";
+    protected static final String SHUTDOWN_TIMEOUT_MS = "clisson.shutdown.timeoutMs";
+    protected static final String JMX_ENABLED         = "clisson.jmx.enabled";
+    protected static final String LISTENER            = "clisson.listener";
+    
+    private static final String DEFAULT_SERVER_BALANCING          = "roundRobin";
+    private static final String DEFAULT_SERVER_HEALTH_CHECK_INTERVAL_MS = "5000";
+    private static final String DEFAULT_SERVER_CONNECT_TIMEOUT_MS = "5000";
+    private static final String DEFAULT_SERVER_SOCKET_TIMEOUT_MS  = "10000";
+    private static final String DEFAULT_SERVER_MAX_CONNECTIONS    = "2";
+    private static final String DEFAULT_SERVER_NON_BLOCKING       = "false";
+    private static final String DEFAULT_SERVER_MAX_IN_FLIGHT      = "16";
+    private static final String DEFAULT_COMPRESSION          = "none";
+    private static final String DEFAULT_COMPRESSION_MIN_SIZE = "1024";
+    private static final String DEFAULT_WIRE_FORMAT          = "json";
+    private static final String DEFAULT_TRANSPORT            = "http";
+    private static final String DEFAULT_TRANSPORT_MAX_UNACKNOWLEDGED = "256";
+    private static final String DEFAULT_BUFFER_SIZE          = "1000";
+    private static final String DEFAULT_BUFFER_LOCK_FREE     = "false";
+    private static final String DEFAULT_BUFFER_WAIT_STRATEGY = "park";
+    private static final String DEFAULT_BUFFER_OVERFLOW      = "drop";
+    private static final String DEFAULT_BUFFER_BLOCK_TIMEOUT_MS = "10";
+    private static final String DEFAULT_SHEDDING_PERCENT     = "100";
+    private static final String DEFAULT_SAMPLING_PERCENT     = "100";
+    private static final String DEFAULT_RATE_LIMIT_PER_DESCRIPTION = "0";
+    private static final String DEFAULT_SPILL_MAX_SIZE       = String.valueOf(64 * 1024 * 1024);
+    private static final String DEFAULT_SPILL_SEGMENT_SIZE   = String.valueOf(8 * 1024 * 1024);
+    private static final String DEFAULT_JOURNAL_SEGMENT_SIZE = String.valueOf(16 * 1024 * 1024);
+    private static final String DEFAULT_JOURNAL_COMMIT_INTERVAL_MS = "50";
+    private static final String DEFAULT_SENDER_THREADS      = "1";
+    private static final String DEFAULT_BATCH_MAX_SIZE      = "1";
+    private static final String DEFAULT_BATCH_MAX_LINGER_MS = "0";
+    private static final String DEFAULT_RETRY_MAX_ATTEMPTS       = "3";
+    private static final String DEFAULT_RETRY_INITIAL_BACKOFF_MS = "100";
+    private static final String DEFAULT_RETRY_MAX_BACKOFF_MS     = "10000";
+    private static final String DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = "5";
+    private static final String DEFAULT_CIRCUIT_BREAKER_OPEN_MS  = "10000";
+    private static final String DEFAULT_COALESCING_WINDOW_MS = "0";
+    private static final String DEFAULT_SEQUENCE_ENABLED     = "false";
+    private static final String DEFAULT_SHUTDOWN_HOOK       = "false";
+    private static final String DEFAULT_SHUTDOWN_TIMEOUT_MS = "5000";
+    private static final String DEFAULT_JMX_ENABLED         = "true";
     
     private final String host;
     private final int port;
+    private final List<String> servers;
+    private final String balancing;
+    private final long healthCheckIntervalMs;
     private final String componentId;
     private final boolean isRecordingEnabled;
+    private final int connectTimeoutMs;
+    private final int socketTimeoutMs;
+    private final int maxConnections;
+    private final boolean isNonBlocking;
+    private final int maxInFlight;
+    private final String compression;
+    private final int compressionMinSize;
+    private final String wireFormat;
+    private final String transport;
+    private final int maxUnacknowledged;
+    private final int bufferSize;
+    private final boolean isLockFreeBuffer;
+    private final String bufferWaitStrategy;
+    private final String bufferOverflow;
+    private final long bufferBlockTimeoutMs;
+    private final int sheddingThresholdPercent;
+    private final int sheddingCheckpointKeepPercent;
+    private final int sheddingEventKeepPercent;
+    private final double samplingPercent;
+    private final int rateLimitPerDescription;
+    private final int rateLimitBurst;
+    private final String spillDirectory;
+    private final long spillMaxSize;
+    private final int spillSegmentSize;
+    private final String journalDirectory;
+    private final long journalSegmentSize;
+    private final long journalCommitIntervalMs;
+    private final int senderThreads;
+    private final int maxBatchSize;
+    private final long maxBatchLingerMs;
+    private final int retryMaxAttempts;
+    private final long retryInitialBackoffMs;
+    private final long retryMaxBackoffMs;
+    private final int circuitBreakerFailureThreshold;
+    private final long circuitBreakerOpenMs;
+    private final long coalescingWindowMs;
+    private final boolean isSequenceEnabled;
+    private final boolean isShutdownHookEnabled;
+    private final long shutdownTimeoutMs;
+    private final boolean isJmxEnabled;
+    private final String listenerClassName;
     
     public static Config fromPropertiesFile() {
-        final Properties properties = validatedProperties(new PropertyValidator());
-        return new Config(Boolean.valueOf(properties.getProperty(RECORD_ENABLED, "true")),
-                          properties.getProperty(SERVER_HOST), 
-                          Integer.valueOf(properties.getProperty(SERVER_PORT)),
-                          properties.getProperty(COMPONENT_ID));
+        return new Config(validatedProperties(new PropertyValidator()));
     }
     
     protected static Properties validatedProperties(PropertyValidator propertyValidator) {
@@ -116,14 +242,114 @@ public class Config {
         }
     }
     
+    /**
+     * Constructs a config with the specified server and component, and default values of all other settings.
+     * 
+     * @param isRecordingEnabled whether sending of events to the server is enabled
+     * @param host the host name of Clisson server
+     * @param port the port on which Clisson server listens
+     * @param componentId the id of the component that will appear against the recorded events
+     */
     protected Config(final boolean isRecordingEnabled, 
                      final String  host, 
                      final int     port,
                      final String  componentId) {
-        this.isRecordingEnabled = isRecordingEnabled;
-        this.host               = host;
-        this.port               = port;
-        this.componentId        = componentId;
+        this(propertiesOf(isRecordingEnabled, host, port, componentId));
+    }
+    
+    /**
+     * @param properties validated properties to build the config from
+     */
+    protected Config(final Properties properties) {
+        this.isRecordingEnabled = Boolean.valueOf(properties.getProperty(RECORD_ENABLED, "true"));
+        this.host               = properties.getProperty(SERVER_HOST);
+        // the port may be given with each of the hosts instead
+        this.port               = intProperty(properties, SERVER_PORT, "0");
+        this.servers            = servers(properties.getProperty(SERVER_HOSTS), host, port);
+        this.balancing          = properties.getProperty(SERVER_BALANCING, DEFAULT_SERVER_BALANCING).trim();
+        this.healthCheckIntervalMs = longProperty(properties, SERVER_HEALTH_CHECK_INTERVAL_MS, DEFAULT_SERVER_HEALTH_CHECK_INTERVAL_MS);
+        this.componentId        = properties.getProperty(COMPONENT_ID);
+        this.connectTimeoutMs   = intProperty(properties, SERVER_CONNECT_TIMEOUT_MS, DEFAULT_SERVER_CONNECT_TIMEOUT_MS);
+        this.socketTimeoutMs    = intProperty(properties, SERVER_SOCKET_TIMEOUT_MS, DEFAULT_SERVER_SOCKET_TIMEOUT_MS);
+        this.maxConnections     = intProperty(properties, SERVER_MAX_CONNECTIONS, DEFAULT_SERVER_MAX_CONNECTIONS);
+        this.isNonBlocking      = Boolean.valueOf(properties.getProperty(SERVER_NON_BLOCKING, DEFAULT_SERVER_NON_BLOCKING).trim());
+        this.maxInFlight        = intProperty(properties, SERVER_MAX_IN_FLIGHT, DEFAULT_SERVER_MAX_IN_FLIGHT);
+        this.compression        = properties.getProperty(COMPRESSION, DEFAULT_COMPRESSION).trim();
+        this.compressionMinSize = intProperty(properties, COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE);
+        this.wireFormat         = properties.getProperty(WIRE_FORMAT, DEFAULT_WIRE_FORMAT).trim();
+        this.transport          = properties.getProperty(TRANSPORT, DEFAULT_TRANSPORT).trim();
+        this.maxUnacknowledged  = intProperty(properties, TRANSPORT_MAX_UNACKNOWLEDGED, DEFAULT_TRANSPORT_MAX_UNACKNOWLEDGED);
+        this.bufferSize         = intProperty(properties, BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+        this.isLockFreeBuffer   = Boolean.valueOf(properties.getProperty(BUFFER_LOCK_FREE, DEFAULT_BUFFER_LOCK_FREE).trim());
+        this.bufferWaitStrategy = properties.getProperty(BUFFER_WAIT_STRATEGY, DEFAULT_BUFFER_WAIT_STRATEGY).trim();
+        this.bufferOverflow     = properties.getProperty(BUFFER_OVERFLOW, DEFAULT_BUFFER_OVERFLOW).trim();
+        this.bufferBlockTimeoutMs = longProperty(properties, BUFFER_BLOCK_TIMEOUT_MS, DEFAULT_BUFFER_BLOCK_TIMEOUT_MS);
+        this.sheddingThresholdPercent = intProperty(properties, SHEDDING_THRESHOLD_PERCENT, DEFAULT_SHEDDING_PERCENT);
+        this.sheddingCheckpointKeepPercent = intProperty(properties, SHEDDING_CHECKPOINT_KEEP_PERCENT, DEFAULT_SHEDDING_PERCENT);
+        this.sheddingEventKeepPercent = intProperty(properties, SHEDDING_EVENT_KEEP_PERCENT, DEFAULT_SHEDDING_PERCENT);
+        this.samplingPercent    = Double.parseDouble(properties.getProperty(SAMPLING_PERCENT, DEFAULT_SAMPLING_PERCENT).trim());
+        this.rateLimitPerDescription = intProperty(properties, RATE_LIMIT_PER_DESCRIPTION, DEFAULT_RATE_LIMIT_PER_DESCRIPTION);
+        // by default, up to a second's worth of events can be recorded in a burst
+        this.rateLimitBurst     = intProperty(properties, RATE_LIMIT_BURST, String.valueOf(Math.max(1, rateLimitPerDescription)));
+        this.spillDirectory     = properties.getProperty(SPILL_DIRECTORY);
+        this.spillMaxSize       = longProperty(properties, SPILL_MAX_SIZE, DEFAULT_SPILL_MAX_SIZE);
+        this.spillSegmentSize   = intProperty(properties, SPILL_SEGMENT_SIZE, DEFAULT_SPILL_SEGMENT_SIZE);
+        this.journalDirectory   = properties.getProperty(JOURNAL_DIRECTORY);
+        this.journalSegmentSize = longProperty(properties, JOURNAL_SEGMENT_SIZE, DEFAULT_JOURNAL_SEGMENT_SIZE);
+        this.journalCommitIntervalMs = longProperty(properties, JOURNAL_COMMIT_INTERVAL_MS, DEFAULT_JOURNAL_COMMIT_INTERVAL_MS);
+        this.senderThreads      = intProperty(properties, SENDER_THREADS, DEFAULT_SENDER_THREADS);
+        this.maxBatchSize       = intProperty(properties, BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE);
+        this.maxBatchLingerMs   = longProperty(properties, BATCH_MAX_LINGER_MS, DEFAULT_BATCH_MAX_LINGER_MS);
+        this.retryMaxAttempts   = intProperty(properties, RETRY_MAX_ATTEMPTS, DEFAULT_RETRY_MAX_ATTEMPTS);
+        this.retryInitialBackoffMs = longProperty(properties, RETRY_INITIAL_BACKOFF_MS, DEFAULT_RETRY_INITIAL_BACKOFF_MS);
+        this.retryMaxBackoffMs  = Math.max(retryInitialBackoffMs, longProperty(properties, RETRY_MAX_BACKOFF_MS, DEFAULT_RETRY_MAX_BACKOFF_MS));
+        this.circuitBreakerFailureThreshold = intProperty(properties, CIRCUIT_BREAKER_FAILURE_THRESHOLD, DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+        this.circuitBreakerOpenMs = longProperty(properties, CIRCUIT_BREAKER_OPEN_MS, DEFAULT_CIRCUIT_BREAKER_OPEN_MS);
+        this.coalescingWindowMs = longProperty(properties, COALESCING_WINDOW_MS, DEFAULT_COALESCING_WINDOW_MS);
+        this.isSequenceEnabled  = Boolean.valueOf(properties.getProperty(SEQUENCE_ENABLED, DEFAULT_SEQUENCE_ENABLED).trim());
+        this.isShutdownHookEnabled = Boolean.valueOf(properties.getProperty(SHUTDOWN_HOOK, DEFAULT_SHUTDOWN_HOOK).trim());
+        this.shutdownTimeoutMs  = longProperty(properties, SHUTDOWN_TIMEOUT_MS, DEFAULT_SHUTDOWN_TIMEOUT_MS);
+        this.isJmxEnabled       = Boolean.valueOf(properties.getProperty(JMX_ENABLED, DEFAULT_JMX_ENABLED).trim());
+        this.listenerClassName  = trimmedOrNull(properties.getProperty(LISTENER));
+    }
+    
+    private static Properties propertiesOf(final boolean isRecordingEnabled, final String host, final int port, final String componentId) {
+        final Properties properties = new Properties();
+        properties.setProperty(RECORD_ENABLED, String.valueOf(isRecordingEnabled));
+        if (host != null) properties.setProperty(SERVER_HOST, host);
+        properties.setProperty(SERVER_PORT, String.valueOf(port));
+        if (componentId != null) properties.setProperty(COMPONENT_ID, componentId);
+        return properties;
+    }
+    
+    private static List<String> servers(final String hosts, final String defaultHost, final int defaultPort) {
+        final List<String> servers = new ArrayList<String>();
+        if (trimmedOrNull(hosts) == null) {
+            servers.add(defaultHost + ":" + defaultPort);
+        } else {
+            for (final String entry : hostEntries(hosts)) servers.add(entry.indexOf(':') < 0 ? entry + ":" + defaultPort : entry);
+        }
+        return Collections.unmodifiableList(servers);
+    }
+    
+    private static List<String> hostEntries(final String hosts) {
+        final List<String> entries = new ArrayList<String>();
+        for (final String entry : hosts.split(",")) {
+            if (entry.trim().length() > 0) entries.add(entry.trim());
+        }
+        return entries;
+    }
+    
+    private static String trimmedOrNull(final String value) {
+        return value == null || value.trim().length() == 0 ? null : value.trim();
+    }
+    
+    protected static int intProperty(final Properties properties, final String key, final String defaultValue) {
+        return Integer.parseInt(properties.getProperty(key, defaultValue).trim());
+    }
+    
+    protected static long longProperty(final Properties properties, final String key, final String defaultValue) {
+        return Long.parseLong(properties.getProperty(key, defaultValue).trim());
     }
 
     /**
@@ -140,6 +366,66 @@ public class Config {
         return port;
     }
     
+    /**
+     * @return the addresses of Clisson servers, in {@code host:port} form; a single server unless 
+     *         {@code clisson.server.hosts} is specified
+     */
+    public List<String> getServers() {
+        return servers;
+    }
+    
+    /**
+     * @return the name of the way requests are distributed between several servers: {@code roundRobin}, 
+     *         {@code leastOutstanding} or {@code messageHash}
+     */
+    public String getBalancing() {
+        return balancing;
+    }
+    
+    /**
+     * @return the time, in milliseconds, after which a server taken out of rotation following a failed request is
+     *         given a trial request
+     */
+    public long getHealthCheckIntervalMs() {
+        return healthCheckIntervalMs;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, to wait for a connection to Clisson server to be established
+     */
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, to wait for data from Clisson server
+     */
+    public int getSocketTimeoutMs() {
+        return socketTimeoutMs;
+    }
+    
+    /**
+     * @return the maximum number of persistent connections to Clisson server
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    /**
+     * @return {@code true} if requests are sent using non-blocking I/O, without waiting for the responses to earlier
+     *         requests, {@code false} otherwise
+     */
+    public boolean isNonBlocking() {
+        return isNonBlocking;
+    }
+    
+    /**
+     * @return the maximum number of requests awaiting a response when requests are sent using non-blocking I/O
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+    
     /**
      * @return the component identifier used to mark recorded events
      */
@@ -154,12 +440,412 @@ public class Config {
         return isRecordingEnabled;
     }
     
+    /**
+     * @return the name of the compression applied to request bodies: {@code none}, {@code gzip} or {@code deflate}
+     */
+    public String getCompression() {
+        return compression;
+    }
+    
+    /**
+     * @return the minimum size, in bytes, of request bodies that will be compressed
+     */
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+    
+    /**
+     * @return the name of the format in which events are sent to the server: {@code json} or {@code binary}
+     */
+    public String getWireFormat() {
+        return wireFormat;
+    }
+    
+    /**
+     * @return the name of the transport over which requests are sent to the server: {@code http}, {@code tcp} or 
+     *         {@code udp}
+     */
+    public String getTransport() {
+        return transport;
+    }
+    
+    /**
+     * @return the maximum number of frames sent over the TCP transport but not yet acknowledged by the receiver
+     */
+    public int getMaxUnacknowledged() {
+        return maxUnacknowledged;
+    }
+    
+    /**
+     * @return the maximum number of events buffered by each sender thread
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * @return {@code true} if events should be buffered in lock-free ring buffers instead of blocking queues
+     */
+    public boolean isLockFreeBuffer() {
+        return isLockFreeBuffer;
+    }
+    
+    /**
+     * @return the name of the strategy used by sender threads to wait for events in a lock-free buffer: {@code spin},
+     *         {@code yield} or {@code park}
+     */
+    public String getBufferWaitStrategy() {
+        return bufferWaitStrategy;
+    }
+    
+    /**
+     * @return what happens to events recorded when the buffer is full: {@code drop}, {@code dropOldest}, {@code block}
+     *         or {@code spill} (to disk)
+     */
+    public String getBufferOverflow() {
+        return bufferOverflow;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, a recording thread waits for space in a full buffer if the overflow
+     *         is {@code block}
+     */
+    public long getBufferBlockTimeoutMs() {
+        return bufferBlockTimeoutMs;
+    }
+    
+    /**
+     * @return the percentage of buffer capacity above which events are shed
+     */
+    public int getSheddingThresholdPercent() {
+        return sheddingThresholdPercent;
+    }
+    
+    /**
+     * @return the percentage of checkpoints kept when the buffer is filled above the shedding threshold
+     */
+    public int getSheddingCheckpointKeepPercent() {
+        return sheddingCheckpointKeepPercent;
+    }
+    
+    /**
+     * @return the percentage of multi-message events kept when the buffer is filled above the shedding threshold
+     */
+    public int getSheddingEventKeepPercent() {
+        return sheddingEventKeepPercent;
+    }
+    
+    /**
+     * @return the percentage of messages whose events are recorded
+     */
+    public double getSamplingPercent() {
+        return samplingPercent;
+    }
+    
+    /**
+     * @return the maximum number of events with a single description recorded per second; {@code 0} if unlimited
+     */
+    public int getRateLimitPerDescription() {
+        return rateLimitPerDescription;
+    }
+    
+    /**
+     * @return the maximum number of events with a single description recorded in a burst
+     */
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+    
+    /**
+     * @return the directory to which events are spilled when the buffer is full; {@code null} if not specified
+     */
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+    
+    /**
+     * @return the maximum size, in bytes, of events spilled to disk by each sender thread
+     */
+    public long getSpillMaxSize() {
+        return spillMaxSize;
+    }
+    
+    /**
+     * @return the size, in bytes, of a single file holding spilled events
+     */
+    public int getSpillSegmentSize() {
+        return spillSegmentSize;
+    }
+    
+    /**
+     * @return the directory of the write-ahead journal of recorded events; {@code null} if events are not journaled
+     */
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+    
+    /**
+     * @return the size, in bytes, above which a new write-ahead journal file is started
+     */
+    public long getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+    
+    /**
+     * @return how often, in milliseconds, recorded events are forced to the write-ahead journal on disk
+     */
+    public long getJournalCommitIntervalMs() {
+        return journalCommitIntervalMs;
+    }
+    
+    /**
+     * @return the number of threads sending events to the server
+     */
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+    
+    /**
+     * @return the maximum number of events sent to the server in a single request; {@code 1} means that events are
+     *         not batched
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, the sender will wait for further events to fill up a batch
+     */
+    public long getMaxBatchLingerMs() {
+        return maxBatchLingerMs;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, between the first and the last event of a group of events of a batch
+     *         with the same input and output messages that is sent as a single record; {@code 0} if events are not
+     *         coalesced
+     */
+    public long getCoalescingWindowMs() {
+        return coalescingWindowMs;
+    }
+    
+    /**
+     * @return {@code true} if requests are numbered with the sequence numbers of the events (or coalesced records) they carry
+     * @since 1.1.0
+     */
+    public boolean isSequenceEnabled() {
+        return isSequenceEnabled;
+    }
+    
+    /**
+     * @return the maximum number of attempts to send a batch of events, including the first one
+     */
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+    
+    /**
+     * @return the delay, in milliseconds, before the first retry of a failed request
+     */
+    public long getRetryInitialBackoffMs() {
+        return retryInitialBackoffMs;
+    }
+    
+    /**
+     * @return the maximum delay, in milliseconds, between two attempts to send a batch of events
+     */
+    public long getRetryMaxBackoffMs() {
+        return retryMaxBackoffMs;
+    }
+    
+    /**
+     * @return the number of consecutive failed requests after which sending is suspended; {@code 0} if it never is
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+    
+    /**
+     * @return the time, in milliseconds, for which sending is suspended before the server is probed again
+     */
+    public long getCircuitBreakerOpenMs() {
+        return circuitBreakerOpenMs;
+    }
+    
+    /**
+     * @return whether the recorder should be closed by a JVM shutdown hook
+     */
+    public boolean isShutdownHookEnabled() {
+        return isShutdownHookEnabled;
+    }
+    
+    /**
+     * @return the maximum time, in milliseconds, the recorder will spend sending buffered events when it is closed
+     */
+    public long getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+    
+    /**
+     * @return whether the statistics of the recorder should be registered as JMX MBeans
+     */
+    public boolean isJmxEnabled() {
+        return isJmxEnabled;
+    }
+    
+    /**
+     * @return the full name of the class implementing {@link RecorderListener} to be notified about recorded events; 
+     *         {@code null} if not specified
+     */
+    public String getListenerClassName() {
+        return listenerClassName;
+    }
+    
     protected static class PropertyValidator {
         public void validate(Properties properties, String configPath) {
-            validateNotEmptyString(properties, configPath, SERVER_HOST, "host name");
-            final String portStr = properties.getProperty(SERVER_PORT);
-            if (portStr == null || Integer.valueOf(portStr) <= 0) throw new ConfigException(configPath, SERVER_PORT + " must be set to a positive integer");
+            if (trimmedOrNull(properties.getProperty(SERVER_HOSTS)) == null) {
+                validateNotEmptyString(properties, configPath, SERVER_HOST, "host name");
+                validatePort(properties, configPath);
+            } else {
+                validateHosts(properties, configPath);
+            }
             validateNotEmptyString(properties, configPath, COMPONENT_ID, "component identifier");
+            validateOneOfIfPresent(properties, configPath, SERVER_BALANCING, "roundRobin", "leastOutstanding", "messageHash");
+            validatePositiveIfPresent(properties, configPath, SERVER_HEALTH_CHECK_INTERVAL_MS);
+            validatePositiveIntIfPresent(properties, configPath, SERVER_CONNECT_TIMEOUT_MS);
+            validatePositiveIntIfPresent(properties, configPath, SERVER_SOCKET_TIMEOUT_MS);
+            validatePositiveIntIfPresent(properties, configPath, SERVER_MAX_CONNECTIONS);
+            validatePositiveIntIfPresent(properties, configPath, SERVER_MAX_IN_FLIGHT);
+            validateOneOfIfPresent(properties, configPath, COMPRESSION, "none", "gzip", "deflate");
+            validateNonNegativeIntIfPresent(properties, configPath, COMPRESSION_MIN_SIZE);
+            validateOneOfIfPresent(properties, configPath, WIRE_FORMAT, "json", "binary");
+            validateOneOfIfPresent(properties, configPath, TRANSPORT, "http", "tcp", "udp");
+            validatePositiveIntIfPresent(properties, configPath, TRANSPORT_MAX_UNACKNOWLEDGED);
+            validatePositiveIntIfPresent(properties, configPath, BUFFER_SIZE);
+            validateOneOfIfPresent(properties, configPath, BUFFER_WAIT_STRATEGY, "spin", "yield", "park");
+            validateOneOfIfPresent(properties, configPath, BUFFER_OVERFLOW, "drop", "dropOldest", "block", "spill");
+            validateNonNegativeIfPresent(properties, configPath, BUFFER_BLOCK_TIMEOUT_MS);
+            validatePercentageIfPresent(properties, configPath, SHEDDING_THRESHOLD_PERCENT);
+            validatePercentageIfPresent(properties, configPath, SHEDDING_CHECKPOINT_KEEP_PERCENT);
+            validatePercentageIfPresent(properties, configPath, SHEDDING_EVENT_KEEP_PERCENT);
+            validateFractionalPercentageIfPresent(properties, configPath, SAMPLING_PERCENT);
+            validateNonNegativeIntIfPresent(properties, configPath, RATE_LIMIT_PER_DESCRIPTION);
+            validatePositiveIntIfPresent(properties, configPath, RATE_LIMIT_BURST);
+            if ("spill".equalsIgnoreCase(properties.getProperty(BUFFER_OVERFLOW, "").trim())) {
+                validateNotEmptyString(properties, configPath, SPILL_DIRECTORY, "directory path");
+            }
+            validatePositiveIfPresent(properties, configPath, SPILL_MAX_SIZE);
+            validatePositiveIntIfPresent(properties, configPath, SPILL_SEGMENT_SIZE);
+            validatePositiveIfPresent(properties, configPath, JOURNAL_SEGMENT_SIZE);
+            validatePositiveIfPresent(properties, configPath, JOURNAL_COMMIT_INTERVAL_MS);
+            validatePositiveIntIfPresent(properties, configPath, SENDER_THREADS);
+            validatePositiveIntIfPresent(properties, configPath, BATCH_MAX_SIZE);
+            validateNonNegativeIfPresent(properties, configPath, BATCH_MAX_LINGER_MS);
+            validateNonNegativeIfPresent(properties, configPath, COALESCING_WINDOW_MS);
+            validatePositiveIntIfPresent(properties, configPath, RETRY_MAX_ATTEMPTS);
+            validateNonNegativeIfPresent(properties, configPath, RETRY_INITIAL_BACKOFF_MS);
+            validateNonNegativeIfPresent(properties, configPath, RETRY_MAX_BACKOFF_MS);
+            validateNonNegativeIntIfPresent(properties, configPath, CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+            validatePositiveIfPresent(properties, configPath, CIRCUIT_BREAKER_OPEN_MS);
+            validateNonNegativeIfPresent(properties, configPath, SHUTDOWN_TIMEOUT_MS);
+            validateListenerIfPresent(properties, configPath);
+        }
+
+        private void validatePort(Properties properties, String configPath) {
+            final String portStr = properties.getProperty(SERVER_PORT);
+            if (portStr == null || parsedInt(portStr, -1) <= 0) throw new ConfigException(configPath, SERVER_PORT + " must be set to a positive integer");
+        }
+
+        private void validateHosts(Properties properties, String configPath) {
+            for (final String entry : hostEntries(properties.getProperty(SERVER_HOSTS))) {
+                final int colon = entry.indexOf(':');
+                if (colon < 0) {
+                    // the port of the host is taken from clisson.server.port
+                    validatePort(properties, configPath);
+                } else if (colon == 0 || parsedInt(entry.substring(colon + 1), -1) <= 0) {
+                    throw new ConfigException(configPath, SERVER_HOSTS + " must be set to a comma-separated list of host[:port] entries with positive ports, but contains " + entry);
+                }
+            }
+        }
+
+        private void validateListenerIfPresent(Properties properties, String configPath) {
+            final String className = trimmedOrNull(properties.getProperty(LISTENER));
+            if (className == null) return;
+            try {
+                final Class<?> cls = Thread.currentThread().getContextClassLoader().loadClass(className);
+                if (!RecorderListener.class.isAssignableFrom(cls)) 
+                    throw new ConfigException(configPath, LISTENER + " is set to " + className + " which does not implement " + RecorderListener.class);
+            } catch (ClassNotFoundException e) {
+                throw new ConfigException(configPath, LISTENER + " is set to " + className + " which could not be found");
+            }
+        }
+
+        protected void validatePositiveIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value != null && parsedLong(value, -1) <= 0) throw new ConfigException(configPath, propertyKey + " must be set to a positive integer");
+        }
+
+        protected void validateNonNegativeIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value != null && parsedLong(value, -1) < 0) throw new ConfigException(configPath, propertyKey + " must be set to a non-negative integer");
+        }
+
+        protected void validatePositiveIntIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value != null && parsedInt(value, -1) <= 0) throw new ConfigException(configPath, propertyKey + " must be set to a positive integer not greater than " + Integer.MAX_VALUE);
+        }
+
+        protected void validateNonNegativeIntIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value != null && parsedInt(value, -1) < 0) throw new ConfigException(configPath, propertyKey + " must be set to a non-negative integer not greater than " + Integer.MAX_VALUE);
+        }
+
+        protected void validatePercentageIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value == null) return;
+            final long percentage = parsedLong(value, -1);
+            if (percentage < 0 || percentage > 100) throw new ConfigException(configPath, propertyKey + " must be set to an integer between 0 and 100");
+        }
+
+        protected void validateFractionalPercentageIfPresent(Properties properties, String configPath, String propertyKey) {
+            final String value = properties.getProperty(propertyKey);
+            if (value == null) return;
+            final double percentage = parsedDouble(value, -1);
+            // written so that NaN, which fails every comparison, is rejected too
+            if (!(percentage >= 0 && percentage <= 100)) throw new ConfigException(configPath, propertyKey + " must be set to a number between 0 and 100");
+        }
+
+        protected void validateOneOfIfPresent(Properties properties, String configPath, String propertyKey, String... allowedValues) {
+            final String value = properties.getProperty(propertyKey);
+            if (value == null) return;
+            for (final String allowedValue : allowedValues) {
+                if (allowedValue.equalsIgnoreCase(value.trim())) return;
+            }
+            throw new ConfigException(configPath, propertyKey + " must be set to one of " + Arrays.asList(allowedValues));
+        }
+
+        private static long parsedLong(final String str, final long valueIfInvalid) {
+            try {
+                return Long.parseLong(str.trim());
+            } catch (NumberFormatException e) {
+                return valueIfInvalid;
+            }
+        }
+
+        private static int parsedInt(final String str, final int valueIfInvalid) {
+            try {
+                return Integer.parseInt(str.trim());
+            } catch (NumberFormatException e) {
+                return valueIfInvalid;
+            }
+        }
+
+        private static double parsedDouble(final String str, final double valueIfInvalid) {
+            try {
+                return Double.parseDouble(str.trim());
+            } catch (NumberFormatException e) {
+                return valueIfInvalid;
+            }
         }
 
         private void validateNotEmptyString(Properties properties,
@@ -0,0 +1,94 @@
+package com.bimbr.clisson.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * A bounded buffer of events waiting to be sent to the server. Events may be offered from any number of threads, but
+ * only a single thread may take them out.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+interface EventBuffer {
+    /**
+     * Adds an event to the buffer if there is space available.
+     * @param event the event to add
+     * @return {@code true} if the event was added, {@code false} if the buffer is full
+     */
+    boolean offer(Event event);
+    
+    /**
+     * Adds a checkpoint event (a single message that is both input and output of the event) to the buffer if there is
+     * space available. Implementations should avoid constructing the {@link Event} until it is taken out of the buffer.
+     * @param sourceId the id of the component that is the source of the event
+     * @param messageId the id of the message that arrived at the checkpoint
+     * @param description the description of the checkpoint
+     * @param timestamp the time of the checkpoint, in milliseconds since epoch
+     * @return {@code true} if the event was added, {@code false} if the buffer is full
+     */
+    boolean offerCheckpoint(String sourceId, String messageId, String description, long timestamp);
+    
+    /**
+     * Removes the oldest event from the buffer, waiting for one to become available if necessary.
+     * @return the oldest event in the buffer
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Event take() throws InterruptedException;
+    
+    /**
+     * Removes the oldest event from the buffer, waiting up to the specified time for one to become available.
+     * @param timeout how long to wait
+     * @param unit the unit of {@code timeout}
+     * @return the oldest event in the buffer or {@code null} if none became available before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Event poll(long timeout, TimeUnit unit) throws InterruptedException;
+    
+    /**
+     * Removes the available events from the buffer, without waiting, and adds them to {@code sink}.
+     * @param sink the list to add the events to
+     * @param maxEvents the maximum number of events to remove
+     * @return the number of events removed
+     */
+    int drainTo(List<Event> sink, int maxEvents);
+    
+    /**
+     * Called by the consumer once all events taken out of the buffer so far have been sent to the server.
+     */
+    void acknowledge();
+    
+    /**
+     * Called by the consumer when it stops taking events. Releases the resources held by the buffer; events remaining
+     * in it are discarded, unless the buffer stores them on disk.
+     */
+    void close();
+    
+    /**
+     * @return the (approximate) number of events in the buffer
+     */
+    int size();
+    
+    /**
+     * @return the (approximate) number of events held in memory, which, unlike {@link #size()}, does not include the
+     *         events the buffer stores on disk
+     */
+    int memorySize();
+    
+    /**
+     * @return the maximum number of events the buffer can hold in memory
+     */
+    int capacity();
+    
+    /**
+     * Creates buffers for the sender threads of {@link AsyncHttpRecorder}.
+     */
+    interface Factory {
+        /**
+         * @return a new, empty buffer
+         */
+        EventBuffer newBuffer();
+    }
+}
@@ -0,0 +1,110 @@
+package com.bimbr.clisson.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Groups the events of a batch that have the same source and the same input and output messages (e.g. several
+ * checkpoints of one message recorded in quick succession), so that each group can be sent as a single record holding
+ * the descriptions and timestamps of its events. An event joins a group only if it was recorded within the coalescing
+ * window of the first event of the group; the groups are returned in the order of their first events, and the events
+ * within a group keep their order.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class EventCoalescer {
+    /**
+     * Does not coalesce events.
+     */
+    static final EventCoalescer NONE = new EventCoalescer(0);
+
+    private final long windowMs;
+
+    /**
+     * @param windowMs the maximum time, in milliseconds, between the first and the last event of a group; {@code 0}
+     *                 disables coalescing
+     */
+    EventCoalescer(final long windowMs) {
+        if (windowMs < 0) throw new IllegalArgumentException("windowMs must not be negative");
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * @return {@code true} if events are coalesced
+     */
+    boolean isEnabled() {
+        return windowMs > 0;
+    }
+
+    /**
+     * @param events the events to group
+     * @return the groups of events, each holding at least one event
+     */
+    List<List<Event>> coalesce(final List<Event> events) {
+        final List<List<Event>> groups = new ArrayList<List<Event>>();
+        final Map<Key, List<Event>> openGroups = new LinkedHashMap<Key, List<Event>>();
+        for (final Event event : events) {
+            final Key key = new Key(event);
+            List<Event> group = openGroups.get(key);
+            if (group == null || !isWithinWindow(group.get(0), event)) {
+                group = new ArrayList<Event>(2);
+                groups.add(group);
+                openGroups.put(key, group);
+            }
+            group.add(event);
+        }
+        return groups;
+    }
+
+    private boolean isWithinWindow(final Event first, final Event event) {
+        if (first.getTimestamp() == null || event.getTimestamp() == null) return false;
+        return Math.abs(event.getTimestamp().getTime() - first.getTimestamp().getTime()) <= windowMs;
+    }
+
+    /**
+     * The properties shared by the events of a group.
+     */
+    private static final class Key {
+        private final String      sourceId;
+        private final Set<String> inputMessageIds;
+        private final Set<String> outputMessageIds;
+        private final int         hashCode;
+
+        Key(final Event event) {
+            this.sourceId         = event.getSourceId();
+            this.inputMessageIds  = event.getInputMessageIds();
+            this.outputMessageIds = event.getOutputMessageIds();
+            this.hashCode         = 31 * (31 * hashCodeOf(sourceId) + hashCodeOf(inputMessageIds)) + hashCodeOf(outputMessageIds);
+        }
+
+        private static int hashCodeOf(final Object obj) {
+            return obj == null ? 0 : obj.hashCode();
+        }
+
+        private static boolean equal(final Object obj1, final Object obj2) {
+            return obj1 == null ? obj2 == null : obj1.equals(obj2);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode && equal(sourceId, other.sourceId) && equal(inputMessageIds, other.inputMessageIds) &&
+                   equal(outputMessageIds, other.outputMessageIds);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.bimbr.clisson.client;
+
+import java.util.List;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Encodes events into a reusable {@link PayloadBuffer} in one of the {@linkplain WireFormat wire formats} understood
+ * by the server.
+ * <p>
+ * Implementations are not thread-safe; each sender thread uses its own encoder.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+interface EventEncoder {
+    /**
+     * Replaces the contents of the buffer with the encoded {@code event}.
+     * @param event the event to encode
+     * @return the buffer holding the encoded event; it is overwritten by the next invocation
+     */
+    PayloadBuffer encode(Event event);
+    
+    /**
+     * Replaces the contents of the buffer with the encoded {@code events}.
+     * @param events the events to encode
+     * @return the buffer holding the encoded events; it is overwritten by the next invocation
+     */
+    PayloadBuffer encode(List<Event> events);
+    
+    /**
+     * Replaces the contents of the buffer with the encoded records of coalesced {@code groups}.
+     * @param groups the groups of events with the same source, input and output messages
+     * @return the buffer holding the encoded groups; it is overwritten by the next invocation
+     */
+    PayloadBuffer encodeCoalesced(List<List<Event>> groups);
+}
@@ -0,0 +1,63 @@
+package com.bimbr.clisson.client;
+
+/**
+ * Reports what happened to the recorded events during {@link RecorderLifecycle#flush(long)} or {@link RecorderLifecycle#close(long)}.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public final class FlushResult {
+    private final long eventsSent;
+    private final long eventsFailed;
+    private final long eventsRemaining;
+
+    /**
+     * @param eventsSent the number of events sent to the server while flushing
+     * @param eventsFailed the number of events that could not be sent to the server while flushing
+     * @param eventsRemaining the number of events recorded before flushing started that were not processed in time
+     */
+    public FlushResult(final long eventsSent, final long eventsFailed, final long eventsRemaining) {
+        this.eventsSent      = eventsSent;
+        this.eventsFailed    = eventsFailed;
+        this.eventsRemaining = eventsRemaining;
+    }
+
+    /**
+     * @return the number of events sent to the server while flushing
+     * @since 1.1.0
+     */
+    public long getEventsSent() {
+        return eventsSent;
+    }
+
+    /**
+     * @return the number of events that could not be sent to the server while flushing
+     * @since 1.1.0
+     */
+    public long getEventsFailed() {
+        return eventsFailed;
+    }
+
+    /**
+     * @return the number of events recorded before flushing started that were neither sent nor failed before the
+     *         timeout; after {@link RecorderLifecycle#close(long)} these events are dropped (or left in the write-ahead journal,
+     *         if one is used)
+     * @since 1.1.0
+     */
+    public long getEventsRemaining() {
+        return eventsRemaining;
+    }
+
+    /**
+     * @return {@code true} if all events recorded before flushing started have been processed
+     * @since 1.1.0
+     */
+    public boolean isComplete() {
+        return eventsRemaining == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "sent: " + eventsSent + ", failed: " + eventsFailed + ", remaining: " + eventsRemaining;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.nio.charset.Charset;
+
+/**
+ * Lays out the requests sent by the streaming transports, {@link TcpStreamInvoker} and {@link UdpDatagramInvoker}, as
+ * self-describing frames. All integers are big-endian:
+ * <pre>
+ * frame  = length:int32 sequence:int64 uri:string contentType:string contentEncoding:string body
+ * string = byteCount:uint16 UTF-8 bytes
+ * </pre>
+ * {@code length} is the number of bytes that follow it; {@code body} takes up the rest of the frame. The content type
+ * and encoding carry the same values as the corresponding HTTP headers would, with an empty encoding for an
+ * uncompressed body. Sequence numbers are assigned by the transport and increase by one with every frame it sends.
+ * <p>
+ * A writer reuses a single buffer and compressor, so it is not thread-safe.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class FrameWriter {
+    private static final Charset UTF_8                 = Charset.forName("UTF-8");
+    private static final int     INITIAL_CAPACITY      = 4 * 1024;
+    private static final int     MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final int     MAX_STRING_LENGTH     = 0xffff;
+
+    private final Compression            compression;
+    private final int                    minCompressedLength;
+    private final Compression.Compressor compressor;
+    private final PayloadBuffer          output = new PayloadBuffer(INITIAL_CAPACITY, MAX_RETAINED_CAPACITY);
+
+    /**
+     * @param compression the compression applied to frame bodies
+     * @param minCompressedLength the minimum length, in bytes, of bodies that will be compressed
+     */
+    FrameWriter(final Compression compression, final int minCompressedLength) {
+        if (minCompressedLength < 0) throw new IllegalArgumentException("minCompressedLength must not be negative");
+        this.compression         = nonNull(compression, "compression");
+        this.minCompressedLength = minCompressedLength;
+        this.compressor          = compression == Compression.NONE ? null : compression.newCompressor();
+    }
+
+    /**
+     * @param sequence the sequence number of the frame
+     * @param uri the URI the body would be posted to over HTTP
+     * @param contentType the content type of the body
+     * @param content the array holding the body
+     * @param length the number of bytes of {@code content} that make up the body
+     * @return the buffer holding the frame; it is overwritten by the next invocation
+     */
+    PayloadBuffer frame(final long sequence, final String uri, final String contentType, final byte[] content, final int length) {
+        output.reset();
+        writeInt(0); // patched below, once the length is known
+        writeInt((int) (sequence >>> 32));
+        writeInt((int) sequence);
+        writeString(uri);
+        writeString(contentType);
+        if (compressor != null && length >= minCompressedLength) {
+            final PayloadBuffer compressed = compressor.compress(content, length);
+            writeString(compression.contentEncoding());
+            output.write(compressed.array(), 0, compressed.size());
+        } else {
+            writeString("");
+            output.write(content, 0, length);
+        }
+        final int frameLength = output.size() - 4;
+        final byte[] array = output.array();
+        array[0] = (byte) (frameLength >>> 24);
+        array[1] = (byte) (frameLength >>> 16);
+        array[2] = (byte) (frameLength >>> 8);
+        array[3] = (byte) frameLength;
+        return output;
+    }
+
+    private void writeString(final String str) {
+        final byte[] bytes = str.getBytes(UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) throw new IllegalArgumentException("string too long for a frame header: " + str);
+        output.write(bytes.length >>> 8);
+        output.write(bytes.length);
+        output.write(bytes, 0, bytes.length);
+    }
+
+    private void writeInt(final int value) {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+}
@@ -1,7 +1,8 @@
 package com.bimbr.clisson.client;
 
 /**
- * Handles the interaction with the server over HTTP.
+ * Handles the interaction with the server over HTTP. Implementations may carry the requests over another 
+ * {@link Transport}, as long as the receiver gets the URI, the content type and the body of each of them.
  *  
  * @author mmakowski
  * @since 1.0.0
@@ -13,4 +14,20 @@ interface HttpInvoker {
   * @param content the body of the request
   */
  void post(String uri, String content);
+
+ /**
+  * Issues a POST request to the server. The content is not copied, so the caller must not modify it until the method
+  * returns.
+  * @param uri the URI of the request
+  * @param content the array holding the encoded body of the request
+  * @param length the number of bytes of {@code content} that make up the body
+  * @since 1.1.0
+  */
+ void post(String uri, byte[] content, int length);
+
+ /**
+  * Releases the connections held by the invoker. Requests in progress are aborted and subsequent requests fail.
+  * @since 1.1.0
+  */
+ void close();
 }
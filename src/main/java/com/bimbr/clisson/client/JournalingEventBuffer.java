@@ -0,0 +1,221 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * An {@link EventBuffer} that records every accepted event in a {@link WriteAheadJournal}, so that events which had
+ * not been sent when the JVM stopped are sent by the next instance using the same journal directory.
+ * <p>
+ * Events are appended to the journal's staging buffer when offered. The journal is committed (written and forced to
+ * disk) periodically by a background thread and by the consumer before it takes out an event that has not been
+ * committed yet, so no event is sent before it is on disk and a single commit usually covers many events. The journal
+ * is confirmed up to the last taken event when the consumer
+ * {@linkplain #acknowledge() acknowledges} that the events have been sent. Events recovered from the journal are
+ * taken out before any newly offered ones.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class JournalingEventBuffer implements EventBuffer {
+    private static final Logger log = LoggerFactory.getLogger(JournalingEventBuffer.class);
+
+    private final EventBuffer       delegate;
+    private final WriteAheadJournal journal;
+    // the fields below are only used by the consumer
+    private final LinkedList<Event> recovered;
+    private long                    takenSequence;
+    private long                    committedSequence;
+
+    /**
+     * @param delegate the buffer holding the events until they are taken
+     * @param journal the journal to record the events in
+     */
+    JournalingEventBuffer(final EventBuffer delegate, final WriteAheadJournal journal) {
+        this.delegate          = nonNull(delegate, "delegate");
+        this.journal           = nonNull(journal, "journal");
+        this.recovered         = new LinkedList<Event>(journal.recoveredEvents());
+        this.takenSequence     = recovered.isEmpty() ? journal.recoveredSequence() : journal.confirmedSequence();
+        this.committedSequence = journal.recoveredSequence();
+    }
+
+    /**
+     * @param buffers the factory of buffers holding the events until they are taken
+     * @param directory the directory in which the journal of each buffer will have its own subdirectory
+     * @param segmentSize the size above which a new journal file is started, in bytes
+     * @param commitIntervalMs how often the journals are committed by the background thread, in milliseconds
+     * @return a factory of {@code JournalingEventBuffer}s
+     */
+    static EventBuffer.Factory factory(final EventBuffer.Factory buffers, final File directory, final long segmentSize, final long commitIntervalMs) {
+        nonNull(buffers, "buffers");
+        nonNull(directory, "directory");
+        if (commitIntervalMs <= 0) throw new IllegalArgumentException("commitIntervalMs must be positive");
+        return new EventBuffer.Factory() {
+            private final AtomicInteger buffersCreated = new AtomicInteger();
+            private final PeriodicCommitter committer = new PeriodicCommitter(commitIntervalMs);
+
+            public EventBuffer newBuffer() {
+                final File journalDirectory = new File(directory, "buffer-" + buffersCreated.getAndIncrement());
+                try {
+                    final WriteAheadJournal journal = new WriteAheadJournal(journalDirectory, segmentSize);
+                    committer.add(journal);
+                    return new JournalingEventBuffer(buffers.newBuffer(), journal);
+                } catch (IOException e) {
+                    throw new IllegalStateException("unable to open write-ahead journal in " + journalDirectory, e);
+                }
+            }
+        };
+    }
+
+    public boolean offer(final Event event) {
+        // the lock keeps the order of sequence numbers the same as the order of events in the delegate
+        synchronized (journal) {
+            if (!delegate.offer(event)) return false;
+            journal.append(event);
+            return true;
+        }
+    }
+
+    public boolean offerCheckpoint(final String sourceId, final String messageId, final String description, final long timestamp) {
+        // the event has to be constructed anyway in order to be journaled
+        final Set<String> messageIds = Collections.singleton(messageId);
+        return offer(new Event(sourceId, new Date(timestamp), messageIds, messageIds, description));
+    }
+
+    public Event take() throws InterruptedException {
+        if (!recovered.isEmpty()) return recoveredEvent();
+        final Event event = delegate.take();
+        taken(1);
+        return event;
+    }
+
+    public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!recovered.isEmpty()) return recoveredEvent();
+        final Event event = delegate.poll(timeout, unit);
+        if (event != null) taken(1);
+        return event;
+    }
+
+    public int drainTo(final List<Event> sink, final int maxEvents) {
+        int drained = 0;
+        while (drained < maxEvents && !recovered.isEmpty()) {
+            sink.add(recoveredEvent());
+            drained++;
+        }
+        final int fromDelegate = delegate.drainTo(sink, maxEvents - drained);
+        if (fromDelegate > 0) taken(fromDelegate);
+        return drained + fromDelegate;
+    }
+
+    private Event recoveredEvent() {
+        takenSequence++;
+        final Event event = recovered.removeFirst();
+        // events offered from now on are numbered from after the last recovered record
+        if (recovered.isEmpty()) takenSequence = journal.recoveredSequence();
+        return event;
+    }
+
+    private void taken(final int count) {
+        takenSequence += count;
+        if (takenSequence <= committedSequence) return;
+        try {
+            // the producers append the event before releasing the lock on the journal, so the commit includes it
+            committedSequence = journal.commit();
+        } catch (IOException e) {
+            log.warn("unable to write to the write-ahead journal; events may be lost if the JVM stops", e);
+        }
+    }
+
+    public void acknowledge() {
+        try {
+            journal.confirm(takenSequence);
+        } catch (IOException e) {
+            log.warn("unable to confirm events in the write-ahead journal; they may be sent again after restart", e);
+        }
+        delegate.acknowledge();
+    }
+
+    public void close() {
+        try {
+            // unsent events stay in the journal and are sent by the next instance
+            journal.close();
+        } catch (IOException e) {
+            log.warn("unable to write to the write-ahead journal; events may be lost", e);
+        }
+        delegate.close();
+    }
+
+    public int size() {
+        return recovered.size() + delegate.size();
+    }
+
+    public int memorySize() {
+        // the recovered events are a backlog read from disk, like spilled ones
+        return delegate.memorySize();
+    }
+
+    public int capacity() {
+        return delegate.capacity();
+    }
+
+    /**
+     * Commits journals at a fixed interval on a daemon thread, which runs while there are open journals.
+     */
+    private static final class PeriodicCommitter implements Runnable {
+        private final long                    intervalMs;
+        private final List<WriteAheadJournal> journals = new CopyOnWriteArrayList<WriteAheadJournal>();
+        private boolean                       running;
+
+        PeriodicCommitter(final long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        synchronized void add(final WriteAheadJournal journal) {
+            journals.add(journal);
+            if (!running) {
+                running = true;
+                final Thread thread = new Thread(this, "clisson-journal-committer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        public void run() {
+            while (isRunning()) {
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (final WriteAheadJournal journal : journals) {
+                    try {
+                        journal.commit();
+                    } catch (IOException e) {
+                        if (journal.isClosed()) journals.remove(journal);
+                        else log.warn("unable to write to the write-ahead journal; events may be lost if the JVM stops", e);
+                    }
+                }
+            }
+        }
+
+        private synchronized boolean isRunning() {
+            if (journals.isEmpty()) running = false;
+            return running;
+        }
+    }
+}
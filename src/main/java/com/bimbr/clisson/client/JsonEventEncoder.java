@@ -0,0 +1,216 @@
+package com.bimbr.clisson.client;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import com.bimbr.clisson.protocol.Event;
+import com.bimbr.clisson.protocol.Json;
+
+/**
+ * Encodes events as UTF-8 JSON ({@link WireFormat#JSON}) directly into a reusable {@link PayloadBuffer}, without building intermediate strings.
+ * The output has the same structure as that of {@link Json#jsonFor(Object)}: an object with {@code sourceId},
+ * {@code timestamp}, {@code inputMessageIds}, {@code outputMessageIds} and {@code description} properties, of which
+ * the {@code null} ones are omitted. Timestamps are formatted by {@link Json} so that the date format is the one
+ * the server expects; the most recently formatted timestamp is cached, since consecutive events are usually recorded
+ * within the same millisecond.
+ * <p>
+ * Groups of coalesced events (see {@link EventCoalescer}) are encoded as a JSON array of records with the shared
+ * {@code sourceId}, {@code inputMessageIds} and {@code outputMessageIds} properties and an {@code events} array of
+ * objects with the {@code timestamp} and {@code description} of each event.
+ * <p>
+ * Instances are not thread-safe; each sender thread uses its own encoder.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class JsonEventEncoder implements EventEncoder {
+    private static final int INITIAL_CAPACITY      = 4 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    
+    private final PayloadBuffer buffer = new PayloadBuffer(INITIAL_CAPACITY, MAX_RETAINED_CAPACITY);
+    private long   cachedTimestamp = Long.MIN_VALUE;
+    private String cachedTimestampJson;
+    
+    /**
+     * Replaces the contents of the buffer with the JSON representation of {@code event}.
+     * @param event the event to encode
+     * @return the buffer holding the encoded event
+     */
+    public PayloadBuffer encode(final Event event) {
+        buffer.reset();
+        writeEvent(event);
+        return buffer;
+    }
+    
+    /**
+     * Replaces the contents of the buffer with the JSON array of {@code events}.
+     * @param events the events to encode
+     * @return the buffer holding the encoded events
+     */
+    public PayloadBuffer encode(final List<Event> events) {
+        buffer.reset();
+        buffer.write('[');
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) buffer.write(',');
+            writeEvent(events.get(i));
+        }
+        buffer.write(']');
+        return buffer;
+    }
+    
+    /**
+     * Replaces the contents of the buffer with the JSON array of records of coalesced {@code groups}.
+     * @param groups the groups of events with the same source, input and output messages
+     * @return the buffer holding the encoded groups
+     */
+    public PayloadBuffer encodeCoalesced(final List<List<Event>> groups) {
+        buffer.reset();
+        buffer.write('[');
+        for (int i = 0; i < groups.size(); i++) {
+            if (i > 0) buffer.write(',');
+            writeGroup(groups.get(i));
+        }
+        buffer.write(']');
+        return buffer;
+    }
+    
+    private void writeGroup(final List<Event> group) {
+        final Event first = group.get(0);
+        buffer.write('{');
+        boolean isFirst = true;
+        isFirst = writeStringProperty("sourceId", first.getSourceId(), isFirst);
+        isFirst = writeSetProperty("inputMessageIds", first.getInputMessageIds(), isFirst);
+        isFirst = writeSetProperty("outputMessageIds", first.getOutputMessageIds(), isFirst);
+        writePropertyName("events", isFirst);
+        buffer.write('[');
+        for (int i = 0; i < group.size(); i++) {
+            if (i > 0) buffer.write(',');
+            buffer.write('{');
+            final Event event = group.get(i);
+            writeStringProperty("description", event.getDescription(), writeTimestampProperty(event.getTimestamp(), true));
+            buffer.write('}');
+        }
+        buffer.write(']');
+        buffer.write('}');
+    }
+    
+    private void writeEvent(final Event event) {
+        buffer.write('{');
+        boolean first = true;
+        first = writeStringProperty("sourceId", event.getSourceId(), first);
+        first = writeTimestampProperty(event.getTimestamp(), first);
+        first = writeSetProperty("inputMessageIds", event.getInputMessageIds(), first);
+        first = writeSetProperty("outputMessageIds", event.getOutputMessageIds(), first);
+        writeStringProperty("description", event.getDescription(), first);
+        buffer.write('}');
+    }
+    
+    private boolean writeStringProperty(final String name, final String value, final boolean first) {
+        if (value == null) return first;
+        writePropertyName(name, first);
+        writeString(value);
+        return false;
+    }
+    
+    private boolean writeTimestampProperty(final Date timestamp, final boolean first) {
+        if (timestamp == null) return first;
+        writePropertyName("timestamp", first);
+        writeAscii(timestampJson(timestamp));
+        return false;
+    }
+    
+    private String timestampJson(final Date timestamp) {
+        if (timestamp.getTime() != cachedTimestamp) {
+            cachedTimestampJson = Json.jsonFor(timestamp);
+            cachedTimestamp = timestamp.getTime();
+        }
+        return cachedTimestampJson;
+    }
+    
+    private boolean writeSetProperty(final String name, final Set<String> values, final boolean first) {
+        if (values == null) return first;
+        writePropertyName(name, first);
+        buffer.write('[');
+        boolean firstValue = true;
+        for (final String value : values) {
+            if (!firstValue) buffer.write(',');
+            if (value == null) writeAscii("null"); 
+            else writeString(value);
+            firstValue = false;
+        }
+        buffer.write(']');
+        return false;
+    }
+    
+    private void writePropertyName(final String name, final boolean first) {
+        if (!first) buffer.write(',');
+        buffer.write('"');
+        writeAscii(name);
+        buffer.write('"');
+        buffer.write(':');
+    }
+    
+    private void writeAscii(final String str) {
+        for (int i = 0; i < str.length(); i++) buffer.write(str.charAt(i));
+    }
+    
+    private void writeString(final String str) {
+        buffer.write('"');
+        final int length = str.length();
+        for (int i = 0; i < length; i++) {
+            final char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.write('\\');
+                buffer.write(c);
+            } else if (c == '\t') {
+                writeShortEscape('t');
+            } else if (c == '\n') {
+                writeShortEscape('n');
+            } else if (c == '\r') {
+                writeShortEscape('r');
+            } else if (c == '\b') {
+                writeShortEscape('b');
+            } else if (c == '\f') {
+                writeShortEscape('f');
+            } else if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\'' || c == '\u2028' || c == '\u2029') {
+                // the same characters are escaped by Gson, which is used by the protocol library
+                writeUnicodeEscape(c);
+            } else if (c < 0x80) {
+                buffer.write(c);
+            } else if (c < 0x800) {
+                buffer.write(0xc0 | (c >> 6));
+                buffer.write(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                buffer.write(0xf0 | (codePoint >> 18));
+                buffer.write(0x80 | ((codePoint >> 12) & 0x3f));
+                buffer.write(0x80 | ((codePoint >> 6) & 0x3f));
+                buffer.write(0x80 | (codePoint & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // unpaired surrogate: cannot be encoded in UTF-8
+                writeUnicodeEscape(c);
+            } else {
+                buffer.write(0xe0 | (c >> 12));
+                buffer.write(0x80 | ((c >> 6) & 0x3f));
+                buffer.write(0x80 | (c & 0x3f));
+            }
+        }
+        buffer.write('"');
+    }
+    
+    private void writeShortEscape(final char c) {
+        buffer.write('\\');
+        buffer.write(c);
+    }
+    
+    private void writeUnicodeEscape(final char c) {
+        buffer.write('\\');
+        buffer.write('u');
+        buffer.write(HEX[(c >> 12) & 0xf]);
+        buffer.write(HEX[(c >> 8) & 0xf]);
+        buffer.write(HEX[(c >> 4) & 0xf]);
+        buffer.write(HEX[c & 0xf]);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bimbr.clisson.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with fixed buckets on a roughly logarithmic scale, from 1 millisecond to 10 seconds.
+ * Recording a duration only increments a single counter, so the histogram can be updated on every request; percentiles
+ * are approximated by the upper bound of the bucket they fall into.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class LatencyHistogram {
+    // the upper bounds of all buckets but the last one, which holds all longer durations
+    private static final long[] BUCKET_BOUNDS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+    private static final long[] BUCKET_BOUNDS_NS = new long[BUCKET_BOUNDS_MS.length];
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) BUCKET_BOUNDS_NS[i] = MILLISECONDS.toNanos(BUCKET_BOUNDS_MS[i]);
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+
+    /**
+     * @param durationNs the duration to record, in nanoseconds
+     */
+    void record(final long durationNs) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NS.length && durationNs > BUCKET_BOUNDS_NS[bucket]) bucket++;
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * @return the upper bounds of buckets, in milliseconds; the last bucket, not included, holds all longer durations
+     */
+    static long[] bucketBoundsMs() {
+        return BUCKET_BOUNDS_MS.clone();
+    }
+
+    /**
+     * @return the number of durations recorded in each bucket
+     */
+    long[] counts() {
+        final long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) snapshot[i] = counts.get(i);
+        return snapshot;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound, in milliseconds, of the bucket holding the given percentile of recorded durations;
+     *         {@code 0} if nothing has been recorded and {@link Long#MAX_VALUE} if the percentile falls into the last bucket
+     */
+    long percentileMs(final double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile must be between 0 and 100");
+        final long[] snapshot = counts();
+        long total = 0;
+        for (final long count : snapshot) total += count;
+        if (total == 0) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) return BUCKET_BOUNDS_MS[i];
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,71 @@
+package com.bimbr.clisson.client;
+
+import java.util.Set;
+
+/**
+ * Decides which messages are recorded, based on a hash of the message id. The decision only depends on the id and the
+ * sampling percentage, so components configured with the same percentage record events of the same messages and the
+ * lineage of each sampled message is complete.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class MessageSampler {
+    /**
+     * Samples all messages.
+     */
+    static final MessageSampler ALL = new MessageSampler(100);
+
+    // the sampling percentage is applied with the precision of 1/10000 of a percent
+    private static final int BUCKETS = 100 * 10000;
+
+    private final int sampledBuckets;
+
+    /**
+     * @param percent the percentage of messages to sample, between 0 and 100
+     */
+    MessageSampler(final double percent) {
+        if (!(percent >= 0 && percent <= 100)) throw new IllegalArgumentException("percent must be between 0 and 100");
+        this.sampledBuckets = (int) Math.round(percent * BUCKETS / 100);
+    }
+
+    /**
+     * @param messageId the id of a message
+     * @return {@code true} if the events of given message should be recorded
+     */
+    boolean samples(final String messageId) {
+        if (sampledBuckets == BUCKETS) return true;
+        if (messageId == null) return false;
+        return bucketOf(messageId) < sampledBuckets;
+    }
+
+    /**
+     * @param inputMessageIds the ids of input messages of an event
+     * @param outputMessageIds the ids of output messages of an event
+     * @return {@code true} if any of the messages is sampled, so that the event links the sampled message to others
+     */
+    boolean samplesAny(final Set<String> inputMessageIds, final Set<String> outputMessageIds) {
+        if (sampledBuckets == BUCKETS) return true;
+        return samplesAny(inputMessageIds) || samplesAny(outputMessageIds);
+    }
+
+    private boolean samplesAny(final Set<String> messageIds) {
+        if (messageIds == null) return false;
+        for (final String messageId : messageIds) {
+            if (samples(messageId)) return true;
+        }
+        return false;
+    }
+
+    private static int bucketOf(final String messageId) {
+        // String.hashCode() is specified by the JLS, so the bucket is the same in every JVM; the finaliser of MurmurHash3
+        // spreads ids that differ only by a numeric suffix evenly across buckets
+        int h = messageId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % BUCKETS;
+    }
+}
@@ -0,0 +1,618 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static com.bimbr.clisson.util.Arguments.positive;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link AsyncHttpInvoker} based on non-blocking I/O. A single I/O thread writes the requests to a few persistent
+ * connections to the server, without waiting for the responses to earlier requests (HTTP/1.1 pipelining), and
+ * reads the responses, which arrive in the order of the requests on each connection. A new request is queued on the
+ * connection with the fewest requests in flight. The number of requests in flight is bounded; when the limit is
+ * reached, the requesting threads wait.
+ * <p>
+ * If a connection fails, the requests that may have reached the server fail, while the ones that had not been
+ * written yet are sent over a new connection. Requests are built, and optionally compressed, on the requesting
+ * threads, so the I/O thread only moves bytes.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class NioHttpInvoker implements AsyncHttpInvoker {
+    private static final Logger log = LoggerFactory.getLogger(NioHttpInvoker.class);
+
+    // the longest the I/O thread sleeps before checking for timeouts
+    private static final long SELECT_TIMEOUT_MS = 10;
+    private static final int  READ_BUFFER_SIZE  = 8 * 1024;
+    private static final long CLOSE_TIMEOUT_MS  = 1000;
+
+    private final String      serverHost;
+    private final int         serverPort;
+    private final long        connectTimeoutNs;
+    private final long        socketTimeoutNs;
+    private final Compression compression;
+    private final int         minCompressedLength;
+    private final String      contentType;
+    private final ThreadLocal<Compression.Compressor> compressors;
+    private final Semaphore   inFlight;
+    private final Queue<Request> submitted = new ConcurrentLinkedQueue<Request>();
+    private final Selector    selector;
+    private final Connection[] connections;
+    private final Thread      ioThread;
+    private volatile boolean  closed;
+
+    /**
+     * @param serverHost the host name of Clisson server, not including protocol and port, e.g.
+     *                   {@code www.example.com}
+     * @param serverPort the port on which Clisson server is listening
+     * @param connectTimeoutMs the maximum time to wait for a connection to the server to be established
+     * @param socketTimeoutMs the maximum time to wait for data from the server
+     * @param maxConnections the number of persistent connections to the server
+     * @param maxInFlight the maximum number of requests sent, or waiting to be sent, for which no response has been
+     *                    received yet
+     * @param compression the compression applied to request bodies
+     * @param minCompressedLength the minimum length, in bytes, of request bodies that will be compressed
+     * @param wireFormat the format of request bodies posted as byte arrays, which determines their content type
+     */
+    NioHttpInvoker(final String      serverHost,
+                   final int         serverPort,
+                   final int         connectTimeoutMs,
+                   final int         socketTimeoutMs,
+                   final int         maxConnections,
+                   final int         maxInFlight,
+                   final Compression compression,
+                   final int         minCompressedLength,
+                   final WireFormat  wireFormat) {
+        if (minCompressedLength < 0) throw new IllegalArgumentException("minCompressedLength must not be negative");
+        this.serverHost          = nonEmpty(serverHost, "serverHost");
+        this.serverPort          = positive(serverPort, "serverPort");
+        this.connectTimeoutNs    = MILLISECONDS.toNanos(positive(connectTimeoutMs, "connectTimeoutMs"));
+        this.socketTimeoutNs     = MILLISECONDS.toNanos(positive(socketTimeoutMs, "socketTimeoutMs"));
+        this.inFlight            = new Semaphore(positive(maxInFlight, "maxInFlight"));
+        this.compression         = nonNull(compression, "compression");
+        this.minCompressedLength = minCompressedLength;
+        this.contentType         = nonNull(wireFormat, "wireFormat").contentType();
+        this.compressors         = compression == Compression.NONE ? null : new ThreadLocal<Compression.Compressor>() {
+            @Override
+            protected Compression.Compressor initialValue() {
+                return compression.newCompressor();
+            }
+        };
+        this.connections         = new Connection[positive(maxConnections, "maxConnections")];
+        for (int i = 0; i < connections.length; i++) connections[i] = new Connection();
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new RuntimeException("unable to open a selector", e);
+        }
+        this.ioThread = new Thread(new Runnable() {
+            public void run() {
+                processRequests();
+            }
+        }, "clisson-nio-invoker");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public void post(final String uri, final String content) {
+        try {
+            final byte[] bytes = content.getBytes("UTF-8");
+            post(uri, bytes, bytes.length, WireFormat.JSON.contentType());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("error when posting to " + url(uri), e);
+        }
+    }
+
+    public void post(final String uri, final byte[] content, final int length) {
+        post(uri, content, length, contentType);
+    }
+
+    private void post(final String uri, final byte[] content, final int length, final String requestContentType) {
+        final BlockingCallback callback = new BlockingCallback();
+        try {
+            submit(request(uri, content, length, requestContentType, callback));
+            callback.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted when posting to " + url(uri), e);
+        }
+        if (callback.failure != null) throw new RuntimeException("error when posting to " + url(uri), callback.failure);
+    }
+
+    public void postAsync(final String uri, final byte[] content, final int length, final Callback callback) throws InterruptedException {
+        submit(request(uri, content, length, contentType, nonNull(callback, "callback")));
+    }
+
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            ioThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(final Request request) throws InterruptedException {
+        if (closed) throw new IllegalStateException("the invoker is closed");
+        inFlight.acquire();
+        submitted.add(request);
+        // the I/O thread may have exited before the request was queued
+        if (closed) failSubmitted(new IllegalStateException("the invoker is closed"));
+        else selector.wakeup();
+    }
+
+    private Request request(final String uri, final byte[] content, final int length, final String requestContentType, final Callback callback) {
+        byte[] body = content;
+        int bodyLength = length;
+        String contentEncoding = null;
+        if (compression != Compression.NONE && length >= minCompressedLength) {
+            final PayloadBuffer compressed = compressors.get().compress(content, length);
+            body = compressed.array();
+            bodyLength = compressed.size();
+            contentEncoding = compression.contentEncoding();
+        }
+        final StringBuilder head = new StringBuilder(256);
+        head.append("POST ").append(uri).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(serverHost).append(':').append(serverPort).append("\r\n");
+        head.append("Content-Type: ").append(requestContentType).append("\r\n");
+        head.append("Content-Length: ").append(bodyLength).append("\r\n");
+        if (contentEncoding != null) head.append("Content-Encoding: ").append(contentEncoding).append("\r\n");
+        head.append("\r\n");
+        final byte[] bytes = new byte[head.length() + bodyLength];
+        for (int i = 0; i < head.length(); i++) bytes[i] = (byte) head.charAt(i);
+        System.arraycopy(body, 0, bytes, head.length(), bodyLength);
+        return new Request(uri, ByteBuffer.wrap(bytes), callback);
+    }
+
+    private String url(final String uri) {
+        return "http://" + serverHost + ":" + serverPort + uri;
+    }
+
+    // the methods below are only called by the I/O thread
+
+    private void processRequests() {
+        try {
+            while (!closed) {
+                selector.select(SELECT_TIMEOUT_MS);
+                final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    final SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    ((Connection) key.attachment()).process(key);
+                }
+                assignSubmitted();
+                final long now = System.nanoTime();
+                for (final Connection connection : connections) connection.checkTimeout(now);
+            }
+        } catch (IOException e) {
+            log.error("I/O thread of Clisson invoker failed; no more events will be sent", e);
+        } catch (RuntimeException e) {
+            log.error("I/O thread of Clisson invoker failed; no more events will be sent", e);
+        } finally {
+            closed = true;
+            final IllegalStateException cause = new IllegalStateException("the invoker is closed");
+            for (final Connection connection : connections) connection.fail(cause, false);
+            failSubmitted(cause);
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("unable to close the selector", e);
+            }
+        }
+    }
+
+    private void assignSubmitted() throws IOException {
+        Request request;
+        while ((request = submitted.poll()) != null) leastLoadedConnection().add(request);
+    }
+
+    private Connection leastLoadedConnection() {
+        Connection leastLoaded = connections[0];
+        for (int i = 1; i < connections.length; i++) {
+            if (connections[i].pendingCount() < leastLoaded.pendingCount()) leastLoaded = connections[i];
+        }
+        return leastLoaded;
+    }
+
+    private void failSubmitted(final Exception cause) {
+        Request request;
+        while ((request = submitted.poll()) != null) request.failed(cause);
+    }
+
+    /**
+     * A request queued for sending, with the complete HTTP message.
+     */
+    private final class Request {
+        final String     uri;
+        final ByteBuffer bytes;
+        final Callback   callback;
+
+        Request(final String uri, final ByteBuffer bytes, final Callback callback) {
+            this.uri      = uri;
+            this.bytes    = bytes;
+            this.callback = callback;
+        }
+
+        boolean isUnwritten() {
+            return bytes.position() == 0;
+        }
+
+        void completed(final int statusCode, final String statusLine) {
+            if (statusCode >= 400) {
+                failed(new RuntimeException("response to POST " + url(uri) + ": " + statusLine));
+                return;
+            }
+            inFlight.release();
+            try {
+                callback.completed();
+            } catch (RuntimeException e) {
+                log.warn("callback of request to " + uri + " failed", e);
+            }
+        }
+
+        void failed(final Exception cause) {
+            inFlight.release();
+            try {
+                callback.failed(cause);
+            } catch (RuntimeException e) {
+                log.warn("callback of request to " + uri + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * A persistent connection to the server, over which requests are pipelined. Requests are written in order and
+     * moved to the queue of unanswered ones once written completely; responses complete them in the same order.
+     */
+    private final class Connection {
+        private final ArrayDeque<Request> unwritten  = new ArrayDeque<Request>();
+        private final ArrayDeque<Request> unanswered = new ArrayDeque<Request>();
+        private final ByteBuffer     readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ResponseParser parser     = new ResponseParser();
+        private SocketChannel channel;
+        private SelectionKey  key;
+        private boolean       isConnecting;
+        private long          connectStartNs;
+        private long          lastProgressNs;
+
+        int pendingCount() {
+            return unwritten.size() + unanswered.size();
+        }
+
+        void add(final Request request) throws IOException {
+            if (pendingCount() == 0) lastProgressNs = System.nanoTime();
+            unwritten.add(request);
+            if (channel == null) open();
+            else if (!isConnecting) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void open() {
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                connectStartNs = System.nanoTime();
+                isConnecting = !channel.connect(new InetSocketAddress(serverHost, serverPort));
+                key = channel.register(selector, isConnecting ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+            } catch (IOException e) {
+                fail(e, false);
+            }
+        }
+
+        void process(final SelectionKey selectedKey) {
+            try {
+                if (selectedKey.isConnectable()) finishConnect();
+                if (selectedKey.isValid() && selectedKey.isReadable()) read();
+                if (selectedKey.isValid() && selectedKey.isWritable()) write();
+            } catch (IOException e) {
+                fail(e, !isConnecting);
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (!channel.finishConnect()) return;
+            isConnecting = false;
+            lastProgressNs = System.nanoTime();
+            key.interestOps(SelectionKey.OP_READ | (unwritten.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+        }
+
+        private void write() throws IOException {
+            while (!unwritten.isEmpty()) {
+                final Request request = unwritten.peek();
+                if (channel.write(request.bytes) > 0) lastProgressNs = System.nanoTime();
+                if (request.bytes.hasRemaining()) return;
+                unanswered.add(unwritten.poll());
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void read() throws IOException {
+            final int read = channel.read(readBuffer);
+            if (read < 0) {
+                if (parser.isReadingUntilClose()) complete();
+                fail(new IOException("connection closed by the server"), true);
+                return;
+            }
+            if (read > 0) lastProgressNs = System.nanoTime();
+            readBuffer.flip();
+            while (parser.parse(readBuffer)) {
+                final boolean isClosing = parser.isConnectionClosing();
+                complete();
+                if (isClosing) {
+                    fail(new IOException("connection closed by the server"), true);
+                    return;
+                }
+            }
+            readBuffer.compact();
+        }
+
+        private void complete() throws IOException {
+            // a server may respond (e.g. with an error) before the request has been fully written
+            final Request request = !unanswered.isEmpty() ? unanswered.poll() : unwritten.poll();
+            if (request == null) throw new IOException("unexpected response from the server: " + parser.statusLine());
+            request.completed(parser.statusCode(), parser.statusLine());
+            parser.reset();
+        }
+
+        void checkTimeout(final long now) {
+            if (channel == null) return;
+            if (isConnecting && now - connectStartNs > connectTimeoutNs) {
+                fail(new ConnectException("connection to " + serverHost + ":" + serverPort + " timed out"), false);
+            } else if (!isConnecting && pendingCount() > 0 && now - lastProgressNs > socketTimeoutNs) {
+                fail(new SocketTimeoutException("no response from " + serverHost + ":" + serverPort), false);
+            }
+        }
+
+        /**
+         * Closes the connection and fails the requests that may have reached the server.
+         * @param cause the reason of the failure
+         * @param isResendable whether the requests not written at all can be sent over a new connection
+         */
+        void fail(final Exception cause, final boolean isResendable) {
+            close();
+            final List<Request> resent = new ArrayList<Request>();
+            while (!unanswered.isEmpty()) unanswered.poll().failed(cause);
+            while (!unwritten.isEmpty()) {
+                final Request request = unwritten.poll();
+                if (isResendable && !closed && request.isUnwritten()) resent.add(request);
+                else request.failed(cause);
+            }
+            if (!resent.isEmpty()) {
+                log.debug("resending {} requests after the connection was closed", resent.size());
+                submitted.addAll(resent);
+            }
+        }
+
+        private void close() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("unable to close connection", e);
+            }
+            channel = null;
+            key = null;
+            isConnecting = false;
+            readBuffer.clear();
+            parser.reset();
+        }
+    }
+
+    /**
+     * An incremental parser of HTTP responses, which only keeps track of the status and the framing of the body; the
+     * content of the body is discarded.
+     */
+    private static final class ResponseParser {
+        private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+        private static final int STATUS_LINE      = 0;
+        private static final int HEADERS          = 1;
+        private static final int BODY             = 2;
+        private static final int CHUNK_SIZE       = 3;
+        private static final int CHUNK_DATA       = 4;
+        private static final int CHUNK_END        = 5;
+        private static final int TRAILERS         = 6;
+        private static final int BODY_UNTIL_CLOSE = 7;
+
+        private final StringBuilder line = new StringBuilder();
+        private int     state = STATUS_LINE;
+        private String  statusLine;
+        private int     statusCode;
+        private long    contentLength = -1;
+        private boolean isChunked;
+        private boolean isConnectionClosing;
+        private long    remaining;
+
+        void reset() {
+            line.setLength(0);
+            state = STATUS_LINE;
+            statusLine = null;
+            statusCode = 0;
+            contentLength = -1;
+            isChunked = false;
+            isConnectionClosing = false;
+        }
+
+        String statusLine() {
+            return statusLine;
+        }
+
+        int statusCode() {
+            return statusCode;
+        }
+
+        boolean isConnectionClosing() {
+            return isConnectionClosing;
+        }
+
+        boolean isReadingUntilClose() {
+            return state == BODY_UNTIL_CLOSE;
+        }
+
+        /**
+         * @param in the buffer with the data received from the server
+         * @return {@code true} if a complete response has been parsed; the buffer may hold the start of the next one
+         */
+        boolean parse(final ByteBuffer in) throws IOException {
+            while (in.hasRemaining()) {
+                if (state == BODY || state == CHUNK_DATA) {
+                    final int skipped = (int) Math.min(remaining, in.remaining());
+                    in.position(in.position() + skipped);
+                    remaining -= skipped;
+                    if (remaining > 0) return false;
+                    if (state == BODY) return true;
+                    state = CHUNK_END;
+                } else if (state == BODY_UNTIL_CLOSE) {
+                    in.position(in.limit());
+                } else if (readLine(in) && processLine()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean readLine(final ByteBuffer in) throws IOException {
+            while (in.hasRemaining()) {
+                final char c = (char) (in.get() & 0xff);
+                if (c == '\n') {
+                    final int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+                    return true;
+                }
+                if (line.length() >= MAX_LINE_LENGTH) throw new IOException("response line too long");
+                line.append(c);
+            }
+            return false;
+        }
+
+        /**
+         * @return {@code true} if the line completes the response
+         */
+        private boolean processLine() throws IOException {
+            final String current = line.toString();
+            line.setLength(0);
+            switch (state) {
+            case STATUS_LINE:
+                if (current.length() == 0) return false;
+                statusLine = current;
+                statusCode = statusCodeIn(current);
+                state = HEADERS;
+                return false;
+            case HEADERS:
+                if (current.length() > 0) {
+                    header(current);
+                    return false;
+                }
+                return startBody();
+            case CHUNK_SIZE:
+                final int extension = current.indexOf(';');
+                try {
+                    remaining = Long.parseLong((extension < 0 ? current : current.substring(0, extension)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("invalid chunk size: " + current);
+                }
+                state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+                return false;
+            case CHUNK_END:
+                state = CHUNK_SIZE;
+                return false;
+            case TRAILERS:
+                return current.length() == 0;
+            default:
+                throw new IllegalStateException("unexpected state: " + state);
+            }
+        }
+
+        private static int statusCodeIn(final String statusLine) throws IOException {
+            final int start = statusLine.indexOf(' ');
+            try {
+                return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+            } catch (RuntimeException e) {
+                throw new IOException("invalid status line: " + statusLine);
+            }
+        }
+
+        private void header(final String header) throws IOException {
+            final int colon = header.indexOf(':');
+            if (colon < 0) return;
+            final String name  = header.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+            final String value = header.substring(colon + 1).trim().toLowerCase(Locale.ENGLISH);
+            if ("content-length".equals(name)) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("invalid content length: " + value);
+                }
+            } else if ("transfer-encoding".equals(name)) {
+                isChunked = value.endsWith("chunked");
+            } else if ("connection".equals(name)) {
+                isConnectionClosing = value.contains("close");
+            }
+        }
+
+        private boolean startBody() {
+            if (statusCode >= 100 && statusCode < 200) {
+                // an interim response, followed by the final one
+                reset();
+                return false;
+            }
+            if (statusCode == 204 || statusCode == 304) return true;
+            if (isChunked) {
+                state = CHUNK_SIZE;
+                return false;
+            }
+            if (contentLength >= 0) {
+                remaining = contentLength;
+                state = BODY;
+                return remaining == 0;
+            }
+            state = BODY_UNTIL_CLOSE;
+            return false;
+        }
+    }
+
+    /**
+     * Lets a thread wait for the outcome of a request.
+     */
+    private static final class BlockingCallback implements Callback {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Exception failure;
+
+        public void completed() {
+            done.countDown();
+        }
+
+        public void failed(final Exception cause) {
+            failure = cause;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            done.await();
+        }
+    }
+}
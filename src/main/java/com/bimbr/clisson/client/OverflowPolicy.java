@@ -0,0 +1,143 @@
+package com.bimbr.clisson.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Decides what {@link AsyncHttpRecorder} does with recorded events when the buffer of a sender is filling up.
+ * <p>
+ * Once the buffer is filled above the shedding threshold, events are admitted with the configured probabilities,
+ * separately for checkpoints and for (usually more valuable) events concerning several messages. For example, a
+ * threshold of 80% with the checkpoint keep percentage of 0 reserves the last fifth of the buffer for multi-message
+ * events.
+ * <p>
+ * When the buffer is full, the {@link Action} determines whether the new event or the oldest one in the buffer is
+ * dropped, or whether the recording thread waits for space to become available.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class OverflowPolicy {
+    /**
+     * What happens to an event recorded when the buffer is full.
+     */
+    enum Action {
+        /**
+         * The new event is dropped.
+         */
+        DROP,
+        /**
+         * The oldest event in the buffer is dropped to make space for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The recording thread waits up to the block timeout for space to become available, and drops the event if
+         * it does not.
+         */
+        BLOCK;
+
+        /**
+         * @param name the name of the action, case insensitive, with words in camel case (e.g. {@code dropOldest})
+         * @return the action with given name
+         * @throws IllegalArgumentException if there is no action with given name
+         */
+        static Action named(final String name) {
+            return valueOf(name.trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Drops the new events when the buffer is full and never sheds any events before that.
+     */
+    static final OverflowPolicy DROP = new OverflowPolicy(Action.DROP, 0, 100, 100, 100);
+
+    // how long a blocked recording thread sleeps between attempts to offer the event
+    private static final long BLOCK_RETRY_INTERVAL_NS = 100 * 1000;
+
+    private final Action action;
+    private final long   blockTimeoutNs;
+    private final int    sheddingThresholdPercent;
+    private final int    checkpointKeepPercent;
+    private final int    eventKeepPercent;
+    private final boolean isShedding;
+    // java.util.Random is thread-safe, but contended when shared by all recording threads
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    /**
+     * @param action what happens to an event recorded when the buffer is full
+     * @param blockTimeoutMs the maximum time, in milliseconds, the recording thread waits for space in the buffer if
+     *                       the action is {@link Action#BLOCK}
+     * @param sheddingThresholdPercent the percentage of buffer capacity above which events are shed
+     * @param checkpointKeepPercent the percentage of checkpoints kept above the shedding threshold
+     * @param eventKeepPercent the percentage of multi-message events kept above the shedding threshold
+     */
+    OverflowPolicy(final Action action,
+                   final long   blockTimeoutMs,
+                   final int    sheddingThresholdPercent,
+                   final int    checkpointKeepPercent,
+                   final int    eventKeepPercent) {
+        if (action == null) throw new IllegalArgumentException("action must not be null");
+        if (blockTimeoutMs < 0) throw new IllegalArgumentException("blockTimeoutMs must not be negative");
+        if (sheddingThresholdPercent < 0 || sheddingThresholdPercent > 100) throw new IllegalArgumentException("sheddingThresholdPercent must be between 0 and 100");
+        if (checkpointKeepPercent < 0 || checkpointKeepPercent > 100) throw new IllegalArgumentException("checkpointKeepPercent must be between 0 and 100");
+        if (eventKeepPercent < 0 || eventKeepPercent > 100) throw new IllegalArgumentException("eventKeepPercent must be between 0 and 100");
+        this.action                   = action;
+        this.blockTimeoutNs           = MILLISECONDS.toNanos(blockTimeoutMs);
+        this.sheddingThresholdPercent = sheddingThresholdPercent;
+        this.checkpointKeepPercent    = checkpointKeepPercent;
+        this.eventKeepPercent         = eventKeepPercent;
+        this.isShedding               = checkpointKeepPercent < 100 || eventKeepPercent < 100;
+    }
+
+    /**
+     * @return what happens to an event recorded when the buffer is full
+     */
+    Action action() {
+        return action;
+    }
+
+    /**
+     * @param buffer the buffer the event would be added to
+     * @param isCheckpoint {@code true} if the event is a checkpoint, {@code false} if it concerns several messages
+     * @return {@code true} if the event should be offered to the buffer, {@code false} if it should be shed
+     */
+    boolean admits(final EventBuffer buffer, final boolean isCheckpoint) {
+        if (!isShedding) return true;
+        // the size may be approximate, which is good enough for sampling; events spilled to disk do not count, as the
+        // capacity is that of the memory only
+        if ((long) buffer.memorySize() * 100 < (long) buffer.capacity() * sheddingThresholdPercent) return true;
+        final int keepPercent = isCheckpoint ? checkpointKeepPercent : eventKeepPercent;
+        return keepPercent == 100 || keepPercent > 0 && random.get().nextInt(100) < keepPercent;
+    }
+
+    /**
+     * Repeatedly offers the event to a full buffer until it is accepted or the block timeout elapses.
+     * @param buffer the buffer to offer the event to
+     * @param event the event to offer
+     * @return {@code true} if the event was added to the buffer
+     */
+    boolean offerBlocking(final EventBuffer buffer, final Event event) {
+        final long deadline = System.nanoTime() + blockTimeoutNs;
+        while (!buffer.offer(event)) {
+            if (deadline - System.nanoTime() <= 0 || Thread.currentThread().isInterrupted()) return false;
+            LockSupport.parkNanos(BLOCK_RETRY_INTERVAL_NS);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return action.name().toLowerCase(Locale.ENGLISH) + (isShedding ? ", above " + sheddingThresholdPercent + "% keep " + checkpointKeepPercent +
+               "% of checkpoints and " + eventKeepPercent + "% of events" : "");
+    }
+}
@@ -0,0 +1,68 @@
+package com.bimbr.clisson.client;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A reusable, growable buffer for request bodies that gives access to its contents without copying them. Unlike
+ * {@link java.io.ByteArrayOutputStream} it is not synchronised, as it is only ever used by a single sender thread.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class PayloadBuffer extends OutputStream {
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private byte[]    buf;
+    private int       count;
+    
+    /**
+     * @param initialCapacity the initial capacity of the buffer, in bytes
+     * @param maxRetainedCapacity the capacity above which the buffer is shrunk back to the initial capacity on 
+     *                            {@link #reset()}, so that a single large payload does not pin memory forever
+     */
+    PayloadBuffer(final int initialCapacity, final int maxRetainedCapacity) {
+        this.initialCapacity     = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.buf                 = new byte[initialCapacity];
+    }
+    
+    @Override
+    public void write(final int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(bytes, offset, buf, count, length);
+        count += length;
+    }
+    
+    private void ensureCapacity(final int capacity) {
+        if (capacity > buf.length) buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+    }
+    
+    /**
+     * Discards the contents of the buffer.
+     */
+    void reset() {
+        count = 0;
+        if (buf.length > maxRetainedCapacity) buf = new byte[initialCapacity];
+    }
+    
+    /**
+     * @return the internal array holding the contents of the buffer; only the first {@link #size()} bytes are valid 
+     */
+    byte[] array() {
+        return buf;
+    }
+    
+    /**
+     * @return the number of bytes in the buffer
+     */
+    int size() {
+        return count;
+    }
+}
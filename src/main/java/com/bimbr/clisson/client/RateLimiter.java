@@ -0,0 +1,69 @@
+package com.bimbr.clisson.client;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate at which events with the same description are recorded. Each description has its own token bucket,
+ * which allows bursts of up to the given number of events and refills at the given rate.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the time at which it will be full again (the "generic cell rate
+ * algorithm"), so that acquiring a token is a single compare-and-set. Descriptions usually come from a small set of
+ * constants; to bound memory, events with descriptions beyond the first {@value #MAX_DESCRIPTIONS} are not limited.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class RateLimiter {
+    /**
+     * Does not limit the rate of events.
+     */
+    static final RateLimiter NONE = new RateLimiter(0, 0);
+
+    private static final int MAX_DESCRIPTIONS = 10000;
+
+    private final long intervalNs;
+    private final long burstNs;
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * @param eventsPerSecond the maximum sustained rate of events with a single description; {@code 0} if unlimited
+     * @param burst the maximum number of events with a single description recorded in a burst; at least 1 if the rate
+     *              is limited
+     */
+    RateLimiter(final int eventsPerSecond, final int burst) {
+        if (eventsPerSecond < 0) throw new IllegalArgumentException("eventsPerSecond must not be negative");
+        if (eventsPerSecond > 0 && burst <= 0) throw new IllegalArgumentException("burst must be positive");
+        this.intervalNs = eventsPerSecond == 0 ? 0 : SECONDS.toNanos(1) / eventsPerSecond;
+        this.burstNs    = intervalNs * burst;
+    }
+
+    /**
+     * @param description the description of the event
+     * @return {@code true} if the event may be recorded, {@code false} if the rate limit of its description has been
+     *         exceeded
+     */
+    boolean tryAcquire(final String description) {
+        if (intervalNs == 0) return true;
+        final AtomicLong bucket = bucketFor(description == null ? "" : description);
+        if (bucket == null) return true;
+        final long now = System.nanoTime();
+        while (true) {
+            final long fullAt = bucket.get();
+            final long newFullAt = Math.max(fullAt, now) + intervalNs;
+            if (newFullAt - now > burstNs) return false;
+            if (bucket.compareAndSet(fullAt, newFullAt)) return true;
+        }
+    }
+
+    private AtomicLong bucketFor(final String description) {
+        final AtomicLong bucket = buckets.get(description);
+        if (bucket != null || buckets.size() >= MAX_DESCRIPTIONS) return bucket;
+        final AtomicLong newBucket = new AtomicLong(System.nanoTime());
+        final AtomicLong existing = buckets.putIfAbsent(description, newBucket);
+        return existing != null ? existing : newBucket;
+    }
+}
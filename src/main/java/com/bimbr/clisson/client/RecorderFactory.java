@@ -1,6 +1,10 @@
 package com.bimbr.clisson.client;
 
-import com.bimbr.util.Clock;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bimbr.util.CachedClock;
 
 
 /**
@@ -22,30 +26,83 @@ import com.bimbr.util.Clock;
  * </thead>
  * <tr><td>{@code clisson.componentId}</td><td>yes</td><td></td><td>the identifier of component for the purpose of event identification</td></tr>
  * <tr><td>{@code clisson.record.enabled}</td><td>no</td><td>{@code true}</td><td>whether sending of events to the server is enabled</td></tr>
- * <tr><td>{@code clisson.server.host}</td><td>yes</td><td></td><td>the host name of Clisson server</td></tr>
- * <tr><td>{@code clisson.server.port}</td><td>yes</td><td></td><td>the port on which Clisson server listens</td></tr>
+ * <tr><td>{@code clisson.server.host}</td><td>yes, unless {@code clisson.server.hosts} is specified</td><td></td><td>the host name of Clisson server</td></tr>
+ * <tr><td>{@code clisson.server.port}</td><td>yes, unless all {@code clisson.server.hosts} have ports</td><td></td><td>the port on which Clisson server listens</td></tr>
+ * <tr><td>{@code clisson.server.hosts}</td><td>no</td><td></td><td>a comma-separated list of {@code host[:port]} entries of several Clisson servers to distribute requests between, instead of {@code clisson.server.host}</td></tr>
+ * <tr><td>{@code clisson.server.balancing}</td><td>no</td><td>{@code roundRobin}</td><td>the way requests are distributed between several servers: {@code roundRobin}, {@code leastOutstanding} or {@code messageHash}, which sends all checkpoints of a message to the same server</td></tr>
+ * <tr><td>{@code clisson.server.healthCheckIntervalMs}</td><td>no</td><td>{@code 5000}</td><td>the time after which a server taken out of rotation following a failed request is given a trial request</td></tr>
+ * <tr><td>{@code clisson.server.connectTimeoutMs}</td><td>no</td><td>{@code 5000}</td><td>the maximum time, in milliseconds, to wait for a connection to the server</td></tr>
+ * <tr><td>{@code clisson.server.socketTimeoutMs}</td><td>no</td><td>{@code 10000}</td><td>the maximum time, in milliseconds, to wait for data from the server</td></tr>
+ * <tr><td>{@code clisson.server.maxConnections}</td><td>no</td><td>{@code 2}</td><td>the maximum number of persistent connections to the server</td></tr>
+ * <tr><td>{@code clisson.server.nonBlocking}</td><td>no</td><td>{@code false}</td><td>whether to send requests using non-blocking I/O, without waiting for the responses to earlier requests</td></tr>
+ * <tr><td>{@code clisson.server.maxInFlight}</td><td>no</td><td>{@code 16}</td><td>the maximum number of requests awaiting a response if requests are sent using non-blocking I/O</td></tr>
+ * <tr><td>{@code clisson.compression}</td><td>no</td><td>{@code none}</td><td>the compression of request bodies: {@code none}, {@code gzip} or {@code deflate}</td></tr>
+ * <tr><td>{@code clisson.compression.minSize}</td><td>no</td><td>{@code 1024}</td><td>the minimum size, in bytes, of request bodies that will be compressed</td></tr>
+ * <tr><td>{@code clisson.wireFormat}</td><td>no</td><td>{@code json}</td><td>the format in which events are sent: {@code json} or the compact {@code binary} format, which must be supported by the server</td></tr>
+ * <tr><td>{@code clisson.transport}</td><td>no</td><td>{@code http}</td><td>the transport over which requests are sent: {@code http}, frames streamed over a persistent {@code tcp} connection or fire-and-forget {@code udp} datagrams; the latter two require a receiver that understands them</td></tr>
+ * <tr><td>{@code clisson.transport.maxUnacknowledged}</td><td>no</td><td>{@code 256}</td><td>the maximum number of frames sent over the {@code tcp} transport but not yet acknowledged by the receiver</td></tr>
+ * <tr><td>{@code clisson.buffer.size}</td><td>no</td><td>{@code 1000}</td><td>the maximum number of events buffered by each sender thread</td></tr>
+ * <tr><td>{@code clisson.buffer.lockFree}</td><td>no</td><td>{@code false}</td><td>whether to buffer events in lock-free ring buffers rather than blocking queues</td></tr>
+ * <tr><td>{@code clisson.buffer.waitStrategy}</td><td>no</td><td>{@code park}</td><td>how sender threads wait for events in a lock-free buffer: {@code spin}, {@code yield} or {@code park}</td></tr>
+ * <tr><td>{@code clisson.buffer.overflow}</td><td>no</td><td>{@code drop}</td><td>what happens to events recorded when the buffer is full: {@code drop} the new event, {@code dropOldest} buffered event, {@code block} the recording thread or {@code spill} to disk</td></tr>
+ * <tr><td>{@code clisson.buffer.blockTimeoutMs}</td><td>no</td><td>{@code 10}</td><td>the maximum time, in milliseconds, a recording thread waits for space in a full buffer if overflow is {@code block}</td></tr>
+ * <tr><td>{@code clisson.shedding.thresholdPercent}</td><td>no</td><td>{@code 100}</td><td>the percentage of buffer capacity above which events are shed</td></tr>
+ * <tr><td>{@code clisson.shedding.checkpointKeepPercent}</td><td>no</td><td>{@code 100}</td><td>the percentage of checkpoints kept, at random, when the buffer is filled above the shedding threshold</td></tr>
+ * <tr><td>{@code clisson.shedding.eventKeepPercent}</td><td>no</td><td>{@code 100}</td><td>the percentage of multi-message events kept, at random, when the buffer is filled above the shedding threshold</td></tr>
+ * <tr><td>{@code clisson.sampling.percent}</td><td>no</td><td>{@code 100}</td><td>the percentage of messages whose events are recorded; messages are chosen by a hash of their id, so all components record the same messages</td></tr>
+ * <tr><td>{@code clisson.rateLimit.perDescription}</td><td>no</td><td>{@code 0}</td><td>the maximum number of events with a single description recorded per second; {@code 0} means unlimited</td></tr>
+ * <tr><td>{@code clisson.rateLimit.burst}</td><td>no</td><td>the rate limit</td><td>the maximum number of events with a single description recorded in a burst</td></tr>
+ * <tr><td>{@code clisson.spill.directory}</td><td>if overflow is {@code spill}</td><td></td><td>the directory to which events are spilled</td></tr>
+ * <tr><td>{@code clisson.spill.maxSize}</td><td>no</td><td>{@code 67108864}</td><td>the maximum size, in bytes, of events spilled by each sender thread</td></tr>
+ * <tr><td>{@code clisson.spill.segmentSize}</td><td>no</td><td>{@code 8388608}</td><td>the size, in bytes, of a single file holding spilled events</td></tr>
+ * <tr><td>{@code clisson.journal.directory}</td><td>no</td><td></td><td>if specified, every recorded event is written to a journal in this directory before it is sent; events not sent before the JVM stopped are sent on next start</td></tr>
+ * <tr><td>{@code clisson.journal.segmentSize}</td><td>no</td><td>{@code 16777216}</td><td>the size, in bytes, above which a new journal file is started</td></tr>
+ * <tr><td>{@code clisson.journal.commitIntervalMs}</td><td>no</td><td>{@code 50}</td><td>how often, in milliseconds, recorded events are forced to the journal on disk</td></tr>
+ * <tr><td>{@code clisson.sender.threads}</td><td>no</td><td>{@code 1}</td><td>the number of threads sending events to the server; checkpoints of a single message are always sent by the same thread, and events of several messages by the thread of their first message</td></tr>
+ * <tr><td>{@code clisson.batch.maxSize}</td><td>no</td><td>{@code 1}</td><td>the maximum number of events sent to the server in a single request; batches are posted to {@code /events}, single events to {@code /event}</td></tr>
+ * <tr><td>{@code clisson.batch.maxLingerMs}</td><td>no</td><td>{@code 0}</td><td>the maximum time, in milliseconds, to wait for a batch to fill up before sending it</td></tr>
+ * <tr><td>{@code clisson.coalescing.windowMs}</td><td>no</td><td>{@code 0}</td><td>if positive, events of a batch with the same input and output messages recorded within this time, in milliseconds, are sent as a single record to {@code /events/coalesced}, which must be supported by the server; with sequencing enabled, the sequence numbers count coalesced records</td></tr>
+ * <tr><td>{@code clisson.sequence.enabled}</td><td>no</td><td>{@code false}</td><td>whether every request carries the sequence number of its first event (or coalesced record), from a counter of the recorder, as a {@code sequence} query parameter, e.g. {@code /events?sequence=1001}; the other records of the request have the subsequent numbers, so that the server can order the events of a message recorded within the same millisecond</td></tr>
+ * <tr><td>{@code clisson.retry.maxAttempts}</td><td>no</td><td>{@code 3}</td><td>the maximum number of attempts to send a batch of events, including the first one</td></tr>
+ * <tr><td>{@code clisson.retry.initialBackoffMs}</td><td>no</td><td>{@code 100}</td><td>the delay, in milliseconds, before the first retry; it doubles with every further attempt and is randomised</td></tr>
+ * <tr><td>{@code clisson.retry.maxBackoffMs}</td><td>no</td><td>{@code 10000}</td><td>the maximum delay, in milliseconds, between two attempts</td></tr>
+ * <tr><td>{@code clisson.circuitBreaker.failureThreshold}</td><td>no</td><td>{@code 5}</td><td>the number of consecutive failed requests after which sending is suspended; {@code 0} disables the circuit breaker</td></tr>
+ * <tr><td>{@code clisson.circuitBreaker.openMs}</td><td>no</td><td>{@code 10000}</td><td>the time, in milliseconds, for which sending is suspended before a probe request is sent</td></tr>
+ * <tr><td>{@code clisson.shutdown.hook}</td><td>no</td><td>{@code false}</td><td>whether to close the recorder, sending the buffered events, when the JVM shuts down</td></tr>
+ * <tr><td>{@code clisson.shutdown.timeoutMs}</td><td>no</td><td>{@code 5000}</td><td>the maximum time, in milliseconds, spent sending buffered events when the recorder is closed</td></tr>
+ * <tr><td>{@code clisson.jmx.enabled}</td><td>no</td><td>{@code true}</td><td>whether to register the statistics of each sender thread as a JMX MBean (see {@link SenderStatisticsMBean})</td></tr>
+ * <tr><td>{@code clisson.listener}</td><td>no</td><td></td><td>the full name of the class implementing {@link RecorderListener} to be notified about sent, failed and dropped events</td></tr>
  * </table>
  * <p>
- * The factory guarantees to create only a single instance of {@code Recorder} for the entire application.
+ * The factory guarantees to create only a single instance of {@code Recorder} for the entire application, so it is
+ * only flushed or closed through the factory, by {@link #flush(long)} and {@link #close(long)}, or by the shutdown
+ * hook. Once that instance has been closed, the next request creates a new one; the recorders returned before then,
+ * including those of components, record their events through the new instance as well.
+ * <p>
+ * Applications hosting several components can request a recorder for each of them, by component id, instead of the
+ * one configured in {@code clisson.componentId}. The recorders of all components share the buffers, sender threads
+ * and connections of that single instance. Once the instance has been created, recorders are returned without taking
+ * a lock, so they can be requested on every use.
  * 
  * @author mmakowski
  * @since 1.0.0
  */
 public final class RecorderFactory {
-    private static Recorder recorder;
+    private static volatile RecorderRegistry registry;
+    // a single hook closes whichever recorder is current when the JVM shuts down
+    private static Thread shutdownHook;
+    // negative if the current recorder should not be closed on shutdown
+    private static volatile long shutdownTimeoutMs = -1;
     
     /**
      * Constructs a {@link Recorder} using the config specified in properties file.
      * @return a {@link Recorder} built based on the config loaded from properties file
      * @since 1.0.0
      */
-    public static synchronized Recorder getRecorder() {
-        if (recorder == null) {
-            final Config config = Config.fromPropertiesFile();
-            return getRecorder(config);
-        } else {
-            return recorder;
-        }
+    public static Recorder getRecorder() {
+        final RecorderRegistry current = registry;
+        if (current != null && !current.isClosed()) return current.defaultRecorder();
+        return registry(null).defaultRecorder();
     }
     
     /**
@@ -53,26 +110,209 @@ public final class RecorderFactory {
      * @return a {@link Recorder} with properties taken from {@code config}
      * @since 1.0.0
      */
-    public static synchronized Recorder getRecorder(final Config config) {
-        if (recorder == null) {
-            recorder = recorder(config);
+    public static Recorder getRecorder(final Config config) {
+        final RecorderRegistry current = registry;
+        if (current != null && !current.isClosed()) return current.defaultRecorder();
+        return registry(config).defaultRecorder();
+    }
+    
+    /**
+     * Returns a {@link Recorder} that records events of the specified component, using the config specified in
+     * properties file.
+     * @param componentId the id of the component that will appear against the recorded events
+     * @return a {@link Recorder} of the component, sharing the resources of the recorders of other components
+     * @since 1.1.0
+     */
+    public static Recorder getRecorder(final String componentId) {
+        final RecorderRegistry current = registry;
+        if (current != null && !current.isClosed()) return current.recorderFor(componentId);
+        return registry(null).recorderFor(componentId);
+    }
+    
+    /**
+     * @param config the config to use when constructing the recorder, if it has not been constructed yet
+     * @param componentId the id of the component that will appear against the recorded events
+     * @return a {@link Recorder} of the component, sharing the resources of the recorders of other components
+     * @since 1.1.0
+     */
+    public static Recorder getRecorder(final Config config, final String componentId) {
+        final RecorderRegistry current = registry;
+        if (current != null && !current.isClosed()) return current.recorderFor(componentId);
+        return registry(config).recorderFor(componentId);
+    }
+    
+    /**
+     * Waits until all events recorded so far by the recorders of the application have been sent to the server (or
+     * failed to be sent), or until the timeout elapses.
+     * @param timeoutMs the maximum time to wait, in milliseconds
+     * @return the numbers of events sent, failed and not processed before the timeout
+     * @since 1.1.0
+     */
+    public static FlushResult flush(final long timeoutMs) {
+        final RecorderRegistry current = registry;
+        return current != null ? current.flush(timeoutMs) : new FlushResult(0, 0, 0);
+    }
+    
+    /**
+     * Closes the recorders of the application, sending the events recorded so far within the timeout. A recorder
+     * requested after the call is a new one, through which the recorders returned before the call record their events
+     * from then on.
+     * @param timeoutMs the maximum time to wait for recorded events to be sent, in milliseconds
+     * @return the numbers of events sent, failed and not processed before the timeout (and thus dropped)
+     * @since 1.1.0
+     */
+    public static synchronized FlushResult close(final long timeoutMs) {
+        return registry != null ? registry.close(timeoutMs) : new FlushResult(0, 0, 0);
+    }
+    
+    /**
+     * @param config the config to use, or {@code null} to load it from properties file
+     */
+    private static synchronized RecorderRegistry registry(final Config config) {
+        if (registry == null) {
+            registry = new RecorderRegistry(recorder(config != null ? config : Config.fromPropertiesFile()));
+        } else if (registry.isClosed()) {
+            registry.reopen(recorder(config != null ? config : Config.fromPropertiesFile()));
         }
-        return recorder;
+        return registry;
     }
 
-    private static Recorder recorder(Config config) {
-        final SimpleHttpInvoker invoker = new SimpleHttpInvoker(config.getHost(), config.getPort());
-        return new AsyncHttpRecorder(config.isRecordingEnabled(), 
-                                     config.getComponentId(), 
-                                     invoker, 
-                                     1000, 
-                                     new Clock());        
+    private static AsyncHttpRecorder recorder(final Config config) {
+        final WireFormat wireFormat = WireFormat.named(config.getWireFormat());
+        final AsyncHttpRecorder created = new AsyncHttpRecorder.Builder(config.getComponentId(), invoker(config, wireFormat))
+                .enabled(config.isRecordingEnabled())
+                .buffers(buffers(config))
+                .senderThreads(config.getSenderThreads())
+                .maxBatchSize(config.getMaxBatchSize())
+                .maxBatchLingerMs(config.getMaxBatchLingerMs())
+                .clock(new CachedClock())
+                .listener(listener(config.getListenerClassName()))
+                .retryPolicy(new RetryPolicy(config.getRetryMaxAttempts(), 
+                                             config.getRetryInitialBackoffMs(), 
+                                             config.getRetryMaxBackoffMs()))
+                .circuitBreaker(new CircuitBreaker(config.getCircuitBreakerFailureThreshold(), 
+                                                   config.getCircuitBreakerOpenMs()))
+                .overflowPolicy(overflowPolicy(config))
+                .sampler(new MessageSampler(config.getSamplingPercent()))
+                .rateLimiter(new RateLimiter(config.getRateLimitPerDescription(), config.getRateLimitBurst()))
+                .coalescer(new EventCoalescer(config.getCoalescingWindowMs()))
+                .wireFormat(wireFormat)
+                .sequenced(config.isSequenceEnabled())
+                .build();
+        if (config.isJmxEnabled()) created.registerMBeans();
+        closeOnShutdown(config.isShutdownHookEnabled() ? config.getShutdownTimeoutMs() : -1);
+        return created;
+    }
+    
+    private static HttpInvoker invoker(final Config config, final WireFormat wireFormat) {
+        final List<String> servers = config.getServers();
+        if (servers.size() == 1) return invoker(config, servers.get(0), wireFormat);
+        final List<HttpInvoker> invokers = new ArrayList<HttpInvoker>(servers.size());
+        for (final String server : servers) invokers.add(invoker(config, server, wireFormat));
+        final BalancingInvoker.Strategy strategy = BalancingInvoker.Strategy.named(config.getBalancing());
+        if (invokers.get(0) instanceof AsyncHttpInvoker) {
+            final List<AsyncHttpInvoker> asyncInvokers = new ArrayList<AsyncHttpInvoker>(invokers.size());
+            for (final HttpInvoker invoker : invokers) asyncInvokers.add((AsyncHttpInvoker) invoker);
+            return new BalancingInvoker.Async(servers, asyncInvokers, strategy, config.getHealthCheckIntervalMs());
+        } else {
+            return new BalancingInvoker(servers, invokers, strategy, config.getHealthCheckIntervalMs());
+        }
+    }
+    
+    private static HttpInvoker invoker(final Config config, final String server, final WireFormat wireFormat) {
+        final int colon = server.lastIndexOf(':');
+        final String host = server.substring(0, colon);
+        final int port = Integer.parseInt(server.substring(colon + 1));
+        final Transport transport = Transport.named(config.getTransport());
+        if (transport == Transport.TCP) {
+            return new TcpStreamInvoker(host, 
+                                        port,
+                                        config.getConnectTimeoutMs(),
+                                        config.getSocketTimeoutMs(),
+                                        config.getMaxUnacknowledged(),
+                                        Compression.named(config.getCompression()),
+                                        config.getCompressionMinSize(),
+                                        wireFormat);
+        } else if (transport == Transport.UDP) {
+            return new UdpDatagramInvoker(host, 
+                                          port,
+                                          Compression.named(config.getCompression()),
+                                          config.getCompressionMinSize(),
+                                          wireFormat);
+        } else if (config.isNonBlocking()) {
+            return new NioHttpInvoker(host, 
+                                      port,
+                                      config.getConnectTimeoutMs(),
+                                      config.getSocketTimeoutMs(),
+                                      config.getMaxConnections(),
+                                      config.getMaxInFlight(),
+                                      Compression.named(config.getCompression()),
+                                      config.getCompressionMinSize(),
+                                      wireFormat);
+        } else {
+            return new SimpleHttpInvoker(host, 
+                                         port,
+                                         config.getConnectTimeoutMs(),
+                                         config.getSocketTimeoutMs(),
+                                         config.getMaxConnections(),
+                                         Compression.named(config.getCompression()),
+                                         config.getCompressionMinSize(),
+                                         wireFormat);
+        }
+    }
+    
+    private static OverflowPolicy overflowPolicy(final Config config) {
+        // events that do not fit in a spilling buffer are dropped once the spill journal is full as well
+        final OverflowPolicy.Action action = "spill".equalsIgnoreCase(config.getBufferOverflow()) ? OverflowPolicy.Action.DROP 
+                                                                                                   : OverflowPolicy.Action.named(config.getBufferOverflow());
+        return new OverflowPolicy(action, 
+                                  config.getBufferBlockTimeoutMs(), 
+                                  config.getSheddingThresholdPercent(), 
+                                  config.getSheddingCheckpointKeepPercent(), 
+                                  config.getSheddingEventKeepPercent());
+    }
+    
+    private static RecorderListener listener(final String className) {
+        if (className == null) return null;
+        try {
+            final Class<?> listenerClass = Thread.currentThread().getContextClassLoader().loadClass(className);
+            return (RecorderListener) listenerClass.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("error creating an instance of " + className, e);
+        }
+    }
+    
+    /**
+     * @param timeoutMs the maximum time spent closing the current recorder when the JVM shuts down, or a negative
+     *                  number if it should not be closed
+     */
+    private static synchronized void closeOnShutdown(final long timeoutMs) {
+        shutdownTimeoutMs = timeoutMs;
+        if (timeoutMs < 0 || shutdownHook != null) return;
+        shutdownHook = new Thread(new Runnable() {
+            public void run() {
+                final long timeoutMs = shutdownTimeoutMs;
+                if (timeoutMs >= 0) close(timeoutMs);
+            }
+        }, "clisson-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+    
+    private static EventBuffer.Factory buffers(Config config) {
+        final EventBuffer.Factory memoryBuffers = config.isLockFreeBuffer() ? RingEventBuffer.factory(config.getBufferSize(), WaitStrategy.named(config.getBufferWaitStrategy()))
+                                                                            : BlockingEventBuffer.factory(config.getBufferSize());
+        final EventBuffer.Factory buffers = "spill".equalsIgnoreCase(config.getBufferOverflow()) 
+                                          ? SpillingEventBuffer.factory(memoryBuffers, new File(config.getSpillDirectory()), config.getSpillMaxSize(), config.getSpillSegmentSize())
+                                          : memoryBuffers;
+        // the journals are opened, and unsent events recovered from them, when the recorder creates its buffers
+        return config.getJournalDirectory() != null ? JournalingEventBuffer.factory(buffers, new File(config.getJournalDirectory()), config.getJournalSegmentSize(), config.getJournalCommitIntervalMs())
+                                                    : buffers;
     }
     
     /**
      * for resetting cached Recorders in tests
      */
     static synchronized void reset() {
-        recorder = null;
+        registry = null;
     }
 }
@@ -0,0 +1,29 @@
+package com.bimbr.clisson.client;
+
+/**
+ * The lifecycle of a {@link Recorder} that sends recorded events in the background. The recorders created by
+ * {@link RecorderFactory} are shared by the whole application, so they should be flushed and closed through the
+ * factory rather than by individual callers.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public interface RecorderLifecycle {
+    /**
+     * Waits until all events recorded before the call have been sent to the server (or failed to be sent), or until
+     * the timeout elapses. Events recorded in the meantime are not waited for.
+     * @param timeoutMs the maximum time to wait, in milliseconds
+     * @return the numbers of events sent, failed and not processed before the timeout
+     * @since 1.1.0
+     */
+    FlushResult flush(long timeoutMs);
+    
+    /**
+     * Stops accepting new events, sends the recorded ones within the timeout and releases the resources used by the 
+     * recorder. Events recorded after the call are dropped. Calling this method more than once has no effect.
+     * @param timeoutMs the maximum time to wait for recorded events to be sent, in milliseconds
+     * @return the numbers of events sent, failed and not processed before the timeout (and thus dropped)
+     * @since 1.1.0
+     */
+    FlushResult close(long timeoutMs);
+}
@@ -0,0 +1,40 @@
+package com.bimbr.clisson.client;
+
+/**
+ * Receives notifications about events passing through the recorder, e.g. to feed them into the application's own
+ * metrics or alerting. A listener can be configured with the {@code clisson.listener} property (see
+ * {@link RecorderFactory}); the class must have a public no-argument constructor.
+ * <p>
+ * The methods are called synchronously by the recording threads ({@link #eventDropped(int)}) and by the sender threads
+ * (the others), so they must be thread-safe and return quickly. Exceptions thrown by the listener are logged and
+ * otherwise ignored.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public interface RecorderListener {
+    /**
+     * Called when an event is dropped because the buffer of the sender is full or the recorder has been closed.
+     * @param senderIndex the index of the sender the event was routed to
+     * @since 1.1.0
+     */
+    void eventDropped(int senderIndex);
+
+    /**
+     * Called when a batch of events has been successfully sent to the server.
+     * @param senderIndex the index of the sender that sent the batch
+     * @param events the number of events in the batch
+     * @param requestTimeNs the duration of the request, in nanoseconds
+     * @since 1.1.0
+     */
+    void batchSent(int senderIndex, int events, long requestTimeNs);
+
+    /**
+     * Called when a batch of events could not be sent to the server.
+     * @param senderIndex the index of the sender that attempted to send the batch
+     * @param events the number of events in the batch
+     * @param cause the reason of the failure
+     * @since 1.1.0
+     */
+    void batchFailed(int senderIndex, int events, Exception cause);
+}
@@ -0,0 +1,151 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * The {@link Recorder}s of several components of an application, which share the buffers, sender threads and
+ * connections of a single {@link AsyncHttpRecorder} but record events with their own component ids. Each recorder is
+ * created on the first request for its component and returned, without taking a lock, on subsequent ones.
+ * <p>
+ * Once the shared recorder has been closed, it can be replaced with a new one; the recorders returned by the registry,
+ * including the default one, resolve the current shared recorder whenever they are used, so those returned before the
+ * replacement keep working.
+ * <p>
+ * It is safe to share an instance between several threads.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class RecorderRegistry {
+    private volatile AsyncHttpRecorder pipeline;
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<String, Recorder>();
+    private final Recorder defaultRecorder = new DefaultRecorder();
+
+    /**
+     * @param pipeline the recorder whose buffers, senders and connections are shared by the components
+     */
+    RecorderRegistry(final AsyncHttpRecorder pipeline) {
+        this.pipeline = nonNull(pipeline, "pipeline");
+    }
+
+    /**
+     * @return the recorder of the component id the shared recorder was configured with, which can also flush and
+     *         close the shared recorder
+     */
+    Recorder defaultRecorder() {
+        return defaultRecorder;
+    }
+
+    /**
+     * @param componentId the id of the component that will appear against the recorded events
+     * @return the recorder of the component
+     */
+    Recorder recorderFor(final String componentId) {
+        final Recorder existing = recorders.get(nonEmpty(componentId, "componentId"));
+        if (existing != null) return existing;
+        final Recorder created = new ComponentRecorder(componentId);
+        final Recorder raced = recorders.putIfAbsent(componentId, created);
+        return raced != null ? raced : created;
+    }
+
+    /**
+     * @see RecorderLifecycle#flush(long)
+     */
+    FlushResult flush(final long timeoutMs) {
+        return pipeline.flush(timeoutMs);
+    }
+
+    /**
+     * @see RecorderLifecycle#close(long)
+     */
+    FlushResult close(final long timeoutMs) {
+        return pipeline.close(timeoutMs);
+    }
+
+    /**
+     * Replaces the shared recorder, which must have been closed, with a new one, through which the recorders of
+     * components record their events from then on.
+     * @param pipeline the recorder whose buffers, senders and connections are shared by the components
+     */
+    void reopen(final AsyncHttpRecorder pipeline) {
+        if (!this.pipeline.isClosed()) throw new IllegalStateException("the shared recorder has not been closed");
+        this.pipeline = nonNull(pipeline, "pipeline");
+    }
+
+    /**
+     * @return whether the shared recorder has been closed
+     */
+    boolean isClosed() {
+        return pipeline.isClosed();
+    }
+
+    /**
+     * A {@link Recorder} that records events with the component id the current shared {@link AsyncHttpRecorder} was
+     * configured with, and flushes or closes it.
+     */
+    private final class DefaultRecorder implements Recorder, RecorderLifecycle {
+        public void checkpoint(final String messageId, final String description) {
+            pipeline.checkpoint(messageId, description);
+        }
+
+        public void event(final Set<String> inputMessageIds, final Set<String> outputMessageIds, final String description) {
+            pipeline.event(inputMessageIds, outputMessageIds, description);
+        }
+
+        public void event(final Event event) {
+            pipeline.event(event);
+        }
+
+        public FlushResult flush(final long timeoutMs) {
+            return pipeline.flush(timeoutMs);
+        }
+
+        public FlushResult close(final long timeoutMs) {
+            return pipeline.close(timeoutMs);
+        }
+
+        @Override
+        public String toString() {
+            return "default recorder";
+        }
+    }
+
+    /**
+     * A {@link Recorder} that records the events of a single component through the current shared
+     * {@link AsyncHttpRecorder}.
+     */
+    private final class ComponentRecorder implements Recorder {
+        private final String componentId;
+
+        ComponentRecorder(final String componentId) {
+            this.componentId = componentId;
+        }
+
+        public void checkpoint(final String messageId, final String description) {
+            pipeline.checkpoint(componentId, messageId, description);
+        }
+
+        public void event(final Set<String> inputMessageIds, final Set<String> outputMessageIds, final String description) {
+            pipeline.event(componentId, inputMessageIds, outputMessageIds, description);
+        }
+
+        /**
+         * Records the event as it is, with the source id it was constructed with.
+         */
+        public void event(final Event event) {
+            pipeline.event(event);
+        }
+
+        @Override
+        public String toString() {
+            return "recorder of " + componentId;
+        }
+    }
+}
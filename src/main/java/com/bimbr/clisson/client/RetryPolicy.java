@@ -0,0 +1,62 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.positive;
+
+import java.util.Random;
+
+/**
+ * Decides how many times a failed request is attempted and how long the sender waits between the attempts. The delay
+ * grows exponentially with every failed attempt, up to a maximum, and is randomised ("equal jitter": half of the delay
+ * is fixed and the other half random), so that senders that failed at the same time do not retry in lockstep.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class RetryPolicy {
+    /**
+     * Each request is attempted only once.
+     */
+    static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int  maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    /**
+     * @param maxAttempts the maximum number of attempts to send a batch, including the first one
+     * @param initialBackoffMs the delay before the second attempt, in milliseconds
+     * @param maxBackoffMs the maximum delay between two attempts, in milliseconds
+     */
+    RetryPolicy(final int maxAttempts, final long initialBackoffMs, final long maxBackoffMs) {
+        if (initialBackoffMs < 0) throw new IllegalArgumentException("initialBackoffMs must not be negative");
+        if (maxBackoffMs < initialBackoffMs) throw new IllegalArgumentException("maxBackoffMs must not be less than initialBackoffMs");
+        this.maxAttempts      = positive(maxAttempts, "maxAttempts");
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs     = maxBackoffMs;
+    }
+
+    /**
+     * @return the maximum number of attempts to send a batch, including the first one
+     */
+    int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param failedAttempts the number of attempts that have failed so far, at least 1
+     * @param random the source of jitter
+     * @return the time to wait before the next attempt, in milliseconds
+     */
+    long backoffMs(final int failedAttempts, final Random random) {
+        final int shift = Math.min(failedAttempts - 1, 62);
+        // compared before shifting, so that the delay does not overflow after many attempts
+        final long delay = initialBackoffMs > maxBackoffMs >>> shift ? maxBackoffMs : initialBackoffMs << shift;
+        final long half = delay / 2;
+        return delay - half + (long) (random.nextDouble() * (half + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "max attempts: " + maxAttempts + ", backoff: " + initialBackoffMs + "-" + maxBackoffMs + " ms";
+    }
+}
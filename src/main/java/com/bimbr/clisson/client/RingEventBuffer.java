@@ -0,0 +1,211 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static com.bimbr.clisson.util.Arguments.positive;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * A lock-free, multi-producer/single-consumer {@link EventBuffer} backed by a ring of preallocated slots. Producers
+ * claim a slot with a single CAS on the tail sequence and publish it by advancing the slot's own sequence number, so
+ * concurrent producers never block each other or the consumer. The consumer waits for events according to the
+ * configured {@link WaitStrategy}.
+ * <p>
+ * Checkpoints are recorded by copying their message id, description and timestamp into the claimed slot, so recording
+ * a checkpoint does not allocate any objects; the {@link Event} is only constructed by the consumer.
+ * <p>
+ * The capacity is rounded up to the nearest power of two.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class RingEventBuffer implements EventBuffer {
+    private final int             mask;
+    private final Slot[]          slots;
+    // slot i is free for the producer claiming position p when sequences[i] == p, and ready for the consumer reading
+    // position p when sequences[i] == p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong      tail = new AtomicLong();
+    private final WaitStrategy    waitStrategy;
+    // only written by the consumer; volatile so that size() can be called from other threads
+    private volatile long         head;
+
+    /**
+     * @param capacity the minimum number of events the buffer can hold
+     * @param waitStrategy the strategy used by the consumer when the buffer is empty
+     */
+    RingEventBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        final int size = powerOfTwoNotLessThan(positive(capacity, "capacity"));
+        this.mask         = size - 1;
+        this.slots        = new Slot[size];
+        this.sequences    = new AtomicLongArray(size);
+        this.waitStrategy = nonNull(waitStrategy, "waitStrategy");
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @param capacity the minimum capacity of each created buffer
+     * @param waitStrategy the strategy used by the consumer when the buffer is empty
+     * @return a factory of {@code RingEventBuffer}s
+     */
+    static EventBuffer.Factory factory(final int capacity, final WaitStrategy waitStrategy) {
+        positive(capacity, "capacity");
+        nonNull(waitStrategy, "waitStrategy");
+        return new EventBuffer.Factory() {
+            public EventBuffer newBuffer() {
+                return new RingEventBuffer(capacity, waitStrategy);
+            }
+        };
+    }
+
+    private static int powerOfTwoNotLessThan(final int n) {
+        if (n > (1 << 30)) throw new IllegalArgumentException("capacity must not exceed " + (1 << 30));
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    public boolean offer(final Event event) {
+        final long position = claim();
+        if (position < 0) return false;
+        final int index = (int) position & mask;
+        slots[index].event = event;
+        publish(index, position);
+        return true;
+    }
+
+    public boolean offerCheckpoint(final String sourceId, final String messageId, final String description, final long timestamp) {
+        final long position = claim();
+        if (position < 0) return false;
+        final int index = (int) position & mask;
+        final Slot slot = slots[index];
+        slot.sourceId    = sourceId;
+        slot.messageId   = messageId;
+        slot.description = description;
+        slot.timestamp   = timestamp;
+        publish(index, position);
+        return true;
+    }
+
+    /**
+     * @return the claimed position or -1 if the buffer is full
+     */
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            final long available = sequences.get((int) position & mask) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) return position;
+                position = tail.get();
+            } else if (available < 0) {
+                // the consumer has not freed this slot yet
+                return -1;
+            } else {
+                // another producer claimed this position in the meantime
+                position = tail.get();
+            }
+        }
+    }
+
+    private void publish(final int index, final long position) {
+        // lazySet is a release store: the slot contents written above are visible to the consumer before the sequence
+        sequences.lazySet(index, position + 1);
+    }
+
+    public Event take() throws InterruptedException {
+        while (true) {
+            final Event event = poll();
+            if (event != null) return event;
+            if (Thread.interrupted()) throw new InterruptedException();
+            waitStrategy.idle();
+        }
+    }
+
+    public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            final Event event = poll();
+            if (event != null) return event;
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (deadline - System.nanoTime() <= 0) return null;
+            waitStrategy.idle();
+        }
+    }
+
+    private Event poll() {
+        final long position = head;
+        final int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+        final Event event = slots[index].takeEvent();
+        head = position + 1;
+        // free the slot for the producer that will wrap around to it
+        sequences.lazySet(index, position + slots.length);
+        return event;
+    }
+
+    public int drainTo(final List<Event> sink, final int maxEvents) {
+        int drained = 0;
+        while (drained < maxEvents) {
+            final Event event = poll();
+            if (event == null) break;
+            sink.add(event);
+            drained++;
+        }
+        return drained;
+    }
+
+    public void acknowledge() {
+        // events are not kept after they have been taken
+    }
+
+    public void close() {
+        // nothing to release
+    }
+
+    public int size() {
+        final long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    public int memorySize() {
+        return size();
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Holds either a preconstructed event or the fields of a checkpoint.
+     */
+    private static final class Slot {
+        Event  event;
+        String sourceId;
+        String messageId;
+        String description;
+        long   timestamp;
+        
+        Event takeEvent() {
+            final Event result = event != null ? event : checkpoint();
+            event       = null;
+            sourceId    = null;
+            messageId   = null;
+            description = null;
+            return result;
+        }
+
+        private Event checkpoint() {
+            final Set<String> messageIds = Collections.singleton(messageId);
+            return new Event(sourceId, new Date(timestamp), messageIds, messageIds, description);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.bimbr.clisson.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of a single sender thread of {@link AsyncHttpRecorder}. The counters are updated by the sender thread
+ * (and, in case of accepted and dropped events, by the recording threads) and can be read from any thread.
+ * <p>
+ * The high-water mark of the queue is sampled by the sender thread whenever it takes a batch out of the buffer, so that
+ * the recording threads do not pay for it; it may therefore miss short peaks between batches. Accepted events are
+ * counted on every record call, so that counter is striped to spare the recording threads contention on it.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class SenderStatistics implements SenderStatisticsMBean {
+    private final int           senderIndex;
+    private final EventBuffer   buffer;
+    private final StripedCounter eventsAccepted;
+    private final AtomicLong    eventsDropped = new AtomicLong();
+    private final AtomicLong    eventsEvicted = new AtomicLong();
+    private final AtomicLong    eventsShed    = new AtomicLong();
+    private final AtomicLong    eventsRateLimited = new AtomicLong();
+    private volatile long       eventsSent;
+    private volatile long       eventsFailed;
+    private volatile long       requestsSent;
+    private volatile long       requestsFailed;
+    private volatile long       requestsRetried;
+    private volatile long       totalRequestTimeNs;
+    private volatile int        queueHighWaterMark;
+    private final LatencyHistogram requestTimes = new LatencyHistogram();
+
+    SenderStatistics(final int senderIndex, final EventBuffer buffer) {
+        this.senderIndex    = senderIndex;
+        this.buffer         = buffer;
+        // a buffer backed by files may already hold events recorded by a previous instance
+        this.eventsAccepted = new StripedCounter(buffer.size());
+    }
+
+    // the methods below are only called from the sender thread, so non-atomic increments of volatiles are safe
+
+    void batchSent(final int size, final long requestTimeNs) {
+        eventsSent += size;
+        requestsSent++;
+        totalRequestTimeNs += requestTimeNs;
+        requestTimes.record(requestTimeNs);
+    }
+
+    void batchFailed(final int size) {
+        eventsFailed += size;
+        requestsFailed++;
+    }
+
+    void requestRetried() {
+        requestsRetried++;
+    }
+
+    void queueDepthObserved(final int depth) {
+        if (depth > queueHighWaterMark) queueHighWaterMark = depth;
+    }
+
+    void eventAccepted() {
+        eventsAccepted.increment();
+    }
+
+    void eventDropped() {
+        eventsDropped.incrementAndGet();
+    }
+
+    void eventEvicted() {
+        eventsEvicted.incrementAndGet();
+        eventsDropped.incrementAndGet();
+    }
+
+    void eventShed() {
+        eventsShed.incrementAndGet();
+        eventsDropped.incrementAndGet();
+    }
+
+    void eventRateLimited() {
+        eventsRateLimited.incrementAndGet();
+    }
+
+    /**
+     * @return the index of the sender these statistics describe
+     */
+    public int getSenderIndex() {
+        return senderIndex;
+    }
+
+    /**
+     * @return the number of events waiting in the buffer of the sender
+     */
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    /**
+     * @return the maximum number of events waiting in the buffer of the sender observed so far
+     */
+    public int getQueueHighWaterMark() {
+        return queueHighWaterMark;
+    }
+
+    /**
+     * @return the capacity of the buffer of the sender
+     */
+    public int getQueueCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return the number of events accepted into the buffer of the sender
+     */
+    public long getEventsAccepted() {
+        return eventsAccepted.get();
+    }
+
+    /**
+     * @return the number of events successfully sent to the server
+     */
+    public long getEventsSent() {
+        return eventsSent;
+    }
+
+    /**
+     * @return the number of events that could not be sent to the server
+     */
+    public long getEventsFailed() {
+        return eventsFailed;
+    }
+
+    /**
+     * @return the number of events dropped because the buffer of the sender was full or the recorder was closed,
+     *         including the evicted and shed events
+     */
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    /**
+     * @return the number of events dropped from the buffer of the sender to make space for newer ones
+     */
+    public long getEventsEvicted() {
+        return eventsEvicted.get();
+    }
+
+    /**
+     * @return the number of events deliberately dropped by load shedding before the buffer of the sender was full
+     */
+    public long getEventsShed() {
+        return eventsShed.get();
+    }
+
+    /**
+     * @return the number of events not recorded because the rate limit of their description was exceeded
+     */
+    public long getEventsRateLimited() {
+        return eventsRateLimited.get();
+    }
+
+    /**
+     * @return the number of successful requests to the server
+     */
+    public long getRequestsSent() {
+        return requestsSent;
+    }
+
+    /**
+     * @return the number of failed requests to the server whose events were not retried any more
+     */
+    public long getRequestsFailed() {
+        return requestsFailed;
+    }
+
+    /**
+     * @return the number of failed requests to the server whose events were retried
+     */
+    public long getRequestsRetried() {
+        return requestsRetried;
+    }
+
+    /**
+     * @return the average duration of a successful request, in milliseconds
+     */
+    public double getAverageRequestTimeMs() {
+        final long requests = requestsSent;
+        return requests == 0 ? 0 : totalRequestTimeNs / 1e6 / requests;
+    }
+
+    /**
+     * @return the approximate median duration of a successful request, in milliseconds
+     */
+    public long getMedianRequestTimeMs() {
+        return requestTimes.percentileMs(50);
+    }
+
+    /**
+     * @return the approximate 99th percentile of durations of successful requests, in milliseconds
+     */
+    public long get99thPercentileRequestTimeMs() {
+        return requestTimes.percentileMs(99);
+    }
+
+    /**
+     * @return the upper bounds, in milliseconds, of the buckets of {@link #getRequestTimeHistogram()}
+     */
+    public long[] getRequestTimeHistogramBoundsMs() {
+        return LatencyHistogram.bucketBoundsMs();
+    }
+
+    /**
+     * @return the number of successful requests in each bucket of request durations
+     */
+    public long[] getRequestTimeHistogram() {
+        return requestTimes.counts();
+    }
+
+    @Override
+    public String toString() {
+        return "sender " + senderIndex + ": queued " + getQueueSize() + " (max " + queueHighWaterMark + "), sent " + eventsSent + 
+               " in " + requestsSent + " requests, failed " + eventsFailed + " in " + requestsFailed + " requests, retried " + 
+               requestsRetried + " requests, dropped " + 
+               getEventsDropped();
+    }
+}
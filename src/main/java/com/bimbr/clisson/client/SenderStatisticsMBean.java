@@ -0,0 +1,108 @@
+package com.bimbr.clisson.client;
+
+/**
+ * The JMX management interface of statistics of a single sender thread of the recorder. The recorder created by
+ * {@link RecorderFactory} registers one MBean per sender thread, named
+ * {@code com.bimbr.clisson:type=Sender,component=<component id>,index=<sender index>}.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public interface SenderStatisticsMBean {
+    /**
+     * @return the index of the sender these statistics describe
+     */
+    int getSenderIndex();
+
+    /**
+     * @return the number of events waiting in the buffer of the sender
+     */
+    int getQueueSize();
+
+    /**
+     * @return the maximum number of events waiting in the buffer of the sender observed so far
+     */
+    int getQueueHighWaterMark();
+
+    /**
+     * @return the capacity of the buffer of the sender
+     */
+    int getQueueCapacity();
+
+    /**
+     * @return the number of events accepted into the buffer of the sender
+     */
+    long getEventsAccepted();
+
+    /**
+     * @return the number of events successfully sent to the server
+     */
+    long getEventsSent();
+
+    /**
+     * @return the number of events that could not be sent to the server
+     */
+    long getEventsFailed();
+
+    /**
+     * @return the number of events dropped because the buffer of the sender was full or the recorder was closed,
+     *         including the evicted and shed events
+     */
+    long getEventsDropped();
+
+    /**
+     * @return the number of events dropped from the buffer of the sender to make space for newer ones
+     */
+    long getEventsEvicted();
+
+    /**
+     * @return the number of events deliberately dropped by load shedding before the buffer of the sender was full
+     */
+    long getEventsShed();
+
+    /**
+     * @return the number of events not recorded because the rate limit of their description was exceeded
+     */
+    long getEventsRateLimited();
+
+    /**
+     * @return the number of successful requests to the server
+     */
+    long getRequestsSent();
+
+    /**
+     * @return the number of failed requests to the server whose events were not retried any more
+     */
+    long getRequestsFailed();
+
+    /**
+     * @return the number of failed requests to the server whose events were retried
+     */
+    long getRequestsRetried();
+
+    /**
+     * @return the average duration of a successful request, in milliseconds
+     */
+    double getAverageRequestTimeMs();
+
+    /**
+     * @return the approximate median duration of a successful request, in milliseconds
+     */
+    long getMedianRequestTimeMs();
+
+    /**
+     * @return the approximate 99th percentile of durations of successful requests, in milliseconds
+     */
+    long get99thPercentileRequestTimeMs();
+
+    /**
+     * @return the upper bounds, in milliseconds, of the buckets of {@link #getRequestTimeHistogram()}
+     */
+    long[] getRequestTimeHistogramBoundsMs();
+
+    /**
+     * @return the number of successful requests in each bucket of request durations; the last bucket holds the
+     *         requests that took longer than the last bound
+     */
+    long[] getRequestTimeHistogram();
+}
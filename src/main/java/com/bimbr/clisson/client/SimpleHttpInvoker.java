@@ -1,11 +1,18 @@
 package com.bimbr.clisson.client;
 
 import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
 import static com.bimbr.clisson.util.Arguments.positive;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -13,41 +20,164 @@ import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
 import org.apache.http.util.EntityUtils;
 
 /**
- * A no-frills implementation of {@link HttpInvoker}.
+ * A no-frills implementation of {@link HttpInvoker}. Requests are sent over a pool of persistent (keep-alive) 
+ * connections, so it is safe to share a single instance between several threads.
+ * <p>
+ * Optionally, request bodies of at least a given size are compressed and sent with a corresponding
+ * {@code Content-Encoding} header. Request bodies posted as byte arrays are sent with the {@code Content-Type} of the
+ * configured {@link WireFormat}; {@code String} bodies are always sent as plain text.
  *  
  * @author mmakowski
  * @since 1.0.0
  */
 class SimpleHttpInvoker implements HttpInvoker {
-    private final String serverHost;
-    private final int    serverPort;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_SOCKET_TIMEOUT_MS  = 10000;
+    private static final int DEFAULT_MAX_CONNECTIONS    = 2;
+    
+    private final String      serverHost;
+    private final int         serverPort;
+    private final Compression compression;
+    private final int         minCompressedLength;
+    private final String      contentType;
+    private final ThreadLocal<Compression.Compressor> compressors;
+    private final ConcurrentMap<String, URI> resolvedUris = new ConcurrentHashMap<String, URI>();
 
     // according to old 3.x HttpClient docs, it's better for performance if a single instance of client is shared between 
     // requests
-    private final HttpClient client = new DefaultHttpClient();
+    private final HttpClient client;
     
     /**
      * @param serverHost the host name of Clisson server, not including protocol and port, e.g.
      *                   {@code www.example.com} 
      * @param serverPort the port on which Clisson server is listening
-     * @param sourceId the id of the component that is the source of events
      */
     public SimpleHttpInvoker(final String serverHost,
-                       final int    serverPort) {
-        this.serverHost = nonEmpty(serverHost, "serverHost");
-        this.serverPort = positive(serverPort, "serverPort");
+                             final int    serverPort) {
+        this(serverHost, serverPort, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_SOCKET_TIMEOUT_MS, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param serverHost the host name of Clisson server, not including protocol and port, e.g.
+     *                   {@code www.example.com} 
+     * @param serverPort the port on which Clisson server is listening
+     * @param connectTimeoutMs the maximum time to wait for a connection to the server to be established
+     * @param socketTimeoutMs the maximum time to wait for data from the server
+     * @param maxConnections the maximum number of persistent connections to the server kept in the pool
+     */
+    public SimpleHttpInvoker(final String serverHost,
+                             final int    serverPort,
+                             final int    connectTimeoutMs,
+                             final int    socketTimeoutMs,
+                             final int    maxConnections) {
+        this(serverHost, serverPort, connectTimeoutMs, socketTimeoutMs, maxConnections, Compression.NONE, 0);
+    }
+
+    /**
+     * @param serverHost the host name of Clisson server, not including protocol and port, e.g.
+     *                   {@code www.example.com} 
+     * @param serverPort the port on which Clisson server is listening
+     * @param connectTimeoutMs the maximum time to wait for a connection to the server to be established
+     * @param socketTimeoutMs the maximum time to wait for data from the server
+     * @param maxConnections the maximum number of persistent connections to the server kept in the pool
+     * @param compression the compression applied to request bodies
+     * @param minCompressedLength the minimum length, in bytes, of request bodies that will be compressed
+     */
+    public SimpleHttpInvoker(final String      serverHost,
+                             final int         serverPort,
+                             final int         connectTimeoutMs,
+                             final int         socketTimeoutMs,
+                             final int         maxConnections,
+                             final Compression compression,
+                             final int         minCompressedLength) {
+        this(serverHost, serverPort, connectTimeoutMs, socketTimeoutMs, maxConnections, compression, minCompressedLength, WireFormat.JSON);
+    }
+
+    /**
+     * @param serverHost the host name of Clisson server, not including protocol and port, e.g.
+     *                   {@code www.example.com} 
+     * @param serverPort the port on which Clisson server is listening
+     * @param connectTimeoutMs the maximum time to wait for a connection to the server to be established
+     * @param socketTimeoutMs the maximum time to wait for data from the server
+     * @param maxConnections the maximum number of persistent connections to the server kept in the pool
+     * @param compression the compression applied to request bodies
+     * @param minCompressedLength the minimum length, in bytes, of request bodies that will be compressed
+     * @param wireFormat the format of request bodies posted as byte arrays, which determines their content type
+     */
+    public SimpleHttpInvoker(final String      serverHost,
+                             final int         serverPort,
+                             final int         connectTimeoutMs,
+                             final int         socketTimeoutMs,
+                             final int         maxConnections,
+                             final Compression compression,
+                             final int         minCompressedLength,
+                             final WireFormat  wireFormat) {
+        if (minCompressedLength < 0) throw new IllegalArgumentException("minCompressedLength must not be negative");
+        this.serverHost          = nonEmpty(serverHost, "serverHost");
+        this.serverPort          = positive(serverPort, "serverPort");
+        this.compression         = nonNull(compression, "compression");
+        this.minCompressedLength = minCompressedLength;
+        this.contentType         = nonNull(wireFormat, "wireFormat").contentType();
+        this.compressors         = compression == Compression.NONE ? null : new ThreadLocal<Compression.Compressor>() {
+            @Override
+            protected Compression.Compressor initialValue() {
+                return compression.newCompressor();
+            }
+        };
+        this.client              = pooledClient(positive(connectTimeoutMs, "connectTimeoutMs"), 
+                                                positive(socketTimeoutMs, "socketTimeoutMs"), 
+                                                positive(maxConnections, "maxConnections"));
+    }
+    
+    private static HttpClient pooledClient(final int connectTimeoutMs, final int socketTimeoutMs, final int maxConnections) {
+        final ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        final HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeoutMs);
+        HttpConnectionParams.setSoTimeout(params, socketTimeoutMs);
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        // pooled connections may have been closed by the server while idle
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        return new DefaultHttpClient(connectionManager, params);
     }
 
     public void post(String uri, String content) {
+        try {
+            if (compression == Compression.NONE) {
+                post(uri, entityFor(content));
+            } else {
+                final byte[] bytes = content.getBytes("UTF-8");
+                post(uri, entityFor(bytes, bytes.length, WireFormat.JSON.contentType()));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("error when posting to " + url(uri), e);
+        }
+    }
+
+    public void post(String uri, byte[] content, int length) {
+        post(uri, entityFor(content, length, contentType));
+    }
+
+    public void close() {
+        client.getConnectionManager().shutdown();
+    }
+
+    private void post(String uri, HttpEntity entity) {
         HttpPost request;
         try {
             request = post(uri);
-            request.setEntity(entityFor(content));
+            request.setEntity(entity);
             sendRequest(request);
         } catch (URISyntaxException e) {
             throw new RuntimeException("invalid URI: " + uri, e);
@@ -74,8 +204,64 @@ class SimpleHttpInvoker implements HttpInvoker {
         return new StringEntity(content, "UTF-8");
     }
 
+    private HttpEntity entityFor(byte[] content, int length, String contentType) {
+        final ByteArrayRangeEntity entity;
+        if (compression != Compression.NONE && length >= minCompressedLength) {
+            final PayloadBuffer compressed = compressors.get().compress(content, length);
+            entity = new ByteArrayRangeEntity(compressed.array(), compressed.size());
+            entity.setContentEncoding(compression.contentEncoding());
+        } else {
+            entity = new ByteArrayRangeEntity(content, length);
+        }
+        entity.setContentType(contentType);
+        return entity;
+    }
+
     private HttpPost post(String path) throws URISyntaxException {
-        return new HttpPost(URIUtils.createURI("http", serverHost, serverPort, path, "", null));
+        return new HttpPost(resolved(path));
     }
 
+    private URI resolved(String path) throws URISyntaxException {
+        URI uri = resolvedUris.get(path);
+        if (uri == null) {
+            uri = URIUtils.createURI("http", serverHost, serverPort, path, "", null);
+            resolvedUris.putIfAbsent(path, uri);
+        }
+        return uri;
+    }
+
+    /**
+     * An entity made of the first {@code length} bytes of an array, which (unlike {@code ByteArrayEntity}) does not
+     * require the array to be trimmed to size.
+     */
+    private static final class ByteArrayRangeEntity extends AbstractHttpEntity {
+        private final byte[] content;
+        private final int    length;
+
+        ByteArrayRangeEntity(final byte[] content, final int length) {
+            this.content = content;
+            this.length  = length;
+        }
+
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        public long getContentLength() {
+            return length;
+        }
+
+        public InputStream getContent() {
+            return new ByteArrayInputStream(content, 0, length);
+        }
+
+        public void writeTo(final OutputStream out) throws IOException {
+            out.write(content, 0, length);
+            out.flush();
+        }
+
+        public boolean isStreaming() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,276 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bimbr.clisson.protocol.Event;
+import com.bimbr.clisson.protocol.Json;
+
+/**
+ * An on-disk FIFO of events made of fixed-size, memory-mapped segment files. Events are appended to the newest segment
+ * and read from the oldest one; a new segment is created when the newest one is full and a segment is deleted once all
+ * its events have been read and acknowledged. The total size of segments is capped: when the cap is reached, further
+ * events are rejected.
+ * <p>
+ * Each segment starts with the offset of the first unacknowledged record, followed by records made of the length of
+ * UTF-8 JSON representation of an event and the JSON itself. The length is written after the JSON, so a record is never
+ * read before it is complete. The offset is only advanced by {@link #acknowledge()}, once the events read so far have
+ * been sent. Segments left over by a previous instance are read on construction, so events spilled before the JVM was
+ * stopped are not lost, although events that were read but not acknowledged may be sent twice.
+ * <p>
+ * The methods are thread-safe; {@link #isEmpty()} and {@link #size()} do not take a lock.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class SpillJournal {
+    private static final Logger log = LoggerFactory.getLogger(SpillJournal.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spill";
+    private static final int    HEADER_SIZE    = 4;
+    private static final int    LENGTH_SIZE    = 4;
+
+    private final File              directory;
+    private final int               segmentSize;
+    private final int               maxSegments;
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    // segments whose events have all been read, deleted once they are acknowledged
+    private final List<Segment>     readSegments = new ArrayList<Segment>();
+    private final JsonEventEncoder  encoder = new JsonEventEncoder();
+    private final AtomicInteger     size = new AtomicInteger();
+    private long                    nextSegmentNumber;
+    private boolean                 closed;
+
+    /**
+     * @param directory the directory holding segment files; created if it does not exist
+     * @param maxSize the maximum total size of segment files, in bytes
+     * @param segmentSize the size of a single segment file, in bytes
+     * @throws IOException if the directory can not be created or existing segments can not be read
+     */
+    SpillJournal(final File directory, final long maxSize, final int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE + LENGTH_SIZE) throw new IllegalArgumentException("segmentSize must be greater than " + (HEADER_SIZE + LENGTH_SIZE));
+        if (maxSize < segmentSize) throw new IllegalArgumentException("maxSize must not be less than segmentSize");
+        this.directory   = nonNull(directory, "directory");
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("unable to create spill directory " + directory);
+        recoverSegments();
+    }
+
+    private void recoverSegments() throws IOException {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(final File f1, final File f2) {
+                final long n1 = segmentNumber(f1);
+                final long n2 = segmentNumber(f2);
+                return n1 < n2 ? -1 : (n1 == n2 ? 0 : 1);
+            }
+        });
+        for (final File file : files) {
+            final Segment segment = new Segment(file, segmentNumber(file), false);
+            segments.add(segment);
+            size.addAndGet(segment.recover());
+            nextSegmentNumber = segment.number + 1;
+        }
+        if (size.get() > 0) log.info("recovered " + size.get() + " spilled events from " + directory);
+    }
+
+    private static long segmentNumber(final File file) {
+        final String name = file.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @param event the event to append
+     * @return {@code true} if the event was appended, {@code false} if the journal is full
+     * @throws IOException if a new segment file could not be created
+     */
+    synchronized boolean append(final Event event) throws IOException {
+        if (closed) return false;
+        final PayloadBuffer json = encoder.encode(event);
+        final int recordSize = LENGTH_SIZE + json.size();
+        if (recordSize > segmentSize - HEADER_SIZE) return false;
+        Segment segment = segments.peekLast();
+        if (segment == null || !segment.canFit(recordSize)) {
+            if (segments.size() + readSegments.size() >= maxSegments) return false;
+            segment = new Segment(new File(directory, SEGMENT_PREFIX + nextSegmentNumber + SEGMENT_SUFFIX), nextSegmentNumber, true);
+            nextSegmentNumber++;
+            segments.add(segment);
+        }
+        segment.write(json);
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the oldest events from the journal and adds them to {@code sink}. They are read again by the next
+     * instance unless they are acknowledged.
+     * @param sink the list to add the events to
+     * @param maxEvents the maximum number of events to remove
+     * @return the number of events removed
+     */
+    synchronized int read(final List<Event> sink, final int maxEvents) {
+        int read = 0;
+        while (read < maxEvents && !closed && !segments.isEmpty()) {
+            final Segment segment = segments.getFirst();
+            final Event event = segment.read();
+            if (event != null) {
+                sink.add(event);
+                size.decrementAndGet();
+                read++;
+            } else if (segments.size() > 1) {
+                // the writer has moved on to a newer segment, so this one will not receive any more events
+                readSegments.add(segments.removeFirst());
+            } else {
+                break;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Records that all events read so far have been sent, so that they are not read by the next instance, and deletes
+     * the segments that hold no other events.
+     */
+    synchronized void acknowledge() {
+        if (closed) return;
+        for (final Segment segment : readSegments) segment.delete();
+        readSegments.clear();
+        final Segment current = segments.peekFirst();
+        if (current != null) current.acknowledge();
+    }
+
+    /**
+     * Releases the segments; events that have not been acknowledged are left in the segment files for the next
+     * instance. The journal neither accepts nor returns events once it has been closed.
+     */
+    synchronized void close() {
+        closed = true;
+        // the files are unmapped once the segments have been garbage collected
+        segments.clear();
+        readSegments.clear();
+    }
+
+    /**
+     * @return {@code true} if there are no events in the journal
+     */
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * @return the number of events in the journal
+     */
+    int size() {
+        return size.get();
+    }
+
+    private final class Segment {
+        private final File             file;
+        private final long             number;
+        private final MappedByteBuffer map;
+        private int                    readOffset;
+        private int                    acknowledgedOffset;
+        private int                    writeOffset;
+
+        Segment(final File file, final long number, final boolean isNew) throws IOException {
+            this.file   = file;
+            this.number = number;
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                final FileChannel channel = raf.getChannel();
+                // the mapping stays valid after the channel is closed
+                this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } finally {
+                raf.close();
+            }
+            if (isNew) {
+                readOffset = acknowledgedOffset = writeOffset = HEADER_SIZE;
+                map.putInt(0, acknowledgedOffset);
+            }
+        }
+
+        /**
+         * @return the number of unread records in the segment
+         */
+        int recover() {
+            readOffset = map.getInt(0);
+            if (readOffset < HEADER_SIZE || readOffset > segmentSize) readOffset = HEADER_SIZE;
+            acknowledgedOffset = readOffset;
+            int records = 0;
+            int offset = readOffset;
+            int length;
+            while ((length = recordLengthAt(offset)) > 0) {
+                offset += LENGTH_SIZE + length;
+                records++;
+            }
+            writeOffset = offset;
+            return records;
+        }
+
+        private int recordLengthAt(final int offset) {
+            if (offset + LENGTH_SIZE > segmentSize) return 0;
+            final int length = map.getInt(offset);
+            return length > 0 && offset + LENGTH_SIZE + length <= segmentSize ? length : 0;
+        }
+
+        boolean canFit(final int recordSize) {
+            return writeOffset + recordSize <= segmentSize;
+        }
+
+        void write(final PayloadBuffer json) {
+            map.position(writeOffset + LENGTH_SIZE);
+            map.put(json.array(), 0, json.size());
+            map.putInt(writeOffset, json.size());
+            writeOffset += LENGTH_SIZE + json.size();
+        }
+
+        Event read() {
+            final int length = readOffset < writeOffset ? recordLengthAt(readOffset) : 0;
+            if (length == 0) return null;
+            final byte[] json = new byte[length];
+            map.position(readOffset + LENGTH_SIZE);
+            map.get(json);
+            readOffset += LENGTH_SIZE + length;
+            return Json.fromJson(utf8(json), Event.class);
+        }
+
+        void acknowledge() {
+            if (acknowledgedOffset == readOffset) return;
+            map.putInt(0, readOffset);
+            acknowledgedOffset = readOffset;
+        }
+
+        void delete() {
+            if (!file.delete()) log.warn("unable to delete spill segment " + file);
+        }
+    }
+
+    private static String utf8(final byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+}
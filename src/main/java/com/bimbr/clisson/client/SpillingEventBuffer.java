@@ -0,0 +1,147 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * An {@link EventBuffer} that, when its in-memory buffer is full, appends events to a {@link SpillJournal} on disk
+ * instead of rejecting them. Once any events have been spilled, subsequent events are also appended to the journal
+ * until it has been emptied, so that events are taken out of the buffer in the order in which they were offered.
+ * Events are only rejected when both the in-memory buffer and the journal are full.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class SpillingEventBuffer implements EventBuffer {
+    private static final Logger log = LoggerFactory.getLogger(SpillingEventBuffer.class);
+    // how often a consumer waiting for in-memory events checks whether any have been spilled
+    private static final long JOURNAL_CHECK_INTERVAL_NS = MILLISECONDS.toNanos(50);
+
+    private final EventBuffer  memory;
+    private final SpillJournal journal;
+    // only used by the consumer
+    private final List<Event>  spilled = new ArrayList<Event>(1);
+    private volatile long      lastLogMessageTime;
+
+    /**
+     * @param memory the in-memory buffer
+     * @param journal the journal to which events are spilled when the in-memory buffer is full
+     */
+    SpillingEventBuffer(final EventBuffer memory, final SpillJournal journal) {
+        this.memory  = nonNull(memory, "memory");
+        this.journal = nonNull(journal, "journal");
+    }
+
+    /**
+     * @param memoryBuffers the factory of in-memory buffers
+     * @param directory the directory in which the journal of each buffer will have its own subdirectory
+     * @param maxSize the maximum size of the journal of each buffer, in bytes
+     * @param segmentSize the size of a single journal segment file, in bytes
+     * @return a factory of {@code SpillingEventBuffer}s
+     */
+    static EventBuffer.Factory factory(final EventBuffer.Factory memoryBuffers, final File directory, final long maxSize, final int segmentSize) {
+        nonNull(memoryBuffers, "memoryBuffers");
+        nonNull(directory, "directory");
+        return new EventBuffer.Factory() {
+            private final AtomicInteger buffersCreated = new AtomicInteger();
+
+            public EventBuffer newBuffer() {
+                final File journalDirectory = new File(directory, "buffer-" + buffersCreated.getAndIncrement());
+                try {
+                    return new SpillingEventBuffer(memoryBuffers.newBuffer(), new SpillJournal(journalDirectory, maxSize, segmentSize));
+                } catch (IOException e) {
+                    throw new IllegalStateException("unable to open spill journal in " + journalDirectory, e);
+                }
+            }
+        };
+    }
+
+    public boolean offer(final Event event) {
+        if (journal.isEmpty() && memory.offer(event)) return true;
+        return spill(event);
+    }
+
+    public boolean offerCheckpoint(final String sourceId, final String messageId, final String description, final long timestamp) {
+        if (journal.isEmpty() && memory.offerCheckpoint(sourceId, messageId, description, timestamp)) return true;
+        final Set<String> messageIds = Collections.singleton(messageId);
+        return spill(new Event(sourceId, new Date(timestamp), messageIds, messageIds, description));
+    }
+
+    private boolean spill(final Event event) {
+        try {
+            return journal.append(event);
+        } catch (IOException e) {
+            if (System.currentTimeMillis() - lastLogMessageTime > AsyncHttpRecorder.DEFAULT_LOGGER_GAG_PERIOD_MS) {
+                log.warn("unable to spill events to disk, dropping them. Events will be missing!", e);
+                lastLogMessageTime = System.currentTimeMillis();
+            }
+            return false;
+        }
+    }
+
+    public Event take() throws InterruptedException {
+        while (true) {
+            final Event event = poll(JOURNAL_CHECK_INTERVAL_NS, NANOSECONDS);
+            if (event != null) return event;
+        }
+    }
+
+    public Event poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            // events in memory are always older than the spilled ones
+            final Event inMemory = memory.poll(0, NANOSECONDS);
+            if (inMemory != null) return inMemory;
+            spilled.clear();
+            if (journal.read(spilled, 1) > 0) return spilled.get(0);
+            final long remainingNs = deadline - System.nanoTime();
+            if (remainingNs <= 0) return null;
+            final Event next = memory.poll(Math.min(remainingNs, JOURNAL_CHECK_INTERVAL_NS), NANOSECONDS);
+            if (next != null) return next;
+        }
+    }
+
+    public int drainTo(final List<Event> sink, final int maxEvents) {
+        final int fromMemory = memory.drainTo(sink, maxEvents);
+        return fromMemory + journal.read(sink, maxEvents - fromMemory);
+    }
+
+    public void acknowledge() {
+        memory.acknowledge();
+        journal.acknowledge();
+    }
+
+    public void close() {
+        // the spill journal files are kept, so that their events are sent by the next instance
+        memory.close();
+        journal.close();
+    }
+
+    public int size() {
+        return memory.size() + journal.size();
+    }
+
+    public int memorySize() {
+        return memory.memorySize();
+    }
+
+    public int capacity() {
+        return memory.capacity();
+    }
+}
@@ -0,0 +1,44 @@
+package com.bimbr.clisson.client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter incremented by many threads and read rarely. Each thread increments one of several stripes, chosen by its
+ * id and padded to separate cache lines, so that the recording threads do not contend on a single counter; the value
+ * is the sum of all stripes.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class StripedCounter {
+    // 16 longs take 128 bytes, which keeps the stripes on separate cache lines of common processors
+    private static final int STRIDE = 16;
+
+    private final long            initialValue;
+    private final int             stripeMask;
+    private final AtomicLongArray stripes;
+
+    /**
+     * @param initialValue the value of the counter before it is first incremented
+     */
+    StripedCounter(final long initialValue) {
+        this.initialValue = initialValue;
+        final int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripeMask   = stripeCount - 1;
+        this.stripes      = new AtomicLongArray(stripeCount * STRIDE);
+    }
+
+    void increment() {
+        // thread ids are assigned sequentially, so the threads alive at the same time are spread over the stripes
+        stripes.incrementAndGet(((int) Thread.currentThread().getId() & stripeMask) * STRIDE);
+    }
+
+    /**
+     * @return the initial value plus all increments completed so far
+     */
+    long get() {
+        long sum = initialValue;
+        for (int i = 0; i < stripes.length(); i += STRIDE) sum += stripes.get(i);
+        return sum;
+    }
+}
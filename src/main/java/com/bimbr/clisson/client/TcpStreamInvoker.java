@@ -0,0 +1,213 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static com.bimbr.clisson.util.Arguments.positive;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * An {@link HttpInvoker} that streams requests as frames (see {@link FrameWriter}) over a single persistent TCP
+ * connection instead of issuing an HTTP request for each of them. Meant for deployments where the receiver is
+ * co-located with the recording component and the cost of HTTP request and response per batch is pure overhead.
+ * <p>
+ * A connection starts with a handshake: the bytes {@code 'C' 'L' 'S' 'T'}, the protocol {@link #VERSION} and the
+ * maximum number of unacknowledged frames as an int32. The receiver does not answer individual frames; instead it
+ * periodically sends back the sequence number of the last frame it has received, as an int64. It is expected to do
+ * so at least once every half of the unacknowledged frame limit and whenever it runs out of input to read.
+ * <p>
+ * A post returns as soon as its frame has been written, unless the limit of unacknowledged frames has been reached, in
+ * which case it waits for an acknowledgement first. Unacknowledged frames are kept and written again when the
+ * connection has to be re-established, so a frame may be received more than once; the receiver can discard frames
+ * whose sequence number it has already seen. Posts are serialised on the single connection, so it is safe to share an
+ * instance between several threads.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+class TcpStreamInvoker implements HttpInvoker {
+    static final int VERSION = 1;
+
+    private static final byte[] MAGIC                       = { 'C', 'L', 'S', 'T' };
+    private static final int    DEFAULT_CONNECT_TIMEOUT_MS  = 5000;
+    private static final int    DEFAULT_SOCKET_TIMEOUT_MS   = 10000;
+    private static final int    DEFAULT_MAX_UNACKNOWLEDGED  = 256;
+
+    private final String      serverHost;
+    private final int         serverPort;
+    private final int         connectTimeoutMs;
+    private final int         socketTimeoutMs;
+    private final int         maxUnacknowledged;
+    private final String      contentType;
+    private final FrameWriter frames;
+    private final Queue<Frame> unacknowledged = new ArrayDeque<Frame>();
+    private Socket            socket;
+    private DataInputStream   in;
+    private OutputStream      out;
+    private long              nextSequence = 1;
+    private boolean           closed;
+
+    /**
+     * @param serverHost the host name of the receiver
+     * @param serverPort the port on which the receiver is listening
+     */
+    public TcpStreamInvoker(final String serverHost,
+                            final int    serverPort) {
+        this(serverHost, serverPort, DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_SOCKET_TIMEOUT_MS, DEFAULT_MAX_UNACKNOWLEDGED,
+             Compression.NONE, 0, WireFormat.JSON);
+    }
+
+    /**
+     * @param serverHost the host name of the receiver
+     * @param serverPort the port on which the receiver is listening
+     * @param connectTimeoutMs the maximum time to wait for the connection to the receiver to be established
+     * @param socketTimeoutMs the maximum time to wait for an acknowledgement when the limit of unacknowledged frames
+     *                        has been reached
+     * @param maxUnacknowledged the maximum number of frames sent but not yet acknowledged by the receiver
+     * @param compression the compression applied to frame bodies
+     * @param minCompressedLength the minimum length, in bytes, of frame bodies that will be compressed
+     * @param wireFormat the format of bodies posted as byte arrays, which determines their content type
+     */
+    public TcpStreamInvoker(final String      serverHost,
+                            final int         serverPort,
+                            final int         connectTimeoutMs,
+                            final int         socketTimeoutMs,
+                            final int         maxUnacknowledged,
+                            final Compression compression,
+                            final int         minCompressedLength,
+                            final WireFormat  wireFormat) {
+        this.serverHost        = nonEmpty(serverHost, "serverHost");
+        this.serverPort        = positive(serverPort, "serverPort");
+        this.connectTimeoutMs  = positive(connectTimeoutMs, "connectTimeoutMs");
+        this.socketTimeoutMs   = positive(socketTimeoutMs, "socketTimeoutMs");
+        this.maxUnacknowledged = positive(maxUnacknowledged, "maxUnacknowledged");
+        this.frames            = new FrameWriter(compression, minCompressedLength);
+        this.contentType       = nonNull(wireFormat, "wireFormat").contentType();
+    }
+
+    public void post(final String uri, final String content) {
+        try {
+            final byte[] bytes = content.getBytes("UTF-8");
+            send(uri, bytes, bytes.length, WireFormat.JSON.contentType());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("error when sending to " + url(uri), e);
+        }
+    }
+
+    public void post(final String uri, final byte[] content, final int length) {
+        send(uri, content, length, contentType);
+    }
+
+    private synchronized void send(final String uri, final byte[] content, final int length, final String contentType) {
+        if (closed) throw new IllegalStateException("the invoker is closed");
+        try {
+            connectIfNecessary();
+            while (unacknowledged.size() >= maxUnacknowledged) readAcknowledgement();
+            final PayloadBuffer frame = frames.frame(nextSequence, uri, contentType, content, length);
+            final byte[] bytes = Arrays.copyOf(frame.array(), frame.size());
+            out.write(bytes);
+            unacknowledged.add(new Frame(nextSequence, bytes));
+            nextSequence++;
+            while (in.available() >= 8) readAcknowledgement();
+        } catch (IOException e) {
+            disconnect();
+            throw new RuntimeException("error when sending to " + url(uri), e);
+        }
+    }
+
+    private void connectIfNecessary() throws IOException {
+        if (socket != null) return;
+        final Socket connecting = new Socket();
+        try {
+            connecting.setTcpNoDelay(true);
+            connecting.setSoTimeout(socketTimeoutMs);
+            connecting.connect(new InetSocketAddress(serverHost, serverPort), connectTimeoutMs);
+            in = new DataInputStream(new BufferedInputStream(connecting.getInputStream()));
+            out = connecting.getOutputStream();
+            socket = connecting;
+            out.write(handshake());
+            // the frames may or may not have reached the receiver before the previous connection was lost
+            for (final Frame frame : unacknowledged) out.write(frame.bytes);
+        } catch (IOException e) {
+            disconnect();
+            closeQuietly(connecting);
+            throw e;
+        }
+    }
+
+    private byte[] handshake() {
+        final byte[] handshake = Arrays.copyOf(MAGIC, MAGIC.length + 5);
+        handshake[MAGIC.length]     = VERSION;
+        handshake[MAGIC.length + 1] = (byte) (maxUnacknowledged >>> 24);
+        handshake[MAGIC.length + 2] = (byte) (maxUnacknowledged >>> 16);
+        handshake[MAGIC.length + 3] = (byte) (maxUnacknowledged >>> 8);
+        handshake[MAGIC.length + 4] = (byte) maxUnacknowledged;
+        return handshake;
+    }
+
+    private void readAcknowledgement() throws IOException {
+        final long acknowledged = in.readLong();
+        while (!unacknowledged.isEmpty() && unacknowledged.peek().sequence <= acknowledged) unacknowledged.remove();
+    }
+
+    private void disconnect() {
+        if (socket != null) closeQuietly(socket);
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing more can be done about it
+        }
+    }
+
+    private String url(final String uri) {
+        return "tcp://" + serverHost + ":" + serverPort + uri;
+    }
+
+    /**
+     * Waits, for up to the socket timeout per acknowledgement, until the receiver has acknowledged all frames sent
+     * over the current connection, then closes it. Subsequent posts fail.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            while (socket != null && !unacknowledged.isEmpty()) readAcknowledgement();
+        } catch (IOException e) {
+            // the frames will not be acknowledged any more
+        } finally {
+            disconnect();
+        }
+    }
+
+    /**
+     * @return the number of frames sent but not yet acknowledged by the receiver
+     */
+    synchronized int unacknowledgedFrames() {
+        return unacknowledged.size();
+    }
+
+    private static final class Frame {
+        final long   sequence;
+        final byte[] bytes;
+
+        Frame(final long sequence, final byte[] bytes) {
+            this.sequence = sequence;
+            this.bytes    = bytes;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.bimbr.clisson.client;
+
+import java.util.Locale;
+
+/**
+ * The transport over which requests are sent to the server.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+enum Transport {
+    /**
+     * An HTTP request per batch; see {@link SimpleHttpInvoker} and {@link NioHttpInvoker}.
+     */
+    HTTP,
+    /**
+     * Frames streamed over a persistent connection and periodically acknowledged; see {@link TcpStreamInvoker}.
+     */
+    TCP,
+    /**
+     * A fire-and-forget datagram per batch; see {@link UdpDatagramInvoker}.
+     */
+    UDP;
+    
+    /**
+     * @param name the name of the transport, case insensitive
+     * @return the transport with given name
+     * @throws IllegalArgumentException if there is no transport with given name
+     */
+    static Transport named(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
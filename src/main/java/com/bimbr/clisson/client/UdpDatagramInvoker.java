@@ -0,0 +1,108 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
+import static com.bimbr.clisson.util.Arguments.positive;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * A fire-and-forget {@link HttpInvoker} that sends every request as a single UDP datagram holding a frame (see
+ * {@link FrameWriter}). Nothing is acknowledged, so datagrams lost on the way are lost for good; the sequence numbers
+ * of the frames let the receiver tell how many. A request whose frame does not fit in a datagram fails, so batches
+ * should be kept small when this transport is used.
+ * <p>
+ * It is safe to share an instance between several threads.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+class UdpDatagramInvoker implements HttpInvoker {
+    /** the largest payload of an IPv4 UDP datagram */
+    static final int MAX_DATAGRAM_LENGTH = 65507;
+
+    private final String      serverHost;
+    private final int         serverPort;
+    private final String      contentType;
+    private final FrameWriter frames;
+    private InetSocketAddress address;
+    private DatagramSocket    socket;
+    private long              nextSequence = 1;
+    private boolean           closed;
+
+    /**
+     * @param serverHost the host name of the receiver
+     * @param serverPort the port on which the receiver is listening
+     */
+    public UdpDatagramInvoker(final String serverHost,
+                              final int    serverPort) {
+        this(serverHost, serverPort, Compression.NONE, 0, WireFormat.JSON);
+    }
+
+    /**
+     * @param serverHost the host name of the receiver
+     * @param serverPort the port on which the receiver is listening
+     * @param compression the compression applied to frame bodies
+     * @param minCompressedLength the minimum length, in bytes, of frame bodies that will be compressed
+     * @param wireFormat the format of bodies posted as byte arrays, which determines their content type
+     */
+    public UdpDatagramInvoker(final String      serverHost,
+                              final int         serverPort,
+                              final Compression compression,
+                              final int         minCompressedLength,
+                              final WireFormat  wireFormat) {
+        this.serverHost  = nonEmpty(serverHost, "serverHost");
+        this.serverPort  = positive(serverPort, "serverPort");
+        this.frames      = new FrameWriter(compression, minCompressedLength);
+        this.contentType = nonNull(wireFormat, "wireFormat").contentType();
+    }
+
+    public void post(final String uri, final String content) {
+        try {
+            final byte[] bytes = content.getBytes("UTF-8");
+            send(uri, bytes, bytes.length, WireFormat.JSON.contentType());
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("error when sending to " + url(uri), e);
+        }
+    }
+
+    public void post(final String uri, final byte[] content, final int length) {
+        send(uri, content, length, contentType);
+    }
+
+    private synchronized void send(final String uri, final byte[] content, final int length, final String contentType) {
+        if (closed) throw new IllegalStateException("the invoker is closed");
+        final PayloadBuffer frame = frames.frame(nextSequence, uri, contentType, content, length);
+        if (frame.size() > MAX_DATAGRAM_LENGTH) {
+            throw new RuntimeException("a frame of " + frame.size() + " bytes does not fit in a datagram sent to " + url(uri));
+        }
+        try {
+            if (socket == null) socket = new DatagramSocket();
+            socket.send(new DatagramPacket(frame.array(), frame.size(), resolvedAddress()));
+            nextSequence++;
+        } catch (IOException e) {
+            throw new RuntimeException("error when sending to " + url(uri), e);
+        }
+    }
+
+    private InetSocketAddress resolvedAddress() throws UnknownHostException {
+        // resolved lazily, and again after a failure, like host names in HTTP requests
+        if (address == null || address.isUnresolved()) address = new InetSocketAddress(serverHost, serverPort);
+        if (address.isUnresolved()) throw new UnknownHostException(serverHost);
+        return address;
+    }
+
+    private String url(final String uri) {
+        return "udp://" + serverHost + ":" + serverPort + uri;
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (socket != null) socket.close();
+    }
+}
@@ -0,0 +1,54 @@
+package com.bimbr.clisson.client;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines what the consumer of a {@link RingEventBuffer} does while waiting for events to arrive. Producers never
+ * signal the consumer, so that recording an event does not involve any thread handoff; the consumer polls instead.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+enum WaitStrategy {
+    /**
+     * Busy-spin: the lowest latency, at the cost of keeping a CPU core busy.
+     */
+    SPIN {
+        void idle() {
+            // just try again
+        }
+    },
+    /**
+     * Yield the CPU to other threads between attempts.
+     */
+    YIELD {
+        void idle() {
+            Thread.yield();
+        }
+    },
+    /**
+     * Sleep for a short period between attempts: the lowest CPU usage, at the cost of latency.
+     */
+    PARK {
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+    
+    private static final long PARK_NANOS = 100 * 1000;
+    
+    /**
+     * Called by the consumer each time it finds the buffer empty.
+     */
+    abstract void idle();
+    
+    /**
+     * @param name the name of the strategy, case insensitive
+     * @return the strategy with given name
+     * @throws IllegalArgumentException if there is no strategy with given name
+     */
+    static WaitStrategy named(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,50 @@
+package com.bimbr.clisson.client;
+
+import java.util.Locale;
+
+/**
+ * The format in which events are sent to the server, together with the value of {@code Content-Type} header that
+ * announces it.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+enum WireFormat {
+    /**
+     * JSON, as produced by the protocol library; understood by every version of the server.
+     */
+    JSON("text/plain; charset=UTF-8"),
+    /**
+     * The compact binary format described in {@link BinaryEventEncoder}.
+     */
+    BINARY("application/x-clisson-events");
+    
+    private final String contentType;
+    
+    private WireFormat(final String contentType) {
+        this.contentType = contentType;
+    }
+    
+    /**
+     * @return the value of {@code Content-Type} header for request bodies in this format
+     */
+    String contentType() {
+        return contentType;
+    }
+    
+    /**
+     * @return a new encoder; encoders are not thread-safe
+     */
+    EventEncoder newEncoder() {
+        return this == BINARY ? new BinaryEventEncoder() : new JsonEventEncoder();
+    }
+    
+    /**
+     * @param name the name of the format, case insensitive
+     * @return the format with given name
+     * @throws IllegalArgumentException if there is no format with given name
+     */
+    static WireFormat named(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,327 @@
+package com.bimbr.clisson.client;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.bimbr.clisson.protocol.Event;
+import com.bimbr.clisson.protocol.Json;
+
+/**
+ * An append-only log of recorded events, used to send the events that had not been sent before the JVM stopped.
+ * <p>
+ * Every event is assigned a consecutive sequence number and appended to an in-memory staging buffer;
+ * {@link #commit()} writes all staged records to the current log file and forces them to disk with a single
+ * {@code fsync}, so the cost of forcing is shared by all events recorded since the previous commit (group commit).
+ * Once events have been sent, {@link #confirm(long)} stores the sequence number of the last of them in a separate
+ * file and deletes log files that only contain confirmed events. When the journal is opened, the committed events
+ * that were not confirmed are read back and made available through {@link #recoveredEvents()}.
+ * <p>
+ * Each record consists of the sequence number, the length of UTF-8 JSON representation of the event and the JSON
+ * itself. A new log file, named after the sequence number of its first record, is started when the current one
+ * exceeds the segment size.
+ * <p>
+ * The methods are thread-safe; {@link #append(Event)} is not blocked while records are being written.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class WriteAheadJournal {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadJournal.class);
+    private static final String LOG_PREFIX                    = "journal-";
+    private static final String LOG_SUFFIX                    = ".log";
+    private static final String CONFIRMED_FILE                = "confirmed";
+    private static final int    RECORD_HEADER_SIZE            = 8 + 4;
+    private static final int    INITIAL_STAGING_CAPACITY      = 64 * 1024;
+    private static final int    MAX_RETAINED_STAGING_CAPACITY = 4 * 1024 * 1024;
+
+    private final File                 directory;
+    private final long                 segmentSize;
+    private final RandomAccessFile     confirmedFile;
+    private final LinkedList<LogFile>  logFiles = new LinkedList<LogFile>();
+    private final List<Event>          recoveredEvents = new ArrayList<Event>();
+    private final JsonEventEncoder     encoder = new JsonEventEncoder();
+    // guards the files; the journal itself only guards the staged records
+    private final Object               fileLock = new Object();
+    // staged holds records appended since the last commit; written holds the ones being committed
+    private PayloadBuffer              staged  = new PayloadBuffer(INITIAL_STAGING_CAPACITY, MAX_RETAINED_STAGING_CAPACITY);
+    private PayloadBuffer              written = new PayloadBuffer(INITIAL_STAGING_CAPACITY, MAX_RETAINED_STAGING_CAPACITY);
+    private long                       nextSequence;
+    private long                       firstStagedSequence;
+    private long                       confirmedSequence;
+    private boolean                    closed;
+    private final long                 recoveredSequence;
+
+    /**
+     * @param directory the directory holding the log files; created if it does not exist
+     * @param segmentSize the size, in bytes, above which a new log file is started
+     * @throws IOException if the directory can not be created or existing log files can not be read
+     */
+    WriteAheadJournal(final File directory, final long segmentSize) throws IOException {
+        if (segmentSize <= 0) throw new IllegalArgumentException("segmentSize must be positive");
+        this.directory   = nonNull(directory, "directory");
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("unable to create journal directory " + directory);
+        this.confirmedFile     = new RandomAccessFile(new File(directory, CONFIRMED_FILE), "rw");
+        this.confirmedSequence = confirmedFile.length() >= 8 ? confirmedFile.readLong() : 0;
+        this.nextSequence      = confirmedSequence + 1;
+        recover();
+        this.recoveredSequence = nextSequence - 1;
+    }
+
+    private void recover() throws IOException {
+        final File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX);
+            }
+        });
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(final File f1, final File f2) {
+                final long s1 = firstSequenceOf(f1);
+                final long s2 = firstSequenceOf(f2);
+                return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+            }
+        });
+        for (final File file : files) {
+            final LogFile logFile = new LogFile(file, firstSequenceOf(file));
+            logFile.lastSequence = readUnconfirmed(logFile);
+            if (logFile.lastSequence >= nextSequence) nextSequence = logFile.lastSequence + 1;
+            logFiles.add(logFile);
+        }
+        deleteConfirmedLogFiles();
+        if (!recoveredEvents.isEmpty()) log.info("recovered " + recoveredEvents.size() + " unsent events from " + directory);
+    }
+
+    private static long firstSequenceOf(final File file) {
+        final String name = file.getName();
+        return Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+    }
+
+    /**
+     * @return the sequence number of the last complete record in the file
+     */
+    private long readUnconfirmed(final LogFile logFile) throws IOException {
+        long lastSequence = logFile.firstSequence - 1;
+        long validLength = 0;
+        final InputStream stream = new FileInputStream(logFile.file);
+        try {
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(stream));
+            while (true) {
+                final long sequence;
+                final byte[] json;
+                try {
+                    sequence = input.readLong();
+                    json = new byte[input.readInt()];
+                    input.readFully(json);
+                } catch (EOFException e) {
+                    // the last record may have been only partly written
+                    break;
+                }
+                if (sequence > confirmedSequence) recoveredEvents.add(Json.fromJson(utf8(json), Event.class));
+                lastSequence = sequence;
+                validLength += RECORD_HEADER_SIZE + json.length;
+            }
+        } finally {
+            stream.close();
+        }
+        logFile.truncate(validLength);
+        return lastSequence;
+    }
+
+    /**
+     * @return the events that had been committed, but not confirmed, before the journal was opened
+     */
+    List<Event> recoveredEvents() {
+        return recoveredEvents;
+    }
+
+    /**
+     * @return the sequence number of the last record found in the log when the journal was opened; events appended
+     *         later are numbered consecutively from the next one
+     */
+    long recoveredSequence() {
+        return recoveredSequence;
+    }
+
+    /**
+     * Stages an event to be written to the log on next {@link #commit()}.
+     * @param event the event to append
+     * @return the sequence number assigned to the event
+     */
+    synchronized long append(final Event event) {
+        final PayloadBuffer json = encoder.encode(event);
+        final long sequence = nextSequence++;
+        if (staged.size() == 0) firstStagedSequence = sequence;
+        writeLong(staged, sequence);
+        writeInt(staged, json.size());
+        staged.write(json.array(), 0, json.size());
+        return sequence;
+    }
+
+    /**
+     * Writes all staged records to the log and forces them to disk. The records staged by other threads while this
+     * method is writing are not blocked and will be written by the next commit.
+     * @return the sequence number of the last committed record
+     * @throws IOException if writing fails; the records that were being written are not retried
+     */
+    long commit() throws IOException {
+        synchronized (fileLock) {
+            if (closed) throw new IOException("journal in " + directory + " is closed");
+            final long firstSequence;
+            final long lastSequence;
+            synchronized (this) {
+                lastSequence = nextSequence - 1;
+                if (staged.size() == 0) return lastSequence;
+                firstSequence = firstStagedSequence;
+                final PayloadBuffer toWrite = staged;
+                staged = written;
+                written = toWrite;
+            }
+            try {
+                final LogFile logFile = currentLogFile(firstSequence);
+                final ByteBuffer bytes = ByteBuffer.wrap(written.array(), 0, written.size());
+                while (bytes.hasRemaining()) logFile.channel.write(bytes);
+                logFile.channel.force(false);
+                logFile.lastSequence = lastSequence;
+            } finally {
+                written.reset();
+            }
+            return lastSequence;
+        }
+    }
+
+    private LogFile currentLogFile(final long firstSequence) throws IOException {
+        final LogFile current = logFiles.peekLast();
+        if (current != null && current.channel.size() < segmentSize) return current;
+        if (current != null) current.close();
+        final LogFile logFile = new LogFile(new File(directory, LOG_PREFIX + firstSequence + LOG_SUFFIX), firstSequence);
+        logFiles.add(logFile);
+        return logFile;
+    }
+
+    /**
+     * Records that all events up to and including the one with given sequence number have been sent and deletes the
+     * log files that only contain such events.
+     * @param sequence the sequence number of the last sent event
+     * @throws IOException if the confirmation could not be stored
+     */
+    void confirm(final long sequence) throws IOException {
+        synchronized (fileLock) {
+            if (closed) throw new IOException("journal in " + directory + " is closed");
+            if (sequence <= confirmedSequence) return;
+            confirmedSequence = sequence;
+            confirmedFile.seek(0);
+            confirmedFile.writeLong(sequence);
+            deleteConfirmedLogFiles();
+        }
+    }
+
+    private void deleteConfirmedLogFiles() throws IOException {
+        // the newest file is kept, as further records will be appended to it
+        while (logFiles.size() > 1 && logFiles.getFirst().lastSequence <= confirmedSequence) {
+            final LogFile logFile = logFiles.removeFirst();
+            logFile.close();
+            if (!logFile.file.delete()) log.warn("unable to delete journal file " + logFile.file);
+        }
+    }
+
+    /**
+     * Commits the staged records and closes the files. Records appended later are discarded.
+     * @throws IOException if the staged records could not be written
+     */
+    void close() throws IOException {
+        synchronized (fileLock) {
+            if (closed) return;
+            try {
+                commit();
+            } finally {
+                closed = true;
+                for (final LogFile logFile : logFiles) logFile.close();
+                confirmedFile.close();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the journal has been closed
+     */
+    boolean isClosed() {
+        synchronized (fileLock) {
+            return closed;
+        }
+    }
+
+    /**
+     * @return the sequence number of the last confirmed event
+     */
+    long confirmedSequence() {
+        synchronized (fileLock) {
+            return confirmedSequence;
+        }
+    }
+
+    private static String utf8(final byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+
+    private static void writeLong(final PayloadBuffer buffer, final long value) {
+        writeInt(buffer, (int) (value >>> 32));
+        writeInt(buffer, (int) value);
+    }
+
+    private static void writeInt(final PayloadBuffer buffer, final int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+
+    private static final class LogFile {
+        private final File             file;
+        private final long             firstSequence;
+        private final RandomAccessFile raf;
+        private final FileChannel      channel;
+        private long                   lastSequence;
+
+        LogFile(final File file, final long firstSequence) throws IOException {
+            this.file          = file;
+            this.firstSequence = firstSequence;
+            this.lastSequence  = firstSequence - 1;
+            this.raf           = new RandomAccessFile(file, "rw");
+            this.channel       = raf.getChannel();
+            channel.position(channel.size());
+        }
+
+        void truncate(final long length) throws IOException {
+            if (channel.size() > length) channel.truncate(length);
+            channel.position(length);
+        }
+
+        void close() throws IOException {
+            raf.close();
+        }
+    }
+}
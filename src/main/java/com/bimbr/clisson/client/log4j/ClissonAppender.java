@@ -1,13 +1,25 @@
 package com.bimbr.clisson.client.log4j;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
 import java.lang.reflect.Constructor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
 import com.bimbr.clisson.client.Recorder;
 import com.bimbr.clisson.client.RecorderFactory;
+import com.bimbr.clisson.client.RecorderLifecycle;
 import com.bimbr.clisson.client.log4j.EventTransformation.IgnoreEventException;
+import com.bimbr.clisson.protocol.Event;
 
 /**
  * A log4j appender that transforms logging events to Clisson events and sends them to Clisson server.
@@ -15,15 +27,36 @@ import com.bimbr.clisson.client.log4j.EventTransformation.IgnoreEventException;
  * the config file must contain:  
  * <ul>
  * <li>{@code clisson.log4j.eventTransformation} - the full name of the class that implements {@link EventTransformation} 
- * to be used for transforming log4j events to Clisson events</li>
+ * to be used for transforming log4j events to Clisson events, e.g. {@link PatternTransformation}, which is configured
+ * with regular expressions</li>
+ * </ul>
+ * and may contain:
+ * <ul>
+ * <li>{@code clisson.log4j.async} - whether logging events are transformed by worker threads, so that logging threads
+ * do not wait for the transformation while holding the appender's lock (default: {@code false})</li>
+ * <li>{@code clisson.log4j.async.threads} - the number of worker threads; if greater than 1, the transformation must be
+ * thread-safe (default: {@code 1})</li>
+ * <li>{@code clisson.log4j.async.queueSize} - the maximum number of logging events waiting for a worker thread; events
+ * logged when the queue is full are dropped (default: {@code 1024})</li>
  * </ul>
+ * In the asynchronous mode the thread name, NDC and MDC of a logging event are captured on the logging thread, but
+ * its message is only rendered if the transformation asks for it, on a worker thread; message objects should therefore
+ * not be modified after they are logged.
  * 
  * @author mmakowski
  * @since 1.0.0
  */
 public final class ClissonAppender extends AppenderSkeleton {
     private final EventTransformation transformation;
+    // the same transformation, if it can reject events without throwing an exception; null otherwise
+    private final FilteringEventTransformation filteringTransformation;
     private final Recorder record;
+    // the same recorder, if it can be flushed; null otherwise
+    private final RecorderLifecycle lifecycle;
+    private final long closeTimeoutMs;
+    // null if events are transformed on the logging threads
+    private final ExecutorService transformers;
+    private final AtomicLong eventsDropped = new AtomicLong();
 
     /**
      * Constructs 
@@ -32,7 +65,11 @@ public final class ClissonAppender extends AppenderSkeleton {
     public ClissonAppender() {
         final Config config = Config.fromPropertiesFile();
         this.transformation = newInstanceOf(config.getTransformationClass());
+        this.filteringTransformation = filtering(transformation);
         this.record         = RecorderFactory.getRecorder(config);
+        this.lifecycle      = lifecycle(record);
+        this.closeTimeoutMs = config.getShutdownTimeoutMs();
+        this.transformers   = config.isAsync() ? transformers(config.getAsyncThreads(), config.getAsyncQueueSize()) : null;
     }
 
     private EventTransformation newInstanceOf(final Class<EventTransformation> transformationClass) { 
@@ -44,21 +81,77 @@ public final class ClissonAppender extends AppenderSkeleton {
         }
     }
 
+    private static RecorderLifecycle lifecycle(final Recorder recorder) {
+        return recorder instanceof RecorderLifecycle ? (RecorderLifecycle) recorder : null;
+    }
+
+    private static FilteringEventTransformation filtering(final EventTransformation transformation) {
+        return transformation instanceof FilteringEventTransformation ? (FilteringEventTransformation) transformation : null;
+    }
+
     /**
      * For unit testing.
      */
     ClissonAppender(final EventTransformation transformation,
-                    final Recorder            recorder) {
+                    final Recorder            recorder,
+                    final long                closeTimeoutMs) {
+        this(transformation, recorder, closeTimeoutMs, null);
+    }
+    
+    /**
+     * For unit testing.
+     * @param transformers the executor that transforms logging events, or {@code null} if they are to be transformed
+     *                     on the logging threads
+     */
+    ClissonAppender(final EventTransformation transformation,
+                    final Recorder            recorder,
+                    final long                closeTimeoutMs,
+                    final ExecutorService     transformers) {
         this.transformation = transformation;
+        this.filteringTransformation = filtering(transformation);
         this.record         = recorder;
+        this.lifecycle      = lifecycle(recorder);
+        this.closeTimeoutMs = closeTimeoutMs;
+        this.transformers   = transformers;
+    }
+    
+    /**
+     * @param threads the number of worker threads
+     * @param queueSize the maximum number of logging events waiting for a worker thread
+     * @return an executor that rejects logging events when its queue is full
+     */
+    static ExecutorService transformers(final int threads, final int queueSize) {
+        final AtomicInteger created = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "clisson-log4j-transformer-" + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
     
     /**
-     * Doesn't do anything
+     * Flushes the recorder, sending the events recorded so far within {@code clisson.shutdown.timeoutMs}. In the
+     * asynchronous mode, the logging events waiting for a worker thread are transformed first, within the same time.
+     * The recorder is shared by the whole application, so it is not closed; that is left to
+     * {@link RecorderFactory#close(long)} or the shutdown hook.
      * @see org.apache.log4j.Appender#close()
      */
     public void close() {
-        // no need to do anything
+        closed = true;
+        long remainingMs = closeTimeoutMs;
+        if (transformers != null) {
+            final long deadline = System.currentTimeMillis() + closeTimeoutMs;
+            transformers.shutdown();
+            try {
+                transformers.awaitTermination(closeTimeoutMs, MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            remainingMs = Math.max(0, deadline - System.currentTimeMillis());
+        }
+        if (lifecycle != null) lifecycle.flush(remainingMs);
     }
 
     /**
@@ -69,10 +162,47 @@ public final class ClissonAppender extends AppenderSkeleton {
     }
 
     protected void append(final LoggingEvent log4jEvent) {
+        if (transformers == null) {
+            transform(log4jEvent);
+            return;
+        }
+        // the state bound to the logging thread, which the worker threads could not get
+        log4jEvent.getThreadName();
+        log4jEvent.getNDC();
+        log4jEvent.getMDCCopy();
+        try {
+            transformers.execute(new Runnable() {
+                public void run() {
+                    try {
+                        transform(log4jEvent);
+                    } catch (RuntimeException e) {
+                        errorHandler.error("error transforming a logging event of " + log4jEvent.getLoggerName(), e, ErrorCode.GENERIC_FAILURE);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            eventsDropped.incrementAndGet();
+            errorHandler.error("the queue of logging events to transform is full; logging events are dropped");
+        }
+    }
+
+    private void transform(final LoggingEvent log4jEvent) {
+        if (filteringTransformation != null) {
+            final Event event = filteringTransformation.performIfRelevant(log4jEvent);
+            if (event != null) record.event(event);
+            return;
+        }
         try {
             record.event(transformation.perform(log4jEvent));
         } catch (IgnoreEventException e) {
             // log4jEvent should be ignored
         }
     }
+    
+    /**
+     * @return the number of logging events dropped because the queue of events to transform was full
+     */
+    long eventsDropped() {
+        return eventsDropped.get();
+    }
 }
@@ -1,6 +1,12 @@
 package com.bimbr.clisson.client.log4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Level;
 
 /**
  * An extension of {@link com.bimbr.clisson.client.Config} that, in addition to the Clisson server settings also
@@ -11,34 +17,72 @@ import java.util.Properties;
  */
 class Config extends com.bimbr.clisson.client.Config {
     private static final String LOG4J_EVENTTRANSFORMATION = "clisson.log4j.eventTransformation";
+    private static final String LOG4J_ASYNC               = "clisson.log4j.async";
+    private static final String LOG4J_ASYNC_THREADS       = "clisson.log4j.async.threads";
+    private static final String LOG4J_ASYNC_QUEUE_SIZE    = "clisson.log4j.async.queueSize";
+    private static final String LOG4J_PATTERNS            = "clisson.log4j.patterns";
+    private static final String LOG4J_PATTERN             = "clisson.log4j.pattern.";
+    
+    private static final String DEFAULT_LOG4J_ASYNC            = "false";
+    private static final String DEFAULT_LOG4J_ASYNC_THREADS    = "1";
+    private static final String DEFAULT_LOG4J_ASYNC_QUEUE_SIZE = "1024";
     
     private final Class<EventTransformation> transformationClass;
+    private final boolean isAsync;
+    private final int     asyncThreads;
+    private final int     asyncQueueSize;
+    private final List<PatternRule> patternRules;
     
     /**
      * @return config constructed from the default or user-specified properties file
      * @see com.bimbr.clisson.client.Config#fromPropertiesFile()
      */
     public static Config fromPropertiesFile() {
-        final Properties properties = validatedProperties(new PropertyValidator());
-        return new Config(Boolean.valueOf(properties.getProperty(RECORD_ENABLED, "true")),
-                          properties.getProperty(SERVER_HOST), 
-                          Integer.valueOf(properties.getProperty(SERVER_PORT)),
-                          properties.getProperty(COMPONENT_ID),
-                          properties.getProperty(LOG4J_EVENTTRANSFORMATION));
+        return new Config(validatedProperties(new PropertyValidator()));
     }
 
     @SuppressWarnings("unchecked") // loading class dynamically
-    private Config(final boolean isRecordingEnabled, 
-                   final String  host, 
-                   final int     port,
-                   final String  componentId,
-                   final String  className) {
-        super(isRecordingEnabled, host, port, componentId);
+    private Config(final Properties properties) {
+        super(properties);
+        final String className = properties.getProperty(LOG4J_EVENTTRANSFORMATION);
         try {
             transformationClass = (Class<EventTransformation>) Thread.currentThread().getContextClassLoader().loadClass(className);
         } catch (ClassNotFoundException e) {
             throw new IllegalArgumentException("className is set to non-existent class " + className, e);
         }
+        this.isAsync        = Boolean.valueOf(properties.getProperty(LOG4J_ASYNC, DEFAULT_LOG4J_ASYNC).trim());
+        this.asyncThreads   = intProperty(properties, LOG4J_ASYNC_THREADS, DEFAULT_LOG4J_ASYNC_THREADS);
+        this.asyncQueueSize = intProperty(properties, LOG4J_ASYNC_QUEUE_SIZE, DEFAULT_LOG4J_ASYNC_QUEUE_SIZE);
+        this.patternRules   = patternRules(properties);
+    }
+    
+    private static List<PatternRule> patternRules(final Properties properties) {
+        final List<PatternRule> rules = new ArrayList<PatternRule>();
+        for (final String name : properties.getProperty(LOG4J_PATTERNS, "").split(",")) {
+            if (name.trim().length() > 0) rules.add(patternRule(properties, name.trim()));
+        }
+        return Collections.unmodifiableList(rules);
+    }
+    
+    private static PatternRule patternRule(final Properties properties, final String name) {
+        final String prefix = LOG4J_PATTERN + name;
+        final String regex = properties.getProperty(prefix);
+        if (regex == null) throw new IllegalArgumentException(prefix + " is not set");
+        final String levelName = properties.getProperty(prefix + ".level", "ALL").trim();
+        final Level level = Level.toLevel(levelName, null);
+        if (level == null) throw new IllegalArgumentException(prefix + ".level is set to unknown level " + levelName);
+        final List<String> loggers = new ArrayList<String>();
+        for (final String logger : properties.getProperty(prefix + ".loggers", "").split(",")) {
+            if (logger.trim().length() > 0) loggers.add(logger.trim());
+        }
+        return new PatternRule(name,
+                               Pattern.compile(regex),
+                               properties.getProperty(prefix + ".literal"),
+                               intProperty(properties, prefix + ".inputGroup", "1"),
+                               intProperty(properties, prefix + ".outputGroup", "0"),
+                               properties.getProperty(prefix + ".description", name),
+                               loggers,
+                               level);
     }
     
     private static final class PropertyValidator extends com.bimbr.clisson.client.Config.PropertyValidator {
@@ -53,6 +97,19 @@ class Config extends com.bimbr.clisson.client.Config {
             } catch (ClassNotFoundException e) {
                 throw new ConfigException(configPath, LOG4J_EVENTTRANSFORMATION + " is set to " + className + " which could not be found");
             }
+            validatePositiveIntIfPresent(properties, configPath, LOG4J_ASYNC_THREADS);
+            validatePositiveIntIfPresent(properties, configPath, LOG4J_ASYNC_QUEUE_SIZE);
+            validatePatterns(properties, configPath, PatternTransformation.class.getName().equals(className.trim()));
+        }
+        
+        private void validatePatterns(Properties properties, String configPath, boolean isRequired) {
+            final List<PatternRule> rules;
+            try {
+                rules = patternRules(properties);
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException(configPath, "invalid pattern in " + LOG4J_PATTERNS + ": " + e.getMessage());
+            }
+            if (isRequired && rules.isEmpty()) throw new ConfigException(configPath, LOG4J_PATTERNS + " must list at least one pattern when " + LOG4J_EVENTTRANSFORMATION + " is " + PatternTransformation.class.getName());
         }
     }
     
@@ -62,5 +119,37 @@ class Config extends com.bimbr.clisson.client.Config {
      */
     public Class<EventTransformation> getTransformationClass() {
         return transformationClass;
-    }   
+    }
+    
+    /**
+     * @return {@code true} if logging events are transformed by worker threads rather than by the logging threads
+     * @since 1.1.0
+     */
+    public boolean isAsync() {
+        return isAsync;
+    }
+    
+    /**
+     * @return the number of worker threads transforming logging events if {@link #isAsync()}
+     * @since 1.1.0
+     */
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+    
+    /**
+     * @return the maximum number of logging events waiting for a worker thread if {@link #isAsync()}
+     * @since 1.1.0
+     */
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+    
+    /**
+     * @return the rules of {@link PatternTransformation}, in the order in which they are tried
+     * @since 1.1.0
+     */
+    List<PatternRule> getPatternRules() {
+        return patternRules;
+    }
 }
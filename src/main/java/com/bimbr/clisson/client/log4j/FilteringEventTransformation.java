@@ -0,0 +1,23 @@
+package com.bimbr.clisson.client.log4j;
+
+import org.apache.log4j.spi.LoggingEvent;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * An {@link EventTransformation} that rejects the logging events which should be ignored by returning {@code null}
+ * rather than by throwing {@link EventTransformation.IgnoreEventException}, which is costly when most logging events
+ * are ignored. {@link ClissonAppender} uses {@link #performIfRelevant(LoggingEvent)} of such transformations.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public interface FilteringEventTransformation extends EventTransformation {
+    /**
+     * Transforms log4j {@link LoggingEvent} to Clisson {@link Event}.
+     * @param source the log4j logging event
+     * @return a Clisson event, or {@code null} if the {@code source} event should be ignored and not sent to the server
+     * @since 1.1.0
+     */
+    Event performIfRelevant(LoggingEvent source);
+}
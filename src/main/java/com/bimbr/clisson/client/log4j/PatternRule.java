@@ -0,0 +1,136 @@
+package com.bimbr.clisson.client.log4j;
+
+import static com.bimbr.clisson.util.Arguments.nonEmpty;
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Level;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * A rule of {@link PatternTransformation}: a precompiled regular expression that finds message ids in log messages,
+ * together with the loggers and levels it applies to and a literal that every matching message contains, checked
+ * before the regular expression is run.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ *
+ * @author mmakowski
+ * @since 1.1.0
+ */
+final class PatternRule {
+    // the characters that make a regular expression differ from a literal
+    private static final String META_CHARACTERS = "\\.[]{}()*+?^$|";
+    private static final String QUANTIFIERS     = "*?{";
+
+    private final String       name;
+    private final Pattern      pattern;
+    private final String       literal;
+    private final int          inputGroup;
+    private final int          outputGroup;
+    private final String       description;
+    private final List<String> loggers;
+    private final Level        minLevel;
+    private final ThreadLocal<Matcher> matchers = new ThreadLocal<Matcher>() {
+        @Override
+        protected Matcher initialValue() {
+            return pattern.matcher("");
+        }
+    };
+
+    /**
+     * @param name the name of the rule
+     * @param pattern the regular expression that matching messages contain
+     * @param literal the text that all matching messages contain, or {@code null} to derive it from the pattern
+     * @param inputGroup the group of the pattern that holds the id of the input message
+     * @param outputGroup the group of the pattern that holds the id of the output message, or 0 if the event is a
+     *                    checkpoint of the input message
+     * @param description the description of events
+     * @param loggers the names of loggers, including their descendants, whose events the rule applies to; all loggers
+     *                if empty
+     * @param minLevel the minimum level of logging events the rule applies to
+     */
+    PatternRule(final String       name,
+                final Pattern      pattern,
+                final String       literal,
+                final int          inputGroup,
+                final int          outputGroup,
+                final String       description,
+                final List<String> loggers,
+                final Level        minLevel) {
+        this.name        = nonEmpty(name, "name");
+        this.pattern     = nonNull(pattern, "pattern");
+        final int groups = pattern.matcher("").groupCount();
+        if (inputGroup < 1 || inputGroup > groups) throw new IllegalArgumentException("inputGroup must be a group of " + pattern);
+        if (outputGroup < 0 || outputGroup > groups) throw new IllegalArgumentException("outputGroup must be 0 or a group of " + pattern);
+        this.literal     = literal == null ? literalOf(pattern.pattern()) : literal;
+        this.inputGroup  = inputGroup;
+        this.outputGroup = outputGroup;
+        this.description = nonNull(description, "description");
+        this.loggers     = nonNull(loggers, "loggers");
+        this.minLevel    = nonNull(minLevel, "minLevel");
+    }
+
+    /**
+     * @param regex a regular expression
+     * @return the literal that all strings matching {@code regex} contain, at the start of the match; {@code ""} if it
+     *         cannot be determined
+     */
+    static String literalOf(final String regex) {
+        if (regex.indexOf('|') >= 0 || regex.startsWith("(?")) return "";
+        final String unanchored = regex.startsWith("^") ? regex.substring(1) : regex;
+        int end = 0;
+        while (end < unanchored.length() && META_CHARACTERS.indexOf(unanchored.charAt(end)) < 0) end++;
+        // a quantifier makes the last character of the literal optional
+        if (end < unanchored.length() && QUANTIFIERS.indexOf(unanchored.charAt(end)) >= 0) end = Math.max(0, end - 1);
+        return unanchored.substring(0, end);
+    }
+
+    /**
+     * @param loggerName the name of a logger
+     * @return {@code true} if the rule applies to the events of the logger
+     */
+    boolean appliesTo(final String loggerName) {
+        if (loggers.isEmpty()) return true;
+        for (final String logger : loggers) {
+            if (loggerName.startsWith(logger) && (loggerName.length() == logger.length() || loggerName.charAt(logger.length()) == '.')) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the minimum level of logging events the rule applies to
+     */
+    Level minLevel() {
+        return minLevel;
+    }
+
+    /**
+     * @param sourceId the id of the component that is the source of the event
+     * @param message the rendered message of a logging event
+     * @param timestamp the time of the logging event
+     * @return the event the message describes, or {@code null} if it does not match the rule
+     */
+    Event eventFor(final String sourceId, final String message, final long timestamp) {
+        if (message.indexOf(literal) < 0) return null;
+        final Matcher matcher = matchers.get().reset(message);
+        final String inputId  = matcher.find() ? matcher.group(inputGroup) : null;
+        final String outputId = inputId != null && outputGroup != 0 ? matcher.group(outputGroup) : inputId;
+        // the matcher would otherwise keep the message reachable from the thread
+        matcher.reset("");
+        if (inputId == null || outputId == null) return null;
+        final Set<String> inputIds = Collections.singleton(inputId);
+        return new Event(sourceId, new Date(timestamp), inputIds, outputId == inputId ? inputIds : Collections.singleton(outputId), description);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + pattern;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bimbr.clisson.client.log4j;
+
+import static com.bimbr.clisson.util.Arguments.nonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * An {@link EventTransformation} that finds message ids in log messages using regular expressions from the config
+ * file, so that no custom transformation has to be written. To use it, set
+ * {@code clisson.log4j.eventTransformation} to {@code com.bimbr.clisson.client.log4j.PatternTransformation} and
+ * specify:
+ * <ul>
+ * <li>{@code clisson.log4j.patterns} - a comma-separated list of the names of patterns, in the order in which they are
+ * tried</li>
+ * <li>{@code clisson.log4j.pattern.<name>} - the regular expression that messages of the event contain; the id of
+ * the message is the first group</li>
+ * </ul>
+ * and, optionally, for each pattern:
+ * <ul>
+ * <li>{@code clisson.log4j.pattern.<name>.outputGroup} - the group holding the id of the output message; if not
+ * specified, the event is a checkpoint of the message</li>
+ * <li>{@code clisson.log4j.pattern.<name>.inputGroup} - the group holding the id of the input message
+ * (default: {@code 1})</li>
+ * <li>{@code clisson.log4j.pattern.<name>.description} - the description of events (default: the name of the
+ * pattern)</li>
+ * <li>{@code clisson.log4j.pattern.<name>.loggers} - a comma-separated list of the names of loggers, whose
+ * descendants are included, the pattern applies to (default: all loggers)</li>
+ * <li>{@code clisson.log4j.pattern.<name>.level} - the minimum level of logging events the pattern applies to
+ * (default: {@code ALL})</li>
+ * <li>{@code clisson.log4j.pattern.<name>.literal} - a text that all messages matching the pattern contain (default:
+ * the literal text the regular expression starts with)</li>
+ * </ul>
+ * The applicable patterns are determined once per logger. Logging events of other loggers or levels are rejected
+ * without their messages being rendered, and the regular expression of a pattern is only run on the messages that
+ * contain its literal.
+ * <p>
+ * It is safe to share an instance between several threads.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public final class PatternTransformation implements FilteringEventTransformation {
+    // the cache is not extended beyond this size, in case logger names are generated
+    private static final int MAX_CACHED_LOGGERS = 10000;
+
+    private final String        sourceId;
+    private final PatternRule[] rules;
+    private final ConcurrentMap<String, LoggerRules> rulesByLogger = new ConcurrentHashMap<String, LoggerRules>();
+
+    /**
+     * Constructs a transformation with patterns taken from the config file.
+     * @since 1.1.0
+     */
+    public PatternTransformation() {
+        this(Config.fromPropertiesFile());
+    }
+
+    private PatternTransformation(final Config config) {
+        this(config.getComponentId(), config.getPatternRules());
+    }
+
+    /**
+     * @param sourceId the id of the component that is the source of events
+     * @param rules the rules, in the order in which they are tried
+     */
+    PatternTransformation(final String sourceId, final List<PatternRule> rules) {
+        this.sourceId = nonNull(sourceId, "sourceId");
+        this.rules    = nonNull(rules, "rules").toArray(new PatternRule[rules.size()]);
+    }
+
+    public Event perform(final LoggingEvent source) throws IgnoreEventException {
+        final Event event = performIfRelevant(source);
+        if (event == null) throw new IgnoreEventException();
+        return event;
+    }
+
+    public Event performIfRelevant(final LoggingEvent source) {
+        final LoggerRules loggerRules = rulesFor(source.getLoggerName());
+        final Level level = source.getLevel();
+        if (!loggerRules.appliesTo(level)) return null;
+        final String message = source.getRenderedMessage();
+        if (message == null) return null;
+        for (final PatternRule rule : loggerRules.rules) {
+            if (!level.isGreaterOrEqual(rule.minLevel())) continue;
+            final Event event = rule.eventFor(sourceId, message, source.timeStamp);
+            if (event != null) return event;
+        }
+        return null;
+    }
+
+    private LoggerRules rulesFor(final String loggerName) {
+        final LoggerRules cached = rulesByLogger.get(loggerName);
+        if (cached != null) return cached;
+        final List<PatternRule> applicable = new ArrayList<PatternRule>();
+        for (final PatternRule rule : rules) {
+            if (rule.appliesTo(loggerName)) applicable.add(rule);
+        }
+        final LoggerRules loggerRules = new LoggerRules(applicable);
+        if (rulesByLogger.size() < MAX_CACHED_LOGGERS) rulesByLogger.put(loggerName, loggerRules);
+        return loggerRules;
+    }
+
+    /**
+     * The rules that apply to a single logger.
+     */
+    private static final class LoggerRules {
+        final PatternRule[] rules;
+        // the lowest of the minimum levels of the rules
+        final Level         minLevel;
+
+        LoggerRules(final List<PatternRule> rules) {
+            this.rules = rules.toArray(new PatternRule[rules.size()]);
+            Level lowest = null;
+            for (final PatternRule rule : rules) {
+                if (lowest == null || lowest.isGreaterOrEqual(rule.minLevel())) lowest = rule.minLevel();
+            }
+            this.minLevel = lowest;
+        }
+
+        boolean appliesTo(final Level level) {
+            return minLevel != null && level.isGreaterOrEqual(minLevel);
+        }
+    }
+}
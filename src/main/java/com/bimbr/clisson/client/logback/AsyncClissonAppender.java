@@ -0,0 +1,42 @@
+package com.bimbr.clisson.client.logback;
+
+import ch.qos.logback.classic.AsyncAppender;
+
+/**
+ * A Logback {@link AsyncAppender} that queues logging events and passes them to a {@link ClissonAppender} on a worker
+ * thread, so that logging threads do not wait for the transformation of events. When the appender is started without
+ * an appender attached, it attaches a {@link ClissonAppender} configured from the config file. The queue is configured
+ * like that of any {@code AsyncAppender}, e.g.:
+ * <pre>
+ * &lt;appender name="CLISSON" class="com.bimbr.clisson.client.logback.AsyncClissonAppender"&gt;
+ *   &lt;queueSize&gt;1024&lt;/queueSize&gt;
+ *   &lt;discardingThreshold&gt;0&lt;/discardingThreshold&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * Logging events are prepared for deferred processing on the logging thread, which captures their formatted
+ * message, thread name and MDC. Their caller data, which requires a walk of the stack, is not captured unless
+ * {@code includeCallerData} is set.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public class AsyncClissonAppender extends AsyncAppender {
+    /**
+     * @since 1.1.0
+     */
+    public AsyncClissonAppender() {
+        setIncludeCallerData(false);
+    }
+
+    @Override
+    public void start() {
+        if (!iteratorForAppenders().hasNext()) {
+            final ClissonAppender appender = new ClissonAppender();
+            appender.setContext(getContext());
+            appender.setName(getName() + "-recorder");
+            appender.start();
+            addAppender(appender);
+        }
+        super.start();
+    }
+}
@@ -0,0 +1,89 @@
+package com.bimbr.clisson.client.logback;
+
+import java.lang.reflect.Constructor;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+
+import com.bimbr.clisson.client.Recorder;
+import com.bimbr.clisson.client.RecorderFactory;
+import com.bimbr.clisson.client.RecorderLifecycle;
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * A Logback appender that transforms logging events to Clisson events and sends them to Clisson server.
+ * When {@code ClissonAppender} is used, in addition to the settings described in
+ * {@link com.bimbr.clisson.client.RecorderFactory}, the config file must contain:
+ * <ul>
+ * <li>{@code clisson.logback.eventTransformation} - the full name of the class that implements
+ * {@link EventTransformation} to be used for transforming Logback events to Clisson events</li>
+ * </ul>
+ * Unlike its log4j counterpart, the appender does not hold a lock while the transformation runs, so logging threads
+ * do not wait for each other. To take the transformation off the logging threads altogether, use
+ * {@link AsyncClissonAppender}. The appender never asks for the caller data of logging events, so that no stack walk
+ * is made for them.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public final class ClissonAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+    private final EventTransformation transformation;
+    private final Recorder record;
+    // the same recorder, if it can be flushed; null otherwise
+    private final RecorderLifecycle lifecycle;
+    private final long closeTimeoutMs;
+
+    /**
+     * Constructs an appender with the transformation and recorder settings taken from the config file.
+     * @since 1.1.0
+     */
+    public ClissonAppender() {
+        final Config config = Config.fromPropertiesFile();
+        this.transformation = newInstanceOf(config.getTransformationClass());
+        this.record         = RecorderFactory.getRecorder(config);
+        this.lifecycle      = lifecycle(record);
+        this.closeTimeoutMs = config.getShutdownTimeoutMs();
+    }
+
+    private EventTransformation newInstanceOf(final Class<EventTransformation> transformationClass) { 
+        try {
+            final Constructor<EventTransformation> constructor = transformationClass.getConstructor();
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("error creating an instance of " + transformationClass, e);
+        }
+    }
+
+    private static RecorderLifecycle lifecycle(final Recorder recorder) {
+        return recorder instanceof RecorderLifecycle ? (RecorderLifecycle) recorder : null;
+    }
+
+    /**
+     * For unit testing.
+     */
+    ClissonAppender(final EventTransformation transformation,
+                    final Recorder            recorder,
+                    final long                closeTimeoutMs) {
+        this.transformation = transformation;
+        this.record         = recorder;
+        this.lifecycle      = lifecycle(recorder);
+        this.closeTimeoutMs = closeTimeoutMs;
+    }
+    
+    /**
+     * Stops the appender and flushes the recorder, sending the events recorded so far within
+     * {@code clisson.shutdown.timeoutMs}. The recorder is shared by the whole application, so it is not closed; that
+     * is left to {@link RecorderFactory#close(long)} or the shutdown hook.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        if (lifecycle != null) lifecycle.flush(closeTimeoutMs);
+    }
+
+    @Override
+    protected void append(final ILoggingEvent logbackEvent) {
+        final Event event = transformation.perform(logbackEvent);
+        if (event != null) record.event(event);
+    }
+}
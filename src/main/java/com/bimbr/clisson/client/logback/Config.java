@@ -0,0 +1,59 @@
+package com.bimbr.clisson.client.logback;
+
+import java.util.Properties;
+
+/**
+ * An extension of {@link com.bimbr.clisson.client.Config} that, in addition to the Clisson server settings also
+ * requires Logback-specific settings.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+class Config extends com.bimbr.clisson.client.Config {
+    private static final String LOGBACK_EVENTTRANSFORMATION = "clisson.logback.eventTransformation";
+    
+    private final Class<EventTransformation> transformationClass;
+    
+    /**
+     * @return config constructed from the default or user-specified properties file
+     * @see com.bimbr.clisson.client.Config#fromPropertiesFile()
+     */
+    public static Config fromPropertiesFile() {
+        return new Config(validatedProperties(new PropertyValidator()));
+    }
+
+    @SuppressWarnings("unchecked") // loading class dynamically
+    private Config(final Properties properties) {
+        super(properties);
+        final String className = properties.getProperty(LOGBACK_EVENTTRANSFORMATION);
+        try {
+            transformationClass = (Class<EventTransformation>) Thread.currentThread().getContextClassLoader().loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("className is set to non-existent class " + className, e);
+        }
+    }
+    
+    private static final class PropertyValidator extends com.bimbr.clisson.client.Config.PropertyValidator {
+        @Override
+        public void validate(Properties properties, String configPath) {
+            super.validate(properties, configPath);
+            final String className = properties.getProperty(LOGBACK_EVENTTRANSFORMATION);
+            if (className == null) throw new ConfigException(configPath, LOGBACK_EVENTTRANSFORMATION + " is not set");
+            try {
+                final Class<?> cls = Thread.currentThread().getContextClassLoader().loadClass(className);
+                if (!EventTransformation.class.isAssignableFrom(cls)) 
+                    throw new ConfigException(configPath, LOGBACK_EVENTTRANSFORMATION + " is set to " + className + " which does not implement " + EventTransformation.class);
+            } catch (ClassNotFoundException e) {
+                throw new ConfigException(configPath, LOGBACK_EVENTTRANSFORMATION + " is set to " + className + " which could not be found");
+            }
+        }
+    }
+    
+    /**
+     * @return the class of transformation to be used to map Logback events to Clisson events
+     * @since 1.1.0
+     */
+    public Class<EventTransformation> getTransformationClass() {
+        return transformationClass;
+    }   
+}
@@ -0,0 +1,25 @@
+package com.bimbr.clisson.client.logback;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import com.bimbr.clisson.protocol.Event;
+
+/**
+ * Event transformations build Clisson {@link Event}s from Logback {@link ILoggingEvent}s. They are the counterpart of
+ * {@link com.bimbr.clisson.client.log4j.EventTransformation}, except that the logging events that should be ignored
+ * are rejected by returning {@code null}, which is cheaper than throwing an exception when most of them are.
+ * <p>
+ * {@link ClissonAppender} calls transformations from several threads at the same time, so they must be thread-safe.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public interface EventTransformation {
+    /**
+     * Transforms Logback {@link ILoggingEvent} to Clisson {@link Event}.
+     * @param source the Logback logging event
+     * @return a Clisson event, or {@code null} if the {@code source} event should be ignored and not sent to the server
+     * @since 1.1.0
+     */
+    Event perform(ILoggingEvent source);
+}
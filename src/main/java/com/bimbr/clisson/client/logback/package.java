@@ -0,0 +1,5 @@
+/**
+ * Contains {@link ClissonAppender}, a Logback appender that extracts event information from log messages
+ * and sends it to Clisson server, and {@link AsyncClissonAppender}, which does it on a worker thread.
+ */
+package com.bimbr.clisson.client.logback;
@@ -0,0 +1,46 @@
+package com.bimbr.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Clock} that reads the system time only once a second and, in between, extrapolates it using
+ * {@link System#nanoTime()}, so that reading the time does not require a system call on platforms where
+ * {@code nanoTime()} does not, and allocates no objects between the readings. The time it returns may differ
+ * from the system time by the drift of the two clocks over a second, and it follows adjustments of the system
+ * time only at the next resynchronisation, so it may go back then.
+ * <p>
+ * It is safe to share an instance between several threads.
+ * 
+ * @author mmakowski
+ * @since 1.1.0
+ */
+public class CachedClock extends Clock {
+    private static final long RESYNC_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final long NANOS_PER_MILLI    = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private volatile Reference reference = new Reference();
+
+    /**
+     * @return current system time, in milliseconds since epoch, extrapolated from the last reading of the system clock
+     */
+    @Override
+    public long currentTimeMillis() {
+        final long now = System.nanoTime();
+        Reference current = reference;
+        if (now - current.nanos >= RESYNC_INTERVAL_NS) {
+            // threads that resynchronise at the same time read the system clock more than once, which is harmless
+            current = new Reference();
+            reference = current;
+            return current.millis;
+        }
+        return current.millis + (now - current.nanos) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * A reading of the system clock and of {@code nanoTime()} at the same instant.
+     */
+    private static final class Reference {
+        final long millis = System.currentTimeMillis();
+        final long nanos  = System.nanoTime();
+    }
+}
@@ -14,6 +14,14 @@ public class Clock {
      * @return current system time
      */
     public Date getTime() {
-        return new Date();
+        return new Date(currentTimeMillis());
+    }
+    
+    /**
+     * @return current system time, in milliseconds since epoch; unlike {@link #getTime()} does not allocate any objects
+     * @since 1.1.0
+     */
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
     }
 }
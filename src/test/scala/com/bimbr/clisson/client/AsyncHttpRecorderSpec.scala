@@ -17,27 +17,49 @@ import com.bimbr.util.Clock
 class AsyncHttpRecorderSpec extends Specification with Mockito {
   "AsyncHttpRecorder construction" should {
     "require non-empty source" in {
-      new AsyncHttpRecorder(true, "", Invoker, BufferSize, Clock) must throwAn [IllegalArgumentException]
+      new AsyncHttpRecorder.Builder("", Invoker)
+          .buffers(BlockingEventBuffer.factory(BufferSize))
+          .clock(Clock)
+          .build() must throwAn [IllegalArgumentException]
     }
     "require non-null invoker" in {
-      new AsyncHttpRecorder(true, SrcId, null, BufferSize, Clock) must throwAn [IllegalArgumentException]
+      new AsyncHttpRecorder.Builder(SrcId, null)
+          .buffers(BlockingEventBuffer.factory(BufferSize))
+          .clock(Clock)
+          .build() must throwAn [IllegalArgumentException]
     }
     "require positive buffer size" in {
-      new AsyncHttpRecorder(true, SrcId, Invoker, 0, Clock) must throwAn [IllegalArgumentException]
+      new AsyncHttpRecorder.Builder(SrcId, Invoker)
+          .buffers(BlockingEventBuffer.factory(0))
+          .clock(Clock)
+          .build() must throwAn [IllegalArgumentException]
+    }
+    "require positive number of sender threads" in {
+      new AsyncHttpRecorder.Builder(SrcId, Invoker).buffers(Buffers).senderThreads(0).clock(Clock).build() must throwAn [IllegalArgumentException]
+    }
+    "require positive max batch size" in {
+      new AsyncHttpRecorder.Builder(SrcId, Invoker).buffers(Buffers).maxBatchSize(0).clock(Clock).build() must throwAn [IllegalArgumentException]
+    }
+    "require non-negative max batch linger time" in {
+      new AsyncHttpRecorder.Builder(SrcId, Invoker)
+          .buffers(Buffers)
+          .maxBatchLingerMs(-1L)
+          .clock(Clock)
+          .build() must throwAn [IllegalArgumentException]
     }
   }
   "AsyncHttpRecorder" should {
     "send a POST request with checkpoint event JSON to /event when checkpoint() is called" in {
-      val invoker = mock[HttpInvoker]
+      val invoker = new RecordingInvoker
       recorder(invoker) checkpoint (MsgId, Description)
       Thread sleep MaxExpectedInvocationDelayMs
-      there was one(invoker).post("/event", Json.jsonFor(Checkpoint)) 
+      invoker.received mustEqual List(("/event", Json.jsonFor(Checkpoint))) 
     }
     "send a POST request with generic event JSON to /event when event() is called" in {
-      val invoker = mock[HttpInvoker]
+      val invoker = new RecordingInvoker
       recorder(invoker) event (InputMsgIds, OutputMsgIds, Description)
       Thread sleep MaxExpectedInvocationDelayMs
-      there was one(invoker).post("/event", Json.jsonFor(GenericEvent))
+      invoker.received mustEqual List(("/event", Json.jsonFor(GenericEvent)))
     }
     "have event() return immediately even when the invoker is slow" in {
       val invoker = new BlockedInvoker
@@ -63,13 +85,394 @@ class AsyncHttpRecorderSpec extends Specification with Mockito {
       recordEventsFor(PeriodThatAllowsTwoLogMessages, record)
       there were two(logger).warn(anyString, any[Exception])
     }
+    "send a JSON array of buffered events to /events in a single POST when batching is enabled" in {
+      val invoker = new RecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .maxBatchSize(10)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 3)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      record checkpoint (MsgId, Description)
+      record event (InputMsgIds, OutputMsgIds, Description)
+      Thread sleep MaxExpectedInvocationDelayMs
+      invoker.received mustEqual List(("/events", Json.jsonFor(Array(Checkpoint, GenericEvent))))
+    }
+    "not send more than max batch size events in a single POST" in {
+      val invoker = new RecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .maxBatchSize(2)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 3)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      Thread sleep MaxExpectedInvocationDelayMs
+      invoker.received mustEqual List(("/events", Json.jsonFor(Array(Checkpoint, Checkpoint))), ("/event", Json.jsonFor(Checkpoint)))
+    }
+    "send coalesced records of batched events to /events/coalesced when coalescing is enabled" in {
+      val invoker = new UriRecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .maxBatchSize(10)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 2)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .coalescer(new EventCoalescer(10))
+                       .build()
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      record flush MaxExpectedInvocationDelayMs
+      invoker.uris mustEqual List("/events/coalesced")
+    }
+    "number requests with the sequence numbers of their first events when sequencing is enabled" in {
+      val invoker = new UriRecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .maxBatchSize(2)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 2)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .sequenced(true)
+                       .build()
+      (1 to 2) foreach { _ => record checkpoint (MsgId, Description) }
+      record flush MaxExpectedInvocationDelayMs
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      invoker.uris mustEqual List("/events?sequence=1", "/event?sequence=3")
+    }
+    "number coalesced records rather than the events they hold" in {
+      val invoker = new UriRecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .maxBatchSize(3)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 2)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .coalescer(new EventCoalescer(10))
+                       .sequenced(true)
+                       .build()
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      record flush MaxExpectedInvocationDelayMs
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      invoker.uris mustEqual List("/events/coalesced?sequence=1", "/event?sequence=2")
+    }
+    "encode events in the binary wire format when it is selected" in {
+      val payloads = new java.util.concurrent.ConcurrentLinkedQueue[List[Byte]]
+      val invoker = new HttpInvoker {
+        def post(uri: String, content: String): Unit = ()
+        def post(uri: String, content: Array[Byte], length: Int): Unit = payloads add (content take length toList)
+        def close() = ()
+      }
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .wireFormat(WireFormat.BINARY)
+                       .build()
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      payloads.toList map (_ take 2) mustEqual List(List('C'.toByte, 'E'.toByte))
+    }
+    "send all events of a single message through the same sender thread" in {
+      val invoker = mock[HttpInvoker]
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .senderThreads(4)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 5) foreach { _ => record checkpoint (MsgId, Description) }
+      Thread sleep MaxExpectedInvocationDelayMs
+      record.senderStatistics.map(_.getEventsSent).sorted mustEqual List(0L, 0L, 0L, 5L)
+    }
+    "split batches so that all events of a message are sent to the same server when balancing by message hash" in {
+      val servers = List.fill(3)(new RecordingInvoker)
+      val balancer = new BalancingInvoker(List("a", "b", "c"), seqAsJavaList(servers: List[HttpInvoker]), BalancingInvoker.Strategy.MESSAGE_HASH, 1000)
+      val record = new AsyncHttpRecorder.Builder(SrcId, balancer)
+                       .buffers(BlockingEventBuffer.factory(100))
+                       .maxBatchSize(100)
+                       .maxBatchLingerMs(MaxExpectedInvocationDelayMs / 3)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 60) foreach { i => record checkpoint ("msg-" + (i % 20), Description) }
+      record flush MaxExpectedInvocationDelayMs
+      val serversOfMessages = (for (server <- servers.indices; (_, json) <- servers(server).received; id <- """msg-\d+""".r findAllIn json) yield (id, server)).distinct
+      (serversOfMessages.size, serversOfMessages.map(_._1).distinct.size, servers.count(_.received.nonEmpty) > 1) mustEqual (20, 20, true)
+    }
+    "count the events that could not be sent in sender statistics" in {
+      val record = recorder(failingInvoker())
+      record checkpoint (MsgId, Description)
+      Thread sleep MaxExpectedInvocationDelayMs
+      record.senderStatistics.head.getEventsFailed mustEqual 1L
+    }
+    "not construct a Date when checkpoint() is called" in {
+      val clock = mock[Clock]
+      clock.currentTimeMillis() returns Timestamp.getTime
+      recorder(mock[HttpInvoker], clock = clock) checkpoint (MsgId, Description)
+      there was no(clock).getTime()
+    }
+    "send events buffered in a lock-free ring buffer" in {
+      val invoker = new RecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(RingEventBuffer.factory(10, WaitStrategy.PARK))
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      record checkpoint (MsgId, Description)
+      Thread sleep MaxExpectedInvocationDelayMs
+      invoker.received mustEqual List(("/event", Json.jsonFor(Checkpoint))) 
+    }
     "not record any events if constructed disabled" in {
       val invoker = mock[HttpInvoker]
       val logger = mock[Logger]
-      val record = new AsyncHttpRecorder(false, SrcId, invoker, 1, Clock, logger, LoggerGagPeriodMs)
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .enabled(false)
+                       .buffers(BlockingEventBuffer.factory(1))
+                       .clock(Clock)
+                       .logger(logger, LoggerGagPeriodMs)
+                       .build()
       record event (InputMsgIds, OutputMsgIds, Description)
       Thread sleep MaxExpectedInvocationDelayMs
-      there was no(invoker).post(anyString, anyString)
+      (there was no(invoker).post(anyString, anyString)) and (there was no(invoker).post(anyString, any[Array[Byte]], anyInt))
+    }
+  }
+  "AsyncHttpRecorder instrumentation" should {
+    "notify the listener about sent, failed and dropped events" in {
+      val listener = mock[RecorderListener]
+      val record = new AsyncHttpRecorder.Builder(SrcId, failingInvoker())
+                       .buffers(BlockingEventBuffer.factory(1))
+                       .clock(Clock)
+                       .listener(listener)
+                       .build()
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      record close MaxExpectedInvocationDelayMs
+      record checkpoint (MsgId, Description)
+      (there was one(listener).batchFailed(anyInt, anyInt, any[Exception])) and (there was one(listener).eventDropped(0))
+    }
+    "keep sending events when the listener throws an exception" in {
+      val listener = mock[RecorderListener]
+      listener.batchSent(anyInt, anyInt, anyLong) throws (new RuntimeException("test error"))
+      val invoker = new RecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker).buffers(BlockingEventBuffer.factory(10)).clock(Clock).listener(listener).build()
+      (1 to 2) foreach { _ => record checkpoint (MsgId, Description) }
+      record flush MaxExpectedInvocationDelayMs
+      invoker.received.size mustEqual 2
+    }
+    "record request times and queue high-water mark in sender statistics" in {
+      val invoker = new GatedRecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 5) foreach { _ => record checkpoint (MsgId, Description) }
+      invoker.open()
+      record flush MaxExpectedInvocationDelayMs
+      val statistics = record.senderStatistics.head
+      (statistics.getRequestTimeHistogram.sum mustEqual 5L) and (statistics.getQueueHighWaterMark must beGreaterThanOrEqualTo (4))
+    }
+    "register sender statistics MBeans until closed" in {
+      val record = new AsyncHttpRecorder.Builder("mbean-test", new RecordingInvoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .senderThreads(2)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      val server = java.lang.management.ManagementFactory.getPlatformMBeanServer
+      def registered = server.queryNames(new javax.management.ObjectName("com.bimbr.clisson:type=Sender,component=\"mbean-test\",*"), null).size
+      record.registerMBeans()
+      val whileOpen = registered
+      record close MaxExpectedInvocationDelayMs
+      (whileOpen, registered) mustEqual (2, 0)
+    }
+  }
+  "AsyncHttpRecorder retry" should {
+    "send the events of a failed request in a later attempt" in {
+      val invoker = new FlakyInvoker(2)
+      val record = retryingRecorder(invoker, new RetryPolicy(3, 10, 100), CircuitBreaker.disabled())
+      record checkpoint (MsgId, Description)
+      val result = record flush MaxExpectedInvocationDelayMs
+      (invoker.received.size, result.getEventsSent, record.senderStatistics.head.getRequestsRetried) mustEqual (1, 1L, 2L)
+    }
+    "give up after the max number of attempts" in {
+      val invoker = new FlakyInvoker(3)
+      val record = retryingRecorder(invoker, new RetryPolicy(3, 10, 100), CircuitBreaker.disabled())
+      record checkpoint (MsgId, Description)
+      val result = record flush MaxExpectedInvocationDelayMs
+      (invoker.received.size, result.getEventsFailed) mustEqual (0, 1L)
+    }
+    "hold the events while the circuit breaker is open and send them when the server recovers" in {
+      val invoker = new FlakyInvoker(3)
+      val breaker = new CircuitBreaker(2, 50)
+      val record = retryingRecorder(invoker, new RetryPolicy(3, 10, 100), breaker)
+      record checkpoint (MsgId, Description)
+      Thread sleep MaxExpectedInvocationDelayMs / 4
+      val openWhileDown = breaker.isOpen
+      val result = record flush MaxExpectedInvocationDelayMs
+      (openWhileDown, breaker.isOpen, result.getEventsSent) mustEqual (true, false, 1L)
+    }
+  }
+  "AsyncHttpRecorder overflow" should {
+    "drop the oldest buffered events to make space for new ones if the policy is to drop oldest" in {
+      val invoker = new GatedRecordingInvoker
+      val record = overflowingRecorder(invoker, 2, new OverflowPolicy(OverflowPolicy.Action.DROP_OLDEST, 0, 100, 100, 100))
+      record checkpoint (MsgId, "event 1")
+      Thread sleep MaxExpectedInvocationDelayMs / 3
+      (2 to 4) foreach { i => record checkpoint (MsgId, "event " + i) }
+      invoker.open()
+      val result = record flush MaxExpectedInvocationDelayMs
+      (invoker.received.map(r => Json.fromJson(r._2, classOf[Event]).getDescription), result.isComplete, record.senderStatistics.head.getEventsEvicted) mustEqual 
+        (List("event 1", "event 3", "event 4"), true, 1L)
+    }
+    "make the recording thread wait for space in the buffer if the policy is to block" in {
+      val invoker = new GatedRecordingInvoker
+      val record = overflowingRecorder(invoker, 1, new OverflowPolicy(OverflowPolicy.Action.BLOCK, 10000, 100, 100, 100))
+      record checkpoint (MsgId, Description)
+      Thread sleep MaxExpectedInvocationDelayMs / 3
+      record checkpoint (MsgId, Description)
+      new Thread(new Runnable { def run() = { Thread sleep MaxExpectedInvocationDelayMs / 3; invoker.open() } }).start()
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      (invoker.received.size, record.senderStatistics.head.getEventsDropped) mustEqual (3, 0L)
+    }
+    "shed checkpoints but keep multi-message events above the shedding threshold" in {
+      val invoker = new GatedRecordingInvoker
+      val record = overflowingRecorder(invoker, 10, new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 50, 0, 100))
+      record checkpoint (MsgId, Description)
+      Thread sleep MaxExpectedInvocationDelayMs / 3
+      (1 to 10) foreach { _ => record checkpoint (MsgId, Description) }
+      record event (InputMsgIds, OutputMsgIds, Description)
+      invoker.open()
+      record flush MaxExpectedInvocationDelayMs
+      val statistics = record.senderStatistics.head
+      (statistics.getEventsShed, statistics.getEventsSent) mustEqual (5L, 7L)
+    }
+  }
+  "AsyncHttpRecorder filtering" should {
+    "only record events of sampled messages" in {
+      val invoker = new RecordingInvoker
+      val sampler = new MessageSampler(50)
+      val record = filteringRecorder(invoker, sampler, RateLimiter.NONE)
+      val ids = (1 to 100) map ("msg-" + _)
+      ids foreach { id => record checkpoint (id, Description) }
+      record flush MaxExpectedInvocationDelayMs
+      invoker.received.size mustEqual (ids count sampler.samples)
+    }
+    "not record events above the rate limit of their description" in {
+      val invoker = new RecordingInvoker
+      val record = filteringRecorder(invoker, MessageSampler.ALL, new RateLimiter(1, 3))
+      (1 to 5) foreach { _ => record checkpoint (MsgId, Description) }
+      record event (InputMsgIds, OutputMsgIds, "other event")
+      record flush MaxExpectedInvocationDelayMs
+      (invoker.received.size, record.senderStatistics.head.getEventsRateLimited) mustEqual (4, 2L)
+    }
+  }
+  "AsyncHttpRecorder with an asynchronous invoker" should {
+    "issue requests without waiting for the responses to earlier ones" in {
+      val invoker = new AsyncRecordingInvoker(0)
+      val record = retryingRecorder(invoker, new RetryPolicy(3, 0, 0), CircuitBreaker.disabled())
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      Thread sleep MaxExpectedInvocationDelayMs
+      val issuedBeforeResponses = invoker.issued.get
+      invoker.open()
+      record flush MaxExpectedInvocationDelayMs
+      (issuedBeforeResponses, record.senderStatistics.head.getEventsSent) mustEqual (3, 3L)
+    }
+    "retry failed asynchronous requests" in {
+      val invoker = new AsyncRecordingInvoker(1)
+      invoker.open()
+      val record = retryingRecorder(invoker, new RetryPolicy(3, 0, 0), CircuitBreaker.disabled())
+      record checkpoint (MsgId, Description)
+      record flush MaxExpectedInvocationDelayMs
+      (invoker.received, record.senderStatistics.head.getRequestsRetried) mustEqual (List(("/event", Json.jsonFor(Checkpoint))), 1L)
+    }
+    "resume sending once the server recovers after the circuit breaker has opened" in {
+      val invoker = new AsyncRecordingInvoker(30, 5)
+      invoker.open()
+      val breaker = new CircuitBreaker(2, 50)
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(1000))
+                       .senderThreads(4)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .retryPolicy(new RetryPolicy(3, 0, 0))
+                       .circuitBreaker(breaker)
+                       .build()
+      (1 to 200) foreach { i => record checkpoint ("msg-" + i, Description) }
+      val result = record flush (10 * MaxExpectedInvocationDelayMs)
+      (result.getEventsSent, breaker.isOpen) mustEqual (200L, false)
+    }
+  }
+  "AsyncHttpRecorder flush" should {
+    "wait until the recorded events have been sent and report them" in {
+      val invoker = new RecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      val result = record flush MaxExpectedInvocationDelayMs
+      (result.getEventsSent, result.isComplete, invoker.received.size) mustEqual (3L, true, 3)
+    }
+    "report the events that could not be sent in time as remaining" in {
+      val invoker = new BlockedInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 3) foreach { _ => record checkpoint (MsgId, Description) }
+      val result = record flush 50
+      invoker.unblock()
+      (result.getEventsSent, result.getEventsRemaining) mustEqual (0L, 3L)
+    }
+  }
+  "AsyncHttpRecorder close" should {
+    "send the buffered events in large batches when batching is enabled" in {
+      val invoker = new GatedRecordingInvoker
+      val record = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                       .buffers(BlockingEventBuffer.factory(1000))
+                       .maxBatchSize(10)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      (1 to 1000) foreach { _ => record checkpoint (MsgId, Description) }
+      var sent = 0L
+      val closing = new Thread { override def run() = sent = record.close(MaxExpectedInvocationDelayMs).getEventsSent }
+      closing.start()
+      Thread sleep MaxExpectedInvocationDelayMs / 6
+      invoker.open()
+      closing.join()
+      (sent, invoker.received.size < 10) mustEqual (1000L, true)
+    }
+    "drop events recorded after the recorder has been closed" in {
+      val invoker = new RecordingInvoker
+      val record = recorder(invoker)
+      record close MaxExpectedInvocationDelayMs
+      record checkpoint (MsgId, Description)
+      (invoker.received, record.senderStatistics.head.getEventsDropped) mustEqual (Nil, 1L)
+    }
+    "stop the sender threads" in {
+      val record = new AsyncHttpRecorder.Builder(SrcId, new RecordingInvoker)
+                       .buffers(BlockingEventBuffer.factory(10))
+                       .senderThreads(3)
+                       .clock(Clock)
+                       .logger(Logger, LoggerGagPeriodMs)
+                       .build()
+      record close MaxExpectedInvocationDelayMs
+      Thread sleep MaxExpectedInvocationDelayMs
+      Thread.getAllStackTraces.keySet.map(_.getName).filter(_ startsWith "clisson-http-invoker") must beEmpty
+    }
+    "close the invoker" in {
+      val invoker = mock[HttpInvoker]
+      recorder(invoker) close MaxExpectedInvocationDelayMs
+      there was one(invoker).close()
     }
   }
 
@@ -84,14 +487,20 @@ class AsyncHttpRecorderSpec extends Specification with Mockito {
   val Timestamp = new java.util.Date
   val Clock = mock[Clock]
   Clock.getTime() returns Timestamp
+  Clock.currentTimeMillis() returns Timestamp.getTime
   val Host = "localhost"
   val PortBase = 31500
   val SrcId = "srcId"
   val BufferSize = 1
+  val Buffers = BlockingEventBuffer.factory(BufferSize)
   val Logger = mock[Logger]
   val LoggerGagPeriodMs = 1000
   val PeriodThatAllowsTwoLogMessages = (1.5 * LoggerGagPeriodMs).toLong
-  def recorder(invoker: HttpInvoker, logger: Logger = Logger) = new AsyncHttpRecorder(true, SrcId, invoker, 1, Clock, logger, LoggerGagPeriodMs)
+  def recorder(invoker: HttpInvoker, logger: Logger = Logger, clock: Clock = Clock) = new AsyncHttpRecorder.Builder(SrcId, invoker)
+                                                                                          .buffers(BlockingEventBuffer.factory(1))
+                                                                                          .clock(clock)
+                                                                                          .logger(logger, LoggerGagPeriodMs)
+                                                                                          .build()
   
   val MsgId = "msg-1"
   val Description = "test event"
@@ -103,15 +512,116 @@ class AsyncHttpRecorderSpec extends Specification with Mockito {
   class BlockedInvoker extends HttpInvoker {
     val latch = new CountDownLatch(1)
     override def post(s1: String, s2: String) = latch.await()
+    override def post(s1: String, s2: Array[Byte], i: Int) = latch.await()
+    override def close() = unblock()
     def unblock() = latch.countDown()
   }
   
+  /**
+   * Records the bodies of POST requests, normalised by parsing them and converting back to JSON so that they can be
+   * compared with the output of Json.jsonFor().
+   */
+  class RecordingInvoker extends HttpInvoker {
+    private val posts = new java.util.concurrent.ConcurrentLinkedQueue[(String, String)]
+    override def post(uri: String, content: String): Unit = posts add ((uri, normalised(content)))
+    override def post(uri: String, content: Array[Byte], length: Int): Unit = post(uri, new String(content, 0, length, "UTF-8"))
+    override def close() = ()
+    def received = posts.toList
+    private def normalised(json: String) = 
+      if (json startsWith "[") Json.jsonFor(Json.fromJson(json, classOf[Array[Event]])) 
+      else Json.jsonFor(Json.fromJson(json, classOf[Event]))
+  }
+  
+  /**
+   * Records only the URIs of POST requests, for payloads that RecordingInvoker cannot parse.
+   */
+  class UriRecordingInvoker extends HttpInvoker {
+    private val posted = new java.util.concurrent.ConcurrentLinkedQueue[String]
+    override def post(uri: String, content: String): Unit = posted add uri
+    override def post(uri: String, content: Array[Byte], length: Int): Unit = posted add uri
+    override def close() = ()
+    def uris = posted.toList
+  }
+  
   def failingInvoker() = {
     val invoker = mock[HttpInvoker]
     invoker.post(anyString, anyString) throws (new RuntimeException("test error"))
+    invoker.post(anyString, any[Array[Byte]], anyInt) throws (new RuntimeException("test error"))
     invoker
   }
   
+  /**
+   * A RecordingInvoker that blocks all requests until open() is called.
+   */
+  class GatedRecordingInvoker extends RecordingInvoker {
+    private val gate = new CountDownLatch(1)
+    override def post(uri: String, content: Array[Byte], length: Int): Unit = { gate.await(); super.post(uri, content, length) }
+    def open() = gate.countDown()
+  }
+  
+  /**
+   * A RecordingInvoker that fails the first given number of requests.
+   */
+  class FlakyInvoker(failures: Int) extends RecordingInvoker {
+    private val remainingFailures = new java.util.concurrent.atomic.AtomicInteger(failures)
+    override def post(uri: String, content: Array[Byte], length: Int): Unit = 
+      if (remainingFailures.getAndDecrement() > 0) throw new RuntimeException("test error") 
+      else super.post(uri, content, length)
+  }
+  
+  /**
+   * A FlakyInvoker that also issues requests asynchronously, completing them on a separate thread, after the given
+   * latency, once open() is called.
+   */
+  class AsyncRecordingInvoker(failures: Int, latencyMs: Long = 0) extends FlakyInvoker(failures) with AsyncHttpInvoker {
+    private val gate = new CountDownLatch(1)
+    private val executor = java.util.concurrent.Executors.newSingleThreadExecutor
+    val issued = new java.util.concurrent.atomic.AtomicInteger
+    override def postAsync(uri: String, content: Array[Byte], length: Int, callback: AsyncHttpInvoker.Callback): Unit = {
+      val copy = content take length
+      issued.incrementAndGet()
+      executor execute new Runnable {
+        def run() = {
+          gate.await()
+          Thread sleep latencyMs
+          try {
+            post(uri, copy, copy.length)
+            callback.completed()
+          } catch {
+            case e: RuntimeException => callback.failed(e)
+          }
+        }
+      }
+    }
+    def open() = gate.countDown()
+  }
+  
+  def retryingRecorder(invoker: HttpInvoker, retryPolicy: RetryPolicy, breaker: CircuitBreaker) = 
+    new AsyncHttpRecorder.Builder(SrcId, invoker)
+        .buffers(BlockingEventBuffer.factory(10))
+        .clock(Clock)
+        .logger(Logger, LoggerGagPeriodMs)
+        .retryPolicy(retryPolicy)
+        .circuitBreaker(breaker)
+        .build()
+  
+  def overflowingRecorder(invoker: HttpInvoker, bufferSize: Int, overflowPolicy: OverflowPolicy) = 
+    new AsyncHttpRecorder.Builder(SrcId, invoker)
+        .buffers(BlockingEventBuffer.factory(bufferSize))
+        .clock(Clock)
+        .logger(Logger, LoggerGagPeriodMs)
+        .overflowPolicy(overflowPolicy)
+        .build()
+  
+  def filteringRecorder(invoker: HttpInvoker, sampler: MessageSampler, rateLimiter: RateLimiter) = 
+    new AsyncHttpRecorder.Builder(SrcId, invoker)
+        .buffers(BlockingEventBuffer.factory(100))
+        .clock(Clock)
+        .logger(Logger, LoggerGagPeriodMs)
+        .sampler(sampler)
+        .rateLimiter(rateLimiter)
+        .build()
+  
   def fillBuffer(record: Recorder) = (0 until 1000) foreach { _ => record.event(InputMsgIds, OutputMsgIds, Description) }
   
   val MaxExpectedInvocationDelayMs = 300
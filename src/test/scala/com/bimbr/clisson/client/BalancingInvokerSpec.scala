@@ -0,0 +1,175 @@
+package com.bimbr.clisson.client
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit.SECONDS
+import java.util.concurrent.atomic.AtomicInteger
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import BalancingInvoker.Strategy._
+
+@RunWith(classOf[JUnitRunner])
+class BalancingInvokerSpec extends Specification {
+  "BalancingInvoker construction" should {
+    "require at least one server" in {
+      new BalancingInvoker(List[String](), List[HttpInvoker](), ROUND_ROBIN, IntervalMs) must throwAn [IllegalArgumentException]
+    }
+    "require a name for every server" in {
+      new BalancingInvoker(List("a"), List[HttpInvoker](new TestInvoker, new TestInvoker), ROUND_ROBIN, IntervalMs) must throwAn [IllegalArgumentException]
+    }
+    "require a positive health check interval" in {
+      balancer(servers(2), ROUND_ROBIN, 0) must throwAn [IllegalArgumentException]
+    }
+  }
+  "BalancingInvoker.Strategy" should {
+    "be looked up by camel case name" in {
+      List("roundRobin", "leastOutstanding", "MessageHash") map BalancingInvoker.Strategy.named mustEqual List(ROUND_ROBIN, LEAST_OUTSTANDING, MESSAGE_HASH)
+    }
+  }
+  "BalancingInvoker" should {
+    "send requests to each server in turn when balancing round-robin" in {
+      val testServers = servers(3)
+      val invoker = balancer(testServers, ROUND_ROBIN)
+      (1 to 6) foreach { _ => invoker post (Uri, Content) }
+      testServers map (_.received.get) mustEqual List(2, 2, 2)
+    }
+    "send requests to the server with the fewest requests awaiting a response when balancing by outstanding requests" in {
+      val busyServer = new GatedInvoker
+      val invoker = balancer(List(busyServer, new TestInvoker, new TestInvoker), LEAST_OUTSTANDING)
+      new Thread { override def run() = invoker post (Uri, Content) }.start()
+      while (busyServer.entered.get == 0) Thread sleep 1
+      (1 to 6) foreach { _ => invoker post (Uri, Content) }
+      val entered = busyServer.entered.get
+      busyServer.open()
+      entered mustEqual 1
+    }
+    "send all requests with a routing key to the same server when balancing by message hash" in {
+      val testServers = servers(3)
+      val invoker = balancer(testServers, MESSAGE_HASH)
+      (1 to 10) foreach { _ => invoker forKey "msg-1" post (Uri, Content) }
+      testServers map (_.received.get) filter (_ > 0) mustEqual List(10)
+    }
+    "spread routing keys between all servers when balancing by message hash" in {
+      val invoker = balancer(servers(3), MESSAGE_HASH)
+      (Keys map invoker.serverFor).toSet mustEqual Set(0, 1, 2)
+    }
+    "only move the routing keys of a failed server to other servers when balancing by message hash" in {
+      val testServers = servers(3)
+      val invoker = balancer(testServers, MESSAGE_HASH)
+      val before = Keys map invoker.serverFor
+      testServers(1).failing = true
+      invoker forKey (Keys find (invoker.serverFor(_) == 1)).get post (Uri, Content)
+      val after = Keys map invoker.serverFor
+      val moved = (before zip after) filter { case (b, a) => b != a } map (_._1)
+      (moved forall (_ == 1), after contains 1) mustEqual (true, false)
+    }
+    "send the request to another server when the chosen one fails" in {
+      val testServers = servers(3)
+      testServers(0).failing = true
+      val invoker = balancer(testServers, ROUND_ROBIN)
+      invoker post (Uri, Content)
+      (testServers map (_.received.get)).sum mustEqual 1
+    }
+    "take a failed server out of rotation" in {
+      val testServers = servers(3)
+      testServers(0).failing = true
+      val invoker = balancer(testServers, ROUND_ROBIN)
+      (1 to 6) foreach { _ => invoker post (Uri, Content) }
+      testServers(0).attempts.get mustEqual 1
+    }
+    "give a server out of rotation a trial request once the health check interval has passed" in {
+      val testServers = servers(2)
+      testServers(0).failing = true
+      val invoker = balancer(testServers, ROUND_ROBIN, 50)
+      (1 to 2) foreach { _ => invoker post (Uri, Content) }
+      testServers(0).failing = false
+      Thread sleep 100
+      (1 to 4) foreach { _ => invoker post (Uri, Content) }
+      testServers(0).received.get must be_>=(1)
+    }
+    "send requests to the preferred server when all servers are out of rotation" in {
+      val testServers = servers(2)
+      testServers foreach (_.failing = true)
+      val invoker = balancer(testServers, ROUND_ROBIN)
+      invoker.post(Uri, Content) must throwA [RuntimeException]
+      testServers foreach (_.failing = false)
+      invoker post (Uri, Content)
+      (testServers map (_.received.get)).sum mustEqual 1
+    }
+    "rethrow the failure when all servers fail" in {
+      val testServers = servers(2)
+      testServers foreach (_.failing = true)
+      balancer(testServers, ROUND_ROBIN).post(Uri, Content) must throwA [RuntimeException]
+    }
+    "report the outcome of asynchronous requests to the callback and take failed servers out of rotation" in {
+      val testServers = List.fill(2)(new TestAsyncInvoker)
+      testServers(0).failing = true
+      val invoker = new BalancingInvoker.Async(List("a", "b"), seqAsJavaList(testServers: List[AsyncHttpInvoker]), ROUND_ROBIN, IntervalMs)
+      val callback = new CountingCallback
+      (1 to 4) foreach { _ => invoker postAsync (Uri, Bytes, Bytes.length, callback) }
+      (callback.completions.get, callback.failures.get, testServers(0).attempts.get) mustEqual (3, 1, 1)
+    }
+    "close the invokers of all servers" in {
+      val testServers = servers(2)
+      balancer(testServers, ROUND_ROBIN).close()
+      testServers map (_.closed) mustEqual List(true, true)
+    }
+  }
+
+  class TestInvoker extends HttpInvoker {
+    @volatile var failing = false
+    @volatile var closed = false
+    val attempts = new AtomicInteger
+    val received = new AtomicInteger
+    def post(uri: String, content: String) = receive()
+    def post(uri: String, content: Array[Byte], length: Int) = receive()
+    def close() = closed = true
+    protected def receive() {
+      attempts.incrementAndGet()
+      if (failing) throw new RuntimeException("test error")
+      received.incrementAndGet()
+    }
+  }
+
+  class GatedInvoker extends TestInvoker {
+    val entered = new AtomicInteger
+    private val gate = new CountDownLatch(1)
+    override protected def receive() {
+      entered.incrementAndGet()
+      gate await (1, SECONDS)
+      super.receive()
+    }
+    def open() = gate.countDown()
+  }
+
+  class TestAsyncInvoker extends TestInvoker with AsyncHttpInvoker {
+    def postAsync(uri: String, content: Array[Byte], length: Int, callback: AsyncHttpInvoker.Callback) =
+      try {
+        receive()
+        callback.completed()
+      } catch {
+        case e: RuntimeException => callback.failed(e)
+      }
+  }
+
+  class CountingCallback extends AsyncHttpInvoker.Callback {
+    val completions = new AtomicInteger
+    val failures = new AtomicInteger
+    def completed() { completions.incrementAndGet() }
+    def failed(cause: Exception) { failures.incrementAndGet() }
+  }
+
+  def servers(count: Int) = List.fill(count)(new TestInvoker)
+  def balancer(testServers: List[HttpInvoker], strategy: BalancingInvoker.Strategy, intervalMs: Long = IntervalMs) =
+    new BalancingInvoker(testServers.indices.toList map ("server-" + _), testServers, strategy, intervalMs)
+
+  val IntervalMs = 60000L
+  val Keys = (1 to 300).toList map ("msg-" + _)
+  val Uri = "/events"
+  val Content = "some content"
+  val Bytes = Content getBytes "UTF-8"
+}
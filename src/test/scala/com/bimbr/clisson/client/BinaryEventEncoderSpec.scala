@@ -0,0 +1,122 @@
+package com.bimbr.clisson.client
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.Event
+
+@RunWith(classOf[JUnitRunner])
+class BinaryEventEncoderSpec extends Specification {
+  "BinaryEventEncoder" should {
+    "start the payload with the magic number, the version and the kind of records" in {
+      val payload = new BinaryEventEncoder encode SimpleEvent
+      payload.array.take(4).toList mustEqual List('C'.toByte, 'E'.toByte, BinaryEventEncoder.VERSION.toByte, 0.toByte)
+    }
+    "encode an event that decodes to the same properties" in {
+      decodedEvents(new BinaryEventEncoder encode SimpleEvent) mustEqual List(propertiesOf(SimpleEvent))
+    }
+    "encode a list of events that decode to the same properties" in {
+      val events = List(SimpleEvent, EventWithSpecialCharacters, EventWithNulls)
+      decodedEvents(new BinaryEventEncoder encode seqAsJavaList(events)) mustEqual (events map propertiesOf)
+    }
+    "preserve leading zeros and non-numeric suffixes of message ids" in {
+      val event = new Event("src", new java.util.Date(5), Set("msg-007", "msg", "007", "123456789012345678901234"), Set("msg-x1y"), "ids")
+      decodedEvents(new BinaryEventEncoder encode event) mustEqual List(propertiesOf(event))
+    }
+    "send repeated strings only once per payload" in {
+      val events = (1 to 100) map { i => new Event("some-source", new java.util.Date(i), Set("order-" + i), Set("order-" + i), "some description") }
+      val payload = new BinaryEventEncoder encode seqAsJavaList(events)
+      val text = new String(payload.array, 0, payload.size, "ISO-8859-1")
+      (text.split("some description", -1).length - 1, text.split("some-source", -1).length - 1, text.split("order-", -1).length - 1) mustEqual (1, 1, 1)
+    }
+    "encode a batch in a fraction of the size of JSON" in {
+      val events = (1 to 100) map { i => new Event("some-source", new java.util.Date(i), Set("order-" + i), Set("order-" + i), "some description") }
+      val binarySize = (new BinaryEventEncoder encode seqAsJavaList(events)).size
+      binarySize * 5 must be_<(new JsonEventEncoder encode seqAsJavaList(events) size)
+    }
+    "start a new dictionary for every payload" in {
+      val encoder = new BinaryEventEncoder
+      encoder encode EventWithSpecialCharacters
+      decodedEvents(encoder encode SimpleEvent) mustEqual List(propertiesOf(SimpleEvent))
+    }
+    "encode coalesced events as groups with shared messages and a list of timestamps and descriptions" in {
+      val second = new Event("src", new java.util.Date(0), Set("msg-1"), Set("msg-2", "msg-3"), "second")
+      val payload = new BinaryEventEncoder encodeCoalesced List(seqAsJavaList(List(SimpleEvent, second)))
+      decodedGroups(payload) mustEqual List((Some("src"), Some(Set("msg-1")), Some(Set("msg-2", "msg-3")),
+                                             List((Some(SimpleEvent.getTimestamp.getTime), Some("simple")), (Some(0L), Some("second")))))
+    }
+  }
+
+  def propertiesOf(event: Event) = (Option(event.getSourceId), Option(event.getTimestamp) map (_.getTime),
+                                    Option(event.getInputMessageIds) map (_.toSet), Option(event.getOutputMessageIds) map (_.toSet),
+                                    Option(event.getDescription))
+
+  def decodedEvents(payload: PayloadBuffer) = {
+    val decoder = new Decoder(payload)
+    decoder.records { flags =>
+      (decoder.optional(flags, 1)(decoder.string), decoder.optional(flags, 2)(decoder.timestamp), decoder.optional(flags, 4)(decoder.ids),
+       decoder.optional(flags, 8)(decoder.ids), decoder.optional(flags, 16)(decoder.string))
+    }
+  }
+
+  def decodedGroups(payload: PayloadBuffer) = {
+    val decoder = new Decoder(payload)
+    decoder.records { flags =>
+      (decoder.optional(flags, 1)(decoder.string), decoder.optional(flags, 4)(decoder.ids), decoder.optional(flags, 8)(decoder.ids),
+       (1 to decoder.varint.toInt).toList map { _ =>
+         val eventFlags = decoder.byte
+         (decoder.optional(eventFlags, 2)(decoder.timestamp), decoder.optional(eventFlags, 16)(decoder.string))
+       })
+    }
+  }
+
+  class Decoder(payload: PayloadBuffer) {
+    private val bytes = payload.array take payload.size
+    private var position = 4
+    private val dictionary = scala.collection.mutable.ArrayBuffer[String]()
+    private var previousTimestamp = 0L
+
+    def records[T](record: Int => T) = (1 to varint.toInt).toList map { _ => record(byte) }
+    def optional[T](flags: Int, flag: Int)(value: => T) = if ((flags & flag) != 0) Some(value) else None
+    def byte = { position += 1; bytes(position - 1) & 0xff }
+    def varint = {
+      var value = 0L
+      var shift = 0
+      var b = byte
+      while ((b & 0x80) != 0) {
+        value |= (b & 0x7fL) << shift
+        shift += 7
+        b = byte
+      }
+      value | (b.toLong << shift)
+    }
+    def timestamp = {
+      val zigzag = varint
+      previousTimestamp += (zigzag >>> 1) ^ -(zigzag & 1)
+      previousTimestamp
+    }
+    def string: String = varint.toInt match {
+      case 0 => null
+      case 1 =>
+        val length = varint.toInt
+        val str = new String(bytes, position, length, "UTF-8")
+        position += length
+        dictionary += str
+        str
+      case n => dictionary(n - 2)
+    }
+    def ids = (1 to varint.toInt) map { _ =>
+      val prefix = string
+      val digits = varint.toInt
+      if (digits == 0) prefix else prefix + ("%0" + digits + "d").format(varint)
+    } toSet
+  }
+
+  val SimpleEvent = new Event("src", new java.util.Date, Set("msg-1"), Set("msg-2", "msg-3"), "simple")
+  val EventWithSpecialCharacters = new Event("src", new java.util.Date(0), Set("msg-\"1\""), Set("msg\\2"),
+                                             "tab\t, newline\n, <tag>, UTF-8 characters like Թ and 😀")
+  val EventWithNulls = new Event("src", new java.util.Date, Set("msg-1"), null, null)
+}
@@ -0,0 +1,62 @@
+package com.bimbr.clisson.client
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class CircuitBreakerSpec extends Specification {
+  "CircuitBreaker" should {
+    "open after the threshold number of consecutive failures" in {
+      val breaker = new CircuitBreaker(3, OpenPeriodMs)
+      val results = (1 to 3) map { _ => breaker.failed() }
+      (results mustEqual Seq(false, false, true)) and (breaker.isOpen must beTrue)
+    }
+    "not count failures interleaved with successes as consecutive" in {
+      val breaker = new CircuitBreaker(2, OpenPeriodMs)
+      breaker.failed()
+      breaker.succeeded()
+      breaker.failed() must beFalse
+    }
+    "never open if the threshold is zero" in {
+      val breaker = CircuitBreaker.disabled()
+      (1 to 100) foreach { _ => breaker.failed() }
+      breaker.isOpen must beFalse
+    }
+    "hold back requests until the open period elapses" in {
+      val breaker = new CircuitBreaker(1, OpenPeriodMs)
+      breaker.failed()
+      val startTime = System.nanoTime
+      breaker.acquire()
+      (System.nanoTime - startTime) / 1000000 must beGreaterThanOrEqualTo (OpenPeriodMs - 1)
+    }
+    "close when the probe request succeeds" in {
+      val breaker = new CircuitBreaker(1, OpenPeriodMs)
+      breaker.failed()
+      breaker.acquire()
+      breaker.succeeded()
+      breaker.isOpen must beFalse
+    }
+    "open again when the probe request fails" in {
+      val breaker = new CircuitBreaker(1, OpenPeriodMs)
+      breaker.failed()
+      breaker.acquire()
+      breaker.failed() must beTrue
+    }
+    "let other threads wait while the probe request is in progress" in {
+      val breaker = new CircuitBreaker(1, OpenPeriodMs)
+      breaker.failed()
+      breaker.acquire()
+      @volatile var acquired = false
+      val waiter = new Thread(new Runnable { def run() = { breaker.acquire(); acquired = true } })
+      waiter.start()
+      Thread sleep 3 * OpenPeriodMs
+      val acquiredDuringProbe = acquired
+      breaker.succeeded()
+      waiter join 1000
+      (acquiredDuringProbe, acquired) mustEqual (false, true)
+    }
+  }
+
+  val OpenPeriodMs = 50L
+}
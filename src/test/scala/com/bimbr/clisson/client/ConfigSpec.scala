@@ -69,6 +69,240 @@ class ConfigSpec extends Specification {
       val config = Config fromPropertiesFile()
       config.isRecordingEnabled mustEqual (false)
     }
+    "have default server connection settings if they are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getConnectTimeoutMs, config.getSocketTimeoutMs, config.getMaxConnections) mustEqual (5000, 10000, 2)
+    }
+    "have server connection settings taken from clisson.server properties" in globally.synchronized {
+      useConfig("classpath://server-connection.properties")
+      val config = Config fromPropertiesFile()
+      (config.getConnectTimeoutMs, config.getSocketTimeoutMs, config.getMaxConnections) mustEqual (100, 200, 8)
+    }
+    "use blocking requests if clisson.server.nonBlocking property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.isNonBlocking, config.getMaxInFlight) mustEqual (false, 16)
+    }
+    "have non-blocking request settings taken from clisson.server properties" in globally.synchronized {
+      useConfig("classpath://server-connection.properties")
+      val config = Config fromPropertiesFile()
+      (config.isNonBlocking, config.getMaxInFlight) mustEqual (true, 32)
+    }
+    "not compress requests if clisson.compression property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getCompression, config.getCompressionMinSize) mustEqual ("none", 1024)
+    }
+    "have compression settings taken from clisson.compression properties" in globally.synchronized {
+      useConfig("classpath://server-connection.properties")
+      val config = Config fromPropertiesFile()
+      (config.getCompression, config.getCompressionMinSize) mustEqual ("gzip", 512)
+    }
+    "send events as JSON if clisson.wireFormat property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      Config.fromPropertiesFile().getWireFormat mustEqual "json"
+    }
+    "have the wire format taken from clisson.wireFormat property" in globally.synchronized {
+      useConfig("classpath://server-connection.properties")
+      Config.fromPropertiesFile().getWireFormat mustEqual "binary"
+    }
+    "send requests over HTTP if clisson.transport property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getTransport, config.getMaxUnacknowledged) mustEqual ("http", 256)
+    }
+    "have transport settings taken from clisson.transport properties" in globally.synchronized {
+      useConfig("classpath://server-connection.properties")
+      val config = Config fromPropertiesFile()
+      (config.getTransport, config.getMaxUnacknowledged) mustEqual ("tcp", 64)
+    }
+    "use a single server if clisson.server.hosts property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getServers.toList, config.getBalancing, config.getHealthCheckIntervalMs) mustEqual (List("host.from.default.config:1441"), "roundRobin", 5000L)
+    }
+    "have multiple server settings taken from clisson.server properties" in globally.synchronized {
+      useConfig("classpath://multiple-servers.properties")
+      val config = Config fromPropertiesFile()
+      (config.getServers.toList, config.getBalancing, config.getHealthCheckIntervalMs) mustEqual (List("one:1001", "two:1002", "three:1003"), "messageHash", 1000L)
+    }
+    "require that clisson.server.hosts property lists hosts with valid ports" in globally.synchronized {
+      useConfig("classpath://invalid-hosts.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.server.hosts")
+      }
+    }
+    "have default buffer settings if clisson.buffer properties are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getBufferSize, config.isLockFreeBuffer, config.getBufferWaitStrategy) mustEqual (1000, false, "park")
+    }
+    "have buffer settings taken from clisson.buffer properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.getBufferSize, config.isLockFreeBuffer, config.getBufferWaitStrategy) mustEqual (4096, true, "yield")
+    }
+    "require that clisson.buffer.waitStrategy property is one of the supported strategies" in globally.synchronized {
+      useConfig("classpath://unknown-wait-strategy.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.buffer.waitStrategy")
+      }
+    }
+    "drop events when the buffer is full if clisson.buffer.overflow property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      config.getBufferOverflow mustEqual "drop"
+    }
+    "have spill settings taken from clisson.spill properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.getBufferOverflow, config.getSpillDirectory, config.getSpillMaxSize, config.getSpillSegmentSize) mustEqual ("spill", "/var/spool/clisson", 1048576L, 65536)
+    }
+    "require that clisson.spill.directory property is set when clisson.buffer.overflow is spill" in globally.synchronized {
+      useConfig("classpath://spill-without-directory.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.spill.directory")
+      }
+    }
+    "not shed events if clisson.shedding properties are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getBufferBlockTimeoutMs, config.getSheddingThresholdPercent, config.getSheddingCheckpointKeepPercent, 
+       config.getSheddingEventKeepPercent) mustEqual (10L, 100, 100, 100)
+    }
+    "have overflow and shedding settings taken from clisson.buffer and clisson.shedding properties" in globally.synchronized {
+      useConfig("classpath://shedding.properties")
+      val config = Config fromPropertiesFile()
+      (config.getBufferOverflow, config.getBufferBlockTimeoutMs, config.getSheddingThresholdPercent, 
+       config.getSheddingCheckpointKeepPercent, config.getSheddingEventKeepPercent) mustEqual ("block", 25L, 80, 0, 50)
+    }
+    "require that clisson.shedding properties are percentages" in globally.synchronized {
+      useConfig("classpath://invalid-shedding.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.shedding.thresholdPercent")
+      }
+    }
+    "record all events if clisson.sampling and clisson.rateLimit properties are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getSamplingPercent, config.getRateLimitPerDescription) mustEqual (100.0, 0)
+    }
+    "have sampling and rate limit settings taken from clisson.sampling and clisson.rateLimit properties" in globally.synchronized {
+      useConfig("classpath://sampling.properties")
+      val config = Config fromPropertiesFile()
+      (config.getSamplingPercent, config.getRateLimitPerDescription, config.getRateLimitBurst) mustEqual (2.5, 1000, 50)
+    }
+    "require that clisson.sampling.percent is a number between 0 and 100" in globally.synchronized {
+      useConfig("classpath://invalid-sampling.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.sampling.percent")
+      }
+    }
+    "not coalesce events if clisson.coalescing.windowMs property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      config.getCoalescingWindowMs mustEqual 0L
+    }
+    "have the coalescing window taken from clisson.coalescing.windowMs property" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      config.getCoalescingWindowMs mustEqual 5L
+    }
+    "not number requests if clisson.sequence.enabled property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      config.isSequenceEnabled must beFalse
+    }
+    "number requests if clisson.sequence.enabled property is true" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      config.isSequenceEnabled must beTrue
+    }
+    "not journal events if clisson.journal.directory property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      config.getJournalDirectory must beNull
+    }
+    "have journal settings taken from clisson.journal properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.getJournalDirectory, config.getJournalSegmentSize, config.getJournalCommitIntervalMs) mustEqual ("/var/lib/clisson/journal", 4194304L, 10L)
+    }
+    "retry failed requests and use a circuit breaker by default" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getRetryMaxAttempts, config.getRetryInitialBackoffMs, config.getRetryMaxBackoffMs, 
+       config.getCircuitBreakerFailureThreshold, config.getCircuitBreakerOpenMs) mustEqual (3, 100L, 10000L, 5, 10000L)
+    }
+    "have retry and circuit breaker settings taken from clisson.retry and clisson.circuitBreaker properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.getRetryMaxAttempts, config.getRetryInitialBackoffMs, config.getRetryMaxBackoffMs, 
+       config.getCircuitBreakerFailureThreshold, config.getCircuitBreakerOpenMs) mustEqual (5, 50L, 2000L, 0, 30000L)
+    }
+    "not register a shutdown hook if clisson.shutdown.hook property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.isShutdownHookEnabled, config.getShutdownTimeoutMs) mustEqual (false, 5000L)
+    }
+    "have shutdown settings taken from clisson.shutdown properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.isShutdownHookEnabled, config.getShutdownTimeoutMs) mustEqual (true, 2000L)
+    }
+    "enable JMX and have no listener if clisson.jmx.enabled and clisson.listener properties are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.isJmxEnabled, config.getListenerClassName) mustEqual (true, null)
+    }
+    "have instrumentation settings taken from clisson.jmx.enabled and clisson.listener properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.isJmxEnabled, config.getListenerClassName) mustEqual (false, classOf[TestRecorderListener].getName)
+    }
+    "require that clisson.listener property is set to a class implementing RecorderListener" in globally.synchronized {
+      useConfig("classpath://invalid-listener.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.listener")
+      }
+    }
+    "have a single sender thread if clisson.sender.threads property is not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      config.getSenderThreads mustEqual 1
+    }
+    "have the number of sender threads taken from clisson.sender.threads property" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      config.getSenderThreads mustEqual 4
+    }
+    "not batch events if clisson.batch properties are not specified" in globally.synchronized {
+      useDefaultConfig()
+      val config = Config fromPropertiesFile()
+      (config.getMaxBatchSize, config.getMaxBatchLingerMs) mustEqual (1, 0L)
+    }
+    "have batch settings taken from clisson.batch properties" in globally.synchronized {
+      useConfig("classpath://batching.properties")
+      val config = Config fromPropertiesFile()
+      (config.getMaxBatchSize, config.getMaxBatchLingerMs) mustEqual (500, 20L)
+    }
+    "require that clisson.batch.maxSize property is a positive integer" in globally.synchronized {
+      useConfig("classpath://zero-batch-size.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.batch.maxSize")
+      }
+    }
+    "allow subclasses to specify the server and component, with default values of other settings" in {
+      val config = new Config(true, "somehost", 1441, "some component") {}
+      (config.getHost, config.getPort, config.getComponentId, config.getMaxBatchSize, config.getServers.toList) mustEqual ("somehost", 1441, "some component", 1, List("somehost:1441"))
+    }
+    "require that clisson.batch.maxSize property fits in an integer" in globally.synchronized {
+      useConfig("classpath://oversized-batch-size.properties")
+      Config fromPropertiesFile() must throwAn [Config.ConfigException].like {
+        case e => e.getMessage must contain ("clisson.batch.maxSize")
+      }
+    }
   }
   
   private def useFileConfig(name: String) = {
@@ -91,4 +325,10 @@ object ConfigSpec {
   def useDefaultConfig() = System clearProperty "clisson.config"
   
   def useConfig(path: String) = System setProperty ("clisson.config", path)
-}
\ No newline at end of file
+}
+
+class TestRecorderListener extends RecorderListener {
+  def eventDropped(senderIndex: Int) = ()
+  def batchSent(senderIndex: Int, events: Int, requestTimeNs: Long) = ()
+  def batchFailed(senderIndex: Int, events: Int, cause: Exception) = ()
+}
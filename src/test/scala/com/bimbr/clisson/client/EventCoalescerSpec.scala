@@ -0,0 +1,37 @@
+package com.bimbr.clisson.client
+
+import java.util.Date
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.Event
+
+@RunWith(classOf[JUnitRunner])
+class EventCoalescerSpec extends Specification {
+  "EventCoalescer" should {
+    "group events with the same source, input and output messages, in the order of their first events" in {
+      val events = List(checkpoint("msg-1", 0), checkpoint("msg-2", 1), checkpoint("msg-1", 2))
+      descriptionsOf(new EventCoalescer(10) coalesce events) mustEqual List(List("msg-1 at 0", "msg-1 at 2"), List("msg-2 at 1"))
+    }
+    "start a new group for an event recorded outside of the window of the first event of the group" in {
+      val events = List(checkpoint("msg-1", 0), checkpoint("msg-1", 5), checkpoint("msg-1", 20))
+      descriptionsOf(new EventCoalescer(10) coalesce events) mustEqual List(List("msg-1 at 0", "msg-1 at 5"), List("msg-1 at 20"))
+    }
+    "not group events with different output messages" in {
+      val other = new Event("src", new Date(0), Set("msg-1"), Set("msg-3"), "transformation")
+      (new EventCoalescer(10) coalesce List(checkpoint("msg-1", 0), other)).size mustEqual 2
+    }
+    "be disabled if the window is zero" in {
+      EventCoalescer.NONE.isEnabled must beFalse
+    }
+  }
+
+  def checkpoint(messageId: String, timeMs: Long) = 
+    new Event("src", new Date(timeMs), Set(messageId), Set(messageId), messageId + " at " + timeMs)
+
+  def descriptionsOf(groups: java.util.List[java.util.List[Event]]) = groups.toList map (_.toList map (_.getDescription))
+}
@@ -0,0 +1,38 @@
+package com.bimbr.clisson.client
+
+import java.nio.ByteBuffer
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class FrameWriterSpec extends Specification {
+  "FrameWriter" should {
+    "require a non-negative minimum compressed length" in {
+      new FrameWriter(Compression.GZIP, -1) must throwAn [IllegalArgumentException]
+    }
+    "prefix the frame with the number of bytes that follow" in {
+      val frame = new FrameWriter(Compression.NONE, 0) frame (1, Uri, ContentType, Body, Body.length)
+      ByteBuffer.wrap(frame.array).getInt mustEqual frame.size - 4
+    }
+    "write the sequence number, URI, content type and body of the request" in {
+      TestReceiver parse contentOf(new FrameWriter(Compression.NONE, 0) frame (42, Uri, ContentType, Body, Body.length)) mustEqual
+        Frame(42, Uri, ContentType, "", Content)
+    }
+    "compress bodies of at least the minimum compressed length" in {
+      TestReceiver parse contentOf(new FrameWriter(Compression.GZIP, Body.length) frame (1, Uri, ContentType, Body, Body.length)) mustEqual
+        Frame(1, Uri, ContentType, "gzip", Content)
+    }
+    "not compress bodies shorter than the minimum compressed length" in {
+      (TestReceiver parse contentOf(new FrameWriter(Compression.GZIP, Body.length + 1) frame (1, Uri, ContentType, Body, Body.length))).contentEncoding mustEqual ""
+    }
+  }
+
+  def contentOf(frame: PayloadBuffer) = frame.array.slice(4, frame.size)
+
+  val Uri = "/some/uri"
+  val ContentType = WireFormat.BINARY.contentType
+  val Content = "some content with UTF-8 characters like Թ"
+  val Body = Content getBytes "UTF-8"
+}
@@ -0,0 +1,62 @@
+package com.bimbr.clisson.client
+
+import java.io.File
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class JournalingEventBufferSpec extends Specification {
+  "JournalingEventBuffer" should {
+    "return offered events in the order in which they were offered" in {
+      val buffer = journalingBuffer(tempDir("order"))
+      Events foreach buffer.offer
+      drain(buffer) mustEqual (Events map Json.jsonFor)
+    }
+    "reject events rejected by the underlying buffer" in {
+      val buffer = new JournalingEventBuffer(new BlockingEventBuffer(2), new WriteAheadJournal(tempDir("reject"), SegmentSize))
+      (Events map buffer.offer) must contain (false)
+    }
+    "return events taken but not acknowledged before a restart first" in {
+      val dir = tempDir("restart")
+      val buffer = journalingBuffer(dir)
+      Events foreach buffer.offer
+      buffer.drainTo(new java.util.ArrayList[Event], 4)
+      buffer.acknowledge()
+      buffer.drainTo(new java.util.ArrayList[Event], 2)
+      val restarted = journalingBuffer(dir)
+      restarted.offerCheckpoint("src", "new", "new checkpoint", 0L)
+      drain(restarted) mustEqual ((Events drop 4 map Json.jsonFor) :+ Json.jsonFor(new Event("src", new java.util.Date(0L), Set("new"), Set("new"), "new checkpoint")))
+    }
+    "not return acknowledged events after a restart" in {
+      val dir = tempDir("acknowledged")
+      val buffer = journalingBuffer(dir)
+      Events foreach buffer.offer
+      drain(buffer)
+      buffer.acknowledge()
+      journalingBuffer(dir).size mustEqual 0
+    }
+  }
+  
+  def journalingBuffer(dir: File) = new JournalingEventBuffer(new BlockingEventBuffer(100), new WriteAheadJournal(dir, SegmentSize))
+  
+  def drain(buffer: EventBuffer) = {
+    val sink = new java.util.ArrayList[Event]
+    buffer.drainTo(sink, Int.MaxValue)
+    sink.toList map Json.jsonFor
+  }
+  
+  def tempDir(name: String) = {
+    val dir = new File(System.getProperty("java.io.tmpdir"), "clisson-journaling-buffer-spec-" + name + "-" + System.nanoTime)
+    dir.deleteOnExit()
+    dir
+  }
+  
+  val SegmentSize = 1024
+  val Events = (1 to 10).toList map { i => new Event("src", new java.util.Date, Set("msg-" + i), Set("msg-" + i), "event " + i) }
+}
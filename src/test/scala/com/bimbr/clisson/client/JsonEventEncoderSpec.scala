@@ -0,0 +1,47 @@
+package com.bimbr.clisson.client
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class JsonEventEncoderSpec extends Specification {
+  "JsonEventEncoder" should {
+    "encode an event to the same JSON as the protocol library" in {
+      decoded(new JsonEventEncoder encode SimpleEvent) mustEqual Json.jsonFor(SimpleEvent)
+    }
+    "encode a list of events to the same JSON array as the protocol library" in {
+      decoded(new JsonEventEncoder encode List(SimpleEvent, EventWithSpecialCharacters)) mustEqual Json.jsonFor(Array(SimpleEvent, EventWithSpecialCharacters))
+    }
+    "escape special characters and encode non-ASCII characters as UTF-8" in {
+      val json = decoded(new JsonEventEncoder encode EventWithSpecialCharacters)
+      Json.fromJson(json, classOf[Event]).getDescription mustEqual EventWithSpecialCharacters.getDescription
+    }
+    "omit null properties" in {
+      decoded(new JsonEventEncoder encode EventWithNulls) mustEqual Json.jsonFor(EventWithNulls)
+    }
+    "replace the previous contents of the buffer" in {
+      val encoder = new JsonEventEncoder
+      encoder encode EventWithSpecialCharacters
+      decoded(encoder encode SimpleEvent) mustEqual Json.jsonFor(SimpleEvent)
+    }
+    "encode coalesced events as records with shared messages and a list of timestamps and descriptions" in {
+      val second = new Event("src", new java.util.Date(0), Set("msg-1"), Set("msg-2", "msg-3"), "second")
+      val json = decoded(new JsonEventEncoder encodeCoalesced List(seqAsJavaList(List(SimpleEvent, second))))
+      json mustEqual "[{\"sourceId\":\"src\",\"inputMessageIds\":[\"msg-1\"],\"outputMessageIds\":[\"msg-2\",\"msg-3\"],\"events\":[" + 
+                     "{\"timestamp\":" + Json.jsonFor(SimpleEvent.getTimestamp) + ",\"description\":\"simple\"}," + 
+                     "{\"timestamp\":" + Json.jsonFor(second.getTimestamp) + ",\"description\":\"second\"}]}]"
+    }
+  }
+  
+  def decoded(payload: PayloadBuffer) = new String(payload.array, 0, payload.size, "UTF-8")
+  
+  val SimpleEvent = new Event("src", new java.util.Date, Set("msg-1"), Set("msg-2", "msg-3"), "simple")
+  val EventWithSpecialCharacters = new Event("src", new java.util.Date(0), Set("msg-\"1\""), Set("msg\\2"), 
+                                             "tab\t, newline\n, <tag>, UTF-8 characters like Թ and 😀")
+  val EventWithNulls = new Event("src", new java.util.Date, Set("msg-1"), null, null)
+}
@@ -0,0 +1,34 @@
+package com.bimbr.clisson.client
+
+import java.util.concurrent.TimeUnit.MILLISECONDS
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class LatencyHistogramSpec extends Specification {
+  "LatencyHistogram" should {
+    "count durations in the bucket with the smallest bound not less than the duration" in {
+      val histogram = new LatencyHistogram
+      histogram record MILLISECONDS.toNanos(3)
+      histogram record MILLISECONDS.toNanos(5)
+      histogram.counts.toList mustEqual List(0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0)
+    }
+    "count durations longer than the last bound in the last bucket" in {
+      val histogram = new LatencyHistogram
+      histogram record MILLISECONDS.toNanos(60000)
+      histogram.counts.last mustEqual 1
+    }
+    "approximate percentiles by bucket bounds" in {
+      val histogram = new LatencyHistogram
+      (1 to 98) foreach { _ => histogram record MILLISECONDS.toNanos(1) }
+      histogram record MILLISECONDS.toNanos(150)
+      histogram record MILLISECONDS.toNanos(60000)
+      (histogram percentileMs 50, histogram percentileMs 99, histogram percentileMs 100) mustEqual (1L, 200L, Long.MaxValue)
+    }
+    "report zero percentiles when nothing has been recorded" in {
+      new LatencyHistogram percentileMs 99 mustEqual 0L
+    }
+  }
+}
@@ -0,0 +1,6 @@
+package com.bimbr.clisson.client
+
+/**
+ * A recorder with a lifecycle, like the ones created by RecorderFactory, for mocking.
+ */
+trait LifecycleRecorder extends Recorder with RecorderLifecycle
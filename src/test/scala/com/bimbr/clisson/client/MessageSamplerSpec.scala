@@ -0,0 +1,42 @@
+package com.bimbr.clisson.client
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class MessageSamplerSpec extends Specification {
+  "MessageSampler construction" should {
+    "require percentage between 0 and 100" in {
+      new MessageSampler(100.5) must throwAn [IllegalArgumentException]
+    }
+  }
+  "MessageSampler" should {
+    "sample approximately the given percentage of messages with sequential ids" in {
+      val sampler = new MessageSampler(10)
+      val sampled = (1 to 100000) count { i => sampler samples ("msg-" + i) }
+      sampled must beBetween (9000, 11000)
+    }
+    "make the same decision for a message id in every instance" in {
+      val ids = (1 to 1000) map ("msg-" + _)
+      (ids map new MessageSampler(5).samples) mustEqual (ids map new MessageSampler(5).samples)
+    }
+    "sample a superset of messages at a higher percentage" in {
+      val ids = (1 to 1000) map ("msg-" + _)
+      val higher = new MessageSampler(20)
+      ids filter new MessageSampler(5).samples forall higher.samples must beTrue
+    }
+    "sample an event if any of its messages is sampled" in {
+      val sampler = new MessageSampler(50)
+      val ids = (1 to 1000) map ("msg-" + _)
+      val sampledId = ids find sampler.samples
+      val unsampledId = ids find (id => !sampler.samples(id))
+      (sampler samplesAny (Set(unsampledId.get), Set(sampledId.get)), sampler samplesAny (Set(unsampledId.get), Set[String]())) mustEqual (true, false)
+    }
+    "sample all messages by default" in {
+      MessageSampler.ALL samples null must beTrue
+    }
+  }
+}
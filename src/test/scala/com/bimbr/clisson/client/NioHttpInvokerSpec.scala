@@ -0,0 +1,90 @@
+package com.bimbr.clisson.client
+
+import java.util.concurrent.{ CountDownLatch, TimeUnit }
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import TestServer.withServerOn
+
+@RunWith(classOf[JUnitRunner])
+class NioHttpInvokerSpec extends Specification {
+  "NioHttpInvoker construction" should {
+    "require non-empty sever hostname" in {
+      new NioHttpInvoker("", PortBase, 1000, 1000, 1, 1, Compression.NONE, 0, WireFormat.JSON) must throwAn [IllegalArgumentException]
+    }
+    "require a positive number of connections" in {
+      new NioHttpInvoker(Host, PortBase, 1000, 1000, 0, 1, Compression.NONE, 0, WireFormat.JSON) must throwAn [IllegalArgumentException]
+    }
+    "require a positive maximum number of requests in flight" in {
+      new NioHttpInvoker(Host, PortBase, 1000, 1000, 1, 0, Compression.NONE, 0, WireFormat.JSON) must throwAn [IllegalArgumentException]
+    }
+  }
+  "NioHttpInvoker" should {
+    "send a POST request with specified content to specified URI when post() is called" in withServerOn(port(1)) { server =>
+      invoker(1) post (Uri, Content)
+      server.requestReceived mustEqual Some(("POST", Uri, Content))
+    }
+    "throw a RuntimeException when status code is >= 400" in withServerOn(port(2)) { server =>
+      invoker(2).post(TestServer.ErrorUri, Content) must throwA [RuntimeException]
+    }
+    "notify the callback when the response to an asynchronous request is received" in withServerOn(port(3)) { server =>
+      val callback = new CountingCallback(1)
+      val bytes = Content getBytes "UTF-8"
+      invoker(3) postAsync (Uri, bytes, bytes.length, callback)
+      callback.await()
+      (callback.completions.get, server.requestReceived) mustEqual (1, Some(("POST", Uri, Content)))
+    }
+    "notify the callback when an asynchronous request fails" in withServerOn(port(4)) { server =>
+      val callback = new CountingCallback(1)
+      val bytes = Content getBytes "UTF-8"
+      invoker(4) postAsync (TestServer.ErrorUri, bytes, bytes.length, callback)
+      callback.await()
+      callback.failures.get mustEqual 1
+    }
+    "complete all requests pipelined over a single connection" in withServerOn(port(5)) { server =>
+      val invoker = new NioHttpInvoker(Host, port(5), 1000, 1000, 1, 4, Compression.NONE, 0, WireFormat.JSON)
+      val callback = new CountingCallback(100)
+      val bytes = Content getBytes "UTF-8"
+      (1 to 100) foreach { _ => invoker postAsync (Uri, bytes, bytes.length, callback) }
+      callback.await()
+      callback.completions.get mustEqual 100
+    }
+    "send compressed content when compression is enabled and content is long enough" in withServerOn(port(6)) { server =>
+      val bytes = Content getBytes "UTF-8"
+      new NioHttpInvoker(Host, port(6), 1000, 1000, 1, 1, Compression.GZIP, 0, WireFormat.JSON) post (Uri, bytes, bytes.length)
+      (server.requestReceived, server.contentEncodingReceived) mustEqual (Some(("POST", Uri, Content)), Some("gzip"))
+    }
+    "send byte array content with the content type of the wire format" in withServerOn(port(7)) { server =>
+      val bytes = Content getBytes "UTF-8"
+      new NioHttpInvoker(Host, port(7), 1000, 1000, 1, 1, Compression.NONE, 0, WireFormat.BINARY) post (Uri, bytes, bytes.length)
+      server.contentTypeReceived mustEqual Some(WireFormat.BINARY.contentType)
+    }
+    "throw a RuntimeException when the server cannot be reached" in {
+      invoker(8).post(Uri, Content) must throwA [RuntimeException]
+    }
+    "throw a RuntimeException when it has been closed" in withServerOn(port(9)) { server =>
+      val closed = invoker(9)
+      closed.close()
+      closed.post(Uri, Content) must throwA [RuntimeException]
+    }
+  }
+
+  class CountingCallback(expected: Int) extends AsyncHttpInvoker.Callback {
+    val completions = new AtomicInteger
+    val failures = new AtomicInteger
+    private val done = new CountDownLatch(expected)
+    def completed() { completions.incrementAndGet(); done.countDown() }
+    def failed(cause: Exception) { failures.incrementAndGet(); done.countDown() }
+    def await() = done.await(5, TimeUnit.SECONDS)
+  }
+
+  val Host = "localhost"
+  val PortBase = 31600
+  def port(instance: Int) = PortBase + instance
+  def invoker(instance: Int) = new NioHttpInvoker(Host, port(instance), 1000, 1000, 2, 8, Compression.NONE, 0, WireFormat.JSON)
+  val Uri = "/some/uri"
+  val Content = """some content -- newlines are not guaranteed to be preserved, but UTF-8 characters like Թ should!"""
+}
@@ -0,0 +1,66 @@
+package com.bimbr.clisson.client
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.Event
+
+@RunWith(classOf[JUnitRunner])
+class OverflowPolicySpec extends Specification {
+  "OverflowPolicy construction" should {
+    "require percentages between 0 and 100" in {
+      new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 101, 100, 100) must throwAn [IllegalArgumentException]
+    }
+  }
+  "OverflowPolicy" should {
+    "admit all events below the shedding threshold" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 80, 0, 0)
+      val buffer = bufferWith(7)
+      (policy admits (buffer, true), policy admits (buffer, false)) mustEqual (true, true)
+    }
+    "shed events with the configured probabilities above the shedding threshold" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 80, 0, 100)
+      val buffer = bufferWith(8)
+      (policy admits (buffer, true), policy admits (buffer, false)) mustEqual (false, true)
+    }
+    "not count events spilled to disk towards the shedding threshold" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 80, 0, 0)
+      val dir = new java.io.File(System.getProperty("java.io.tmpdir"), "clisson-overflow-policy-spec-" + System.nanoTime)
+      val buffer = new SpillingEventBuffer(new BlockingEventBuffer(10), new SpillJournal(dir, 64 * 1024, 4 * 1024))
+      (1 to 15) foreach { _ => buffer offer AnEvent }
+      (1 to 10) foreach { _ => buffer.take() }
+      (buffer.size, policy admits (buffer, true)) mustEqual (5, true)
+    }
+    "sample events above the shedding threshold" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.DROP, 0, 0, 50, 50)
+      val admitted = (1 to 10000) count { _ => policy admits (bufferWith(0), true) }
+      admitted must beBetween (4000, 6000)
+    }
+    "give up offering an event to a full buffer after the block timeout" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.BLOCK, 20, 100, 100, 100)
+      val startTime = System.currentTimeMillis
+      val isAccepted = policy offerBlocking (bufferWith(10), AnEvent)
+      (isAccepted must beFalse) and (System.currentTimeMillis - startTime must beGreaterThanOrEqualTo (19L))
+    }
+    "add an event to a buffer once space becomes available" in {
+      val policy = new OverflowPolicy(OverflowPolicy.Action.BLOCK, 1000, 100, 100, 100)
+      val buffer = bufferWith(10)
+      new Thread(new Runnable { def run() = { Thread sleep 20; buffer.take() } }).start()
+      policy offerBlocking (buffer, AnEvent) must beTrue
+    }
+    "parse camel case action names" in {
+      OverflowPolicy.Action named "dropOldest" mustEqual OverflowPolicy.Action.DROP_OLDEST
+    }
+  }
+
+  val AnEvent = new Event("src", new java.util.Date, Set("msg-1"), Set("msg-1"), "test event")
+
+  def bufferWith(events: Int) = {
+    val buffer = new BlockingEventBuffer(10)
+    (1 to events) foreach { _ => buffer offer AnEvent }
+    buffer
+  }
+}
@@ -0,0 +1,33 @@
+package com.bimbr.clisson.client
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class RateLimiterSpec extends Specification {
+  "RateLimiter construction" should {
+    "require positive burst if the rate is limited" in {
+      new RateLimiter(10, 0) must throwAn [IllegalArgumentException]
+    }
+  }
+  "RateLimiter" should {
+    "allow a burst of events and reject the events above it" in {
+      val limiter = new RateLimiter(1, 5)
+      (1 to 10) count { _ => limiter tryAcquire "description" } mustEqual 5
+    }
+    "limit each description separately" in {
+      val limiter = new RateLimiter(1, 1)
+      (limiter tryAcquire "a", limiter tryAcquire "b", limiter tryAcquire "a") mustEqual (true, true, false)
+    }
+    "allow further events as the bucket refills" in {
+      val limiter = new RateLimiter(100, 1)
+      limiter tryAcquire "description"
+      Thread sleep 20
+      limiter tryAcquire "description" must beTrue
+    }
+    "not limit events if the rate is zero" in {
+      (1 to 1000) forall { _ => RateLimiter.NONE tryAcquire "description" } must beTrue
+    }
+  }
+}
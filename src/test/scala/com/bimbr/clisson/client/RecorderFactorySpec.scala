@@ -28,6 +28,37 @@ class RecorderFactorySpec extends Specification {
       val recorder2 = RecorderFactory.getRecorder()
       recorder1 must be (recorder2)
     }
+    "keep returning the same recorder once the recorder has been closed through the factory" in globally.synchronized {
+      System clearProperty "clisson.config"
+      val recorder1 = RecorderFactory.getRecorder()
+      RecorderFactory close CloseTimeoutMs
+      RecorderFactory.getRecorder() must be (recorder1)
+    }
+    "return the same instance of recorder whenever a recorder of a component is requested" in globally.synchronized {
+      System clearProperty "clisson.config"
+      val recorder1 = RecorderFactory.getRecorder("component-1")
+      val recorder2 = RecorderFactory.getRecorder("component-1")
+      recorder1 must be (recorder2)
+    }
+    "keep returning the same recorder of a component once the recorder has been closed through the factory" in globally.synchronized {
+      System clearProperty "clisson.config"
+      val recorder1 = RecorderFactory.getRecorder("component-2")
+      RecorderFactory close CloseTimeoutMs
+      RecorderFactory.getRecorder("component-2") must be (recorder1)
+    }
+    "create recorders of components that submit events with their component ids" in globally.synchronized {
+      withServerOn(37171) { server =>
+        RecorderFactory.reset()
+        System setProperty ("clisson.config", "classpath://local-test.properties")
+        val recorder = RecorderFactory.getRecorder("other-component")
+        System clearProperty "clisson.config"
+        recorder.event(InputMsgIds, OutputMsgIds, Description)
+        server.waitUntilRequestReceived(RecordingTimeOutMs)
+        server.requestReceived must beSome.like {
+          case ("POST", "/event", str) => Json.fromJson[Event](str, classOf[Event]).getSourceId mustEqual "other-component"
+        }
+      }
+    }
   }
 
   def recordWithPropertiesAndExpect(port: Int, propertiesPath: String, beAsExpected: org.specs2.matcher.Matcher[Option[(String, String, String)]]): org.specs2.execute.Result =
@@ -42,6 +73,7 @@ class RecorderFactorySpec extends Specification {
     }
   
   val RecordingTimeOutMs = 5000
+  val CloseTimeoutMs = 1000L
   val Description = "test event"
   val InputMsgIds = Set("msg-1", "msg-2")
   val OutputMsgIds = Set("msg-3", "msg-4")
@@ -0,0 +1,105 @@
+package com.bimbr.clisson.client
+
+import scala.collection.JavaConversions._
+
+import java.util.Date
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+import com.bimbr.util.Clock
+
+@RunWith(classOf[JUnitRunner])
+class RecorderRegistrySpec extends Specification {
+  "RecorderRegistry construction" should {
+    "require non-null pipeline" in {
+      new RecorderRegistry(null) must throwAn [IllegalArgumentException]
+    }
+  }
+  "RecorderRegistry" should {
+    "return the same recorder whenever the recorder of the default component is requested" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry.defaultRecorder must be (registry.defaultRecorder)
+    }
+    "return a default recorder that can flush and close the shared recorder" in {
+      new RecorderRegistry(recorder(new SourceRecordingInvoker)).defaultRecorder must beAnInstanceOf[RecorderLifecycle]
+    }
+    "return the same recorder whenever a recorder of a component is requested" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry recorderFor "a" must be (registry recorderFor "a")
+    }
+    "require non-empty component id" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry recorderFor "" must throwAn [IllegalArgumentException]
+    }
+    "require non-null component id" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry recorderFor null must throwAn [IllegalArgumentException]
+    }
+    "record the events of each component with its id through the shared recorder" in {
+      val invoker = new SourceRecordingInvoker
+      val registry = new RecorderRegistry(recorder(invoker))
+      registry recorderFor "a" checkpoint ("msg-1", "checkpoint")
+      registry recorderFor "b" event (Set("msg-1"), Set("msg-2"), "event")
+      registry.defaultRecorder checkpoint ("msg-2", "checkpoint")
+      registry flush FlushTimeoutMs
+      invoker.sourceIds.sorted mustEqual List("a", "b", DefaultSourceId)
+    }
+    "record preconstructed events with their own source ids" in {
+      val invoker = new SourceRecordingInvoker
+      val registry = new RecorderRegistry(recorder(invoker))
+      registry recorderFor "a" event new Event("c", new Date, Set("msg-1"), Set("msg-1"), "event")
+      registry flush FlushTimeoutMs
+      invoker.sourceIds mustEqual List("c")
+    }
+    "close the shared recorder when closed" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry close FlushTimeoutMs
+      registry.isClosed must beTrue
+    }
+    "record the events of components through the new shared recorder once the closed one has been replaced" in {
+      val invoker = new SourceRecordingInvoker
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      val componentRecorder = registry recorderFor "a"
+      registry close FlushTimeoutMs
+      registry reopen recorder(invoker)
+      componentRecorder checkpoint ("msg-1", "checkpoint")
+      registry flush FlushTimeoutMs
+      (registry recorderFor "a" must be (componentRecorder)) and (invoker.sourceIds mustEqual List("a"))
+    }
+    "record the events of the default component through the new shared recorder once the closed one has been replaced" in {
+      val invoker = new SourceRecordingInvoker
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      val defaultRecorder = registry.defaultRecorder
+      registry close FlushTimeoutMs
+      registry reopen recorder(invoker)
+      defaultRecorder checkpoint ("msg-1", "checkpoint")
+      registry flush FlushTimeoutMs
+      invoker.sourceIds mustEqual List(DefaultSourceId)
+    }
+    "not replace the shared recorder unless it has been closed" in {
+      val registry = new RecorderRegistry(recorder(new SourceRecordingInvoker))
+      registry reopen recorder(new SourceRecordingInvoker) must throwAn [IllegalStateException]
+    }
+  }
+
+  def recorder(invoker: HttpInvoker) = new AsyncHttpRecorder.Builder(DefaultSourceId, invoker)
+                                           .buffers(BlockingEventBuffer.factory(10))
+                                           .senderThreads(2)
+                                           .clock(new Clock)
+                                           .build()
+
+  class SourceRecordingInvoker extends HttpInvoker {
+    private val sources = new ConcurrentLinkedQueue[String]
+    def post(uri: String, content: String): Unit = sources add Json.fromJson(content, classOf[Event]).getSourceId
+    def post(uri: String, content: Array[Byte], length: Int): Unit = post(uri, new String(content, 0, length, "UTF-8"))
+    def close() = ()
+    def sourceIds = sources.toList
+  }
+
+  val DefaultSourceId = "default"
+  val FlushTimeoutMs = 5000L
+}
@@ -0,0 +1,33 @@
+package com.bimbr.clisson.client
+
+import java.util.Random
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class RetryPolicySpec extends Specification {
+  "RetryPolicy construction" should {
+    "require positive max attempts" in {
+      new RetryPolicy(0, 100, 1000) must throwAn [IllegalArgumentException]
+    }
+    "require max backoff not less than initial backoff" in {
+      new RetryPolicy(3, 100, 50) must throwAn [IllegalArgumentException]
+    }
+  }
+  "RetryPolicy" should {
+    "double the backoff with every failed attempt, randomising up to a half of it" in {
+      val policy = new RetryPolicy(5, 100, 10000)
+      val backoffs = (1 to 3) map { attempt => policy backoffMs (attempt, new Random) }
+      (backoffs(0) must beBetween (50L, 100L)) and (backoffs(1) must beBetween (100L, 200L)) and (backoffs(2) must beBetween (200L, 400L))
+    }
+    "not exceed the max backoff" in {
+      val policy = new RetryPolicy(100, 100, 1000)
+      (policy backoffMs (10, new Random) must beBetween (500L, 1000L)) and (policy backoffMs (100, new Random) must beBetween (500L, 1000L))
+    }
+    "attempt each request once if no retries are configured" in {
+      RetryPolicy.NONE.maxAttempts mustEqual 1
+    }
+  }
+}
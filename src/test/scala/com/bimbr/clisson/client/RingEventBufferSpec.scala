@@ -0,0 +1,75 @@
+package com.bimbr.clisson.client
+
+import java.util.concurrent.TimeUnit.MILLISECONDS
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class RingEventBufferSpec extends Specification {
+  "RingEventBuffer construction" should {
+    "require positive capacity" in {
+      new RingEventBuffer(0, WaitStrategy.SPIN) must throwAn [IllegalArgumentException]
+    }
+    "require non-null wait strategy" in {
+      new RingEventBuffer(1, null) must throwAn [IllegalArgumentException]
+    }
+    "round the capacity up to a power of two" in {
+      new RingEventBuffer(1000, WaitStrategy.SPIN).capacity mustEqual 1024
+    }
+  }
+  "RingEventBuffer" should {
+    "return events in the order in which they were offered" in {
+      val buffer = new RingEventBuffer(4, WaitStrategy.SPIN)
+      Events foreach buffer.offer
+      (buffer.take(), buffer.take(), buffer.take()) mustEqual (Events(0), Events(1), Events(2))
+    }
+    "construct checkpoint events from the offered fields" in {
+      val buffer = new RingEventBuffer(4, WaitStrategy.SPIN)
+      buffer.offerCheckpoint("src", "msg", "a", Events(0).getTimestamp.getTime)
+      Json.jsonFor(buffer.take()) mustEqual Json.jsonFor(Events(0))
+    }
+    "reject events when full" in {
+      val buffer = new RingEventBuffer(2, WaitStrategy.SPIN)
+      Events map buffer.offer mustEqual List(true, true, false)
+    }
+    "accept events again after they have been taken out" in {
+      val buffer = new RingEventBuffer(2, WaitStrategy.SPIN)
+      Events foreach buffer.offer
+      buffer.take()
+      buffer.offer(Events(2)) must beTrue
+    }
+    "drain no more than the requested number of events" in {
+      val buffer = new RingEventBuffer(4, WaitStrategy.SPIN)
+      Events foreach buffer.offer
+      val sink = new java.util.ArrayList[Event]
+      buffer.drainTo(sink, 2)
+      (sink.toList, buffer.size) mustEqual (Events take 2, 1)
+    }
+    "return null from poll() when no event arrives before the timeout" in {
+      new RingEventBuffer(4, WaitStrategy.PARK).poll(10, MILLISECONDS) must beNull
+    }
+    "not lose or reorder events offered concurrently by several threads" in {
+      val buffer = new RingEventBuffer(64, WaitStrategy.YIELD)
+      val producers = (0 until Producers) map { p => new Thread {
+        override def run() = (0 until EventsPerProducer) foreach { i =>
+          while (!buffer.offer(new Event("p" + p, null, null, null, i.toString))) Thread.`yield`()
+        }
+      }}
+      producers foreach (_.start())
+      val received = (0 until Producers * EventsPerProducer) map { _ => buffer.take() }
+      producers foreach (_.join())
+      val byProducer = received groupBy (_.getSourceId) mapValues (_ map (_.getDescription.toInt))
+      byProducer.values.toList must haveTheSameElementsAs (List.fill(Producers)(0 until EventsPerProducer))
+    }
+  }
+
+  val Events = List("a", "b", "c") map { d => new Event("src", new java.util.Date, Set("msg"), Set("msg"), d) }
+  val Producers = 4
+  val EventsPerProducer = 10000
+}
@@ -21,17 +21,66 @@ class HttpInvokerSpec extends Specification with Mockito {
     "require a positive port number" in {
       new SimpleHttpInvoker(Host, 0) must throwAn [IllegalArgumentException]
     }
+    "require a positive connect timeout" in {
+      new SimpleHttpInvoker(Host, PortBase, 0, 1000, 1) must throwAn [IllegalArgumentException]
+    }
+    "require a positive socket timeout" in {
+      new SimpleHttpInvoker(Host, PortBase, 1000, 0, 1) must throwAn [IllegalArgumentException]
+    }
+    "require a positive number of connections" in {
+      new SimpleHttpInvoker(Host, PortBase, 1000, 1000, 0) must throwAn [IllegalArgumentException]
+    }
   }
   "HttpInvoker" should {
     "send a POST request with specified content to specified URI when post() is called" in withServerOn(port(1)) { server =>
-      invoker(1) post (Uri, Content)
+      closing(invoker(1)) { _ post (Uri, Content) }
       server.requestReceived mustEqual Some(("POST", Uri, Content)) 
     }
     "throw a RuntimeException when status code is >= 400" in withServerOn(port(2)) { server =>
-      invoker(2).post(TestServer.ErrorUri, Content) must throwA [RuntimeException] 
+      closing(invoker(2)) { _.post(TestServer.ErrorUri, Content) } must throwA [RuntimeException]
+    }
+    "send subsequent requests over the pooled connections" in withServerOn(port(4)) { server =>
+      closing(new SimpleHttpInvoker(Host, port(4), 1000, 1000, 1)) { invoker => (1 to 3) foreach { _ => invoker post (Uri, Content) } }
+      (server.requestsReceived, server.connectionsUsed) mustEqual (3, 1)
+    }
+    "send concurrent requests over at most the maximum number of pooled connections" in withServerOn(port(11)) { server =>
+      val failures = new java.util.concurrent.atomic.AtomicInteger
+      closing(new SimpleHttpInvoker(Host, port(11), 1000, 1000, 2)) { invoker =>
+        val threads = (1 to 4) map { _ => new Thread {
+          override def run() = (1 to 10) foreach { _ => try { invoker post (Uri, Content) } catch { case e: Exception => failures.incrementAndGet() } }
+        } }
+        threads foreach (_.start())
+        threads foreach (_.join())
+      }
+      (failures.get, server.requestsReceived, server.connectionsUsed <= 2) mustEqual (0, 40, true)
+    }
+    "send gzip-compressed content when gzip compression is enabled and content is long enough" in withServerOn(port(6)) { server =>
+      closing(compressingInvoker(6, Compression.GZIP, Content.length)) { _ post (Uri, Content) }
+      (server.requestReceived, server.contentEncodingReceived) mustEqual (Some(("POST", Uri, Content)), Some("gzip"))
+    }
+    "send deflate-compressed content when deflate compression is enabled and content is long enough" in withServerOn(port(7)) { server =>
+      val bytes = Content getBytes "UTF-8"
+      closing(compressingInvoker(7, Compression.DEFLATE, Content.length)) { _ post (Uri, bytes, bytes.length) }
+      (server.requestReceived, server.contentEncodingReceived) mustEqual (Some(("POST", Uri, Content)), Some("deflate"))
+    }
+    "send uncompressed content when it is shorter than minimum compressed length" in withServerOn(port(8)) { server =>
+      closing(compressingInvoker(8, Compression.GZIP, 10 * Content.length)) { _ post (Uri, Content) }
+      (server.requestReceived, server.contentEncodingReceived) mustEqual (Some(("POST", Uri, Content)), None)
+    }
+    "send byte array content with the content type of the wire format" in withServerOn(port(9)) { server =>
+      val bytes = Content getBytes "UTF-8"
+      closing(new SimpleHttpInvoker(Host, port(9), 1000, 1000, 1, Compression.NONE, 0, WireFormat.BINARY)) { _ post (Uri, bytes, bytes.length) }
+      server.contentTypeReceived mustEqual Some(WireFormat.BINARY.contentType)
+    }
+    "send String content as plain text regardless of the wire format" in withServerOn(port(10)) { server =>
+      closing(new SimpleHttpInvoker(Host, port(10), 1000, 1000, 1, Compression.GZIP, 0, WireFormat.BINARY)) { _ post (Uri, Content) }
+      server.contentTypeReceived mustEqual Some(WireFormat.JSON.contentType)
+    }
+    "throw a RuntimeException when the server cannot be reached" in {
+      closing(new SimpleHttpInvoker(Host, port(5), 1000, 1000, 1)) { _.post(Uri, Content) } must throwA [RuntimeException]
     }
     "throw a RuntimeException when the URI format is invalid" in {
-      invoker(3).post(InvalidUri, Content) must throwA [RuntimeException]
+      closing(invoker(3)) { _.post(InvalidUri, Content) } must throwA [RuntimeException]
     }
   }
   
@@ -39,6 +88,10 @@ class HttpInvokerSpec extends Specification with Mockito {
   val PortBase = 31500
   def port(instance: Int) = PortBase + instance
   def invoker(instance: Int) = new SimpleHttpInvoker(Host, port(instance))
+  def compressingInvoker(instance: Int, compression: Compression, minLength: Int) = 
+    new SimpleHttpInvoker(Host, port(instance), 1000, 1000, 1, compression, minLength)
+  /** Closes the invoker, releasing its pooled connections, once the body has completed or failed. */
+  def closing[T](invoker: SimpleHttpInvoker)(body: SimpleHttpInvoker => T): T = try body(invoker) finally invoker.close()
   val Uri = "/some/uri"
   val InvalidUri = "a#adf#adsf#"
   val Content = """some content -- newlines are not guaranteed to be preserved, but UTF-8 characters like Թ should!"""
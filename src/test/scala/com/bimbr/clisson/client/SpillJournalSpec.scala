@@ -0,0 +1,78 @@
+package com.bimbr.clisson.client
+
+import java.io.File
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class SpillJournalSpec extends Specification {
+  "SpillJournal construction" should {
+    "require max size not less than segment size" in {
+      new SpillJournal(tempDir("too-small"), SegmentSize - 1, SegmentSize) must throwAn [IllegalArgumentException]
+    }
+  }
+  "SpillJournal" should {
+    "return appended events in the order in which they were appended" in {
+      val journal = new SpillJournal(tempDir("order"), MaxSize, SegmentSize)
+      Events foreach journal.append
+      readAll(journal) mustEqual (Events map Json.jsonFor)
+    }
+    "spread events over several segment files" in {
+      val dir = tempDir("segments")
+      val journal = new SpillJournal(dir, MaxSize, SegmentSize)
+      Events foreach journal.append
+      dir.list.length must beGreaterThan (1)
+    }
+    "reject events when the maximum size has been reached" in {
+      val journal = new SpillJournal(tempDir("full"), SegmentSize, SegmentSize)
+      (Events map journal.append) must contain (false)
+    }
+    "delete segment files once all their events have been read and acknowledged" in {
+      val dir = tempDir("delete")
+      val journal = new SpillJournal(dir, MaxSize, SegmentSize)
+      Events foreach journal.append
+      readAll(journal)
+      val segmentsBeforeAcknowledgement = dir.list.length
+      journal.acknowledge()
+      (segmentsBeforeAcknowledgement must beGreaterThan (1)) and (dir.list.length mustEqual 1)
+    }
+    "recover unacknowledged events left by a previous instance" in {
+      val dir = tempDir("recover")
+      val journal = new SpillJournal(dir, MaxSize, SegmentSize)
+      Events foreach journal.append
+      journal.read(new java.util.ArrayList[Event], 3)
+      journal.acknowledge()
+      journal.read(new java.util.ArrayList[Event], 2)
+      journal.close()
+      readAll(new SpillJournal(dir, MaxSize, SegmentSize)) mustEqual (Events drop 3 map Json.jsonFor)
+    }
+    "neither accept nor return events once closed" in {
+      val journal = new SpillJournal(tempDir("closed"), MaxSize, SegmentSize)
+      journal append Events.head
+      journal.close()
+      (journal append Events.last, readAll(journal)) mustEqual (false, Nil)
+    }
+  }
+  
+  def readAll(journal: SpillJournal) = {
+    val events = new java.util.ArrayList[Event]
+    journal.read(events, Int.MaxValue)
+    events.toList map Json.jsonFor
+  }
+  
+  def tempDir(name: String) = {
+    val dir = new File(System.getProperty("java.io.tmpdir"), "clisson-spill-journal-spec-" + name + "-" + System.nanoTime)
+    dir.deleteOnExit()
+    dir
+  }
+  
+  val SegmentSize = 512
+  val MaxSize = 64 * SegmentSize
+  val Events = (1 to 20).toList map { i => new Event("src", new java.util.Date, Set("msg-" + i), Set("msg-" + i), "spilled event " + i) }
+}
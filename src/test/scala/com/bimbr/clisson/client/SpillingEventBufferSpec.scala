@@ -0,0 +1,45 @@
+package com.bimbr.clisson.client
+
+import java.io.File
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class SpillingEventBufferSpec extends Specification {
+  "SpillingEventBuffer" should {
+    "accept events when the in-memory buffer is full" in {
+      val buffer = spillingBuffer("accept")
+      (Events map buffer.offer) must not contain (false)
+    }
+    "return spilled events after the in-memory ones, in the order in which they were offered" in {
+      val buffer = spillingBuffer("order")
+      Events foreach buffer.offer
+      val taken = Events map { _ => Json.jsonFor(buffer.take()) }
+      taken mustEqual (Events map Json.jsonFor)
+    }
+    "keep spilling while there are spilled events, even if the in-memory buffer has space" in {
+      val buffer = spillingBuffer("keep")
+      Events foreach buffer.offer
+      buffer.take()
+      buffer.offerCheckpoint("src", "late", "late checkpoint", 0L)
+      val sink = new java.util.ArrayList[Event]
+      buffer.drainTo(sink, Int.MaxValue)
+      sink.last.getDescription mustEqual "late checkpoint"
+    }
+  }
+  
+  def spillingBuffer(name: String) = {
+    val dir = new File(System.getProperty("java.io.tmpdir"), "clisson-spilling-buffer-spec-" + name + "-" + System.nanoTime)
+    dir.deleteOnExit()
+    new SpillingEventBuffer(new BlockingEventBuffer(MemoryCapacity), new SpillJournal(dir, 64 * 1024, 4 * 1024))
+  }
+  
+  val MemoryCapacity = 2
+  val Events = (1 to 10).toList map { i => new Event("src", new java.util.Date, Set("msg-" + i), Set("msg-" + i), "event " + i) }
+}
@@ -0,0 +1,21 @@
+package com.bimbr.clisson.client
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class StripedCounterSpec extends Specification {
+  "StripedCounter" should {
+    "start from the initial value" in {
+      new StripedCounter(7).get mustEqual 7L
+    }
+    "sum the increments of all threads" in {
+      val counter = new StripedCounter(0)
+      val threads = (1 to 8) map { _ => new Thread(new Runnable { def run() = (1 to 1000) foreach { _ => counter.increment() } }) }
+      threads foreach (_.start())
+      threads foreach (_.join())
+      counter.get mustEqual 8000L
+    }
+  }
+}
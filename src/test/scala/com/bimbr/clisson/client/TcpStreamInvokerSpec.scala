@@ -0,0 +1,87 @@
+package com.bimbr.clisson.client
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import TestReceiver.withTcpReceiverOn
+
+@RunWith(classOf[JUnitRunner])
+class TcpStreamInvokerSpec extends Specification {
+  "TcpStreamInvoker construction" should {
+    "require non-empty sever hostname" in {
+      new TcpStreamInvoker("", PortBase) must throwAn [IllegalArgumentException]
+    }
+    "require a positive limit of unacknowledged frames" in {
+      new TcpStreamInvoker(Host, PortBase, 1000, 1000, 0, Compression.NONE, 0, WireFormat.JSON) must throwAn [IllegalArgumentException]
+    }
+  }
+  "TcpStreamInvoker" should {
+    "open the connection with a handshake announcing the protocol version and the limit of unacknowledged frames" in withTcpReceiverOn(port(1)) { receiver =>
+      invoker(1) post (Uri, Content)
+      receiver.nextFrame(TimeoutMs)
+      receiver.handshakesReceived.peek mustEqual ("CLST", TcpStreamInvoker.VERSION, MaxUnacknowledged)
+    }
+    "send a frame with the URI and content of a post" in withTcpReceiverOn(port(2)) { receiver =>
+      invoker(2) post (Uri, Content)
+      receiver nextFrame TimeoutMs mustEqual Some(Frame(1, Uri, WireFormat.JSON.contentType, "", Content))
+    }
+    "send byte array content with the content type of the wire format" in withTcpReceiverOn(port(3)) { receiver =>
+      val bytes = Content getBytes "UTF-8"
+      new TcpStreamInvoker(Host, port(3), 1000, 1000, MaxUnacknowledged, Compression.NONE, 0, WireFormat.BINARY) post (Uri, bytes, bytes.length)
+      (receiver nextFrame TimeoutMs map (_.contentType)) mustEqual Some(WireFormat.BINARY.contentType)
+    }
+    "number the frames with consecutive sequence numbers and send them over a single connection" in withTcpReceiverOn(port(4)) { receiver =>
+      val tcpInvoker = invoker(4)
+      (1 to 3) foreach { _ => tcpInvoker post (Uri, Content) }
+      (receiver.nextFrames(3, TimeoutMs) map (_.sequence), receiver.connectionsAccepted) mustEqual (List(1, 2, 3), 1)
+    }
+    "send compressed content when compression is enabled and content is long enough" in withTcpReceiverOn(port(5)) { receiver =>
+      new TcpStreamInvoker(Host, port(5), 1000, 1000, MaxUnacknowledged, Compression.GZIP, 0, WireFormat.JSON) post (Uri, Content)
+      (receiver nextFrame TimeoutMs map { frame => (frame.contentEncoding, frame.content) }) mustEqual Some(("gzip", Content))
+    }
+    "stop counting frames acknowledged by the receiver as unacknowledged" in withTcpReceiverOn(port(6)) { receiver =>
+      val tcpInvoker = invoker(6)
+      (1 to 3) foreach { _ => tcpInvoker post (Uri, Content) }
+      receiver.nextFrames(3, TimeoutMs)
+      Thread sleep 50
+      tcpInvoker post (Uri, Content)
+      tcpInvoker.unacknowledgedFrames must be_<=(1)
+    }
+    "throw a RuntimeException when the receiver does not acknowledge the frames in time" in withTcpReceiverOn(port(7)) { receiver =>
+      receiver.acknowledging = false
+      val tcpInvoker = new TcpStreamInvoker(Host, port(7), 1000, 100, 2, Compression.NONE, 0, WireFormat.JSON)
+      tcpInvoker post (Uri, Content)
+      tcpInvoker post (Uri, Content)
+      tcpInvoker post (Uri, Content) must throwA [RuntimeException]
+    }
+    "send unacknowledged frames again after reconnecting" in withTcpReceiverOn(port(8)) { receiver =>
+      receiver.acknowledging = false
+      val tcpInvoker = new TcpStreamInvoker(Host, port(8), 1000, 100, 2, Compression.NONE, 0, WireFormat.JSON)
+      tcpInvoker post (Uri, Content)
+      tcpInvoker post (Uri, Content)
+      try { tcpInvoker post (Uri, Content) } catch { case e: RuntimeException => () }
+      receiver.acknowledging = true
+      tcpInvoker post (Uri, Content)
+      (receiver.nextFrames(5, TimeoutMs) map (_.sequence), receiver.connectionsAccepted) mustEqual (List(1, 2, 1, 2, 3), 2)
+    }
+    "throw a RuntimeException when the receiver cannot be reached" in {
+      invoker(9).post(Uri, Content) must throwA [RuntimeException]
+    }
+    "throw a RuntimeException when it has been closed" in withTcpReceiverOn(port(10)) { receiver =>
+      val closed = invoker(10)
+      closed post (Uri, Content)
+      closed.close()
+      closed.post(Uri, Content) must throwA [RuntimeException]
+    }
+  }
+
+  val Host = "localhost"
+  val PortBase = 31700
+  val MaxUnacknowledged = 8
+  val TimeoutMs = 1000
+  def port(instance: Int) = PortBase + instance
+  def invoker(instance: Int) = new TcpStreamInvoker(Host, port(instance), 1000, 1000, MaxUnacknowledged, Compression.NONE, 0, WireFormat.JSON)
+  val Uri = "/some/uri"
+  val Content = """some content -- newlines are not guaranteed to be preserved, but UTF-8 characters like Թ should!"""
+}
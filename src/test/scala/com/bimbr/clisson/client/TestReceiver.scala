@@ -0,0 +1,147 @@
+package com.bimbr.clisson.client
+
+import java.io.{ BufferedInputStream, ByteArrayInputStream, ByteArrayOutputStream, DataInputStream, DataOutputStream, InputStream }
+import java.net.{ DatagramPacket, DatagramSocket, ServerSocket, Socket }
+import java.util.concurrent.{ ConcurrentLinkedQueue, LinkedBlockingQueue }
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.zip.{ GZIPInputStream, InflaterInputStream }
+
+case class Frame(sequence: Long, uri: String, contentType: String, contentEncoding: String, content: String)
+
+/**
+ * A stand-in for a receiver of the streaming transports: collects the frames it receives and, over TCP, acknowledges
+ * them the way a real receiver is expected to.
+ */
+abstract class TestReceiver {
+  val framesReceived = new LinkedBlockingQueue[Frame]
+
+  def nextFrame(timeoutMs: Int) = Option(framesReceived.poll(timeoutMs, MILLISECONDS))
+  def nextFrames(count: Int, timeoutMs: Int) = (1 to count).toList flatMap { _ => nextFrame(timeoutMs) }
+  def stop()
+
+  protected def daemon(body: => Unit) = {
+    val thread = new Thread {
+      override def run() = try { body } catch { case e: Exception => () }
+    }
+    thread setDaemon true
+    thread.start()
+    thread
+  }
+}
+
+class TestTcpReceiver(port: Int) extends TestReceiver {
+  @volatile var acknowledging = true
+  val handshakesReceived = new LinkedBlockingQueue[(String, Int, Int)]
+  private val server = new ServerSocket(port)
+  private val connections = new ConcurrentLinkedQueue[Socket]
+  daemon {
+    while (true) {
+      val socket = server.accept()
+      connections add socket
+      daemon { serve(socket) }
+    }
+  }
+
+  private def serve(socket: Socket) {
+    val in = new DataInputStream(new BufferedInputStream(socket.getInputStream))
+    val out = new DataOutputStream(socket.getOutputStream)
+    val magic = new Array[Byte](4)
+    in readFully magic
+    val version = in.read
+    val maxUnacknowledged = in.readInt
+    handshakesReceived add ((new String(magic, "US-ASCII"), version, maxUnacknowledged))
+    var unacknowledged = 0
+    while (true) {
+      val bytes = new Array[Byte](in.readInt)
+      in readFully bytes
+      val frame = TestReceiver.parse(bytes)
+      framesReceived add frame
+      unacknowledged += 1
+      if (acknowledging && (unacknowledged >= math.max(1, maxUnacknowledged / 2) || in.available == 0)) {
+        out writeLong frame.sequence
+        out.flush()
+        unacknowledged = 0
+      }
+    }
+  }
+
+  def connectionsAccepted = connections.size
+
+  def stop() = {
+    server.close()
+    while (!connections.isEmpty) connections.poll().close()
+  }
+}
+
+class TestUdpReceiver(port: Int) extends TestReceiver {
+  private val socket = new DatagramSocket(port)
+  daemon {
+    val buffer = new Array[Byte](UdpDatagramInvoker.MAX_DATAGRAM_LENGTH)
+    while (true) {
+      val packet = new DatagramPacket(buffer, buffer.length)
+      socket receive packet
+      val in = new DataInputStream(new ByteArrayInputStream(buffer, 0, packet.getLength))
+      val bytes = new Array[Byte](in.readInt)
+      in readFully bytes
+      framesReceived add TestReceiver.parse(bytes)
+    }
+  }
+
+  def stop() = socket.close()
+}
+
+object TestReceiver {
+  /**
+   * @param bytes a frame, not including its length prefix
+   */
+  def parse(bytes: Array[Byte]) = {
+    val in = new DataInputStream(new ByteArrayInputStream(bytes))
+    val sequence = in.readLong
+    val uri = string(in)
+    val contentType = string(in)
+    val contentEncoding = string(in)
+    val body = new Array[Byte](in.available)
+    in readFully body
+    Frame(sequence, uri, contentType, contentEncoding, read(decoded(contentEncoding, new ByteArrayInputStream(body))))
+  }
+
+  private def string(in: DataInputStream) = {
+    val bytes = new Array[Byte](in.readUnsignedShort)
+    in readFully bytes
+    new String(bytes, "UTF-8")
+  }
+
+  private def decoded(contentEncoding: String, input: InputStream) = contentEncoding match {
+    case "gzip"    => new GZIPInputStream(input)
+    case "deflate" => new InflaterInputStream(input)
+    case _         => input
+  }
+
+  private def read(input: InputStream) = {
+    val output = new ByteArrayOutputStream
+    var b = input.read
+    while (b >= 0) {
+      output write b
+      b = input.read
+    }
+    output toString "UTF-8"
+  }
+
+  def withTcpReceiverOn(port: Int)(test: TestTcpReceiver => org.specs2.execute.Result) = {
+    val receiver = new TestTcpReceiver(port)
+    try {
+      test(receiver)
+    } finally {
+      receiver stop ()
+    }
+  }
+
+  def withUdpReceiverOn(port: Int)(test: TestUdpReceiver => org.specs2.execute.Result) = {
+    val receiver = new TestUdpReceiver(port)
+    try {
+      test(receiver)
+    } finally {
+      receiver stop ()
+    }
+  }
+}
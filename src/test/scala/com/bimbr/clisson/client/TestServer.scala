@@ -1,23 +1,33 @@
 package com.bimbr.clisson.client
 
-import java.util.concurrent.CountDownLatch
+import java.util.concurrent.{ ConcurrentHashMap, CountDownLatch }
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.TimeUnit.MILLISECONDS
 import javax.servlet.http.{ HttpServletRequest, HttpServletResponse }
 import javax.servlet.http.HttpServletResponse.{ SC_OK, SC_BAD_REQUEST }
-import javax.servlet.ServletInputStream
+import java.io.InputStream
+import java.util.zip.{ GZIPInputStream, InflaterInputStream }
 
 import org.mortbay.jetty.handler.AbstractHandler
 import org.mortbay.jetty.Server
 
 class TestServer(port: Int) {
   var requestReceived: Option[(String, String, String)] = None
+  var contentEncodingReceived: Option[String] = None
+  var contentTypeReceived: Option[String] = None
   private val jetty = new Server(port)
   jetty setHandler handler
   private val receivedLatch = new CountDownLatch(1)
+  private val requestCount = new AtomicInteger
+  private val clientPorts = new ConcurrentHashMap[Int, Int]
     
   private object handler extends AbstractHandler {
     def handle(target: String, httpRequest: HttpServletRequest, httpResponse: HttpServletResponse, dispatch: Int) = {
+      contentEncodingReceived = Option(httpRequest getHeader "Content-Encoding")
+      contentTypeReceived = Option(httpRequest getHeader "Content-Type")
       requestReceived = relevantPartsOf(httpRequest)
+      requestCount.incrementAndGet()
+      clientPorts put (httpRequest.getRemotePort, httpRequest.getRemotePort)
       httpResponse setContentType "text/plain"
       httpResponse.setStatus(requestReceived match {
         case Some((_, TestServer.ErrorUri, _)) => SC_BAD_REQUEST
@@ -31,10 +41,16 @@ class TestServer(port: Int) {
   private def relevantPartsOf(httpRequest: HttpServletRequest) = Some((
     httpRequest getMethod,
     httpRequest getPathInfo,
-    read(httpRequest getInputStream)
+    read(decoded(httpRequest getInputStream))
   )) 
+  
+  private def decoded(input: InputStream) = contentEncodingReceived match {
+    case Some("gzip")    => new GZIPInputStream(input)
+    case Some("deflate") => new InflaterInputStream(input)
+    case _               => input
+  }
     
-  private def read(input: ServletInputStream) = scala.io.Source.fromInputStream(input).getLines.mkString
+  private def read(input: InputStream) = scala.io.Source.fromInputStream(input, "UTF-8").getLines.mkString
    
   def start() = {
     jetty.start()
@@ -44,6 +60,11 @@ class TestServer(port: Int) {
   def stop() = jetty.stop()
   
   def waitUntilRequestReceived(timeoutMs: Int) = receivedLatch.await(timeoutMs, MILLISECONDS)
+
+  def requestsReceived = requestCount.get
+
+  /** the number of distinct client connections over which requests were received */
+  def connectionsUsed = clientPorts.size
 }
 
 object TestServer {
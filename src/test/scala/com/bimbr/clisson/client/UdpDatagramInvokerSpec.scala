@@ -0,0 +1,53 @@
+package com.bimbr.clisson.client
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import TestReceiver.withUdpReceiverOn
+
+@RunWith(classOf[JUnitRunner])
+class UdpDatagramInvokerSpec extends Specification {
+  "UdpDatagramInvoker construction" should {
+    "require non-empty sever hostname" in {
+      new UdpDatagramInvoker("", PortBase) must throwAn [IllegalArgumentException]
+    }
+  }
+  "UdpDatagramInvoker" should {
+    "send a datagram holding a frame with the URI and content of a post" in withUdpReceiverOn(port(1)) { receiver =>
+      invoker(1) post (Uri, Content)
+      receiver nextFrame TimeoutMs mustEqual Some(Frame(1, Uri, WireFormat.JSON.contentType, "", Content))
+    }
+    "send byte array content with the content type of the wire format" in withUdpReceiverOn(port(2)) { receiver =>
+      val bytes = Content getBytes "UTF-8"
+      new UdpDatagramInvoker(Host, port(2), Compression.NONE, 0, WireFormat.BINARY) post (Uri, bytes, bytes.length)
+      (receiver nextFrame TimeoutMs map (_.contentType)) mustEqual Some(WireFormat.BINARY.contentType)
+    }
+    "number the datagrams with consecutive sequence numbers" in withUdpReceiverOn(port(3)) { receiver =>
+      val udpInvoker = invoker(3)
+      (1 to 3) foreach { _ => udpInvoker post (Uri, Content) }
+      (receiver.nextFrames(3, TimeoutMs) map (_.sequence)).sorted mustEqual List(1, 2, 3)
+    }
+    "send compressed content when compression is enabled and content is long enough" in withUdpReceiverOn(port(4)) { receiver =>
+      new UdpDatagramInvoker(Host, port(4), Compression.DEFLATE, 0, WireFormat.JSON) post (Uri, Content)
+      (receiver nextFrame TimeoutMs map { frame => (frame.contentEncoding, frame.content) }) mustEqual Some(("deflate", Content))
+    }
+    "throw a RuntimeException when the frame does not fit in a datagram" in {
+      val bytes = new Array[Byte](UdpDatagramInvoker.MAX_DATAGRAM_LENGTH)
+      invoker(5).post(Uri, bytes, bytes.length) must throwA [RuntimeException]
+    }
+    "throw a RuntimeException when it has been closed" in {
+      val closed = invoker(6)
+      closed.close()
+      closed.post(Uri, Content) must throwA [RuntimeException]
+    }
+  }
+
+  val Host = "localhost"
+  val PortBase = 31750
+  val TimeoutMs = 1000
+  def port(instance: Int) = PortBase + instance
+  def invoker(instance: Int) = new UdpDatagramInvoker(Host, port(instance), Compression.NONE, 0, WireFormat.JSON)
+  val Uri = "/some/uri"
+  val Content = """some content -- newlines are not guaranteed to be preserved, but UTF-8 characters like Թ should!"""
+}
@@ -0,0 +1,74 @@
+package com.bimbr.clisson.client
+
+import java.io.File
+
+import scala.collection.JavaConversions._
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.protocol.{ Event, Json }
+
+@RunWith(classOf[JUnitRunner])
+class WriteAheadJournalSpec extends Specification {
+  "WriteAheadJournal construction" should {
+    "require positive segment size" in {
+      new WriteAheadJournal(tempDir("zero-segment"), 0) must throwAn [IllegalArgumentException]
+    }
+  }
+  "WriteAheadJournal" should {
+    "assign consecutive sequence numbers to appended events" in {
+      val journal = new WriteAheadJournal(tempDir("sequence"), SegmentSize)
+      (Events map journal.append) mustEqual (1 to Events.size).toList
+    }
+    "recover committed events that have not been confirmed" in {
+      val dir = tempDir("recover")
+      val journal = new WriteAheadJournal(dir, SegmentSize)
+      Events foreach journal.append
+      journal.commit()
+      journal.confirm(5)
+      recoveredFrom(dir) mustEqual (Events drop 5 map Json.jsonFor)
+    }
+    "not recover events that have not been committed" in {
+      val dir = tempDir("uncommitted")
+      val journal = new WriteAheadJournal(dir, SegmentSize)
+      Events take 3 foreach journal.append
+      journal.commit()
+      Events drop 3 foreach journal.append
+      recoveredFrom(dir) mustEqual (Events take 3 map Json.jsonFor)
+    }
+    "commit staged events when closed" in {
+      val dir = tempDir("close")
+      val journal = new WriteAheadJournal(dir, SegmentSize)
+      Events foreach journal.append
+      journal.close()
+      recoveredFrom(dir) mustEqual (Events map Json.jsonFor)
+    }
+    "continue numbering after the recovered events" in {
+      val dir = tempDir("numbering")
+      val journal = new WriteAheadJournal(dir, SegmentSize)
+      Events foreach journal.append
+      journal.commit()
+      new WriteAheadJournal(dir, SegmentSize).append(Events.head) mustEqual Events.size + 1
+    }
+    "delete journal files once all their events have been confirmed" in {
+      val dir = tempDir("delete")
+      val journal = new WriteAheadJournal(dir, SegmentSize)
+      Events foreach { event => journal.append(event); journal.commit() }
+      journal.confirm(Events.size)
+      dir.list.filter(_.endsWith(".log")).length mustEqual 1
+    }
+  }
+  
+  def recoveredFrom(dir: File) = new WriteAheadJournal(dir, SegmentSize).recoveredEvents.toList map Json.jsonFor
+  
+  def tempDir(name: String) = {
+    val dir = new File(System.getProperty("java.io.tmpdir"), "clisson-write-ahead-journal-spec-" + name + "-" + System.nanoTime)
+    dir.deleteOnExit()
+    dir
+  }
+  
+  val SegmentSize = 512
+  val Events = (1 to 20).toList map { i => new Event("src", new java.util.Date, Set("msg-" + i), Set("msg-" + i), "journaled event " + i) }
+}
@@ -6,7 +6,7 @@ import org.junit.runner.RunWith
 import org.specs2.mock.Mockito
 import org.specs2.mutable.Specification
 import org.specs2.runner.JUnitRunner
-import com.bimbr.clisson.client.Recorder
+import com.bimbr.clisson.client.{ LifecycleRecorder, Recorder }
 import com.bimbr.clisson.protocol.{ Event, Json }
 import com.bimbr.util.Clock
 import com.bimbr.clisson.client.globally
@@ -34,11 +34,70 @@ class ClissonAppenderSpec extends Specification with Mockito {
       appender(rec).doAppend(IgnorableLog4jEvent)
       there was no (rec).event(any[Event])
     }
+    "record events built by filtering transformations without calling perform()" in {
+      val rec = recorder
+      val transformation = mock[FilteringEventTransformation]
+      transformation.performIfRelevant(Log4jEvent) returns ClissonEvent
+      val appender = new ClissonAppender(transformation, rec, CloseTimeoutMs)
+      appender doAppend Log4jEvent
+      appender doAppend IgnorableLog4jEvent
+      (there was one (rec).event(ClissonEvent)) and (there was no (transformation).perform(any[LoggingEvent]))
+    }
+    "flush, but not close, the shared recorder when closed" in {
+      val rec = recorder
+      appender(rec).close()
+      (there was one (rec).flush(CloseTimeoutMs)) and (there was no (rec).close(anyLong))
+    }
+  }
+  "asynchronous ClissonAppender" should {
+    "record Clisson event built from log4j Event on a worker thread" in {
+      val rec = recorder
+      val transformation = new ThreadRecordingTransformation
+      val appender = asyncAppender(rec, transformation, 10)
+      appender doAppend Log4jEvent
+      appender close ()
+      (there was one (rec).event(TestTransformation.Result)) and (transformation.threadName must startWith ("clisson-log4j-transformer-"))
+    }
+    "capture the state bound to the logging thread before the event is transformed" in {
+      val log4jEvent = mock[LoggingEvent]
+      val appender = asyncAppender(recorder, new ThreadRecordingTransformation, 10)
+      appender doAppend log4jEvent
+      appender close ()
+      (there was one (log4jEvent).getThreadName) and (there was one (log4jEvent).getNDC) and (there was one (log4jEvent).getMDCCopy)
+    }
+    "ignore events deemed ignorable by the transformation" in {
+      val rec = recorder
+      val appender = asyncAppender(rec, Transformation, 10)
+      appender doAppend IgnorableLog4jEvent
+      appender close ()
+      there was no (rec).event(any[Event])
+    }
+    "drop events logged when the queue of events to transform is full" in {
+      val transformation = new BlockingTransformation
+      val appender = asyncAppender(recorder, transformation, 1)
+      appender doAppend Log4jEvent
+      transformation.started await ()
+      (1 to 3) foreach { _ => appender doAppend Log4jEvent }
+      val dropped = appender.eventsDropped
+      transformation.release countDown ()
+      appender close ()
+      dropped mustEqual 2
+    }
+    "transform the queued events before closing the recorder" in {
+      val rec = recorder
+      val appender = asyncAppender(rec, Transformation, 10)
+      (1 to 3) foreach { _ => appender doAppend Log4jEvent }
+      appender close ()
+      there were three(rec).event(ClissonEvent)
+    }
   }
   
   val Transformation = mock[EventTransformation]
-  def recorder = mock[Recorder]
-  def appender(recorder: Recorder) = new ClissonAppender(Transformation, recorder)
+  def recorder = mock[LifecycleRecorder]
+  def appender(recorder: Recorder) = new ClissonAppender(Transformation, recorder, CloseTimeoutMs)
+  def asyncAppender(recorder: Recorder, transformation: EventTransformation, queueSize: Int) = 
+    new ClissonAppender(transformation, recorder, CloseTimeoutMs, ClissonAppender.transformers(1, queueSize))
+  val CloseTimeoutMs = 1000L
   
   val Log4jEvent = mock[LoggingEvent]
   val IgnorableLog4jEvent = mock[LoggingEvent]
@@ -54,6 +113,24 @@ class TestTransformation extends EventTransformation {
   def perform(log4jEvent: LoggingEvent) = Result
 }
 
+class ThreadRecordingTransformation extends EventTransformation {
+  @volatile var threadName = ""
+  def perform(log4jEvent: LoggingEvent) = {
+    threadName = Thread.currentThread.getName
+    TestTransformation.Result
+  }
+}
+
+class BlockingTransformation extends EventTransformation {
+  val started = new java.util.concurrent.CountDownLatch(1)
+  val release = new java.util.concurrent.CountDownLatch(1)
+  def perform(log4jEvent: LoggingEvent) = {
+    started countDown ()
+    release await ()
+    TestTransformation.Result
+  }
+}
+
 object TestTransformation {
   val Result = new Event("appender-test", new java.util.Date, Set("msg-1"), Set("msg-2"), "unique!")
   var constructed = false
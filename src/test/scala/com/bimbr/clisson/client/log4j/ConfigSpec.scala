@@ -13,6 +13,26 @@ import com.bimbr.clisson.client.Config.ConfigException
 class ConfigSpec extends com.bimbr.clisson.client.ConfigSpec {
   import com.bimbr.clisson.client.ConfigSpec._
   
+  "log4j Config" should {
+    "transform events on the logging threads if clisson.log4j.async properties are not specified" in globally.synchronized {
+      useConfig("classpath://log4j-valid.properties")
+      val config = Config fromPropertiesFile()
+      (config.isAsync, config.getAsyncThreads, config.getAsyncQueueSize) mustEqual (false, 1, 1024)
+    }
+    "have no pattern rules if clisson.log4j.patterns property is not specified" in globally.synchronized {
+      useConfig("classpath://log4j-valid.properties")
+      Config.fromPropertiesFile().getPatternRules.toList must beEmpty
+    }
+    "have pattern rules taken from clisson.log4j.pattern properties" in globally.synchronized {
+      useConfig("classpath://log4j-patterns.properties")
+      Config.fromPropertiesFile().getPatternRules.toList map (_.toString) mustEqual List("received: received (\\S+)", "converted: converted (\\S+) to (\\S+)")
+    }
+    "have asynchronous transformation settings taken from clisson.log4j.async properties" in globally.synchronized {
+      useConfig("classpath://log4j-async.properties")
+      val config = Config fromPropertiesFile()
+      (config.isAsync, config.getAsyncThreads, config.getAsyncQueueSize) mustEqual (true, 4, 256)
+    }
+  }
   "log4j Config construction" should {
     // these tests modify system properties so can't be run in parallel
     "require that clisson.log4j.eventTransformation property points to a class implementing EventTransformation" in globally.synchronized {
@@ -21,6 +41,18 @@ class ConfigSpec extends com.bimbr.clisson.client.ConfigSpec {
         case e => e.getMessage must contain ("clisson.log4j.eventTransformation")
       }
     }
+    "require that clisson.log4j.pattern properties are valid regular expressions" in globally.synchronized {
+      useConfig("classpath://log4j-invalid-pattern.properties")
+      Config fromPropertiesFile() must throwA [ConfigException].like {
+        case e => e.getMessage must contain ("clisson.log4j.pattern")
+      }
+    }
+    "require that clisson.log4j.patterns property is specified when PatternTransformation is used" in globally.synchronized {
+      useConfig("classpath://log4j-no-patterns.properties")
+      Config fromPropertiesFile() must throwA [ConfigException].like {
+        case e => e.getMessage must contain ("clisson.log4j.patterns")
+      }
+    }
   }
   
   trait trees extends After {
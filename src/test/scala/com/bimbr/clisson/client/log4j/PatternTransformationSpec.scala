@@ -0,0 +1,78 @@
+package com.bimbr.clisson.client.log4j
+
+import java.util.regex.Pattern
+
+import scala.collection.JavaConversions._
+
+import org.apache.log4j.Level
+import org.apache.log4j.spi.LoggingEvent
+import org.junit.runner.RunWith
+import org.specs2.mock.Mockito
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class PatternTransformationSpec extends Specification with Mockito {
+  "PatternRule" should {
+    "derive the literal from the text the regular expression starts with" in {
+      List("received (\\w+)", "^sent (\\w+)", "ab*c", "ab+c") map PatternRule.literalOf mustEqual List("received ", "sent ", "a", "ab")
+    }
+    "not derive a literal from regular expressions with alternatives or flags" in {
+      List("a|b", "(?i)abc", "\\d+") map PatternRule.literalOf mustEqual List("", "", "")
+    }
+    "require the input group to be a group of the pattern" in {
+      rule("id=(\\w+)", inputGroup = 2) must throwAn [IllegalArgumentException]
+    }
+    "apply to the listed loggers and their descendants" in {
+      val r = rule("id=(\\w+)", loggers = List("com.example"))
+      List("com.example", "com.example.Foo", "com.examples", "org.other") map r.appliesTo mustEqual List(true, true, false, false)
+    }
+  }
+  "PatternTransformation" should {
+    "build a checkpoint of the message whose id the pattern finds" in {
+      val event = transformation(rule("received (\\w+)")) performIfRelevant log4jEvent("received msg-1 from queue")
+      (event.getSourceId, event.getInputMessageIds.toSet, event.getOutputMessageIds.toSet, event.getDescription) mustEqual ("component", Set("msg-1"), Set("msg-1"), "test")
+    }
+    "build an event with the output message found by the pattern" in {
+      val event = transformation(rule("order (\\w+) became (\\w+)", outputGroup = 2)) performIfRelevant log4jEvent("order msg-1 became msg-2")
+      (event.getInputMessageIds.toSet, event.getOutputMessageIds.toSet) mustEqual (Set("msg-1"), Set("msg-2"))
+    }
+    "try the patterns in order" in {
+      val event = transformation(rule("msg-(\\d)", description = "first"), rule("(msg-\\d)", description = "second")) performIfRelevant log4jEvent("msg-1")
+      event.getDescription mustEqual "first"
+    }
+    "return null for messages that do not match any pattern" in {
+      transformation(rule("received (\\w+)")) performIfRelevant log4jEvent("something else") must beNull
+    }
+    "throw IgnoreEventException from perform() for messages that do not match any pattern" in {
+      transformation(rule("received (\\w+)")).perform(log4jEvent("something else")) must throwAn [EventTransformation.IgnoreEventException]
+    }
+    "not render the messages of loggers no pattern applies to" in {
+      val event = log4jEvent("received msg-1", logger = "org.other")
+      val result = transformation(rule("received (\\w+)", loggers = List("com.example"))) performIfRelevant event
+      (result must beNull) and (there was no (event).getRenderedMessage)
+    }
+    "not render the messages of events below the levels of all patterns" in {
+      val event = log4jEvent("received msg-1", level = Level.DEBUG)
+      val result = transformation(rule("received (\\w+)", level = Level.INFO)) performIfRelevant event
+      (result must beNull) and (there was no (event).getRenderedMessage)
+    }
+    "not run the regular expression on messages without the literal" in {
+      transformation(rule("(\\w+)", literal = "received")) performIfRelevant log4jEvent("sent msg-1") must beNull
+    }
+  }
+
+  def rule(regex: String, inputGroup: Int = 1, outputGroup: Int = 0, description: String = "test", 
+           loggers: List[String] = Nil, level: Level = Level.ALL, literal: String = null) =
+    new PatternRule("test", Pattern.compile(regex), literal, inputGroup, outputGroup, description, loggers, level)
+
+  def transformation(rules: PatternRule*) = new PatternTransformation("component", rules.toList)
+
+  def log4jEvent(message: String, logger: String = "com.example.Foo", level: Level = Level.INFO) = {
+    val event = mock[LoggingEvent]
+    event.getLoggerName returns logger
+    event.getLevel returns level
+    event.getRenderedMessage returns message
+    event
+  }
+}
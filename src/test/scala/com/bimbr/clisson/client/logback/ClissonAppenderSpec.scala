@@ -0,0 +1,80 @@
+package com.bimbr.clisson.client.logback
+
+import scala.collection.JavaConversions._
+
+import ch.qos.logback.classic.spi.ILoggingEvent
+import org.junit.runner.RunWith
+import org.specs2.mock.Mockito
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.client.{ LifecycleRecorder, Recorder }
+import com.bimbr.clisson.protocol.Event
+import com.bimbr.clisson.client.globally
+import com.bimbr.clisson.client.ConfigSpec.useConfig
+
+@RunWith(classOf[JUnitRunner])
+class ClissonAppenderSpec extends Specification with Mockito {
+  "ClissonAppender construction" should {
+    "use event transformation class defined in the config" in globally.synchronized {
+      useConfig("classpath://logback-valid.properties")
+      TestTransformation.constructed = false
+      new ClissonAppender
+      TestTransformation.constructed mustEqual true
+    }
+  }
+  "ClissonAppender" should {
+    "record Clisson event built from Logback event using supplied EventTransformation" in {
+      val rec = recorder
+      started(appender(rec)) doAppend LogbackEvent
+      there was one (rec).event(ClissonEvent)
+    }
+    "ignore events for which the transformation returns null" in {
+      val rec = recorder
+      started(appender(rec)) doAppend IgnorableLogbackEvent
+      there was no (rec).event(any[Event])
+    }
+    "not ask for the caller data of events" in {
+      val event = mock[ILoggingEvent]
+      started(appender(recorder)) doAppend event
+      (there was no (event).getCallerData) and (there was no (event).hasCallerData)
+    }
+    "flush, but not close, the shared recorder when stopped" in {
+      val rec = recorder
+      started(appender(rec)).stop()
+      (there was one (rec).flush(CloseTimeoutMs)) and (there was no (rec).close(anyLong))
+    }
+  }
+  "AsyncClissonAppender" should {
+    "not capture caller data by default" in {
+      new AsyncClissonAppender().isIncludeCallerData mustEqual false
+    }
+  }
+  
+  val Transformation = mock[EventTransformation]
+  def recorder = mock[LifecycleRecorder]
+  def appender(recorder: Recorder) = new ClissonAppender(Transformation, recorder, CloseTimeoutMs)
+  def started(appender: ClissonAppender) = {
+    appender.start()
+    appender
+  }
+  val CloseTimeoutMs = 1000L
+  
+  val LogbackEvent = mock[ILoggingEvent]
+  val IgnorableLogbackEvent = mock[ILoggingEvent]
+  val ClissonEvent = mock[Event]
+
+  Transformation.perform(LogbackEvent) returns ClissonEvent
+  Transformation.perform(IgnorableLogbackEvent) returns null
+}
+
+class TestTransformation extends EventTransformation {
+  import TestTransformation._
+  constructed = true
+  def perform(logbackEvent: ILoggingEvent) = Result
+}
+
+object TestTransformation {
+  val Result = new Event("appender-test", new java.util.Date, Set("msg-1"), Set("msg-2"), "unique!")
+  var constructed = false
+}
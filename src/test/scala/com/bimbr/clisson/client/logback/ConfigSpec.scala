@@ -0,0 +1,27 @@
+package com.bimbr.clisson.client.logback
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+import com.bimbr.clisson.client.globally
+import com.bimbr.clisson.client.Config.ConfigException
+
+@RunWith(classOf[JUnitRunner])
+class ConfigSpec extends Specification {
+  import com.bimbr.clisson.client.ConfigSpec._
+  
+  "Logback Config" should {
+    // these tests modify system properties so can't be run in parallel
+    "have the transformation class taken from clisson.logback.eventTransformation property" in globally.synchronized {
+      useConfig("classpath://logback-valid.properties")
+      Config.fromPropertiesFile().getTransformationClass mustEqual classOf[TestTransformation]
+    }
+    "require that clisson.logback.eventTransformation property points to a class implementing EventTransformation" in globally.synchronized {
+      useConfig("classpath://logback-wrong-transformation.properties")
+      Config fromPropertiesFile() must throwA [ConfigException].like {
+        case e => e.getMessage must contain ("clisson.logback.eventTransformation")
+      }
+    }
+  }
+}
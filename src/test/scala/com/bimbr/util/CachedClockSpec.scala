@@ -0,0 +1,29 @@
+package com.bimbr.util
+
+import org.junit.runner.RunWith
+import org.specs2.mutable.Specification
+import org.specs2.runner.JUnitRunner
+
+@RunWith(classOf[JUnitRunner])
+class CachedClockSpec extends Specification {
+  "CachedClock" should {
+    "return the system time" in {
+      val clock = new CachedClock
+      val before = System.currentTimeMillis
+      val time = clock.currentTimeMillis
+      val after = System.currentTimeMillis
+      time must beBetween(before - 1, after + 1)
+    }
+    "follow the system time between readings of the system clock" in {
+      val clock = new CachedClock
+      clock.currentTimeMillis
+      Thread sleep 50
+      clock.currentTimeMillis - System.currentTimeMillis must beBetween(-5L, 5L)
+    }
+    "not go back between readings of the system clock" in {
+      val clock = new CachedClock
+      val times = (1 to 10000).toList map { _ => clock.currentTimeMillis }
+      times zip times.tail forall { case (earlier, later) => earlier <= later } must beTrue
+    }
+  }
+}